@@ -0,0 +1,252 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.jbellis.jvector.disk;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * A RandomAccessReader over an AsynchronousFileChannel.  Ordinary reads are served from a small
+ * read-ahead buffer, refilled with one blocking read on a miss.  {@link #prefetch} submits all of
+ * its ranges to the channel at once, so a batch of n ranges costs roughly one round trip to the
+ * device rather than n of them; the results are kept in a fixed number of slots that later reads
+ * check before going to the channel.
+ * <p>
+ * Not threadsafe; use one reader per thread, as with the other readers.  Create them with
+ * {@link AsyncFileReaderSupplier}, which shares a single channel among its readers.
+ */
+public class AsyncFileReader implements PrefetchingReader {
+    static final int READ_AHEAD_SIZE = 4096;
+    static final int PREFETCH_SLOTS = 64;
+
+    private final AsynchronousFileChannel channel;
+    private long position;
+
+    // the buffer that holds the bytes at [currentStart, currentStart + current.limit()), set by locate()
+    private ByteBuffer current;
+    private long currentStart;
+
+    private ByteBuffer readAhead = ByteBuffer.allocate(READ_AHEAD_SIZE);
+    private long readAheadStart = -1;
+
+    // prefetched ranges, replaced round-robin
+    private final ByteBuffer[] slots = new ByteBuffer[PREFETCH_SLOTS];
+    private final long[] slotStarts = new long[PREFETCH_SLOTS];
+    private int slotCount;
+    private int nextSlot;
+
+    // reads submitted by the current prefetch batch
+    @SuppressWarnings("unchecked")
+    private final Future<Integer>[] pending = new Future[PREFETCH_SLOTS];
+    private final int[] pendingSlots = new int[PREFETCH_SLOTS];
+    private final long[] pendingStarts = new long[PREFETCH_SLOTS];
+
+    AsyncFileReader(AsynchronousFileChannel channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public void seek(long offset) {
+        position = offset;
+    }
+
+    @Override
+    public long getPosition() {
+        return position;
+    }
+
+    @Override
+    public int readInt() throws IOException {
+        int i = locate(Integer.BYTES);
+        return current.getInt(i);
+    }
+
+    @Override
+    public float readFloat() throws IOException {
+        int i = locate(Float.BYTES);
+        return current.getFloat(i);
+    }
+
+    @Override
+    public void readFully(byte[] bytes) throws IOException {
+        int i = locate(bytes.length);
+        current.duplicate().position(i).get(bytes);
+    }
+
+    @Override
+    public void readFully(ByteBuffer buffer) throws IOException {
+        int length = buffer.remaining();
+        int i = locate(length);
+        buffer.put(current.duplicate().position(i).limit(i + length));
+    }
+
+    @Override
+    public void readFully(long[] vector) throws IOException {
+        int i = locate(vector.length * Long.BYTES);
+        for (int j = 0; j < vector.length; j++) {
+            vector[j] = current.getLong(i + j * Long.BYTES);
+        }
+    }
+
+    @Override
+    public void read(int[] ints, int offset, int count) throws IOException {
+        int i = locate(count * Integer.BYTES);
+        for (int j = 0; j < count; j++) {
+            ints[offset + j] = current.getInt(i + j * Integer.BYTES);
+        }
+    }
+
+    @Override
+    public void read(float[] floats, int offset, int count) throws IOException {
+        int i = locate(count * Float.BYTES);
+        for (int j = 0; j < count; j++) {
+            floats[offset + j] = current.getFloat(i + j * Float.BYTES);
+        }
+    }
+
+    @Override
+    public void prefetch(long[] offsets, int[] lengths, int count) throws IOException {
+        for (int start = 0; start < count; start += PREFETCH_SLOTS) {
+            prefetchBatch(offsets, lengths, start, Math.min(count, start + PREFETCH_SLOTS));
+        }
+    }
+
+    private void prefetchBatch(long[] offsets, int[] lengths, int start, int end) throws IOException {
+        // submit everything before waiting on anything, so the reads are in flight together
+        int submitted = 0;
+        for (int i = start; i < end; i++) {
+            if (findSlot(offsets[i], lengths[i]) >= 0) {
+                continue;
+            }
+            int slot = nextSlot;
+            nextSlot = (nextSlot + 1) % PREFETCH_SLOTS;
+            slotCount = Math.max(slotCount, slot + 1);
+
+            var buffer = slots[slot];
+            if (buffer == null || buffer.capacity() < lengths[i]) {
+                buffer = ByteBuffer.allocate(lengths[i]);
+                slots[slot] = buffer;
+            }
+            buffer.clear().limit(lengths[i]);
+            // mark the slot empty until its read completes
+            slotStarts[slot] = -1;
+            pending[submitted] = channel.read(buffer, offsets[i]);
+            pendingSlots[submitted] = slot;
+            pendingStarts[submitted] = offsets[i];
+            submitted++;
+        }
+
+        for (int p = 0; p < submitted; p++) {
+            int slot = pendingSlots[p];
+            var buffer = slots[slot];
+            int n = await(pending[p]);
+            pending[p] = null;
+            // a read can complete short of the limit without reaching the end of the file
+            if (n > 0 && buffer.hasRemaining()) {
+                fill(buffer, pendingStarts[p] + buffer.position());
+            }
+            buffer.flip();
+            slotStarts[slot] = pendingStarts[p];
+        }
+    }
+
+    /**
+     * Point `current` at a buffer holding the `length` bytes at the current position,
+     * advance the position past them, and return the index of the first of them in `current`.
+     */
+    private int locate(int length) throws IOException {
+        long start = position;
+        position += length;
+
+        if (readAheadStart >= 0 && start >= readAheadStart && position <= readAheadStart + readAhead.limit()) {
+            current = readAhead;
+            currentStart = readAheadStart;
+            return (int) (start - readAheadStart);
+        }
+        int slot = findSlot(start, length);
+        if (slot >= 0) {
+            current = slots[slot];
+            currentStart = slotStarts[slot];
+            return (int) (start - currentStart);
+        }
+
+        // miss: refill the read-ahead buffer starting at the requested bytes
+        if (readAhead.capacity() < length) {
+            readAhead = ByteBuffer.allocate(length);
+        }
+        readAheadStart = -1;
+        readAhead.clear();
+        fill(readAhead, start);
+        readAhead.flip();
+        if (readAhead.limit() < length) {
+            throw new EOFException(String.format("Read of %d bytes at %d is past the end of the file", length, start));
+        }
+        readAheadStart = start;
+        current = readAhead;
+        currentStart = start;
+        return 0;
+    }
+
+    private int findSlot(long start, int length) {
+        for (int i = 0; i < slotCount; i++) {
+            long slotStart = slotStarts[i];
+            if (slotStart >= 0 && start >= slotStart && start + length <= slotStart + slots[i].limit()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Read from `offset` until `buffer` is full or the end of the file is reached.
+     */
+    private void fill(ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = await(channel.read(buffer, offset));
+            if (n < 0) {
+                break;
+            }
+            offset += n;
+        }
+    }
+
+    private static int await(Future<Integer> read) throws IOException {
+        try {
+            return read.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for read");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Closes this reader only; the channel belongs to the supplier.
+     */
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.jbellis.jvector.disk;
+
+import java.io.IOException;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Supplies {@link AsyncFileReader}s that share a single AsynchronousFileChannel, so that
+ * a search can keep several reads in flight (see {@link PrefetchingReader}).
+ * Unlike SimpleMappedReaderSupplier, the file does not need to fit in memory or in the address space.
+ */
+public class AsyncFileReaderSupplier implements ReaderSupplier {
+    private final AsynchronousFileChannel channel;
+
+    public AsyncFileReaderSupplier(Path path) throws IOException {
+        channel = AsynchronousFileChannel.open(path, StandardOpenOption.READ);
+    }
+
+    @Override
+    public RandomAccessReader get() {
+        return new AsyncFileReader(channel);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
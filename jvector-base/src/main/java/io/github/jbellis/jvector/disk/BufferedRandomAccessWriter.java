@@ -17,15 +17,13 @@
 package io.github.jbellis.jvector.disk;
 
 import java.io.ByteArrayOutputStream;
-import java.io.Closeable;
-import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.file.Path;
 
-public class BufferedRandomAccessWriter implements Closeable {
+public class BufferedRandomAccessWriter implements RandomAccessWriter {
     private final RandomAccessFile raf;
 
     // buffer structures
@@ -36,10 +34,12 @@ public class BufferedRandomAccessWriter implements Closeable {
         raf = new RandomAccessFile(path.toFile(), "rw");
     }
 
+    @Override
     public void seek(long position) throws IOException {
         raf.seek(position);
     }
 
+    @Override
     public void writeBuffered(ChunkWriter writer) throws IOException {
         assert scratchBytes.size() == 0;
         writer.write(scratch);
@@ -52,18 +52,19 @@ public class BufferedRandomAccessWriter implements Closeable {
         raf.close();
     }
 
+    @Override
     public void writeInt(int i) throws IOException {
         raf.writeInt(i);
     }
 
-    public long getFilePointer() throws IOException {
-        return raf.getFilePointer();
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        raf.write(bytes, offset, length);
     }
 
-    // because there is still no ThrowingRunnable in the JDK
-    @FunctionalInterface
-    public interface ChunkWriter {
-        void write(DataOutput out) throws IOException;
+    @Override
+    public long getFilePointer() throws IOException {
+        return raf.getFilePointer();
     }
 
     // silly that we need to do this but at least the JDK made `buf` available to subclasses
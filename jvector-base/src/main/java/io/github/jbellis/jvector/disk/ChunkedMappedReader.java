@@ -0,0 +1,270 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.jbellis.jvector.disk;
+
+import sun.misc.Unsafe;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Logger;
+
+/**
+ * A memory-mapped RandomAccessReader for files of any size.  The file is mapped as a series of
+ * chunks (1GB by default), since a single MappedByteBuffer is limited to 2GB; reads that cross
+ * a chunk boundary are assembled from both sides.
+ * <p>
+ * The mapping is shared by the reader that created it and all of its duplicates, and reads
+ * from it use absolute gets, so a duplicate is just a new position.  Closing the original reader
+ * unmaps the file, after which its duplicates must not be used.
+ */
+public class ChunkedMappedReader implements RandomAccessReader {
+    private static final Logger LOG = Logger.getLogger(ChunkedMappedReader.class.getName());
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 30;
+
+    private static final Unsafe unsafe = getUnsafe();
+
+    private static Unsafe getUnsafe() {
+        try {
+            Field f = Unsafe.class.getDeclaredField("theUnsafe");
+            f.setAccessible(true);
+            return (Unsafe) f.get(null);
+        } catch (Exception e) {
+            LOG.warning("ChunkedMappedReader can't acquire needed Unsafe access");
+            return null;
+        }
+    }
+
+    private final MappedByteBuffer[] chunks;
+    private final int chunkShift;
+    private final long chunkMask;
+    private final long length;
+    private final boolean ownsMapping;
+    // per-reader duplicates of the chunks, created on first use, for relative bulk gets
+    private final ByteBuffer[] views;
+    private final byte[] scratch = new byte[Long.BYTES];
+    private long position;
+
+    public ChunkedMappedReader(Path path) throws IOException {
+        this(path, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param chunkSize the size of each mapped region; must be a power of two
+     */
+    public ChunkedMappedReader(Path path, int chunkSize) throws IOException {
+        if (chunkSize <= 0 || Integer.bitCount(chunkSize) != 1) {
+            throw new IllegalArgumentException(String.format("Chunk size must be a positive power of two, not %d", chunkSize));
+        }
+        this.chunkShift = Integer.numberOfTrailingZeros(chunkSize);
+        this.chunkMask = chunkSize - 1;
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            this.length = channel.size();
+            int chunkCount = Math.toIntExact((length + chunkSize - 1) >>> chunkShift);
+            this.chunks = new MappedByteBuffer[chunkCount];
+            for (int i = 0; i < chunkCount; i++) {
+                long start = (long) i << chunkShift;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(chunkSize, length - start));
+            }
+        }
+        this.ownsMapping = true;
+        this.views = new ByteBuffer[chunks.length];
+    }
+
+    private ChunkedMappedReader(ChunkedMappedReader source) {
+        this.chunks = source.chunks;
+        this.chunkShift = source.chunkShift;
+        this.chunkMask = source.chunkMask;
+        this.length = source.length;
+        this.ownsMapping = false;
+        this.views = new ByteBuffer[chunks.length];
+    }
+
+    @Override
+    public void seek(long offset) {
+        position = offset;
+    }
+
+    @Override
+    public long getPosition() {
+        return position;
+    }
+
+    public long length() {
+        return length;
+    }
+
+    /**
+     * @return the offset of the current position within its chunk if the next `n` bytes are all in
+     * that chunk, and -1 otherwise.  Throws if they extend past the end of the file.
+     */
+    private int offsetInChunk(int n) throws EOFException {
+        if (position < 0 || position + n > length) {
+            throw new EOFException(String.format("Read of %d bytes at %d is outside the file (length %d)", n, position, length));
+        }
+        int offset = (int) (position & chunkMask);
+        return offset + n <= chunks[(int) (position >>> chunkShift)].limit() ? offset : -1;
+    }
+
+    private MappedByteBuffer chunk() {
+        return chunks[(int) (position >>> chunkShift)];
+    }
+
+    private ByteBuffer view(int chunk) {
+        if (views[chunk] == null) {
+            views[chunk] = chunks[chunk].duplicate();
+        }
+        return views[chunk];
+    }
+
+    @Override
+    public int readInt() throws IOException {
+        int offset = offsetInChunk(Integer.BYTES);
+        if (offset < 0) {
+            readFully(scratch, 0, Integer.BYTES);
+            return ByteBuffer.wrap(scratch).getInt();
+        }
+        int value = chunk().getInt(offset);
+        position += Integer.BYTES;
+        return value;
+    }
+
+    @Override
+    public float readFloat() throws IOException {
+        return Float.intBitsToFloat(readInt());
+    }
+
+    private long readLong() throws IOException {
+        int offset = offsetInChunk(Long.BYTES);
+        if (offset < 0) {
+            readFully(scratch, 0, Long.BYTES);
+            return ByteBuffer.wrap(scratch).getLong();
+        }
+        long value = chunk().getLong(offset);
+        position += Long.BYTES;
+        return value;
+    }
+
+    @Override
+    public void readFully(byte[] bytes) throws IOException {
+        readFully(bytes, 0, bytes.length);
+    }
+
+    private void readFully(byte[] bytes, int offset, int n) throws IOException {
+        offsetInChunk(n); // bounds check
+        while (n > 0) {
+            int chunk = (int) (position >>> chunkShift);
+            var view = view(chunk);
+            view.position((int) (position & chunkMask));
+            int count = Math.min(n, view.remaining());
+            view.get(bytes, offset, count);
+            offset += count;
+            n -= count;
+            position += count;
+        }
+    }
+
+    @Override
+    public void readFully(ByteBuffer buffer) throws IOException {
+        offsetInChunk(buffer.remaining()); // bounds check
+        while (buffer.hasRemaining()) {
+            int chunk = (int) (position >>> chunkShift);
+            var view = view(chunk);
+            int start = (int) (position & chunkMask);
+            int count = Math.min(buffer.remaining(), view.capacity() - start);
+            view.limit(start + count).position(start);
+            buffer.put(view);
+            view.limit(view.capacity());
+            position += count;
+        }
+    }
+
+    @Override
+    public void readFully(float[] floats) throws IOException {
+        read(floats, 0, floats.length);
+    }
+
+    @Override
+    public void readFully(long[] vector) throws IOException {
+        int offset = offsetInChunk(vector.length * Long.BYTES);
+        if (offset < 0) {
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] = readLong();
+            }
+            return;
+        }
+        var chunk = chunk();
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = chunk.getLong(offset + i * Long.BYTES);
+        }
+        position += (long) vector.length * Long.BYTES;
+    }
+
+    @Override
+    public void read(int[] ints, int offset, int count) throws IOException {
+        int start = offsetInChunk(count * Integer.BYTES);
+        if (start < 0) {
+            for (int i = 0; i < count; i++) {
+                ints[offset + i] = readInt();
+            }
+            return;
+        }
+        var chunk = chunk();
+        for (int i = 0; i < count; i++) {
+            ints[offset + i] = chunk.getInt(start + i * Integer.BYTES);
+        }
+        position += (long) count * Integer.BYTES;
+    }
+
+    @Override
+    public void read(float[] floats, int offset, int count) throws IOException {
+        int start = offsetInChunk(count * Float.BYTES);
+        if (start < 0) {
+            for (int i = 0; i < count; i++) {
+                floats[offset + i] = readFloat();
+            }
+            return;
+        }
+        var chunk = chunk();
+        for (int i = 0; i < count; i++) {
+            floats[offset + i] = chunk.getFloat(start + i * Float.BYTES);
+        }
+        position += (long) count * Float.BYTES;
+    }
+
+    /**
+     * Unmaps the file if this is the reader that mapped it; a no-op for duplicates.
+     */
+    @Override
+    public void close() {
+        if (!ownsMapping || unsafe == null) {
+            return;
+        }
+        for (var chunk : chunks) {
+            unsafe.invokeCleaner(chunk);
+        }
+    }
+
+    public ChunkedMappedReader duplicate() {
+        return new ChunkedMappedReader(this);
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.jbellis.jvector.disk;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+public class ChunkedMappedReaderSupplier implements ReaderSupplier {
+    private final ChunkedMappedReader reader;
+
+    public ChunkedMappedReaderSupplier(Path path) throws IOException {
+        reader = new ChunkedMappedReader(path);
+    }
+
+    @Override
+    public RandomAccessReader get() {
+        return reader.duplicate();
+    }
+
+    @Override
+    public void close() {
+        reader.close();
+    }
+}
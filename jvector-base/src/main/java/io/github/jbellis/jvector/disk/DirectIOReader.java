@@ -0,0 +1,164 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.jbellis.jvector.disk;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A RandomAccessReader over a FileChannel opened for direct I/O.  Direct reads must cover whole,
+ * aligned blocks into block-aligned memory, so every read goes through an aligned buffer:
+ * a miss reads the enclosing blocks (at least `bufferSize` bytes of them) and later reads
+ * that fall inside them are served from the buffer.
+ * <p>
+ * Not threadsafe; get one per thread from {@link DirectIOReaderSupplier}, which owns the channel.
+ */
+public class DirectIOReader implements RandomAccessReader {
+    static final int DEFAULT_BUFFER_SIZE = 16 * 1024;
+    static final int MAX_BLOCK_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final int blockSize;
+    private final int bufferSize;
+    private final long length;
+
+    // holds the file's bytes at [bufferStart, bufferStart + buffer.limit())
+    private ByteBuffer buffer;
+    private long bufferStart = -1;
+    private long position;
+
+    DirectIOReader(FileChannel channel, int blockSize, int bufferSize) {
+        this.channel = channel;
+        this.blockSize = blockSize;
+        this.bufferSize = bufferSize;
+        try {
+            this.length = channel.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.buffer = allocateAligned(bufferSize);
+    }
+
+    private ByteBuffer allocateAligned(int size) {
+        return ByteBuffer.allocateDirect(size + blockSize).alignedSlice(blockSize).limit(0);
+    }
+
+    @Override
+    public void seek(long offset) {
+        position = offset;
+    }
+
+    @Override
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Make sure the buffer holds the `n` bytes at the current position, advance the position
+     * past them, and return the index of the first of them in the buffer.
+     */
+    private int locate(int n) throws IOException {
+        long start = position;
+        if (start < 0 || start + n > length) {
+            throw new EOFException(String.format("Read of %d bytes at %d is outside the file (length %d)", n, start, length));
+        }
+        position += n;
+        if (bufferStart >= 0 && start >= bufferStart && start + n <= bufferStart + buffer.limit()) {
+            return (int) (start - bufferStart);
+        }
+
+        long alignedStart = start & -blockSize;
+        long alignedEnd = (start + n + blockSize - 1) & -blockSize;
+        int size = (int) Math.max(bufferSize, alignedEnd - alignedStart);
+        if (buffer.capacity() < size) {
+            buffer = allocateAligned(size);
+        }
+
+        // the last block of the file is short, and a direct read returns only the bytes that exist
+        int expected = (int) Math.min(size, length - alignedStart);
+        bufferStart = -1;
+        buffer.clear();
+        while (buffer.position() < expected) {
+            if (channel.read(buffer, alignedStart + buffer.position()) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        if (buffer.limit() < (int) (start - alignedStart) + n) {
+            throw new EOFException(String.format("Read of %d bytes at %d is outside the file (length %d)", n, start, length));
+        }
+        bufferStart = alignedStart;
+        return (int) (start - alignedStart);
+    }
+
+    @Override
+    public int readInt() throws IOException {
+        return buffer.getInt(locate(Integer.BYTES));
+    }
+
+    @Override
+    public float readFloat() throws IOException {
+        return buffer.getFloat(locate(Float.BYTES));
+    }
+
+    @Override
+    public void readFully(byte[] bytes) throws IOException {
+        int i = locate(bytes.length);
+        buffer.duplicate().position(i).get(bytes);
+    }
+
+    @Override
+    public void readFully(ByteBuffer dst) throws IOException {
+        int n = dst.remaining();
+        int i = locate(n);
+        dst.put(buffer.duplicate().position(i).limit(i + n));
+    }
+
+    @Override
+    public void readFully(long[] vector) throws IOException {
+        int i = locate(vector.length * Long.BYTES);
+        for (int j = 0; j < vector.length; j++) {
+            vector[j] = buffer.getLong(i + j * Long.BYTES);
+        }
+    }
+
+    @Override
+    public void read(int[] ints, int offset, int count) throws IOException {
+        int i = locate(count * Integer.BYTES);
+        for (int j = 0; j < count; j++) {
+            ints[offset + j] = buffer.getInt(i + j * Integer.BYTES);
+        }
+    }
+
+    @Override
+    public void read(float[] floats, int offset, int count) throws IOException {
+        int i = locate(count * Float.BYTES);
+        for (int j = 0; j < count; j++) {
+            floats[offset + j] = buffer.getFloat(i + j * Float.BYTES);
+        }
+    }
+
+    /**
+     * Closes this reader only; the channel belongs to the supplier.
+     */
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.jbellis.jvector.disk;
+
+import com.sun.nio.file.ExtendedOpenOption;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Supplies {@link DirectIOReader}s, which read with O_DIRECT so that the file's contents
+ * do not also end up in the OS page cache.  This is meant to sit under an in-process cache
+ * such as {@link PageCache}, so that the process controls all of the memory used to cache the index:
+ * <pre>
+ * var readers = pageCache.wrap(new DirectIOReaderSupplier(path), Files.size(path));
+ * </pre>
+ * Direct I/O is supported on Linux by most local filesystems (but not tmpfs); opening fails with
+ * an IOException or UnsupportedOperationException where it is not.
+ */
+public class DirectIOReaderSupplier implements ReaderSupplier {
+    private final FileChannel channel;
+    private final int blockSize;
+    private final int bufferSize;
+
+    public DirectIOReaderSupplier(Path path) throws IOException {
+        this(path, DirectIOReader.DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param bufferSize the minimum number of bytes read per I/O, rounded up to a whole number of blocks
+     */
+    public DirectIOReaderSupplier(Path path, int bufferSize) throws IOException {
+        long storeBlockSize = Files.getFileStore(path).getBlockSize();
+        if (storeBlockSize <= 0 || storeBlockSize > DirectIOReader.MAX_BLOCK_SIZE || Long.bitCount(storeBlockSize) != 1) {
+            throw new IOException(String.format("Unsupported block size %d for direct I/O on %s", storeBlockSize, path));
+        }
+        this.blockSize = (int) storeBlockSize;
+        this.bufferSize = Math.max(blockSize, (bufferSize + blockSize - 1) / blockSize * blockSize);
+        this.channel = FileChannel.open(path, StandardOpenOption.READ, ExtendedOpenOption.DIRECT);
+    }
+
+    public int blockSize() {
+        return blockSize;
+    }
+
+    @Override
+    public RandomAccessReader get() {
+        return new DirectIOReader(channel, blockSize, bufferSize);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.jbellis.jvector.disk;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A RandomAccessWriter that accumulates writes in a large direct buffer and flushes it to a FileChannel,
+ * so that sequential output reaches the disk in a few large writes instead of one per call.
+ * writeBuffered serializes straight into the buffer, and a seek to the current position is free, so
+ * only real jumps in position cost a flush.  Large byte arrays are written together with the pending
+ * buffer in a single gathering write, without being copied into it first.
+ * <p>
+ * Optionally, the file can be preallocated by zero-filling it up front.  That costs a pass of sequential
+ * writes, but reserves the space (so running out of disk fails fast instead of partway through an index)
+ * and keeps the filesystem from extending the file, and updating its metadata, on every flush.
+ * Preallocated space that is not written is truncated away on close.
+ * <p>
+ * Like BufferedRandomAccessWriter, this does not truncate an existing file.
+ */
+public class FileChannelWriter implements RandomAccessWriter {
+    public static final int DEFAULT_BUFFER_SIZE = 8 * 1024 * 1024;
+
+    /** When to force written data to the storage device */
+    public enum ForcePolicy {
+        /** leave it to the operating system, like BufferedRandomAccessWriter */
+        NEVER,
+        /** once, when the writer is closed */
+        ON_CLOSE,
+        /** after every flush of the buffer, so that at most one buffer's worth of data can be lost */
+        EVERY_FLUSH
+    }
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final ForcePolicy forcePolicy;
+    private final long initialSize;
+    private final boolean preallocated;
+    private final DataOutputStream bufferOutput;
+
+    // file position of the first byte in the buffer
+    private long bufferStart;
+    // the end of the data written so far
+    private long highWater;
+
+    public FileChannelWriter(Path path) throws IOException {
+        this(path, DEFAULT_BUFFER_SIZE, 0, ForcePolicy.NEVER);
+    }
+
+    /**
+     * @param bufferSize the size of the direct write buffer
+     * @param preallocateBytes if larger than the file, zero-fill the file to this size before writing
+     * @param forcePolicy when to force written data to the device
+     */
+    public FileChannelWriter(Path path, int bufferSize, long preallocateBytes, ForcePolicy forcePolicy) throws IOException {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize must be positive");
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        this.forcePolicy = forcePolicy;
+        this.initialSize = channel.size();
+        this.preallocated = preallocateBytes > initialSize;
+        this.bufferOutput = new DataOutputStream(new BufferOutputStream());
+        if (preallocated) {
+            try {
+                preallocate(preallocateBytes);
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+    }
+
+    private void preallocate(long size) throws IOException {
+        // the buffer is freshly allocated, so it is all zeros
+        long position = initialSize;
+        while (position < size) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), size - position));
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void seek(long position) throws IOException {
+        if (position != getFilePointer()) {
+            flush();
+            bufferStart = position;
+        }
+    }
+
+    @Override
+    public long getFilePointer() {
+        return bufferStart + buffer.position();
+    }
+
+    @Override
+    public void writeBuffered(ChunkWriter writer) throws IOException {
+        writer.write(bufferOutput);
+    }
+
+    @Override
+    public void writeInt(int i) throws IOException {
+        if (buffer.remaining() < Integer.BYTES) {
+            flush();
+        }
+        buffer.putInt(i);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        if (length <= buffer.remaining()) {
+            buffer.put(bytes, offset, length);
+            return;
+        }
+        if (length < buffer.capacity() / 2) {
+            flush();
+            buffer.put(bytes, offset, length);
+            return;
+        }
+
+        // large write: send the pending buffer and the array together
+        buffer.flip();
+        var srcs = new ByteBuffer[] { buffer, ByteBuffer.wrap(bytes, offset, length) };
+        long end = bufferStart + buffer.remaining() + length;
+        channel.position(bufferStart);
+        while (srcs[1].hasRemaining()) {
+            channel.write(srcs);
+        }
+        buffer.clear();
+        bufferStart = end;
+        highWater = Math.max(highWater, end);
+        if (forcePolicy == ForcePolicy.EVERY_FLUSH) {
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Write any buffered data to the file.
+     */
+    public void flush() throws IOException {
+        if (buffer.position() == 0) {
+            return;
+        }
+        buffer.flip();
+        long position = bufferStart;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        buffer.clear();
+        bufferStart = position;
+        highWater = Math.max(highWater, position);
+        if (forcePolicy == ForcePolicy.EVERY_FLUSH) {
+            channel.force(false);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            if (preallocated) {
+                channel.truncate(Math.max(highWater, initialSize));
+            }
+            if (forcePolicy != ForcePolicy.NEVER) {
+                channel.force(true);
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    /** Serializes into the buffer, flushing it when it fills */
+    private class BufferOutputStream extends OutputStream {
+        @Override
+        public void write(int b) throws IOException {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            buffer.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            FileChannelWriter.this.write(bytes, offset, length);
+        }
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.jbellis.jvector.disk;
+
+import org.agrona.collections.IntArrayQueue;
+
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size pool of off-heap pages caching the contents of read-only files, shared by every
+ * reader of every file it wraps.  This bounds the memory used for caching across all the indexes
+ * in the JVM, independently of the OS page cache, and lets it be sized explicitly.
+ * <p>
+ * Wrap a ReaderSupplier with {@link #wrap} to read through the cache.  Pages are evicted with the
+ * CLOCK algorithm: each hit marks its page referenced, and the clock hand clears marks until it finds
+ * an unmarked page to replace.
+ * <p>
+ * Hits are lock-free: each page frame is guarded by a sequence number that is odd while the frame is
+ * being replaced, and a reader that sees it change retries as a miss.  Misses read the page through
+ * the wrapped supplier outside of any lock, then take the cache lock only to install it.
+ * <p>
+ * The pages are allocated up front with ByteBuffer.allocateDirect, so the capacity counts against
+ * -XX:MaxDirectMemorySize.
+ */
+public class PageCache {
+    public static final int DEFAULT_PAGE_SIZE = 4096;
+
+    // page keys are (file id << 40 | page number), so we support 2^23 files of 2^40 pages each
+    private static final int PAGE_NUMBER_BITS = 40;
+    private static final int MAX_SLAB_SIZE = 1 << 30;
+
+    private final int pageSize;
+    private final int pageShift;
+    private final int frameCount;
+    private final int framesPerSlab;
+    private final ByteBuffer[] slabs;
+
+    // per frame: a sequence number (odd while the frame is being written), the key of the page it holds
+    // (or -1), the number of valid bytes, and whether it has been hit since the clock hand last passed it
+    private final AtomicLongArray versions;
+    private final long[] frameKeys;
+    private final int[] frameLengths;
+    private final byte[] referenced;
+
+    private final ConcurrentHashMap<Long, Integer> frames = new ConcurrentHashMap<>();
+    private final AtomicInteger nextFileId = new AtomicInteger();
+
+    // guarded by this
+    private final IntArrayQueue freeFrames = new IntArrayQueue();
+    private final ByteBuffer[] installViews;
+    private int framesUsed;
+    private int clockHand;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public PageCache(long capacityBytes) {
+        this(capacityBytes, DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * @param capacityBytes the total size of the pages; rounded down to a multiple of pageSize
+     * @param pageSize the size of each page; must be a power of two
+     */
+    public PageCache(long capacityBytes, int pageSize) {
+        if (pageSize <= 0 || Integer.bitCount(pageSize) != 1 || pageSize > MAX_SLAB_SIZE) {
+            throw new IllegalArgumentException(String.format("Page size must be a power of two of at most %d, not %d", MAX_SLAB_SIZE, pageSize));
+        }
+        long pages = capacityBytes / pageSize;
+        if (pages < 1 || pages > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format("Capacity %d must be between one and %d pages of %d bytes",
+                                                             capacityBytes, Integer.MAX_VALUE, pageSize));
+        }
+
+        this.pageSize = pageSize;
+        this.pageShift = Integer.numberOfTrailingZeros(pageSize);
+        this.frameCount = (int) pages;
+        this.framesPerSlab = MAX_SLAB_SIZE / pageSize;
+        int slabCount = (frameCount + framesPerSlab - 1) / framesPerSlab;
+        this.slabs = new ByteBuffer[slabCount];
+        for (int i = 0; i < slabCount; i++) {
+            int framesInSlab = Math.min(framesPerSlab, frameCount - i * framesPerSlab);
+            slabs[i] = ByteBuffer.allocateDirect(framesInSlab * pageSize);
+        }
+        this.installViews = newSlabViews();
+
+        this.versions = new AtomicLongArray(frameCount);
+        this.frameKeys = new long[frameCount];
+        Arrays.fill(frameKeys, -1);
+        this.frameLengths = new int[frameCount];
+        this.referenced = new byte[frameCount];
+    }
+
+    /**
+     * @return a ReaderSupplier whose readers read `delegate`'s file, of the given length, through this cache.
+     * Closing it removes its pages from the cache and closes `delegate`.
+     */
+    public ReaderSupplier wrap(ReaderSupplier delegate, long length) {
+        int fileId = nextFileId.getAndIncrement();
+        if (fileId >= 1 << (Long.SIZE - 1 - PAGE_NUMBER_BITS)) {
+            throw new IllegalStateException("Too many files have been cached");
+        }
+        return new PageCachedReaderSupplier(this, fileId, delegate, length);
+    }
+
+    public int pageSize() {
+        return pageSize;
+    }
+
+    public long capacity() {
+        return (long) frameCount * pageSize;
+    }
+
+    /** @return the number of reads of a page that found it in the cache */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /** @return the number of reads of a page that had to load it from the wrapped supplier */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /** @return the number of pages that have been replaced to make room for others */
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    /** @return the number of pages currently cached */
+    public int residentPages() {
+        return frames.size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PageCache(capacity=%d, pageSize=%d, resident=%d, hits=%d, misses=%d, evictions=%d)",
+                             capacity(), pageSize, residentPages(), hits(), misses(), evictions());
+    }
+
+    int pageShift() {
+        return pageShift;
+    }
+
+    static long key(int fileId, long page) {
+        return ((long) fileId << PAGE_NUMBER_BITS) | page;
+    }
+
+    ByteBuffer[] newSlabViews() {
+        var views = new ByteBuffer[slabs.length];
+        for (int i = 0; i < slabs.length; i++) {
+            views[i] = slabs[i].duplicate();
+        }
+        return views;
+    }
+
+    /**
+     * @return the frame that may hold the page with the given key, or -1.  The result must be validated by {@link #copy}.
+     */
+    int lookup(long key) {
+        Integer frame = frames.get(key);
+        return frame == null ? -1 : frame;
+    }
+
+    /**
+     * Copy `length` bytes starting at `offset` within the page `key` from `frame` into `dst`, using the
+     * caller's own `views` of the slabs.
+     *
+     * @return false, having copied garbage, if `frame` does not hold the page or was replaced during the copy
+     */
+    boolean copy(int frame, long key, int offset, byte[] dst, int dstOffset, int length, ByteBuffer[] views) {
+        long version = versions.getAcquire(frame);
+        if ((version & 1) != 0 || frameKeys[frame] != key || offset + length > frameLengths[frame]) {
+            return false;
+        }
+        var view = views[frame / framesPerSlab];
+        view.position((frame % framesPerSlab) * pageSize + offset);
+        view.get(dst, dstOffset, length);
+        // order the reads of the page before the re-read of the version
+        VarHandle.acquireFence();
+        if (versions.get(frame) != version) {
+            return false;
+        }
+        referenced[frame] = 1;
+        hits.increment();
+        return true;
+    }
+
+    /**
+     * Add the first `length` bytes of `page` to the cache as the page `key`, unless another reader already has.
+     */
+    synchronized void install(long key, byte[] page, int length) {
+        misses.increment();
+        Integer existing = frames.get(key);
+        if (existing != null && frameKeys[existing] == key) {
+            return;
+        }
+
+        int frame = nextVictim();
+        long oldKey = frameKeys[frame];
+        long version = versions.get(frame);
+        versions.set(frame, version + 1);
+        // order the odd version before the writes to the frame
+        VarHandle.releaseFence();
+        if (oldKey >= 0) {
+            frames.remove(oldKey);
+            evictions.increment();
+        }
+        frameKeys[frame] = key;
+        frameLengths[frame] = length;
+        var view = installViews[frame / framesPerSlab];
+        view.position((frame % framesPerSlab) * pageSize);
+        view.put(page, 0, length);
+        versions.setRelease(frame, version + 2);
+
+        frames.put(key, frame);
+        referenced[frame] = 1;
+    }
+
+    private int nextVictim() {
+        if (!freeFrames.isEmpty()) {
+            return freeFrames.pollInt();
+        }
+        if (framesUsed < frameCount) {
+            return framesUsed++;
+        }
+        while (true) {
+            int frame = clockHand;
+            clockHand = (clockHand + 1) % frameCount;
+            if (referenced[frame] == 0) {
+                return frame;
+            }
+            referenced[frame] = 0;
+        }
+    }
+
+    /**
+     * Remove all the pages of the given file from the cache.
+     */
+    synchronized void invalidate(int fileId) {
+        for (int frame = 0; frame < framesUsed; frame++) {
+            long key = frameKeys[frame];
+            if (key >= 0 && key >>> PAGE_NUMBER_BITS == fileId) {
+                long version = versions.get(frame);
+                versions.set(frame, version + 1);
+                VarHandle.releaseFence();
+                frames.remove(key);
+                frameKeys[frame] = -1;
+                versions.setRelease(frame, version + 2);
+                freeFrames.addInt(frame);
+            }
+        }
+    }
+}
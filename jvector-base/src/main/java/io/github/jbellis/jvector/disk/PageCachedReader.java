@@ -0,0 +1,169 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.jbellis.jvector.disk;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A RandomAccessReader that serves reads from a {@link PageCache}, loading missing pages from
+ * another reader of the same file.  Not threadsafe, like the other readers.
+ */
+class PageCachedReader implements RandomAccessReader {
+    private final PageCache cache;
+    private final int fileId;
+    private final RandomAccessReader delegate;
+    private final long length;
+    private final int pageSize;
+    private final int pageShift;
+    private final ByteBuffer[] slabViews;
+    // holds a page read from the delegate on a miss
+    private final byte[] page;
+
+    // the bytes of the current read, for decoding
+    private byte[] scratch = new byte[Long.BYTES];
+    private ByteBuffer scratchBuffer = ByteBuffer.wrap(scratch);
+
+    // the frame that held the last page read, to skip the lookup when consecutive reads share a page
+    private long lastKey = -1;
+    private int lastFrame;
+
+    private long position;
+
+    PageCachedReader(PageCache cache, int fileId, RandomAccessReader delegate, long length) {
+        this.cache = cache;
+        this.fileId = fileId;
+        this.delegate = delegate;
+        this.length = length;
+        this.pageSize = cache.pageSize();
+        this.pageShift = cache.pageShift();
+        this.slabViews = cache.newSlabViews();
+        this.page = new byte[pageSize];
+    }
+
+    @Override
+    public void seek(long offset) {
+        position = offset;
+    }
+
+    @Override
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Copy the `n` bytes at the current position into `dst`, and advance the position past them.
+     */
+    private void read(byte[] dst, int dstOffset, int n) throws IOException {
+        if (position < 0 || position + n > length) {
+            throw new EOFException(String.format("Read of %d bytes at %d is outside the file (length %d)", n, position, length));
+        }
+        while (n > 0) {
+            long pageNumber = position >>> pageShift;
+            int offset = (int) (position & (pageSize - 1));
+            int count = Math.min(n, pageSize - offset);
+            readFromPage(pageNumber, offset, dst, dstOffset, count);
+            position += count;
+            dstOffset += count;
+            n -= count;
+        }
+    }
+
+    private void readFromPage(long pageNumber, int offset, byte[] dst, int dstOffset, int count) throws IOException {
+        long key = PageCache.key(fileId, pageNumber);
+        int frame = key == lastKey ? lastFrame : cache.lookup(key);
+        if (frame >= 0 && cache.copy(frame, key, offset, dst, dstOffset, count, slabViews)) {
+            lastKey = key;
+            lastFrame = frame;
+            return;
+        }
+
+        // miss (or the frame was replaced out from under us): load the page and install it
+        long pageStart = pageNumber << pageShift;
+        int pageLength = (int) Math.min(pageSize, length - pageStart);
+        delegate.seek(pageStart);
+        delegate.readFully(ByteBuffer.wrap(page, 0, pageLength));
+        cache.install(key, page, pageLength);
+        System.arraycopy(page, offset, dst, dstOffset, count);
+        lastKey = -1;
+    }
+
+    private ByteBuffer readScratch(int n) throws IOException {
+        if (scratch.length < n) {
+            scratch = new byte[n];
+            scratchBuffer = ByteBuffer.wrap(scratch);
+        }
+        read(scratch, 0, n);
+        return scratchBuffer;
+    }
+
+    @Override
+    public int readInt() throws IOException {
+        return readScratch(Integer.BYTES).getInt(0);
+    }
+
+    @Override
+    public float readFloat() throws IOException {
+        return readScratch(Float.BYTES).getFloat(0);
+    }
+
+    @Override
+    public void readFully(byte[] bytes) throws IOException {
+        read(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public void readFully(ByteBuffer buffer) throws IOException {
+        int n = buffer.remaining();
+        if (buffer.hasArray()) {
+            read(buffer.array(), buffer.arrayOffset() + buffer.position(), n);
+            buffer.position(buffer.position() + n);
+        } else {
+            buffer.put(readScratch(n).duplicate().limit(n));
+        }
+    }
+
+    @Override
+    public void readFully(long[] vector) throws IOException {
+        var bytes = readScratch(vector.length * Long.BYTES);
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = bytes.getLong(i * Long.BYTES);
+        }
+    }
+
+    @Override
+    public void read(int[] ints, int offset, int count) throws IOException {
+        var bytes = readScratch(count * Integer.BYTES);
+        for (int i = 0; i < count; i++) {
+            ints[offset + i] = bytes.getInt(i * Integer.BYTES);
+        }
+    }
+
+    @Override
+    public void read(float[] floats, int offset, int count) throws IOException {
+        var bytes = readScratch(count * Float.BYTES);
+        for (int i = 0; i < count; i++) {
+            floats[offset + i] = bytes.getFloat(i * Float.BYTES);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.jbellis.jvector.disk;
+
+import java.io.IOException;
+
+/**
+ * Supplies readers that read through a {@link PageCache}.  Create with {@link PageCache#wrap}.
+ */
+public class PageCachedReaderSupplier implements ReaderSupplier {
+    private final PageCache cache;
+    private final int fileId;
+    private final ReaderSupplier delegate;
+    private final long length;
+
+    PageCachedReaderSupplier(PageCache cache, int fileId, ReaderSupplier delegate, long length) {
+        this.cache = cache;
+        this.fileId = fileId;
+        this.delegate = delegate;
+        this.length = length;
+    }
+
+    @Override
+    public RandomAccessReader get() {
+        return new PageCachedReader(cache, fileId, delegate.get(), length);
+    }
+
+    @Override
+    public void close() throws IOException {
+        cache.invalidate(fileId);
+        delegate.close();
+    }
+}
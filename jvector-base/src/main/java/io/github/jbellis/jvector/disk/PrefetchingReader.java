@@ -0,0 +1,35 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.jbellis.jvector.disk;
+
+import java.io.IOException;
+
+/**
+ * A RandomAccessReader that can be told ahead of time which ranges will be read next,
+ * so that it can issue those reads concurrently instead of one at a time.
+ */
+public interface PrefetchingReader extends RandomAccessReader {
+    /**
+     * Start loading the `count` ranges [offsets[i], offsets[i] + lengths[i]) and wait for them to complete.
+     * Subsequent reads that fall entirely within one of the ranges are served from memory.
+     * Ranges may extend past the end of the file; the missing bytes are simply not loaded.
+     * <p>
+     * This is only a hint: prefetching does not change the position of the reader, and what
+     * is read afterwards is the same whether or not a range was prefetched.
+     */
+    void prefetch(long[] offsets, int[] lengths, int count) throws IOException;
+}
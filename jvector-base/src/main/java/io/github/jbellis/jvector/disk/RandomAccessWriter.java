@@ -0,0 +1,47 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.jbellis.jvector.disk;
+
+import java.io.Closeable;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A seekable output for writing index files, such as with OnDiskGraphIndexWriter.  The counterpart
+ * of {@link RandomAccessReader}, and like it, not threadsafe.
+ */
+public interface RandomAccessWriter extends Closeable {
+    void seek(long position) throws IOException;
+
+    long getFilePointer() throws IOException;
+
+    /**
+     * Write the output of `writer` at the current position.  Implementations buffer it, so this is the
+     * efficient way to write many small values.
+     */
+    void writeBuffered(ChunkWriter writer) throws IOException;
+
+    void writeInt(int i) throws IOException;
+
+    void write(byte[] bytes, int offset, int length) throws IOException;
+
+    // because there is still no ThrowingRunnable in the JDK
+    @FunctionalInterface
+    interface ChunkWriter {
+        void write(DataOutput out) throws IOException;
+    }
+}
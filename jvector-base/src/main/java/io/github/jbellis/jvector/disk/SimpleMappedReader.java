@@ -30,7 +30,7 @@ import java.util.logging.Logger;
 /**
  * Simple sample implementation of RandomAccessReader.
  * It provides a bare minimum to run against disk in reasonable time.
- * Does not handle files above 2 GB.
+ * Does not handle files above 2 GB; use {@link ChunkedMappedReader} for those.
  */
 public class SimpleMappedReader implements RandomAccessReader {
     private static final Logger LOG = Logger.getLogger(SimpleMappedReader.class.getName());
@@ -56,7 +56,7 @@ public class SimpleMappedReader implements RandomAccessReader {
     public SimpleMappedReader(String name) throws IOException {
         var raf = new RandomAccessFile(name, "r");
         if (raf.length() > Integer.MAX_VALUE) {
-            throw new RuntimeException("MappedRandomAccessReader doesn't support large files");
+            throw new RuntimeException("MappedRandomAccessReader doesn't support large files; use ChunkedMappedReader");
         }
         mbb = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
         mbb.load();
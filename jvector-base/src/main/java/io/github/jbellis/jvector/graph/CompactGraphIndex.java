@@ -0,0 +1,210 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.jbellis.jvector.graph;
+
+import io.github.jbellis.jvector.util.Accountable;
+import io.github.jbellis.jvector.util.ArrayUtil;
+import io.github.jbellis.jvector.util.Bits;
+import io.github.jbellis.jvector.util.FixedBitSet;
+import io.github.jbellis.jvector.util.RamUsageEstimator;
+
+import java.util.stream.IntStream;
+
+/**
+ * An immutable GraphIndex in compressed sparse row form: the neighbors of node i are
+ * edges[offsets[i]] through edges[offsets[i + 1] - 1].  There are no scores and no
+ * per-node objects, so this is roughly half the size of the OnHeapGraphIndex it was frozen from,
+ * and neighbor iteration reads sequential memory.
+ * <p>
+ * Views are lock-free and may be used concurrently; since the graph never changes, a View is
+ * just a cursor over the shared arrays.
+ * <p>
+ * Since the edges are stored in a single array, a graph can have at most about 2 billion edges
+ * (e.g. 67M nodes at maxDegree=32).
+ * <p>
+ * Create one with {@link OnHeapGraphIndex#freeze()}.
+ */
+public final class CompactGraphIndex implements GraphIndex, Accountable {
+    private final int[] offsets;
+    private final int[] edges;
+    // null if every ordinal below offsets.length - 1 is a node in the graph
+    private final FixedBitSet presentNodes;
+    private final int size;
+    private final int maxDegree;
+    private final int entryNode;
+
+    private CompactGraphIndex(int[] offsets, int[] edges, FixedBitSet presentNodes, int size, int maxDegree, int entryNode) {
+        this.offsets = offsets;
+        this.edges = edges;
+        this.presentNodes = presentNodes;
+        this.size = size;
+        this.maxDegree = maxDegree;
+        this.entryNode = entryNode;
+    }
+
+    /**
+     * Copy the current contents of `graph`.  Should not be called during concurrent modifications.
+     */
+    static CompactGraphIndex from(OnHeapGraphIndex graph) {
+        if (graph.getDeletedNodes().cardinality() > 0) {
+            throw new IllegalStateException("Cannot freeze a graph that has deleted nodes.  Call cleanup() first");
+        }
+
+        int idUpperBound = graph.getIdUpperBound();
+        var offsets = new int[idUpperBound + 1];
+        FixedBitSet presentNodes = null;
+        int size = 0;
+
+        // first pass: compute offsets
+        long totalEdges = 0;
+        for (int i = 0; i < idUpperBound; i++) {
+            offsets[i] = (int) totalEdges;
+            var neighbors = graph.getNeighbors(i);
+            if (neighbors == null) {
+                if (presentNodes == null) {
+                    presentNodes = new FixedBitSet(idUpperBound);
+                    presentNodes.set(0, i);
+                }
+                continue;
+            }
+            if (presentNodes != null) {
+                presentNodes.set(i);
+            }
+            size++;
+            totalEdges += neighbors.size();
+            if (totalEdges > ArrayUtil.MAX_ARRAY_LENGTH) {
+                throw new IllegalStateException(String.format("Graph has too many edges to freeze (more than %d)", ArrayUtil.MAX_ARRAY_LENGTH));
+            }
+        }
+        offsets[idUpperBound] = (int) totalEdges;
+
+        // second pass: copy edges.  we take a single snapshot of each neighbor list so that the
+        // edge count can't disagree with the offsets computed above
+        var edges = new int[(int) totalEdges];
+        for (int i = 0; i < idUpperBound; i++) {
+            var neighbors = graph.getNeighbors(i);
+            if (neighbors == null) {
+                continue;
+            }
+            var current = neighbors.getCurrent();
+            int count = offsets[i + 1] - offsets[i];
+            if (current.size() != count) {
+                throw new IllegalStateException("Graph was modified while freezing");
+            }
+            System.arraycopy(current.node(), 0, edges, offsets[i], count);
+        }
+
+        return new CompactGraphIndex(offsets, edges, presentNodes, size, graph.maxDegree(), graph.entry());
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public NodesIterator getNodes() {
+        var it = IntStream.range(0, getIdUpperBound()).filter(this::containsNode).iterator();
+        return NodesIterator.fromPrimitiveIterator(it, size);
+    }
+
+    @Override
+    public View getView() {
+        return new View();
+    }
+
+    @Override
+    public int maxDegree() {
+        return maxDegree;
+    }
+
+    @Override
+    public int getIdUpperBound() {
+        return offsets.length - 1;
+    }
+
+    @Override
+    public boolean containsNode(int nodeId) {
+        if (nodeId < 0 || nodeId >= getIdUpperBound()) {
+            return false;
+        }
+        return presentNodes == null || presentNodes.get(nodeId);
+    }
+
+    @Override
+    public long ramBytesUsed() {
+        long total = 3L * Integer.BYTES + 3 * RamUsageEstimator.NUM_BYTES_OBJECT_REF
+                + 2L * RamUsageEstimator.NUM_BYTES_ARRAY_HEADER
+                + (long) offsets.length * Integer.BYTES
+                + (long) edges.length * Integer.BYTES;
+        if (presentNodes != null) {
+            total += presentNodes.ramBytesUsed();
+        }
+        return total;
+    }
+
+    @Override
+    public void close() {
+        // no-op
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CompactGraphIndex(size=%d, entryPoint=%d, edges=%d)", size, entryNode, edges.length);
+    }
+
+    public class View implements GraphIndex.View {
+        // reused across calls to getNeighborsIterator, which is allowed by the View contract
+        private final NodesIterator.RangeNodesIterator iterator = new NodesIterator.RangeNodesIterator();
+
+        @Override
+        public NodesIterator getNeighborsIterator(int node) {
+            assert containsNode(node) : "Node " + node + " not found";
+            iterator.reset(edges, offsets[node], offsets[node + 1]);
+            return iterator;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public int entryNode() {
+            return entryNode;
+        }
+
+        @Override
+        public Bits liveNodes() {
+            return Bits.ALL;
+        }
+
+        @Override
+        public int getIdUpperBound() {
+            return CompactGraphIndex.this.getIdUpperBound();
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public String toString() {
+            return "CompactGraphIndexView(size=" + size + ", entryPoint=" + entryNode + ")";
+        }
+    }
+}
@@ -26,6 +26,7 @@ import io.github.jbellis.jvector.util.FixedBitSet;
 import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.IntFunction;
+import java.util.function.UnaryOperator;
 
 import static java.lang.Math.min;
 
@@ -43,6 +44,8 @@ public class ConcurrentNeighborSet {
      * <p>
      * While GraphIndexBuilder may use approximate scoring to find candidate neighbors, we
      * always rerank them using exact scoring before storing them in the neighbor set.
+     * <p>
+     * Null for subclasses that keep the neighbors elsewhere; see {@link #neighbors()}.
      */
     private final AtomicReference<Neighbors> neighborsRef;
 
@@ -79,12 +82,49 @@ public class ConcurrentNeighborSet {
         this.neighborsRef = new AtomicReference<>(new Neighbors(nodes, 0));
     }
 
+    /**
+     * For subclasses that provide their own storage by overriding {@link #neighbors()},
+     * {@link #updateNeighbors(UnaryOperator)}, {@link #getShortEdges()}, and {@link #setShortEdges(float)}.
+     */
+    ConcurrentNeighborSet(int nodeId,
+                          int maxConnections,
+                          BuildScoreProvider scoreProvider,
+                          float alpha,
+                          AtomicReference<Neighbors> neighborsRef)
+    {
+        this.nodeId = nodeId;
+        this.maxConnections = maxConnections;
+        this.scoreProvider = scoreProvider;
+        this.alpha = alpha;
+        this.neighborsRef = neighborsRef;
+    }
+
+    /**
+     * @return the current neighbors.  The returned NodeArray must not be modified.
+     */
+    Neighbors neighbors() {
+        return neighborsRef.get();
+    }
+
+    /**
+     * Atomically replace the current neighbors with the result of `updateFn`, which may be
+     * called multiple times if there is contention.  If `updateFn` returns its argument,
+     * no change is made.
+     */
+    void updateNeighbors(UnaryOperator<Neighbors> updateFn) {
+        neighborsRef.getAndUpdate(updateFn);
+    }
+
     public float getShortEdges() {
         return shortEdges;
     }
 
+    void setShortEdges(float shortEdges) {
+        this.shortEdges = shortEdges;
+    }
+
     public NodesIterator iterator() {
-        return new NeighborIterator(neighborsRef.get().nodes);
+        return new NeighborIterator(neighbors().nodes);
     }
 
     /**
@@ -92,7 +132,7 @@ public class ConcurrentNeighborSet {
      * If overflow is > 1.0, allow the number of neighbors to exceed maxConnections temporarily.
      */
     public void backlink(IntFunction<ConcurrentNeighborSet> neighborhoodOf, float overflow) {
-        NodeArray neighbors = neighborsRef.get().nodes;
+        NodeArray neighbors = neighbors().nodes;
         for (int i = 0; i < neighbors.size(); i++) {
             int nbr = neighbors.node[i];
             float nbrScore = neighbors.score[i];
@@ -108,14 +148,14 @@ public class ConcurrentNeighborSet {
      * the limit may end up being exceeded again.
      */
     public void enforceDegree() {
-        neighborsRef.getAndUpdate(old -> {
+        updateNeighbors(old -> {
             var nodes = removeAllNonDiverse(old.nodes, old.diverseBefore);
             return new Neighbors(nodes, nodes.size);
         });
     }
 
     public void replaceDeletedNeighbors(Bits deletedNodes, NodeArray candidates) {
-        neighborsRef.getAndUpdate(old -> {
+        updateNeighbors(old -> {
             // copy the non-deleted neighbors to a new NodeArray
             var liveNeighbors = new NodeArray(old.nodes.size);
             for (int i = 0; i < old.nodes.size(); i++) {
@@ -154,7 +194,7 @@ public class ConcurrentNeighborSet {
     }
 
     public int size() {
-        return neighborsRef.get().nodes.size();
+        return neighbors().nodes.size();
     }
 
     /**
@@ -168,7 +208,7 @@ public class ConcurrentNeighborSet {
             return;
         }
 
-        neighborsRef.getAndUpdate(old -> {
+        updateNeighbors(old -> {
             // merge all the candidates into a single array and compute the diverse ones to keep
             // from that.  we do this first by selecting the ones to keep, and then by copying
             // only those into a new NeighborArray.  This is less expensive than doing the
@@ -209,7 +249,7 @@ public class ConcurrentNeighborSet {
     }
 
     void insertNotDiverse(int node, float score) {
-        neighborsRef.getAndUpdate(old -> {
+        updateNeighbors(old -> {
             NodeArray nextNodes = old.nodes.copy();
             // remove the worst edge to make room for the new one, if necessary
             nextNodes.size = min(nextNodes.size, maxConnections - 1);
@@ -258,6 +298,7 @@ public class ConcurrentNeighborSet {
     }
 
     private void retainDiverseInternal(NodeArray neighbors, int max, int diverseBefore, BitSet selected, ScoreFunction.Provider scoreProvider) {
+        var similarities = new DiversitySimilarities(neighbors, selected, max, scoreProvider);
         int nSelected = diverseBefore;
         // add diverse candidates, gradually increasing alpha to the threshold
         // (so that the nearest candidates are prioritized)
@@ -267,11 +308,9 @@ public class ConcurrentNeighborSet {
                     continue;
                 }
 
-                int cNode = neighbors.node()[i];
-                float cScore = neighbors.score()[i];
-                var sf = scoreProvider.scoreFunctionFor(cNode);
-                if (isDiverse(cNode, cScore, neighbors, sf, selected, a)) {
+                if (similarities.isDiverse(i, a)) {
                     selected.set(i);
+                    similarities.addSelected(i);
                     nSelected++;
                 }
             }
@@ -279,26 +318,73 @@ public class ConcurrentNeighborSet {
             if (a == 1.0f && max == maxConnections) {
                 // this isn't threadsafe, but (for now) we only care about the result after calling cleanup(),
                 // when we don't have to worry about concurrent changes
-                shortEdges = nSelected / (float) maxConnections;
+                setShortEdges(nSelected / (float) maxConnections);
             }
         }
     }
 
-    // is the candidate node with the given score closer to the base node than it is to any of the
-    // already-selected neighbors
-    private boolean isDiverse(int node, float score, NodeArray others, ScoreFunction sf, BitSet selected, float alpha) {
-        assert others.size > 0;
+    /**
+     * The candidate x selected similarity matrix for a single call to retainDiverseInternal.
+     * <p>
+     * Since selection only ever appends, each candidate's row is filled in left to right, and
+     * a candidate that is rejected at one alpha is re-evaluated at the next using the scores
+     * it already has, so each pair is scored at most once per prune.
+     */
+    private static class DiversitySimilarities {
+        private final NodeArray candidates;
+        private final ScoreFunction.Provider scoreProvider;
+        // node ids of the selected candidates, in the order they were selected
+        private final int[] selectedNodes;
+        private int nSelected;
+        // similarities[i * selectedNodes.length + k] is the similarity of candidate i to selectedNodes[k]
+        private final float[] similarities;
+        // number of entries of each candidate's row that have been computed
+        private final int[] computed;
+
+        DiversitySimilarities(NodeArray candidates, BitSet selected, int max, ScoreFunction.Provider scoreProvider) {
+            this.candidates = candidates;
+            this.scoreProvider = scoreProvider;
+            int width = Math.max(max, selected.cardinality());
+            this.selectedNodes = new int[width];
+            this.similarities = new float[candidates.size() * width];
+            this.computed = new int[candidates.size()];
+            for (int i = selected.nextSetBit(0); i != DocIdSetIterator.NO_MORE_DOCS; i = selected.nextSetBit(i + 1)) {
+                addSelected(i);
+            }
+        }
+
+        void addSelected(int i) {
+            selectedNodes[nSelected++] = candidates.node()[i];
+        }
 
-        for (int i = selected.nextSetBit(0); i != DocIdSetIterator.NO_MORE_DOCS; i = selected.nextSetBit(i + 1)) {
-            int otherNode = others.node()[i];
-            if (node == otherNode) {
-                break;
+        /**
+         * @return true if candidate `i` is closer to the base node than it is to any of the
+         * already-selected neighbors (scaled by `alpha`)
+         */
+        boolean isDiverse(int i, float alpha) {
+            assert candidates.size() > 0;
+
+            int row = i * selectedNodes.length;
+            if (computed[i] < nSelected) {
+                computeRow(i, row);
+            }
+            float threshold = candidates.score()[i] * alpha;
+            for (int k = 0; k < nSelected; k++) {
+                if (similarities[row + k] > threshold) {
+                    return false;
+                }
             }
-            if (sf.similarityTo(otherNode) > score * alpha) {
-                return false;
+            return true;
+        }
+
+        private void computeRow(int i, int row) {
+            int from = computed[i];
+            var sf = scoreProvider.scoreFunctionFor(candidates.node()[i]);
+            for (int k = from; k < nSelected; k++) {
+                similarities[row + k] = sf.similarityTo(selectedNodes[k]);
             }
+            computed[i] = nSelected;
         }
-        return true;
     }
 
     private NodeArray removeAllNonDiverse(NodeArray neighbors, int diverseBefore) {
@@ -311,7 +397,7 @@ public class ConcurrentNeighborSet {
     }
 
     NodeArray getCurrent() {
-        return neighborsRef.get().nodes;
+        return neighbors().nodes;
     }
 
     /**
@@ -320,7 +406,7 @@ public class ConcurrentNeighborSet {
      */
     public void insert(int neighborId, float score, float overflow) {
         assert neighborId != nodeId : "can't add self as neighbor at node " + nodeId;
-        neighborsRef.getAndUpdate(old -> {
+        updateNeighbors(old -> {
             NodeArray nextNodes = old.nodes.copy();
             int insertionPoint = nextNodes.insertSorted(neighborId, score);
             if (insertionPoint == -1) {
@@ -340,6 +426,39 @@ public class ConcurrentNeighborSet {
         });
     }
 
+    /**
+     * Insert multiple new neighbors at once, with a single update and at most one pass of
+     * diversity pruning, instead of one of each per neighbor as with {@link #insert}.
+     * "Overflow" is the factor by which to allow going over the size cap temporarily.
+     *
+     * @param toInsert the new neighbors, sorted by score like all NodeArrays
+     */
+    public void insertAll(NodeArray toInsert, float overflow) {
+        if (toInsert.size() == 0) {
+            return;
+        }
+        assert !toInsert.contains(nodeId) : "can't add self as neighbor at node " + nodeId;
+
+        updateNeighbors(old -> {
+            NodeArray nextNodes = NodeArray.merge(old.nodes, toInsert);
+            if (nextNodes.size() == old.nodes.size()) {
+                // all duplicates
+                return old;
+            }
+
+            // nothing before the best new neighbor's position can have been displaced
+            int firstInsertion = old.nodes.descSortFindRightMostInsertionPoint(toInsert.score[0]);
+            int nextDiverseBefore = min(firstInsertion, old.diverseBefore);
+            var hardMax = overflow * maxConnections;
+            if (nextNodes.size > hardMax) {
+                nextNodes = removeAllNonDiverse(nextNodes, nextDiverseBefore);
+                nextDiverseBefore = nextNodes.size;
+            }
+
+            return new Neighbors(nextNodes, nextDiverseBefore);
+        });
+    }
+
     /** Only for testing; this is a linear search */
     boolean contains(int i) {
         var it = this.iterator();
@@ -351,7 +470,7 @@ public class ConcurrentNeighborSet {
         return false;
     }
 
-    private static class Neighbors {
+    static class Neighbors {
         /**
          * The neighbors of the node
          */
@@ -362,7 +481,7 @@ public class ConcurrentNeighborSet {
          */
         public final int diverseBefore;
 
-        private Neighbors(NodeArray nodes, int diverseBefore) {
+        Neighbors(NodeArray nodes, int diverseBefore) {
             this.nodes = nodes;
             this.diverseBefore = diverseBefore;
         }
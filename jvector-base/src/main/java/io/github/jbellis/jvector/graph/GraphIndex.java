@@ -117,6 +117,14 @@ public interface GraphIndex extends AutoCloseable {
         default int getIdUpperBound() {
             return size();
         }
+
+        /**
+         * Hint that the neighbors of the first `count` of `nodes` are likely to be requested soon.
+         * Views whose storage can serve several reads at once may use this to load them together;
+         * the default does nothing.
+         */
+        default void prefetchNeighbors(int[] nodes, int count) {
+        }
     }
 
     interface ScoringView extends View {
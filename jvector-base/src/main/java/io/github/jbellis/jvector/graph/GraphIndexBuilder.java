@@ -18,6 +18,7 @@ package io.github.jbellis.jvector.graph;
 
 import io.github.jbellis.jvector.annotations.VisibleForTesting;
 import io.github.jbellis.jvector.disk.RandomAccessReader;
+import io.github.jbellis.jvector.disk.ReaderSupplier;
 import io.github.jbellis.jvector.graph.similarity.BuildScoreProvider;
 import io.github.jbellis.jvector.graph.similarity.ScoreFunction;
 import io.github.jbellis.jvector.util.AtomicFixedBitSet;
@@ -26,6 +27,7 @@ import io.github.jbellis.jvector.util.ExplicitThreadLocal;
 import io.github.jbellis.jvector.util.PhysicalCoreExecutor;
 import io.github.jbellis.jvector.vector.VectorSimilarityFunction;
 import io.github.jbellis.jvector.vector.types.VectorFloat;
+import org.agrona.collections.Int2ObjectHashMap;
 import org.agrona.collections.IntArrayList;
 import org.agrona.collections.IntArrayQueue;
 
@@ -75,6 +77,11 @@ public class GraphIndexBuilder implements AutoCloseable {
 
     private final AtomicInteger updateEntryNodeIn = new AtomicInteger(10_000);
 
+    // backlinks are applied immediately if backlinkBatchSize <= 1
+    private final int backlinkBatchSize;
+    private final ExplicitThreadLocal<BacklinkBatch> backlinkBatches;
+    private final Set<BacklinkBatch> allBacklinkBatches = ConcurrentHashMap.newKeySet();
+
     /**
      * Reads all the vectors from vector values, builds a graph connecting them by their dense
      * ordinals, using the given hyperparameter settings, and returns the resulting graph.
@@ -130,6 +137,77 @@ public class GraphIndexBuilder implements AutoCloseable {
                              float alpha,
                              ForkJoinPool simdExecutor,
                              ForkJoinPool parallelExecutor)
+    {
+        this(scoreProvider, dimension, M, beamWidth, neighborOverflow, alpha, simdExecutor, parallelExecutor, OnHeapGraphIndex.AdjacencyStorage.ON_HEAP);
+    }
+
+    /**
+     * Reads all the vectors from vector values, builds a graph connecting them by their dense
+     * ordinals, using the given hyperparameter settings, and returns the resulting graph.
+     *
+     * @param scoreProvider    describes how to determine the similarities between vectors
+     * @param M                the maximum number of connections a node can have
+     * @param beamWidth        the size of the beam search to use when finding nearest neighbors.
+     * @param neighborOverflow the ratio of extra neighbors to allow temporarily when inserting a
+     *                         node. larger values will build more efficiently, but use more memory.
+     * @param alpha            how aggressive pruning diverse neighbors should be.  Set alpha &gt; 1.0 to
+     *                         allow longer edges.  If alpha = 1.0 then the equivalent of the lowest level of
+     *                         an HNSW graph will be created, which is usually not what you want.
+     * @param simdExecutor     ForkJoinPool instance for SIMD operations, best is to use a pool with the size of
+     *                         the number of physical cores.
+     * @param parallelExecutor ForkJoinPool instance for parallel stream operations
+     * @param adjacencyStorage where to keep the neighbor lists of the graph.  OFF_HEAP reduces heap usage
+     *                         and GC pauses for large graphs.
+     */
+    public GraphIndexBuilder(BuildScoreProvider scoreProvider,
+                             int dimension,
+                             int M,
+                             int beamWidth,
+                             float neighborOverflow,
+                             float alpha,
+                             ForkJoinPool simdExecutor,
+                             ForkJoinPool parallelExecutor,
+                             OnHeapGraphIndex.AdjacencyStorage adjacencyStorage)
+    {
+        this(scoreProvider, dimension, M, beamWidth, neighborOverflow, alpha, simdExecutor, parallelExecutor, adjacencyStorage, 1);
+    }
+
+    /**
+     * Reads all the vectors from vector values, builds a graph connecting them by their dense
+     * ordinals, using the given hyperparameter settings, and returns the resulting graph.
+     *
+     * @param scoreProvider    describes how to determine the similarities between vectors
+     * @param M                the maximum number of connections a node can have
+     * @param beamWidth        the size of the beam search to use when finding nearest neighbors.
+     * @param neighborOverflow the ratio of extra neighbors to allow temporarily when inserting a
+     *                         node. larger values will build more efficiently, but use more memory.
+     * @param alpha            how aggressive pruning diverse neighbors should be.  Set alpha &gt; 1.0 to
+     *                         allow longer edges.  If alpha = 1.0 then the equivalent of the lowest level of
+     *                         an HNSW graph will be created, which is usually not what you want.
+     * @param simdExecutor     ForkJoinPool instance for SIMD operations, best is to use a pool with the size of
+     *                         the number of physical cores.
+     * @param parallelExecutor ForkJoinPool instance for parallel stream operations
+     * @param adjacencyStorage where to keep the neighbor lists of the graph.  OFF_HEAP reduces heap usage
+     *                         and GC pauses for large graphs.
+     * @param backlinkBatchSize the number of inserts each thread performs before applying their backlinks.
+     *                         Backlinks to the same node are applied together, with a single diversity prune,
+     *                         which reduces contention on popular nodes.  Nodes whose backlinks are pending are
+     *                         still considered in-progress, so concurrent inserts see them as candidates,
+     *                         but they cannot be reached by searches until their batch is applied.  A thread
+     *                         only applies its batch when it fills up, so callers that insert with addGraphNode
+     *                         must call {@link #flushBacklinks()} (or cleanup) once they stop inserting.
+     *                         1 applies backlinks immediately.
+     */
+    public GraphIndexBuilder(BuildScoreProvider scoreProvider,
+                             int dimension,
+                             int M,
+                             int beamWidth,
+                             float neighborOverflow,
+                             float alpha,
+                             ForkJoinPool simdExecutor,
+                             ForkJoinPool parallelExecutor,
+                             OnHeapGraphIndex.AdjacencyStorage adjacencyStorage,
+                             int backlinkBatchSize)
     {
         this.scoreProvider = Objects.requireNonNull(scoreProvider);
         this.dimension = dimension;
@@ -141,11 +219,28 @@ public class GraphIndexBuilder implements AutoCloseable {
         if (beamWidth <= 0) {
             throw new IllegalArgumentException("beamWidth must be positive");
         }
+        if (backlinkBatchSize <= 0) {
+            throw new IllegalArgumentException("backlinkBatchSize must be positive");
+        }
+        this.backlinkBatchSize = backlinkBatchSize;
+        this.backlinkBatches = ExplicitThreadLocal.withInitial(() -> {
+            var batch = new BacklinkBatch();
+            allBacklinkBatches.add(batch);
+            return batch;
+        });
         this.beamWidth = beamWidth;
         this.simdExecutor = simdExecutor;
         this.parallelExecutor = parallelExecutor;
 
-        this.graph = new OnHeapGraphIndex(M, (node, m) -> new ConcurrentNeighborSet(node, m, this.scoreProvider, alpha));
+        if (adjacencyStorage == OnHeapGraphIndex.AdjacencyStorage.OFF_HEAP) {
+            // slots must be able to hold the temporary overflow allowed by backlinking
+            int capacity = Math.max(M, (int) (M * neighborOverflow));
+            var nodes = new OffHeapNeighborMap(M, capacity, this.scoreProvider, alpha);
+            // the new set is only used to initialize the arena slot, so don't bother allocating space in it
+            this.graph = new OnHeapGraphIndex(M, (node, m) -> new ConcurrentNeighborSet(node, m, this.scoreProvider, alpha, NodeArray.EMPTY), nodes);
+        } else {
+            this.graph = new OnHeapGraphIndex(M, (node, m) -> new ConcurrentNeighborSet(node, m, this.scoreProvider, alpha));
+        }
         this.searchers = ExplicitThreadLocal.withInitial(() -> new GraphSearcher(graph.getView()));
 
         // in scratch we store candidates in reverse order: worse candidates are first
@@ -176,6 +271,7 @@ public class GraphIndexBuilder implements AutoCloseable {
      * May be called multiple times, but should not be called during concurrent modifications to the graph.
      */
     public void cleanup() {
+        flushBacklinks();
         if (graph.size() == 0) {
             return;
         }
@@ -300,7 +396,8 @@ public class GraphIndexBuilder implements AutoCloseable {
     }
 
     /**
-     * Number of inserts in progress, across all threads.
+     * Number of inserts in progress, across all threads.  Includes inserts whose backlinks
+     * are waiting to be applied as part of a batch.
      */
     public int insertsInProgress() {
         return insertionsInProgress.size();
@@ -317,6 +414,9 @@ public class GraphIndexBuilder implements AutoCloseable {
      * <p>To allow correctness under concurrency, we track in-progress updates in a
      * ConcurrentSkipListSet. After adding ourselves, we take a snapshot of this set, and consider all
      * other in-progress updates as neighbor candidates.
+     * <p>
+     * With a backlinkBatchSize greater than 1, the node may not be reachable by searches when this returns;
+     * see {@link #flushBacklinks()}.
      *
      * @param node the node ID to add
      * @return an estimate of the number of extra bytes used by the graph after adding the given node
@@ -328,6 +428,7 @@ public class GraphIndexBuilder implements AutoCloseable {
 
         insertionsInProgress.add(node);
         ConcurrentSkipListSet<Integer> inProgressBefore = insertionsInProgress.clone();
+        boolean backlinksDeferred = false;
         try (var gs = searchers.get()) {
             var naturalScratchPooled = naturalScratch.get();
             var concurrentScratchPooled = concurrentScratch.get();
@@ -348,14 +449,24 @@ public class GraphIndexBuilder implements AutoCloseable {
             // TODO if we made NeighborArray an interface we could wrap the NodeScore[] directly instead of copying
             var natural = toScratchCandidates(result.getNodes(), naturalScratchPooled);
             var concurrent = getConcurrentCandidates(node, inProgressBefore, concurrentScratchPooled, ssp.scoreFunction());
-            updateNeighbors(newNodeNeighbors, natural, concurrent);
+            backlinksDeferred = updateNeighbors(node, newNodeNeighbors, natural, concurrent);
 
             maybeUpdateEntryPoint(node);
             maybeImproveOlderNode();
         } catch (Exception e) {
             throw new RuntimeException(e);
         } finally {
-            insertionsInProgress.remove(node);
+            // if the backlinks are deferred, we stay in progress until they are applied
+            if (!backlinksDeferred) {
+                insertionsInProgress.remove(node);
+            }
+        }
+
+        if (backlinksDeferred) {
+            var batch = backlinkBatches.get();
+            if (batch.size() >= backlinkBatchSize) {
+                applyBacklinks(batch);
+            }
         }
 
         return graph.ramBytesUsedOneNode();
@@ -435,6 +546,9 @@ public class GraphIndexBuilder implements AutoCloseable {
      * @return approximate size of memory no longer used
      */
     public synchronized long removeDeletedNodes() {
+        // deleted nodes may be the target of pending backlinks
+        flushBacklinks();
+
         // Take a snapshot of the nodes to delete
         var toDelete = graph.getDeletedNodes().copy();
         var nRemoved = toDelete.cardinality();
@@ -575,7 +689,10 @@ public class GraphIndexBuilder implements AutoCloseable {
         }
     }
 
-    private void updateNeighbors(ConcurrentNeighborSet neighbors, NodeArray natural, NodeArray concurrent) {
+    /**
+     * @return true if the backlinks were deferred to a batch rather than applied immediately
+     */
+    private boolean updateNeighbors(int node, ConcurrentNeighborSet neighbors, NodeArray natural, NodeArray concurrent) {
         // if either natural or concurrent is empty, skip the merge
         NodeArray toMerge;
         if (concurrent.size == 0) {
@@ -587,7 +704,59 @@ public class GraphIndexBuilder implements AutoCloseable {
         }
         // toMerge may be approximate-scored, but insertDiverse will compute exact scores for the diverse ones
         neighbors.insertDiverse(toMerge);
-        neighbors.backlink(graph::getNeighbors, neighborOverflow);
+        if (backlinkBatchSize <= 1) {
+            neighbors.backlink(graph::getNeighbors, neighborOverflow);
+            return false;
+        }
+        backlinkBatches.get().add(node, neighbors.getCurrent());
+        return true;
+    }
+
+    /**
+     * Apply the backlinks that are still buffered by any thread, so that every inserted node is
+     * reachable from the graph.  Only needed with a backlinkBatchSize greater than 1, and then
+     * required whenever inserts pause with the graph in use, since a thread applies its pending
+     * backlinks only when its batch fills up.  {@link #build} and {@link #cleanup} call this.
+     * <p>
+     * May be called while other threads are inserting; their later inserts are buffered as usual.
+     */
+    public void flushBacklinks() {
+        for (var batch : allBacklinkBatches) {
+            applyBacklinks(batch);
+        }
+    }
+
+    /**
+     * Group the pending backlinks in `batch` by target node and insert each group with a single update,
+     * then mark the source nodes as no longer in progress.
+     */
+    private void applyBacklinks(BacklinkBatch batch) {
+        synchronized (batch) {
+            if (batch.size() == 0) {
+                return;
+            }
+
+            var incoming = new Int2ObjectHashMap<NodeArray>();
+            for (int i = 0; i < batch.size(); i++) {
+                int source = batch.sources.getInt(i);
+                var neighbors = batch.neighbors.get(i);
+                for (int j = 0; j < neighbors.size(); j++) {
+                    incoming.computeIfAbsent(neighbors.node[j], __ -> new NodeArray(4))
+                            .insertSorted(source, neighbors.score[j]);
+                }
+            }
+            for (var e : incoming.entrySet()) {
+                var targetNeighbors = graph.getNeighbors(e.getKey());
+                assert targetNeighbors != null : "Node " + e.getKey() + " not found";
+                targetNeighbors.insertAll(e.getValue(), neighborOverflow);
+            }
+
+            // now that they are reachable, the sources no longer need special treatment
+            for (int i = 0; i < batch.size(); i++) {
+                insertionsInProgress.remove(batch.sources.getInt(i));
+            }
+            batch.clear();
+        }
     }
 
     private static NodeArray toScratchCandidates(SearchResult.NodeScore[] candidates, NodeArray scratch) {
@@ -616,6 +785,7 @@ public class GraphIndexBuilder implements AutoCloseable {
     @Override
     public void close() throws Exception {
         searchers.close();
+        backlinkBatches.close();
     }
 
     @VisibleForTesting
@@ -663,6 +833,30 @@ public class GraphIndexBuilder implements AutoCloseable {
         }
     }
 
+    /**
+     * Backlinks from a thread's recent inserts, buffered so that backlinks to the same
+     * target can be applied together.  The neighbor arrays are copy-on-write snapshots
+     * and are never modified.
+     */
+    private static class BacklinkBatch {
+        private final IntArrayList sources = new IntArrayList();
+        private final ArrayList<NodeArray> neighbors = new ArrayList<>();
+
+        synchronized void add(int source, NodeArray sourceNeighbors) {
+            sources.addInt(source);
+            neighbors.add(sourceNeighbors);
+        }
+
+        synchronized int size() {
+            return sources.size();
+        }
+
+        void clear() {
+            sources.clear();
+            neighbors.clear();
+        }
+    }
+
     private static class ExcludingBits implements Bits {
         private final int excluded;
 
@@ -681,6 +875,27 @@ public class GraphIndexBuilder implements AutoCloseable {
         }
     }
 
+    /**
+     * Load a graph written by {@link OnHeapGraphIndex#save(java.nio.file.Path, boolean)}, decoding it in parallel on the
+     * parallel executor.  Scores are recomputed if the snapshot does not include them.
+     * <p>
+     * Graphs written by {@link OnHeapGraphIndex#save(java.io.DataOutput)} are also accepted, and loaded serially.
+     */
+    public void load(ReaderSupplier readers) throws IOException {
+        if (graph.size() != 0) {
+            throw new IllegalStateException("Cannot load into a non-empty graph");
+        }
+
+        try (var in = readers.get()) {
+            if (in.readInt() != OnHeapGraphSnapshot.MAGIC) {
+                in.seek(0);
+                load(in);
+                return;
+            }
+        }
+        OnHeapGraphSnapshot.load(readers, graph, scoreProvider, alpha, parallelExecutor);
+    }
+
     public void load(RandomAccessReader in) throws IOException {
         if (graph.size() != 0) {
             throw new IllegalStateException("Cannot load into a non-empty graph");
@@ -52,6 +52,8 @@ public class GraphSearcher implements AutoCloseable {
     private final IntHashSet visited;
     // we don't actually need this ordered, but NQ is our only structure that doesn't need to allocate extra containers
     private final NodeQueue evictedResults;
+    // the first three levels of the candidates heap, which include its top three candidates
+    private final int[] prefetchNodes = new int[7];
 
     // Search parameters that we save here for use by resume()
     private Bits acceptOrds;
@@ -253,6 +255,9 @@ public class GraphSearcher implements AutoCloseable {
                 break;
             }
 
+            // let the view start loading the neighbors of the next few candidates alongside the top one
+            view.prefetchNeighbors(prefetchNodes, candidates.peekNodes(prefetchNodes));
+
             // process the top candidate
             int topCandidateNode = candidates.pop();
             if (acceptOrds.get(topCandidateNode) && topCandidateScore >= threshold) {
@@ -332,7 +337,8 @@ public class GraphSearcher implements AutoCloseable {
                                                           float rerankFloor)
     {
         SearchResult.NodeScore[] nodes;
-        if (scoreProvider.reranker() == null) {
+        var stages = scoreProvider.rerankStages();
+        if (stages.isEmpty()) {
             nodes = new SearchResult.NodeScore[resultsQueue.size()];
             for (int i = nodes.length - 1; i >= 0; i--) {
                 var nScore = resultsQueue.topScore();
@@ -340,13 +346,37 @@ public class GraphSearcher implements AutoCloseable {
                 nodes[i] = new SearchResult.NodeScore(n, nScore);
             }
         } else {
-            nodes = resultsQueue.nodesCopy(scoreProvider.reranker(), rerankFloor);
-            Arrays.sort(nodes, 0, nodes.length, Comparator.comparingDouble((SearchResult.NodeScore nodeScore) -> nodeScore.score).reversed());
+            nodes = resultsQueue.nodesCopy(stages.get(0).reranker, rerankFloor);
             resultsQueue.clear();
+            nodes = sortAndTruncate(nodes, stages.get(0).topK);
+            for (int i = 1; i < stages.size(); i++) {
+                nodes = rerank(nodes, stages.get(i));
+            }
         }
         return nodes;
     }
 
+    /**
+     * Rescore `nodes` with the stage's reranker and return the best stage.topK of them in sorted order.
+     */
+    private static SearchResult.NodeScore[] rerank(SearchResult.NodeScore[] nodes, SearchScoreProvider.RerankStage stage) {
+        var ids = new int[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            ids[i] = nodes[i].node;
+        }
+        var scores = stage.reranker.similarityTo(ids);
+        var reranked = new SearchResult.NodeScore[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            reranked[i] = new SearchResult.NodeScore(ids[i], scores.get(i));
+        }
+        return sortAndTruncate(reranked, stage.topK);
+    }
+
+    private static SearchResult.NodeScore[] sortAndTruncate(SearchResult.NodeScore[] nodes, int topK) {
+        Arrays.sort(nodes, 0, nodes.length, Comparator.comparingDouble((SearchResult.NodeScore nodeScore) -> nodeScore.score).reversed());
+        return nodes.length <= topK ? nodes : Arrays.copyOf(nodes, topK);
+    }
+
     @Override
     public void close() throws Exception {
         view.close();
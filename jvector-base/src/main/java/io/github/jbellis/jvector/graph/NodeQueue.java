@@ -139,6 +139,20 @@ public class NodeQueue {
         return nodes;
     }
 
+    /**
+     * Copies up to `nodes.length` nodes from the front of the underlying heap into `nodes`, in heap order.
+     * The first 2^k - 1 nodes of the heap always include its top k nodes.
+     *
+     * @return the number of nodes copied
+     */
+    public int peekNodes(int[] nodes) {
+        int count = Math.min(size(), nodes.length);
+        for (int i = 0; i < count; i++) {
+            nodes[i] = decodeNodeId(heap.get(i + 1));
+        }
+        return count;
+    }
+
     public SearchResult.NodeScore[] nodesCopy(ScoreFunction.ExactScoreFunction reranker, float rerankFloor) {
         var ids = IntStream.range(0, size())
                                     .mapToLong(i -> heap.get(i + 1))
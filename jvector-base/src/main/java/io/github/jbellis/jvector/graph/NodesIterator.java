@@ -96,4 +96,46 @@ public abstract class NodesIterator implements PrimitiveIterator.OfInt {
             return cur < size;
         }
     }
+
+    /**
+     * Iterates over a range of an array, and can be reset to another range without allocating,
+     * so that a view can reuse it across calls to getNeighborsIterator.
+     */
+    public static class RangeNodesIterator extends NodesIterator {
+        private int[] nodes;
+        private int start;
+        private int end;
+        private int cur;
+
+        /** Constructor for an empty iterator, to be pointed at a range with reset */
+        public RangeNodesIterator() {
+            super(0);
+        }
+
+        /** Iterate over nodes[start, end) */
+        public void reset(int[] nodes, int start, int end) {
+            this.nodes = nodes;
+            this.start = start;
+            this.end = end;
+            this.cur = start;
+        }
+
+        @Override
+        public int size() {
+            return end - start;
+        }
+
+        @Override
+        public int nextInt() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return nodes[cur++];
+        }
+
+        @Override
+        public boolean hasNext() {
+            return cur < end;
+        }
+    }
 }
@@ -0,0 +1,409 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.jbellis.jvector.graph;
+
+import io.github.jbellis.jvector.graph.similarity.BuildScoreProvider;
+import io.github.jbellis.jvector.util.Accountable;
+import io.github.jbellis.jvector.util.ArrayUtil;
+import io.github.jbellis.jvector.util.IntMap;
+import io.github.jbellis.jvector.util.RamUsageEstimator;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * Stores the neighbor sets of an {@link OnHeapGraphIndex} in fixed-size slots of off-heap memory,
+ * instead of as a ConcurrentNeighborSet (plus AtomicReference, NodeArray, and two arrays) per node.
+ * This removes hundreds of millions of small objects from the heap for large graphs, which
+ * is what dominates GC tracing time during construction.
+ * <p>
+ * The arena is a series of direct ByteBuffers ("chunks"), each holding a power-of-two number of slots,
+ * since a single ByteBuffer is limited to 2GB.  Chunks are allocated as node ids reach them.
+ * Each slot is laid out as
+ * <pre>
+ *   int version | int present | int size | int diverseBefore | float shortEdges | int[capacity] nodes | float[capacity] scores
+ * </pre>
+ * Updates follow the same optimistic protocol as the on-heap ConcurrentNeighborSet: compute the new
+ * neighbors from a snapshot, then publish them only if nobody else published first.  Publishing
+ * bumps `version` to an odd value while the slot is being rewritten and back to even when done, so
+ * readers can detect (and retry) torn reads without locking.
+ * <p>
+ * `get` returns a lightweight ConcurrentNeighborSet view of the slot; it holds no neighbor data itself.
+ * <p>
+ * Direct memory is bounded by -XX:MaxDirectMemorySize and is released when the map is garbage collected.
+ */
+final class OffHeapNeighborMap implements IntMap<ConcurrentNeighborSet>, Accountable {
+    private static final VarHandle INT_HANDLE = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private static final int VERSION_OFFSET = 0;
+    private static final int PRESENT_OFFSET = 4;
+    private static final int SIZE_OFFSET = 8;
+    private static final int DIVERSE_BEFORE_OFFSET = 12;
+    private static final int SHORT_EDGES_OFFSET = 16;
+    private static final int HEADER_BYTES = 20;
+
+    private static final int TARGET_CHUNK_BYTES = 8 << 20;
+
+    private final int maxConnections;
+    private final int capacity;
+    private final BuildScoreProvider scoreProvider;
+    private final float alpha;
+
+    private final int slotBytes;
+    private final int chunkShift;
+    private final int chunkMask;
+
+    // copy-on-write, so readers never need to lock
+    private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * @param maxConnections the degree limit enforced by the neighbor sets
+     * @param capacity the number of neighbors each slot can hold.  Must be at least as large as the
+     *                 temporary overflow that the builder allows, i.e., maxConnections * neighborOverflow.
+     */
+    OffHeapNeighborMap(int maxConnections, int capacity, BuildScoreProvider scoreProvider, float alpha) {
+        if (capacity < maxConnections) {
+            throw new IllegalArgumentException(String.format("capacity %d must be at least maxConnections %d", capacity, maxConnections));
+        }
+        this.maxConnections = maxConnections;
+        this.capacity = capacity;
+        this.scoreProvider = scoreProvider;
+        this.alpha = alpha;
+        this.slotBytes = HEADER_BYTES + capacity * (Integer.BYTES + Float.BYTES);
+        int slotsPerChunk = Integer.highestOneBit(Math.max(1, TARGET_CHUNK_BYTES / slotBytes));
+        this.chunkShift = Integer.numberOfTrailingZeros(slotsPerChunk);
+        this.chunkMask = slotsPerChunk - 1;
+    }
+
+    /**
+     * @return the number of bytes used by each node
+     */
+    long bytesPerNode() {
+        return slotBytes;
+    }
+
+    private ByteBuffer chunkFor(int node) {
+        var c = chunks;
+        int chunkIdx = node >>> chunkShift;
+        return chunkIdx < c.length ? c[chunkIdx] : null;
+    }
+
+    private ByteBuffer ensureChunk(int node) {
+        var chunk = chunkFor(node);
+        if (chunk != null) {
+            return chunk;
+        }
+
+        synchronized (this) {
+            int chunkIdx = node >>> chunkShift;
+            var c = chunks;
+            if (chunkIdx < c.length && c[chunkIdx] != null) {
+                return c[chunkIdx];
+            }
+            var newChunks = Arrays.copyOf(c, Math.max(c.length, ArrayUtil.oversize(chunkIdx + 1, RamUsageEstimator.NUM_BYTES_OBJECT_REF)));
+            // allocateDirect zeroes the memory, so all slots start out not-present
+            newChunks[chunkIdx] = ByteBuffer.allocateDirect(slotBytes << chunkShift).order(ByteOrder.nativeOrder());
+            chunks = newChunks;
+            return newChunks[chunkIdx];
+        }
+    }
+
+    private int baseOf(int node) {
+        return (node & chunkMask) * slotBytes;
+    }
+
+    private static boolean isPresent(ByteBuffer chunk, int base) {
+        return (int) INT_HANDLE.getVolatile(chunk, base + PRESENT_OFFSET) != 0;
+    }
+
+    @Override
+    public void put(int key, ConcurrentNeighborSet value) {
+        if (value == null) {
+            throw new IllegalArgumentException("put() value cannot be null -- use remove() instead");
+        }
+
+        var chunk = ensureChunk(key);
+        int base = baseOf(key);
+        var neighbors = value.neighbors();
+        checkCapacity(key, neighbors);
+        int version = lock(chunk, base);
+        write(chunk, base, neighbors);
+        chunk.putFloat(base + SHORT_EDGES_OFFSET, value.getShortEdges());
+        INT_HANDLE.setRelease(chunk, base + VERSION_OFFSET, version + 2);
+
+        if ((int) INT_HANDLE.getAndSet(chunk, base + PRESENT_OFFSET, 1) == 0) {
+            size.incrementAndGet();
+        }
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public ConcurrentNeighborSet get(int key) {
+        var chunk = chunkFor(key);
+        if (chunk == null) {
+            return null;
+        }
+        int base = baseOf(key);
+        return isPresent(chunk, base) ? new ArenaNeighborSet(key, chunk, base) : null;
+    }
+
+    @Override
+    public ConcurrentNeighborSet remove(int key) {
+        var chunk = chunkFor(key);
+        if (chunk == null) {
+            return null;
+        }
+        int base = baseOf(key);
+        if ((int) INT_HANDLE.getAndSet(chunk, base + PRESENT_OFFSET, 0) == 0) {
+            return null;
+        }
+        size.decrementAndGet();
+        // the slot contents are left in place (and reset by the next put), so the view stays readable
+        return new ArenaNeighborSet(key, chunk, base);
+    }
+
+    @Override
+    public boolean containsKey(int key) {
+        var chunk = chunkFor(key);
+        return chunk != null && isPresent(chunk, baseOf(key));
+    }
+
+    private int keyUpperBound() {
+        return chunks.length << chunkShift;
+    }
+
+    @Override
+    public Set<Map.Entry<Integer, ConcurrentNeighborSet>> entrySet() {
+        var entries = new HashSet<Map.Entry<Integer, ConcurrentNeighborSet>>(size());
+        for (int i = 0; i < keyUpperBound(); i++) {
+            var value = get(i);
+            if (value != null) {
+                entries.add(new AbstractMap.SimpleEntry<>(i, value));
+            }
+        }
+        return entries;
+    }
+
+    @Override
+    public Set<Integer> keySet() {
+        var keys = new HashSet<Integer>(size());
+        for (int i = 0; i < keyUpperBound(); i++) {
+            if (containsKey(i)) {
+                keys.add(i);
+            }
+        }
+        return keys;
+    }
+
+    @Override
+    public NodesIterator getNodesIterator() {
+        var minSize = size(); // if keys are added concurrently we will miss them
+        var keysInts = IntStream.range(0, keyUpperBound()).filter(this::containsKey).iterator();
+        return NodesIterator.fromPrimitiveIterator(keysInts, minSize);
+    }
+
+    @Override
+    public long ramBytesUsed() {
+        var c = chunks;
+        long total = RamUsageEstimator.NUM_BYTES_ARRAY_HEADER + (long) c.length * RamUsageEstimator.NUM_BYTES_OBJECT_REF;
+        for (var chunk : c) {
+            if (chunk != null) {
+                total += chunk.capacity();
+            }
+        }
+        return total;
+    }
+
+    private void checkCapacity(int node, ConcurrentNeighborSet.Neighbors neighbors) {
+        if (neighbors.nodes.size() > capacity) {
+            throw new IllegalStateException(String.format("Node %d has %d neighbors, exceeding slot capacity %d",
+                                                          node, neighbors.nodes.size(), capacity));
+        }
+    }
+
+    /**
+     * Spin until the slot is not being written, and return its (even) version.
+     */
+    private static int awaitStableVersion(ByteBuffer chunk, int base) {
+        while (true) {
+            int version = (int) INT_HANDLE.getAcquire(chunk, base + VERSION_OFFSET);
+            if ((version & 1) == 0) {
+                return version;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Take exclusive ownership of the slot for writing, returning the version it was acquired at.
+     * Release by setting the version to the returned value + 2.
+     */
+    private static int lock(ByteBuffer chunk, int base) {
+        while (true) {
+            int version = awaitStableVersion(chunk, base);
+            if (INT_HANDLE.compareAndSet(chunk, base + VERSION_OFFSET, version, version + 1)) {
+                return version;
+            }
+        }
+    }
+
+    /**
+     * @return true if the slot is still at the given version, i.e., the data read since obtaining that version is consistent
+     */
+    private static boolean validate(ByteBuffer chunk, int base, int version) {
+        VarHandle.acquireFence();
+        return (int) INT_HANDLE.getVolatile(chunk, base + VERSION_OFFSET) == version;
+    }
+
+    private int readSize(ByteBuffer chunk, int base) {
+        // a torn read may produce garbage, which will be rejected by validate() but must not blow up before then
+        return Math.max(0, Math.min(chunk.getInt(base + SIZE_OFFSET), capacity));
+    }
+
+    private ConcurrentNeighborSet.Neighbors readUnvalidated(ByteBuffer chunk, int base) {
+        int n = readSize(chunk, base);
+        int diverseBefore = Math.max(0, Math.min(chunk.getInt(base + DIVERSE_BEFORE_OFFSET), n));
+        var nodes = new NodeArray(n);
+        int nodesBase = base + HEADER_BYTES;
+        int scoresBase = nodesBase + capacity * Integer.BYTES;
+        for (int i = 0; i < n; i++) {
+            nodes.node[i] = chunk.getInt(nodesBase + i * Integer.BYTES);
+            nodes.score[i] = chunk.getFloat(scoresBase + i * Float.BYTES);
+        }
+        nodes.size = n;
+        return new ConcurrentNeighborSet.Neighbors(nodes, diverseBefore);
+    }
+
+    /** caller must hold the slot lock */
+    private void write(ByteBuffer chunk, int base, ConcurrentNeighborSet.Neighbors neighbors) {
+        var nodes = neighbors.nodes;
+        int nodesBase = base + HEADER_BYTES;
+        int scoresBase = nodesBase + capacity * Integer.BYTES;
+        for (int i = 0; i < nodes.size(); i++) {
+            chunk.putInt(nodesBase + i * Integer.BYTES, nodes.node[i]);
+            chunk.putFloat(scoresBase + i * Float.BYTES, nodes.score[i]);
+        }
+        chunk.putInt(base + SIZE_OFFSET, nodes.size());
+        chunk.putInt(base + DIVERSE_BEFORE_OFFSET, neighbors.diverseBefore);
+    }
+
+    /**
+     * A ConcurrentNeighborSet whose state lives in an arena slot.  Cheap to create; created on each `get`.
+     */
+    private final class ArenaNeighborSet extends ConcurrentNeighborSet {
+        private final int node;
+        private final ByteBuffer chunk;
+        private final int base;
+
+        private ArenaNeighborSet(int node, ByteBuffer chunk, int base) {
+            super(node, maxConnections, scoreProvider, alpha, (AtomicReference<Neighbors>) null);
+            this.node = node;
+            this.chunk = chunk;
+            this.base = base;
+        }
+
+        @Override
+        Neighbors neighbors() {
+            while (true) {
+                int version = awaitStableVersion(chunk, base);
+                var neighbors = readUnvalidated(chunk, base);
+                if (validate(chunk, base, version)) {
+                    return neighbors;
+                }
+            }
+        }
+
+        @Override
+        void updateNeighbors(UnaryOperator<Neighbors> updateFn) {
+            while (true) {
+                int version = awaitStableVersion(chunk, base);
+                var old = readUnvalidated(chunk, base);
+                if (!validate(chunk, base, version)) {
+                    continue;
+                }
+
+                var next = updateFn.apply(old);
+                if (next == old) {
+                    return;
+                }
+                checkCapacity(node, next);
+                // lose the race if someone else published after our snapshot, just like AtomicReference::getAndUpdate
+                if (!INT_HANDLE.compareAndSet(chunk, base + VERSION_OFFSET, version, version + 1)) {
+                    continue;
+                }
+                write(chunk, base, next);
+                INT_HANDLE.setRelease(chunk, base + VERSION_OFFSET, version + 2);
+                return;
+            }
+        }
+
+        @Override
+        public NodesIterator iterator() {
+            // search only needs the ids, so skip copying the scores
+            while (true) {
+                int version = awaitStableVersion(chunk, base);
+                int n = readSize(chunk, base);
+                int[] ids = new int[n];
+                int nodesBase = base + HEADER_BYTES;
+                for (int i = 0; i < n; i++) {
+                    ids[i] = chunk.getInt(nodesBase + i * Integer.BYTES);
+                }
+                if (validate(chunk, base, version)) {
+                    return new NodesIterator.ArrayNodesIterator(ids, n);
+                }
+            }
+        }
+
+        @Override
+        public int size() {
+            while (true) {
+                int version = awaitStableVersion(chunk, base);
+                int n = readSize(chunk, base);
+                if (validate(chunk, base, version)) {
+                    return n;
+                }
+            }
+        }
+
+        @Override
+        public float getShortEdges() {
+            return chunk.getFloat(base + SHORT_EDGES_OFFSET);
+        }
+
+        @Override
+        void setShortEdges(float shortEdges) {
+            // like the on-heap version, this is not synchronized with concurrent updates
+            chunk.putFloat(base + SHORT_EDGES_OFFSET, shortEdges);
+        }
+    }
+}
@@ -27,10 +27,13 @@ package io.github.jbellis.jvector.graph;
 import io.github.jbellis.jvector.util.Accountable;
 import io.github.jbellis.jvector.util.Bits;
 import io.github.jbellis.jvector.util.DenseIntMap;
+import io.github.jbellis.jvector.util.IntMap;
 import io.github.jbellis.jvector.util.RamUsageEstimator;
 import io.github.jbellis.jvector.util.ThreadSafeGrowableBitSet;
 
 import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiFunction;
 import java.util.stream.IntStream;
@@ -45,10 +48,23 @@ import java.util.stream.IntStream;
 public class OnHeapGraphIndex implements GraphIndex, Accountable {
     static final int NO_ENTRY_POINT = -1;
 
+    /**
+     * Where the neighbor lists of the graph are kept.
+     */
+    public enum AdjacencyStorage {
+        /** A ConcurrentNeighborSet object per node.  Best for small and medium graphs. */
+        ON_HEAP,
+        /**
+         * Fixed-size slots in an off-heap arena.  Uses less memory and greatly reduces GC pressure
+         * for large graphs, at the cost of copying neighbors out of the arena on each access.
+         */
+        OFF_HEAP
+    }
+
     // the current graph entry node, NO_ENTRY_POINT if not set
     private final AtomicInteger entryPoint = new AtomicInteger(NO_ENTRY_POINT);
 
-    private final DenseIntMap<ConcurrentNeighborSet> nodes;
+    private final IntMap<ConcurrentNeighborSet> nodes;
     private final ThreadSafeGrowableBitSet deletedNodes = new ThreadSafeGrowableBitSet(0);
     private final AtomicInteger maxNodeId = new AtomicInteger(NO_ENTRY_POINT);
 
@@ -57,9 +73,13 @@ public class OnHeapGraphIndex implements GraphIndex, Accountable {
     private final BiFunction<Integer, Integer, ConcurrentNeighborSet> neighborFactory;
 
     OnHeapGraphIndex(int M, BiFunction<Integer, Integer, ConcurrentNeighborSet> neighborFactory) {
+        this(M, neighborFactory, new DenseIntMap<>(1024));
+    }
+
+    OnHeapGraphIndex(int M, BiFunction<Integer, Integer, ConcurrentNeighborSet> neighborFactory, IntMap<ConcurrentNeighborSet> nodes) {
         this.neighborFactory = neighborFactory;
         this.maxDegree = M;
-        this.nodes = new DenseIntMap<>(1024);
+        this.nodes = nodes;
     }
 
     /**
@@ -92,9 +112,9 @@ public class OnHeapGraphIndex implements GraphIndex, Accountable {
      * @return the neighbor set for this node
      */
     public ConcurrentNeighborSet addNode(int node) {
-        var newNeighborSet = neighborFactory.apply(node, maxDegree());
-        addNode(node, newNeighborSet);
-        return newNeighborSet;
+        addNode(node, neighborFactory.apply(node, maxDegree()));
+        // the stored set is not the one we passed in, if the storage is off-heap
+        return getNeighbors(node);
     }
 
     /**
@@ -145,6 +165,10 @@ public class OnHeapGraphIndex implements GraphIndex, Accountable {
 
     @Override
     public long ramBytesUsed() {
+        if (nodes instanceof OffHeapNeighborMap) {
+            return ((OffHeapNeighborMap) nodes).ramBytesUsed();
+        }
+
         // the main graph structure
         long total = (long) size() * RamUsageEstimator.NUM_BYTES_OBJECT_REF;
         long neighborSize = neighborsRamUsed(maxDegree()) * size();
@@ -152,8 +176,9 @@ public class OnHeapGraphIndex implements GraphIndex, Accountable {
     }
 
     public long ramBytesUsedOneNode() {
-        var graphBytesUsed =
-                neighborsRamUsed(maxDegree());
+        var graphBytesUsed = nodes instanceof OffHeapNeighborMap
+                ? ((OffHeapNeighborMap) nodes).bytesPerNode()
+                : neighborsRamUsed(maxDegree());
         var clockBytesUsed = Integer.BYTES;
         return graphBytesUsed + clockBytesUsed;
     }
@@ -284,6 +309,27 @@ public class OnHeapGraphIndex implements GraphIndex, Accountable {
         }
     }
 
+    /**
+     * Returns an immutable copy of this graph in compact (CSR) form, with no scores and no per-node objects.
+     * Intended for serving a graph read-only after construction is complete; that is, after
+     * {@link GraphIndexBuilder#cleanup()}.  Should not be called during concurrent modifications.
+     */
+    public CompactGraphIndex freeze() {
+        return CompactGraphIndex.from(this);
+    }
+
+    /**
+     * Write a snapshot of this graph to `path`, in a chunked format that
+     * {@link GraphIndexBuilder#load(io.github.jbellis.jvector.disk.ReaderSupplier)} can read in parallel.
+     * <p>
+     * If `includeScores` is true, the neighbor scores are stored as well, so loading does not need
+     * to recompute them (at the cost of doubling the size of the snapshot).
+     * Should not be called during concurrent modifications.
+     */
+    public void save(Path path, boolean includeScores) throws IOException {
+        OnHeapGraphSnapshot.write(this, path, includeScores, OnHeapGraphSnapshot.DEFAULT_NODES_PER_CHUNK);
+    }
+
     public void save(DataOutput out) {
         if (deletedNodes.cardinality() > 0) {
             throw new IllegalStateException("Cannot save a graph that has deleted nodes.  Call cleanup() first");
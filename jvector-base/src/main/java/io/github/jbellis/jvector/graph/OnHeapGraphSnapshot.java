@@ -0,0 +1,247 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.jbellis.jvector.graph;
+
+import io.github.jbellis.jvector.disk.BufferedRandomAccessWriter;
+import io.github.jbellis.jvector.disk.RandomAccessReader;
+import io.github.jbellis.jvector.disk.ReaderSupplier;
+import io.github.jbellis.jvector.graph.similarity.BuildScoreProvider;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * The snapshot format written by {@link OnHeapGraphIndex#save(Path, boolean)} and read by
+ * {@link GraphIndexBuilder#load(ReaderSupplier)}.
+ * <p>
+ * Layout:
+ * <pre>
+ * [int MAGIC][int version][int flags]
+ * [int size][int entryNode][int maxDegree][int idUpperBound][int nodesPerChunk][int chunkCount]
+ * [long chunkOffset * (chunkCount + 1)]
+ * chunks, each holding the nodes with ordinals in [c * nodesPerChunk, (c + 1) * nodesPerChunk):
+ *   [int nodeCount] then per node [int id][int neighborCount][int neighbors...][float scores...]
+ * </pre>
+ * Scores are present iff the SCORES flag is set.  The last chunk offset is the end of the data,
+ * so the size of each chunk is known up front and a chunk can be read with a single bulk read.
+ * Chunks are independent, so they can be decoded (and their scores recomputed, if absent) in parallel.
+ */
+final class OnHeapGraphSnapshot {
+    // FFFF to distinguish from the legacy format written by save(DataOutput), which starts with a non-negative size
+    static final int MAGIC = 0xFFFF0A5E;
+    static final int CURRENT_VERSION = 1;
+    static final int FLAG_SCORES = 1;
+    static final int DEFAULT_NODES_PER_CHUNK = 16384;
+
+    private OnHeapGraphSnapshot() {
+    }
+
+    static void write(OnHeapGraphIndex graph, Path path, boolean includeScores, int nodesPerChunk) throws IOException {
+        if (graph.getDeletedNodes().cardinality() > 0) {
+            throw new IllegalStateException("Cannot save a graph that has deleted nodes.  Call cleanup() first");
+        }
+        if (nodesPerChunk <= 0) {
+            throw new IllegalArgumentException("nodesPerChunk must be positive");
+        }
+
+        int idUpperBound = graph.getIdUpperBound();
+        int chunkCount = (idUpperBound + nodesPerChunk - 1) / nodesPerChunk;
+        var chunkOffsets = new long[chunkCount + 1];
+        try (var out = new BufferedRandomAccessWriter(path)) {
+            out.writeBuffered(dos -> {
+                dos.writeInt(MAGIC);
+                dos.writeInt(CURRENT_VERSION);
+                dos.writeInt(includeScores ? FLAG_SCORES : 0);
+                dos.writeInt(graph.size());
+                dos.writeInt(graph.entry());
+                dos.writeInt(graph.maxDegree());
+                dos.writeInt(idUpperBound);
+                dos.writeInt(nodesPerChunk);
+                dos.writeInt(chunkCount);
+            });
+            // leave room for the chunk offsets, which we fill in at the end
+            long offsetsPosition = out.getFilePointer();
+            out.seek(offsetsPosition + (long) Long.BYTES * (chunkCount + 1));
+
+            for (int c = 0; c < chunkCount; c++) {
+                chunkOffsets[c] = out.getFilePointer();
+                int start = c * nodesPerChunk;
+                int end = (int) Math.min((long) start + nodesPerChunk, idUpperBound);
+                out.writeBuffered(dos -> {
+                    int nodeCount = (int) IntStream.range(start, end).filter(graph::containsNode).count();
+                    dos.writeInt(nodeCount);
+                    for (int node = start; node < end; node++) {
+                        var neighbors = graph.getNeighbors(node);
+                        if (neighbors == null) {
+                            continue;
+                        }
+                        // take a single snapshot so that nodes and scores agree
+                        var current = neighbors.getCurrent();
+                        dos.writeInt(node);
+                        dos.writeInt(current.size());
+                        for (int i = 0; i < current.size(); i++) {
+                            dos.writeInt(current.node()[i]);
+                        }
+                        if (includeScores) {
+                            for (int i = 0; i < current.size(); i++) {
+                                dos.writeFloat(current.score()[i]);
+                            }
+                        }
+                    }
+                });
+            }
+            chunkOffsets[chunkCount] = out.getFilePointer();
+
+            out.seek(offsetsPosition);
+            out.writeBuffered(dos -> {
+                for (long offset : chunkOffsets) {
+                    dos.writeLong(offset);
+                }
+            });
+        }
+    }
+
+    /**
+     * Load the snapshot into `graph`, which must be empty.  Chunks are decoded in parallel on `executor`,
+     * each with its own reader from `readers`.  If the snapshot does not include scores, they are
+     * recomputed (exactly) from `scoreProvider`.
+     */
+    static void load(ReaderSupplier readers,
+                     OnHeapGraphIndex graph,
+                     BuildScoreProvider scoreProvider,
+                     float alpha,
+                     ForkJoinPool executor) throws IOException
+    {
+        int flags, entryNode, maxDegree, chunkCount;
+        long[] chunkOffsets;
+        try (var in = readers.get()) {
+            int magic = in.readInt();
+            if (magic != MAGIC) {
+                throw new IllegalArgumentException(String.format("Not an OnHeapGraphIndex snapshot (magic was %08x)", magic));
+            }
+            int version = in.readInt();
+            if (version > CURRENT_VERSION) {
+                throw new IllegalArgumentException(String.format("Unsupported snapshot version %d (maximum is %d)", version, CURRENT_VERSION));
+            }
+            flags = in.readInt();
+            in.readInt(); // size, implied by the chunk contents
+            entryNode = in.readInt();
+            maxDegree = in.readInt();
+            int idUpperBound = in.readInt();
+            int nodesPerChunk = in.readInt();
+            chunkCount = in.readInt();
+            if (idUpperBound < 0 || nodesPerChunk <= 0 || chunkCount != (idUpperBound + (long) nodesPerChunk - 1) / nodesPerChunk) {
+                throw new IllegalArgumentException(String.format("Corrupt snapshot: %d chunks of %d nodes for %d ids", chunkCount, nodesPerChunk, idUpperBound));
+            }
+            long tableStart = in.getPosition();
+            long dataStart = tableStart + (long) Long.BYTES * (chunkCount + 1);
+            checkAvailable(in, dataStart, "chunk offset table");
+            in.seek(tableStart);
+            chunkOffsets = new long[chunkCount + 1];
+            in.readFully(chunkOffsets);
+            if (chunkOffsets[0] != dataStart) {
+                throw new IllegalArgumentException(String.format("Corrupt snapshot: first chunk at %d instead of %d", chunkOffsets[0], dataStart));
+            }
+            // each chunk holds at least its node count
+            for (int c = 0; c < chunkCount; c++) {
+                if (chunkOffsets[c + 1] < chunkOffsets[c] || chunkOffsets[c + 1] - chunkOffsets[c] < Integer.BYTES) {
+                    throw new IllegalArgumentException(String.format("Corrupt snapshot: chunk %d spans [%d, %d)", c, chunkOffsets[c], chunkOffsets[c + 1]));
+                }
+            }
+            checkAvailable(in, chunkOffsets[chunkCount], "chunk data");
+        }
+
+        boolean hasScores = (flags & FLAG_SCORES) != 0;
+        executor.submit(() -> IntStream.range(0, chunkCount).parallel().forEach(c -> {
+            try (var in = readers.get()) {
+                loadChunk(in, chunkOffsets[c], chunkOffsets[c + 1], hasScores, maxDegree, graph, scoreProvider, alpha);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        })).join();
+
+        graph.updateEntryNode(entryNode);
+    }
+
+    /**
+     * @throws IllegalArgumentException if `in` ends before `end`.  Readers differ in how they report
+     * reading past the end of the file, so any failure to read the byte before `end` counts.
+     */
+    private static void checkAvailable(RandomAccessReader in, long end, String what) {
+        try {
+            in.seek(end - 1);
+            in.readFully(new byte[1]);
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalArgumentException(String.format("Corrupt snapshot: %s ends at %d, past the end of the file", what, end), e);
+        }
+    }
+
+    private static void loadChunk(RandomAccessReader in,
+                                  long start,
+                                  long end,
+                                  boolean hasScores,
+                                  int maxDegree,
+                                  OnHeapGraphIndex graph,
+                                  BuildScoreProvider scoreProvider,
+                                  float alpha) throws IOException
+    {
+        long length = end - start;
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalStateException(String.format("Snapshot chunk at %d is too large (%d bytes)", start, length));
+        }
+        var bytes = new byte[(int) length];
+        in.seek(start);
+        in.readFully(bytes);
+        var buffer = ByteBuffer.wrap(bytes);
+
+        int nodeCount = buffer.getInt();
+        for (int i = 0; i < nodeCount; i++) {
+            int node = buffer.getInt();
+            int nNeighbors = buffer.getInt();
+            var neighbors = new int[nNeighbors];
+            buffer.asIntBuffer().get(neighbors);
+            buffer.position(buffer.position() + nNeighbors * Integer.BYTES);
+
+            var scores = new float[nNeighbors];
+            if (hasScores) {
+                buffer.asFloatBuffer().get(scores);
+                buffer.position(buffer.position() + nNeighbors * Float.BYTES);
+            } else if (nNeighbors > 0) {
+                var sf = scoreProvider.searchProviderFor(node).exactScoreFunction();
+                var similarities = sf.similarityTo(neighbors);
+                for (int j = 0; j < nNeighbors; j++) {
+                    scores[j] = similarities.get(j);
+                }
+            }
+
+            var ca = new NodeArray(Math.max(maxDegree, nNeighbors));
+            for (int j = 0; j < nNeighbors; j++) {
+                if (hasScores) {
+                    ca.addInOrder(neighbors[j], scores[j]);
+                } else {
+                    // recomputed scores can differ from the originals in the last bit, which can reorder ties
+                    ca.insertSorted(neighbors[j], scores[j]);
+                }
+            }
+            graph.addNode(node, new ConcurrentNeighborSet(node, maxDegree, scoreProvider, alpha, ca));
+        }
+    }
+}
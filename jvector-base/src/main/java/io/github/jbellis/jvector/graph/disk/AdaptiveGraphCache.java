@@ -0,0 +1,392 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.jbellis.jvector.graph.disk;
+
+import io.github.jbellis.jvector.graph.NodesIterator;
+import io.github.jbellis.jvector.util.RamUsageEstimator;
+import org.agrona.collections.Int2ObjectHashMap;
+import org.agrona.collections.IntArrayQueue;
+import org.agrona.collections.IntHashSet;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A GraphCache that follows the query distribution instead of guessing it from the graph structure.
+ * <p>
+ * A sample of calls to getNode are counted in a count-min sketch.  Every `refreshInterval` samples,
+ * a refresh is scheduled on the executor: the currently cached nodes and the recently sampled nodes
+ * are ranked by their estimated access counts, and the hottest are cached until the byte budget is full.
+ * Newly hot nodes are read from the graph and cold ones are dropped.  The counts are then halved,
+ * so that the cache tracks changes in the query distribution.
+ * <p>
+ * Each refresh builds a new map and publishes it with a single volatile write, so readers are never
+ * blocked and always see a complete cache.  Sketch updates are racy; a lost increment only makes an
+ * estimate slightly low, which is harmless for a heuristic.
+ * <p>
+ * The cache starts out holding the nodes nearest the entry node, breadth-first, up to the budget, or
+ * the hottest nodes of a {@link HotNodes} set recorded by an earlier cache with {@link #hotNodes()}.
+ * Restoring a recorded set also restores its access counts, so the cache does not have to re-learn them.
+ */
+public class AdaptiveGraphCache extends GraphCache {
+    private static final Logger LOG = Logger.getLogger(AdaptiveGraphCache.class.getName());
+
+    public static final int DEFAULT_SAMPLE_RATE = 16;
+    public static final int DEFAULT_REFRESH_INTERVAL = 64 * 1024;
+
+    private static final int SKETCH_DEPTH = 4;
+    private static final int[] SKETCH_SEEDS = { 0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F };
+    // number of recently sampled ordinals that are considered for promotion at each refresh
+    private static final int RECENT_SIZE = 8192;
+
+    private final OnDiskGraphIndex graph;
+    private final long budgetBytes;
+    private final int sampleRate;
+    private final int refreshInterval;
+    private final Executor executor;
+
+    private final int[] sketch;
+    private final int widthMask;
+    private final int[] recent;
+    private final AtomicLong samples = new AtomicLong();
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+    private final AtomicLong refreshes = new AtomicLong();
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * Create a cache of at most `budgetBytes`, sampling one in DEFAULT_SAMPLE_RATE accesses and refreshing
+     * on the common ForkJoinPool every DEFAULT_REFRESH_INTERVAL samples.
+     */
+    public AdaptiveGraphCache(OnDiskGraphIndex graph, long budgetBytes) {
+        this(graph, budgetBytes, DEFAULT_SAMPLE_RATE, DEFAULT_REFRESH_INTERVAL, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param graph the graph whose neighbor lists are cached
+     * @param budgetBytes the maximum size of the cached neighbor lists, as reported by ramBytesUsed (excluding the sketch)
+     * @param sampleRate one in this many calls to getNode is counted
+     * @param refreshInterval the number of samples between refreshes; refresh may also be called directly
+     * @param executor runs the refreshes scheduled by getNode
+     */
+    public AdaptiveGraphCache(OnDiskGraphIndex graph, long budgetBytes, int sampleRate, int refreshInterval, Executor executor) {
+        this(graph, budgetBytes, sampleRate, refreshInterval, executor, null);
+    }
+
+    /**
+     * Create a cache of at most `budgetBytes` that starts out holding the hottest of `hotNodes`,
+     * with default sampling and refreshes as in {@link #AdaptiveGraphCache(OnDiskGraphIndex, long)}.
+     */
+    public AdaptiveGraphCache(OnDiskGraphIndex graph, long budgetBytes, HotNodes hotNodes) {
+        this(graph, budgetBytes, DEFAULT_SAMPLE_RATE, DEFAULT_REFRESH_INTERVAL, ForkJoinPool.commonPool(), hotNodes);
+    }
+
+    /**
+     * As {@link #AdaptiveGraphCache(OnDiskGraphIndex, long, int, int, Executor)}, starting out with the hottest
+     * of `hotNodes` if it is not null.
+     */
+    public AdaptiveGraphCache(OnDiskGraphIndex graph, long budgetBytes, int sampleRate, int refreshInterval, Executor executor,
+                              HotNodes hotNodes)
+    {
+        if (budgetBytes < 0) {
+            throw new IllegalArgumentException("budgetBytes must be non-negative");
+        }
+        if (sampleRate <= 0 || refreshInterval <= 0) {
+            throw new IllegalArgumentException("sampleRate and refreshInterval must be positive");
+        }
+        this.graph = graph;
+        this.budgetBytes = budgetBytes;
+        this.sampleRate = sampleRate;
+        this.refreshInterval = refreshInterval;
+        this.executor = executor;
+
+        // a few counters per node that could fit in the budget keeps collisions rare among the hot nodes
+        long capacity = Math.max(1, budgetBytes / entryBytes(graph.maxDegree()));
+        int width = Integer.highestOneBit((int) Math.min(1 << 24, Math.max(1024, 4 * capacity)) - 1) << 1;
+        this.sketch = new int[SKETCH_DEPTH * width];
+        this.widthMask = width - 1;
+        this.recent = new int[RECENT_SIZE];
+        Arrays.fill(recent, -1);
+
+        if (hotNodes == null) {
+            this.snapshot = loadNearEntry();
+        } else {
+            if (hotNodes.graphSize() != graph.size()) {
+                throw new IllegalArgumentException(String.format("Hot nodes were recorded for a graph of %d nodes, not %d",
+                                                                 hotNodes.graphSize(), graph.size()));
+            }
+            this.snapshot = loadHotNodes(hotNodes);
+        }
+    }
+
+    @Override
+    public CachedNode getNode(int ordinal) {
+        if (sampleRate == 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0) {
+            recordAccess(ordinal);
+        }
+        return snapshot.nodes.get(ordinal);
+    }
+
+    private void recordAccess(int ordinal) {
+        for (int d = 0; d < SKETCH_DEPTH; d++) {
+            int i = sketchIndex(ordinal, d);
+            if (sketch[i] < Integer.MAX_VALUE) {
+                sketch[i]++;
+            }
+        }
+        long n = samples.incrementAndGet();
+        recent[(int) (n % RECENT_SIZE)] = ordinal;
+        if (n % refreshInterval == 0 && refreshScheduled.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                try {
+                    refresh();
+                } catch (RuntimeException e) {
+                    // nobody waits on the executor, so this is the only place the failure can be reported
+                    LOG.log(Level.WARNING, "Refreshing the adaptive graph cache failed", e);
+                } finally {
+                    refreshScheduled.set(false);
+                }
+            });
+        }
+    }
+
+    private int sketchIndex(int ordinal, int row) {
+        int h = ordinal * SKETCH_SEEDS[row];
+        h ^= h >>> 16;
+        return row * (widthMask + 1) + (h & widthMask);
+    }
+
+    /** @return the estimated number of sampled accesses to `ordinal` since it was last aged */
+    int estimate(int ordinal) {
+        int min = Integer.MAX_VALUE;
+        for (int d = 0; d < SKETCH_DEPTH; d++) {
+            min = Math.min(min, sketch[sketchIndex(ordinal, d)]);
+        }
+        return min;
+    }
+
+    /**
+     * Re-rank the cached and recently sampled nodes by estimated access count and publish a new cache
+     * holding the hottest of them, within the budget.  Ties favor nodes that are already cached,
+     * so that the cache does not churn when the counts are flat.
+     */
+    public synchronized void refresh() {
+        var current = snapshot;
+
+        // candidates are the nodes already cached plus the recently sampled ones.
+        // each is encoded as [estimate][cached][ordinal] so that sorting ranks them
+        var seen = new IntHashSet();
+        var ranked = new long[current.nodes.size() + RECENT_SIZE];
+        int n = 0;
+        for (var it = current.nodes.keySet().iterator(); it.hasNext(); ) {
+            int ordinal = it.nextInt();
+            seen.add(ordinal);
+            ranked[n++] = ((long) estimate(ordinal) << 32) | (1L << 31) | ordinal;
+        }
+        for (int i = 0; i < RECENT_SIZE; i++) {
+            int ordinal = recent[i];
+            if (ordinal < 0 || !seen.add(ordinal)) {
+                continue;
+            }
+            ranked[n++] = ((long) estimate(ordinal) << 32) | ordinal;
+        }
+        Arrays.sort(ranked, 0, n);
+
+        var nodes = new Int2ObjectHashMap<CachedNode>();
+        long bytes = 0;
+        try (var view = graph.getView()) {
+            // once not even a node without neighbors fits, the rest can't either
+            for (int i = n - 1; i >= 0 && bytes + entryBytes(0) <= budgetBytes; i--) {
+                int ordinal = (int) (ranked[i] & Integer.MAX_VALUE);
+                var node = current.nodes.get(ordinal);
+                long cost;
+                if (node == null) {
+                    // check that the node fits before copying out its neighbors
+                    var it = view.getNeighborsIterator(ordinal);
+                    cost = entryBytes(it.size());
+                    if (bytes + cost > budgetBytes) {
+                        continue;
+                    }
+                    node = readNode(it);
+                } else {
+                    cost = entryBytes(node);
+                    if (bytes + cost > budgetBytes) {
+                        continue;
+                    }
+                }
+                nodes.put(ordinal, node);
+                bytes += cost;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        snapshot = new Snapshot(nodes, bytes);
+
+        // age the counts
+        for (int i = 0; i < sketch.length; i++) {
+            sketch[i] >>>= 1;
+        }
+        refreshes.incrementAndGet();
+    }
+
+    private Snapshot loadNearEntry() {
+        var nodes = new Int2ObjectHashMap<CachedNode>();
+        long bytes = 0;
+        try (var view = graph.getView()) {
+            var queue = new IntArrayQueue();
+            queue.addInt(view.entryNode());
+            while (!queue.isEmpty()) {
+                int ordinal = queue.pollInt();
+                if (nodes.containsKey(ordinal)) {
+                    continue;
+                }
+                var node = readNode(view, ordinal);
+                long cost = entryBytes(node);
+                if (bytes + cost > budgetBytes) {
+                    break;
+                }
+                nodes.put(ordinal, node);
+                bytes += cost;
+                for (int neighbor : node.neighbors) {
+                    if (!nodes.containsKey(neighbor)) {
+                        queue.addInt(neighbor);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new Snapshot(nodes, bytes);
+    }
+
+    private Snapshot loadHotNodes(HotNodes hotNodes) {
+        var nodes = new Int2ObjectHashMap<CachedNode>();
+        long bytes = 0;
+        try (var view = graph.getView()) {
+            for (int i = 0; i < hotNodes.size(); i++) {
+                int ordinal = hotNodes.ordinal(i);
+                if (ordinal < 0 || ordinal >= graph.size() || nodes.containsKey(ordinal)) {
+                    continue;
+                }
+                var node = readNode(view, ordinal);
+                long cost = entryBytes(node);
+                if (bytes + cost > budgetBytes) {
+                    break;
+                }
+                nodes.put(ordinal, node);
+                bytes += cost;
+                // restore the count without inflating that of colliding nodes any more than necessary
+                for (int d = 0; d < SKETCH_DEPTH; d++) {
+                    int j = sketchIndex(ordinal, d);
+                    sketch[j] = Math.max(sketch[j], hotNodes.count(i));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new Snapshot(nodes, bytes);
+    }
+
+    private static CachedNode readNode(OnDiskGraphIndex.View view, int ordinal) {
+        return readNode(view.getNeighborsIterator(ordinal));
+    }
+
+    private static CachedNode readNode(NodesIterator it) {
+        int[] neighbors = new int[it.size()];
+        int i = 0;
+        while (it.hasNext()) {
+            neighbors[i++] = it.nextInt();
+        }
+        return new CachedNode(neighbors);
+    }
+
+    // ignores internal Map overhead, like HMGraphCache
+    private static long entryBytes(CachedNode node) {
+        return Integer.BYTES + RamUsageEstimator.NUM_BYTES_OBJECT_REF + node.ramBytesUsed();
+    }
+
+    private static long entryBytes(int degree) {
+        return Integer.BYTES + 2L * RamUsageEstimator.NUM_BYTES_OBJECT_REF + RamUsageEstimator.NUM_BYTES_ARRAY_HEADER + (long) degree * Integer.BYTES;
+    }
+
+    /** @return the number of nodes currently cached */
+    public int cachedNodes() {
+        return snapshot.nodes.size();
+    }
+
+    /**
+     * @return the currently cached nodes and their estimated access counts, hottest first, e.g. to save
+     * with {@link HotNodes#save} and restore in a later process
+     */
+    public HotNodes hotNodes() {
+        var current = snapshot;
+        // encoded as [estimate][ordinal] so that sorting ranks them
+        var ranked = new long[current.nodes.size()];
+        int n = 0;
+        for (var it = current.nodes.keySet().iterator(); it.hasNext(); ) {
+            int ordinal = it.nextInt();
+            ranked[n++] = ((long) estimate(ordinal) << 32) | ordinal;
+        }
+        Arrays.sort(ranked);
+
+        var ordinals = new int[n];
+        var counts = new int[n];
+        for (int i = 0; i < n; i++) {
+            long entry = ranked[n - 1 - i];
+            ordinals[i] = (int) entry;
+            counts[i] = (int) (entry >>> 32);
+        }
+        return new HotNodes(graph.size(), ordinals, counts);
+    }
+
+    /** @return the number of refreshes completed */
+    public long refreshCount() {
+        return refreshes.get();
+    }
+
+    @Override
+    public long ramBytesUsed() {
+        return snapshot.bytes
+                + 2L * RamUsageEstimator.NUM_BYTES_ARRAY_HEADER
+                + (long) sketch.length * Integer.BYTES
+                + (long) recent.length * Integer.BYTES;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("AdaptiveGraphCache(nodes=%d, bytes=%d, budget=%d)", cachedNodes(), snapshot.bytes, budgetBytes);
+    }
+
+    /** An immutable cache generation; the map is never modified after it is published */
+    private static final class Snapshot {
+        final Int2ObjectHashMap<CachedNode> nodes;
+        final long bytes;
+
+        Snapshot(Int2ObjectHashMap<CachedNode> nodes, long bytes) {
+            this.nodes = nodes;
+            this.bytes = bytes;
+        }
+    }
+}
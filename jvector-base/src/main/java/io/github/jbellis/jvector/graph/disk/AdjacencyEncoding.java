@@ -0,0 +1,38 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jbellis.jvector.graph.disk;
+
+/**
+ * How the neighbor lists of an OnDiskGraphIndex are stored.
+ * The order of this Enum SHOULD NOT be changed, as it affects serialization structure of graphs.
+ */
+public enum AdjacencyEncoding {
+    /**
+     * A neighbor count followed by maxDegree 32-bit ordinals, padded with -1.  Every node record is the
+     * same size, so a record's position is computed from its ordinal.  This is the only encoding before version 3.
+     */
+    PADDED,
+    /**
+     * Neighbors sorted by ordinal and delta-encoded, with all deltas bit-packed at the width of the largest.
+     * Only real neighbors are stored, so records are variable-size and located through a per-node offset index.
+     * Deltas are smallest when neighbors have nearby ordinals, so this works best combined with a locality-preserving
+     * renumbering like {@link OnDiskGraphIndexWriter#getBfsRenumbering}.
+     * <p>
+     * Sorting changes the order of the neighbors, so this cannot be combined with FusedADC, which stores
+     * codes in the original neighbor order.
+     */
+    DELTA_BITPACKED
+}
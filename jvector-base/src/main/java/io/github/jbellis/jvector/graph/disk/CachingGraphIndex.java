@@ -25,9 +25,14 @@ import io.github.jbellis.jvector.vector.VectorSimilarityFunction;
 import io.github.jbellis.jvector.vector.types.VectorFloat;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class CachingGraphIndex implements GraphIndex, Accountable
 {
+    private static final Logger LOG = Logger.getLogger(CachingGraphIndex.class.getName());
     private static final int CACHE_DISTANCE = 3;
 
     private final GraphCache cache_;
@@ -39,9 +44,65 @@ public class CachingGraphIndex implements GraphIndex, Accountable
     }
 
     public CachingGraphIndex(OnDiskGraphIndex graph, int cacheDistance)
+    {
+        this(graph, cacheDistance, false);
+    }
+
+    /**
+     * Cache the nodes within `cacheDistance` hops of the entry node.  If `cacheInlineFeatures` is true,
+     * their inline features (vectors, LVQ, fused PQ codes) are cached as well, so that the first hops of
+     * a search, including the scoring of those nodes, need no I/O.
+     */
+    public CachingGraphIndex(OnDiskGraphIndex graph, int cacheDistance, boolean cacheInlineFeatures)
+    {
+        this(graph, GraphCache.loadPacked(graph, cacheDistance, cacheInlineFeatures));
+    }
+
+    /**
+     * Cache up to `budgetBytes` of neighbor lists with an {@link AdaptiveGraphCache}, starting from the
+     * hot nodes saved at `hotNodesPath` by {@link #saveHotNodes(Path)} if that file exists, can be read, and
+     * was recorded for a graph of the same size, or else from the nodes nearest the entry node.
+     */
+    public CachingGraphIndex(OnDiskGraphIndex graph, long budgetBytes, Path hotNodesPath)
+    {
+        this(graph, new AdaptiveGraphCache(graph, budgetBytes, loadHotNodes(graph, hotNodesPath)));
+    }
+
+    private static HotNodes loadHotNodes(OnDiskGraphIndex graph, Path path) {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try {
+            var hotNodes = HotNodes.load(path);
+            // a stale file from before the index was rewritten is no better than a guess
+            return hotNodes.graphSize() == graph.size() ? hotNodes : null;
+        } catch (IOException | IllegalArgumentException e) {
+            // nor is a truncated or corrupt one, which should not keep the index from opening
+            LOG.log(Level.WARNING, "Ignoring unreadable hot node set " + path, e);
+            return null;
+        }
+    }
+
+    /**
+     * Serve neighbor lists from `cache` when it has them.  The cache must have been created for `graph`;
+     * see {@link AdaptiveGraphCache} for one that follows the query distribution.
+     */
+    public CachingGraphIndex(OnDiskGraphIndex graph, GraphCache cache)
     {
         this.graph = graph;
-        this.cache_ = GraphCache.load(graph, cacheDistance);
+        this.cache_ = cache;
+    }
+
+    /**
+     * Save the currently cached nodes and their access counts to `path`, to restore with
+     * {@link #CachingGraphIndex(OnDiskGraphIndex, long, Path)}.  Requires an AdaptiveGraphCache,
+     * since other caches do not track which nodes are hot.
+     */
+    public void saveHotNodes(Path path) throws IOException {
+        if (!(cache_ instanceof AdaptiveGraphCache)) {
+            throw new IllegalStateException("Only an AdaptiveGraphCache records hot nodes, not " + cache_.getClass().getSimpleName());
+        }
+        ((AdaptiveGraphCache) cache_).hotNodes().save(path);
     }
 
     @Override
@@ -56,7 +117,7 @@ public class CachingGraphIndex implements GraphIndex, Accountable
 
     @Override
     public ScoringView getView() {
-        return new View(cache_, graph.getView());
+        return new View(cache_, graph.getView(cache_));
     }
 
     @Override
@@ -81,6 +142,7 @@ public class CachingGraphIndex implements GraphIndex, Accountable
 
     public static class View implements ScoringView {
         private final GraphCache cache;
+        private final NodesIterator.RangeNodesIterator cachedNeighbors = new NodesIterator.RangeNodesIterator();
         protected final OnDiskGraphIndex.View view;
 
         public View(GraphCache cache, OnDiskGraphIndex.View view) {
@@ -90,13 +152,17 @@ public class CachingGraphIndex implements GraphIndex, Accountable
 
         @Override
         public NodesIterator getNeighborsIterator(int ordinal) {
-            var node = cache.getNode(ordinal);
-            if (node != null) {
-                return new NodesIterator.ArrayNodesIterator(node.neighbors, node.neighbors.length);
+            if (cache.getNeighbors(ordinal, cachedNeighbors)) {
+                return cachedNeighbors;
             }
             return view.getNeighborsIterator(ordinal);
         }
 
+        @Override
+        public void prefetchNeighbors(int[] nodes, int count) {
+            view.prefetchNeighbors(nodes, count);
+        }
+
         @Override
         public int size() {
             return view.size();
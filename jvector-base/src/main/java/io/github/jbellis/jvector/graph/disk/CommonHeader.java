@@ -20,6 +20,7 @@ import io.github.jbellis.jvector.disk.RandomAccessReader;
 
 import java.io.DataOutput;
 import java.io.IOException;
+import java.util.EnumSet;
 
 /**
  * Base header for OnDiskGraphIndex functionality.
@@ -30,13 +31,30 @@ class CommonHeader {
     public final int dimension;
     public final int entryNode;
     public final int maxDegree;
+    // block geometry, added in version 2; see NodeLayout
+    public final int blockSize;
+    public final int nodesPerBlock;
+    // added in version 3
+    public final AdjacencyEncoding adjacencyEncoding;
+    // added in version 4: features stored in their own region instead of in the node records
+    public final EnumSet<FeatureId> separatedFeatures;
 
     CommonHeader(int version, int size, int dimension, int entryNode, int maxDegree) {
+        this(version, size, dimension, entryNode, maxDegree, 0, 1, AdjacencyEncoding.PADDED, EnumSet.noneOf(FeatureId.class));
+    }
+
+    CommonHeader(int version, int size, int dimension, int entryNode, int maxDegree,
+                 int blockSize, int nodesPerBlock, AdjacencyEncoding adjacencyEncoding, EnumSet<FeatureId> separatedFeatures)
+    {
         this.version = version;
         this.size = size;
         this.dimension = dimension;
         this.entryNode = entryNode;
         this.maxDegree = maxDegree;
+        this.blockSize = blockSize;
+        this.nodesPerBlock = nodesPerBlock;
+        this.adjacencyEncoding = adjacencyEncoding;
+        this.separatedFeatures = separatedFeatures;
     }
 
     void write(DataOutput out) throws IOException {
@@ -45,6 +63,16 @@ class CommonHeader {
         out.writeInt(dimension);
         out.writeInt(entryNode);
         out.writeInt(maxDegree);
+        if (version >= 2) {
+            out.writeInt(blockSize);
+            out.writeInt(nodesPerBlock);
+        }
+        if (version >= 3) {
+            out.writeInt(adjacencyEncoding.ordinal());
+        }
+        if (version >= 4) {
+            out.writeInt(FeatureId.serialize(separatedFeatures));
+        }
     }
 
     static CommonHeader load(RandomAccessReader reader) throws IOException {
@@ -53,11 +81,39 @@ class CommonHeader {
         int dimension = reader.readInt();
         int entryNode = reader.readInt();
         int maxDegree = reader.readInt();
+        int blockSize = 0;
+        int nodesPerBlock = 1;
+        if (version >= 2) {
+            blockSize = reader.readInt();
+            nodesPerBlock = reader.readInt();
+        }
+        var adjacencyEncoding = AdjacencyEncoding.PADDED;
+        if (version >= 3) {
+            int encoding = reader.readInt();
+            if (encoding < 0 || encoding >= AdjacencyEncoding.values().length) {
+                throw new IllegalArgumentException(String.format("Unknown adjacency encoding %d in graph version %d", encoding, version));
+            }
+            adjacencyEncoding = AdjacencyEncoding.values()[encoding];
+        }
+        var separatedFeatures = EnumSet.noneOf(FeatureId.class);
+        if (version >= 4) {
+            separatedFeatures = FeatureId.deserialize(reader.readInt());
+        }
 
-        return new CommonHeader(version, size, dimension, entryNode, maxDegree);
+        return new CommonHeader(version, size, dimension, entryNode, maxDegree, blockSize, nodesPerBlock, adjacencyEncoding, separatedFeatures);
     }
 
-    static int size() {
-        return 5 * Integer.BYTES;
+    static int size(int version) {
+        int fields = 5;
+        if (version >= 2) {
+            fields += 2;
+        }
+        if (version >= 3) {
+            fields += 1;
+        }
+        if (version >= 4) {
+            fields += 1;
+        }
+        return fields * Integer.BYTES;
     }
 }
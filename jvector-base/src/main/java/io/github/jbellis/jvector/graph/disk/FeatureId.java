@@ -32,7 +32,9 @@ import java.util.function.BiFunction;
 public enum FeatureId {
     INLINE_VECTORS(InlineVectors::load),
     FUSED_ADC(FusedADC::load),
-    LVQ(io.github.jbellis.jvector.graph.disk.LVQ::load);
+    LVQ(io.github.jbellis.jvector.graph.disk.LVQ::load),
+    HALF_PRECISION_VECTORS(HalfPrecisionVectors::load),
+    SQ8(io.github.jbellis.jvector.graph.disk.SQ8::load);
 
     public static final Set<FeatureId> ALL = Collections.unmodifiableSet(EnumSet.allOf(FeatureId.class));
 
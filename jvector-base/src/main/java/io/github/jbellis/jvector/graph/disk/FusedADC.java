@@ -40,12 +40,14 @@ public class FusedADC implements Feature {
     private final ProductQuantization pq;
     private final int maxDegree;
     private final ThreadLocal<VectorFloat<?>> reusableResults;
-    private ByteSequence<?> compressedNeighbors = null;
+    // per thread, so that records can be encoded concurrently
+    private final ThreadLocal<ByteSequence<?>> reusableNeighbors;
 
     public FusedADC(int maxDegree, ProductQuantization pq) {
         this.maxDegree = maxDegree;
         this.pq = pq;
         this.reusableResults = ThreadLocal.withInitial(() -> OnDiskGraphIndex.vectorTypeSupport.createFloatVector(maxDegree));
+        this.reusableNeighbors = ThreadLocal.withInitial(() -> vectorTypeSupport.createByteSequence(pq.compressedVectorSize() * maxDegree));
     }
 
     @Override
@@ -85,9 +87,7 @@ public class FusedADC implements Feature {
     // generate the fused set based on the neighbors of the node, not just the node itself
     @Override
     public void writeInline(DataOutput out, Feature.State state_) throws IOException {
-        if (compressedNeighbors == null) {
-            compressedNeighbors = vectorTypeSupport.createByteSequence(pq.compressedVectorSize() * maxDegree);
-        }
+        var compressedNeighbors = reusableNeighbors.get();
         var state = (FusedADC.State) state_;
         var pqv = state.pqVectors;
 
@@ -130,8 +130,7 @@ public class FusedADC implements Feature {
         public ByteSequence<?> getPackedNeighbors(int node) {
             var reader = view.inlineReaderForNode(node, FeatureId.FUSED_ADC);
             try {
-                OnDiskGraphIndex.vectorTypeSupport.readByteSequence(reader, neighbors);
-                return neighbors;
+                return OnDiskGraphIndex.vectorTypeSupport.sliceByteSequence(reader, neighbors);
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
@@ -16,9 +16,19 @@
 
 package io.github.jbellis.jvector.graph.disk;
 
+import io.github.jbellis.jvector.disk.RandomAccessReader;
+import io.github.jbellis.jvector.graph.NodesIterator;
 import io.github.jbellis.jvector.util.Accountable;
+import io.github.jbellis.jvector.util.ArrayUtil;
 import io.github.jbellis.jvector.util.RamUsageEstimator;
 import org.agrona.collections.Int2ObjectHashMap;
+import org.agrona.collections.IntArrayQueue;
+import org.agrona.collections.IntHashSet;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 public abstract class GraphCache implements Accountable
 {
@@ -37,6 +47,35 @@ public abstract class GraphCache implements Accountable
     /** return the cached node if present, or null if not */
     public abstract CachedNode getNode(int ordinal);
 
+    /**
+     * Point `iterator` at the cached neighbors of `ordinal`, without allocating.
+     * @return false if the node is not cached, in which case the iterator is unchanged
+     */
+    public boolean getNeighbors(int ordinal, NodesIterator.RangeNodesIterator iterator) {
+        var node = getNode(ordinal);
+        if (node == null) {
+            return false;
+        }
+        iterator.reset(node.neighbors, 0, node.neighbors.length);
+        return true;
+    }
+
+    /**
+     * Point `reader` at the cached inline feature block of `ordinal`, without allocating.  The reader's
+     * positions are relative to the start of the block, so a feature at inline offset k is read after seek(k).
+     * @return false if the node's inline features are not cached, in which case the reader is unchanged
+     */
+    public boolean getInlineBlock(int ordinal, InlineBlockReader reader) {
+        return false;
+    }
+
+    /**
+     * @return true if this cache holds the inline feature blocks of (some of) its nodes
+     */
+    public boolean cachesInlineFeatures() {
+        return false;
+    }
+
     public static GraphCache load(OnDiskGraphIndex graph, int distance)
     {
         if (distance < 0)
@@ -44,6 +83,29 @@ public abstract class GraphCache implements Accountable
         return new HMGraphCache(graph, distance);
     }
 
+    /**
+     * Cache the nodes within `distance` hops of the entry node, like {@link #load}, but with all of the
+     * neighbor lists packed into a single array behind an open-addressing index.  This uses a fraction
+     * of the memory of the map-based cache and lookups do not chase pointers; use
+     * {@link #getNeighbors} to read it, since getNode has to copy the neighbors out.
+     */
+    public static GraphCache loadPacked(OnDiskGraphIndex graph, int distance)
+    {
+        return loadPacked(graph, distance, false);
+    }
+
+    /**
+     * As {@link #loadPacked(OnDiskGraphIndex, int)}, but if `cacheInlineFeatures` is true, also cache the inline
+     * feature block (vectors, LVQ, fused PQ codes) of each cached node, so that views created with
+     * {@link CachingGraphIndex} can score the cached nodes without I/O.
+     */
+    public static GraphCache loadPacked(OnDiskGraphIndex graph, int distance, boolean cacheInlineFeatures)
+    {
+        if (distance < 0)
+            return new EmptyGraphCache();
+        return new PackedGraphCache(graph, distance, cacheInlineFeatures);
+    }
+
     public abstract long ramBytesUsed();
 
     private static final class EmptyGraphCache extends GraphCache
@@ -112,4 +174,243 @@ public abstract class GraphCache implements Accountable
             return ramBytesUsed;
         }
     }
+
+    /**
+     * Neighbor lists stored back to back in one array, as [count][neighbors...], and located through
+     * a linear-probing table from ordinal to the start of its list.  The table interleaves
+     * [ordinal][offset] pairs so that a probe touches a single cache line.  If inline features are
+     * cached, each entry is [ordinal][offset][block] instead, where the node's inline block is at
+     * block * inlineBlockSize in `inline`.  Immutable once constructed.
+     */
+    private static final class PackedGraphCache extends GraphCache
+    {
+        private static final int EMPTY = -1;
+
+        private final int[] index;
+        private final int stride;
+        private final int[] adjacency;
+        // null if inline features are not cached
+        private final byte[] inline;
+        private final int inlineBlockSize;
+        private final int mask;
+
+        public PackedGraphCache(OnDiskGraphIndex graph, int distance, boolean cacheInlineFeatures) {
+            // breadth-first, so that we cache exactly the nodes within `distance` hops
+            var ordinals = new IntArrayQueue();
+            var packed = new int[1024];
+            int packedLength = 0;
+            inlineBlockSize = graph.inlineBlockSize;
+            byte[] blocks = cacheInlineFeatures ? new byte[16 * inlineBlockSize] : null;
+            long blocksLength = 0;
+            try (var view = graph.getView()) {
+                var visited = new IntHashSet();
+                var frontier = new IntArrayQueue();
+                frontier.addInt(view.entryNode());
+                visited.add(view.entryNode());
+                for (int level = 0; level <= distance && !frontier.isEmpty(); level++) {
+                    var next = new IntArrayQueue();
+                    while (!frontier.isEmpty()) {
+                        int ordinal = frontier.pollInt();
+                        var it = view.getNeighborsIterator(ordinal);
+                        packed = ArrayUtil.grow(packed, packedLength + 1 + it.size());
+                        ordinals.addInt(ordinal);
+                        ordinals.addInt(packedLength);
+                        packed[packedLength++] = it.size();
+                        if (blocks != null) {
+                            if (blocksLength + inlineBlockSize > ArrayUtil.MAX_ARRAY_LENGTH) {
+                                throw new IllegalArgumentException(String.format("Inline features of the nodes within %d hops do not fit in a single cache (more than %d bytes)",
+                                                                                 distance, ArrayUtil.MAX_ARRAY_LENGTH));
+                            }
+                            blocks = ArrayUtil.grow(blocks, (int) blocksLength + inlineBlockSize);
+                            view.readInlineBlock(ordinal, blocks, (int) blocksLength);
+                            blocksLength += inlineBlockSize;
+                        }
+                        while (it.hasNext()) {
+                            int neighbor = it.nextInt();
+                            packed[packedLength++] = neighbor;
+                            if (visited.add(neighbor)) {
+                                next.addInt(neighbor);
+                            }
+                        }
+                    }
+                    frontier = next;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            adjacency = Arrays.copyOf(packed, packedLength);
+            inline = blocks == null ? null : Arrays.copyOf(blocks, (int) blocksLength);
+
+            // keep the table at most half full so that probe sequences stay short
+            int count = ordinals.size() / 2;
+            int capacity = Integer.highestOneBit(Math.max(2, 2 * count) - 1) << 1;
+            stride = inline == null ? 2 : 3;
+            index = new int[stride * capacity];
+            mask = capacity - 1;
+            Arrays.fill(index, EMPTY);
+            for (int block = 0; !ordinals.isEmpty(); block++) {
+                int ordinal = ordinals.pollInt();
+                int slot = slot(ordinal);
+                while (index[stride * slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                index[stride * slot] = ordinal;
+                index[stride * slot + 1] = ordinals.pollInt();
+                if (inline != null) {
+                    index[stride * slot + 2] = block;
+                }
+            }
+        }
+
+        private int slot(int ordinal) {
+            int h = ordinal * 0x9E3779B9;
+            return (h ^ (h >>> 16)) & mask;
+        }
+
+        /** @return the position of ordinal's entry in index, or -1 if it is not cached */
+        private int find(int ordinal) {
+            int slot = slot(ordinal);
+            while (true) {
+                int key = index[stride * slot];
+                if (key == ordinal) {
+                    return stride * slot;
+                }
+                if (key == EMPTY) {
+                    return -1;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        @Override
+        public CachedNode getNode(int ordinal) {
+            int entry = find(ordinal);
+            if (entry < 0) {
+                return null;
+            }
+            int offset = index[entry + 1];
+            return new CachedNode(Arrays.copyOfRange(adjacency, offset + 1, offset + 1 + adjacency[offset]));
+        }
+
+        @Override
+        public boolean getNeighbors(int ordinal, NodesIterator.RangeNodesIterator iterator) {
+            int entry = find(ordinal);
+            if (entry < 0) {
+                return false;
+            }
+            int offset = index[entry + 1];
+            iterator.reset(adjacency, offset + 1, offset + 1 + adjacency[offset]);
+            return true;
+        }
+
+        @Override
+        public boolean getInlineBlock(int ordinal, InlineBlockReader reader) {
+            if (inline == null) {
+                return false;
+            }
+            int entry = find(ordinal);
+            if (entry < 0) {
+                return false;
+            }
+            reader.reset(inline, index[entry + 2] * inlineBlockSize);
+            return true;
+        }
+
+        @Override
+        public boolean cachesInlineFeatures() {
+            return inline != null;
+        }
+
+        @Override
+        public long ramBytesUsed()
+        {
+            return 2L * RamUsageEstimator.NUM_BYTES_ARRAY_HEADER
+                    + ((long) index.length + adjacency.length) * Integer.BYTES
+                    + (inline == null ? 0 : RamUsageEstimator.NUM_BYTES_ARRAY_HEADER + inline.length);
+        }
+    }
+
+    /**
+     * Reads a cached inline feature block, in the same (big-endian) format as on disk, so that
+     * Features can parse it exactly as they would a record.  Meant to be reused across lookups.
+     */
+    public static final class InlineBlockReader implements RandomAccessReader {
+        private byte[] array;
+        private ByteBuffer buffer;
+        private int base;
+
+        void reset(byte[] array, int base) {
+            if (array != this.array) {
+                this.array = array;
+                this.buffer = ByteBuffer.wrap(array);
+            }
+            this.base = base;
+            buffer.position(base);
+        }
+
+        @Override
+        public void seek(long offset) {
+            buffer.position(base + Math.toIntExact(offset));
+        }
+
+        @Override
+        public long getPosition() {
+            return buffer.position() - base;
+        }
+
+        @Override
+        public int readInt() {
+            return buffer.getInt();
+        }
+
+        @Override
+        public float readFloat() {
+            return buffer.getFloat();
+        }
+
+        @Override
+        public void readFully(byte[] bytes) {
+            buffer.get(bytes);
+        }
+
+        @Override
+        public void readFully(ByteBuffer dest) {
+            int remaining = dest.remaining();
+            if (dest.hasArray()) {
+                buffer.get(dest.array(), dest.arrayOffset() + dest.position(), remaining);
+                dest.position(dest.position() + remaining);
+            } else {
+                var slice = buffer.slice();
+                slice.limit(remaining);
+                dest.put(slice);
+                buffer.position(buffer.position() + remaining);
+            }
+        }
+
+        @Override
+        public void readFully(long[] vector) {
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] = buffer.getLong();
+            }
+        }
+
+        @Override
+        public void read(int[] ints, int offset, int count) {
+            for (int i = 0; i < count; i++) {
+                ints[offset + i] = buffer.getInt();
+            }
+        }
+
+        @Override
+        public void read(float[] floats, int offset, int count) {
+            for (int i = 0; i < count; i++) {
+                floats[offset + i] = buffer.getFloat();
+            }
+        }
+
+        @Override
+        public void close() {
+            // the cache owns the array
+        }
+    }
 }
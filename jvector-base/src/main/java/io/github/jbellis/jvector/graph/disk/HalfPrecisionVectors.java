@@ -0,0 +1,152 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.jbellis.jvector.graph.disk;
+
+import io.github.jbellis.jvector.disk.RandomAccessReader;
+import io.github.jbellis.jvector.graph.similarity.ScoreFunction;
+import io.github.jbellis.jvector.vector.HalfFloatFormat;
+import io.github.jbellis.jvector.vector.VectorSimilarityFunction;
+import io.github.jbellis.jvector.vector.VectorUtil;
+import io.github.jbellis.jvector.vector.types.ByteSequence;
+import io.github.jbellis.jvector.vector.types.VectorFloat;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Implements the storage of half-precision (fp16 or bf16) vectors inline into an OnDiskGraphIndex, at half the
+ * size of InlineVectors.  These can be used for reranking, and stand in for full-resolution vectors when
+ * the index has no InlineVectors.
+ */
+public class HalfPrecisionVectors implements Feature {
+    private final int dimension;
+    private final HalfFloatFormat format;
+
+    public HalfPrecisionVectors(int dimension, HalfFloatFormat format) {
+        this.dimension = dimension;
+        this.format = format;
+    }
+
+    @Override
+    public FeatureId id() {
+        return FeatureId.HALF_PRECISION_VECTORS;
+    }
+
+    @Override
+    public int headerSize() {
+        return Integer.BYTES;
+    }
+
+    @Override
+    public int inlineSize() {
+        return dimension * Short.BYTES;
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    public HalfFloatFormat format() {
+        return format;
+    }
+
+    static HalfPrecisionVectors load(CommonHeader header, RandomAccessReader reader) {
+        try {
+            int ordinal = reader.readInt();
+            if (ordinal < 0 || ordinal >= HalfFloatFormat.values().length) {
+                throw new IllegalArgumentException("Unknown half-precision format " + ordinal);
+            }
+            return new HalfPrecisionVectors(header.dimension, HalfFloatFormat.values()[ordinal]);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void writeHeader(DataOutput out) throws IOException {
+        // common header contains dimension, we only need the format
+        out.writeInt(format.ordinal());
+    }
+
+    @Override
+    public void writeInline(DataOutput out, Feature.State state) throws IOException {
+        var vector = ((HalfPrecisionVectors.State) state).vector;
+        for (int i = 0; i < dimension; i++) {
+            out.writeShort(format.encode(vector.get(i)));
+        }
+    }
+
+    /**
+     * Reads the half-precision vector for `node` and decodes it into `vector` starting at `offset`.
+     */
+    void readInto(OnDiskGraphIndex.View view, int node, ByteSequence<?> scratch, VectorFloat<?> vector, int offset) {
+        var encoded = read(view, node, scratch);
+        for (int i = 0; i < dimension; i++) {
+            vector.set(offset + i, format.decode(encoded, i));
+        }
+    }
+
+    private ByteSequence<?> read(OnDiskGraphIndex.View view, int node, ByteSequence<?> scratch) {
+        try {
+            return OnDiskGraphIndex.vectorTypeSupport.sliceByteSequence(view.inlineReaderForNode(node, FeatureId.HALF_PRECISION_VECTORS), scratch);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static class State implements Feature.State {
+        public final VectorFloat<?> vector;
+
+        public State(VectorFloat<?> vector) {
+            this.vector = vector;
+        }
+    }
+
+    ScoreFunction.ExactScoreFunction rerankerFor(VectorFloat<?> queryVector,
+                                                 VectorSimilarityFunction vsf,
+                                                 OnDiskGraphIndex.View view)
+    {
+        // each vector is scored before the next one is read, so they can share the scratch sequence
+        var scratch = OnDiskGraphIndex.vectorTypeSupport.createByteSequence(inlineSize());
+        return new ScoreFunction.ExactScoreFunction() {
+            @Override
+            public VectorFloat<?> similarityTo(int[] nodes) {
+                var results = vts.createFloatVector(nodes.length);
+                for (int i = 0; i < nodes.length; i++) {
+                    results.set(i, similarityTo(nodes[i]));
+                }
+                return results;
+            }
+
+            @Override
+            public float similarityTo(int node2) {
+                var encoded = read(view, node2, scratch);
+                switch (vsf) {
+                    case EUCLIDEAN:
+                        return 1 / (1 + VectorUtil.halfSquareDistance(queryVector, encoded, format));
+                    case DOT_PRODUCT:
+                        return (1 + VectorUtil.halfDotProduct(queryVector, encoded, format)) / 2;
+                    case COSINE:
+                        return (1 + VectorUtil.halfCosine(queryVector, encoded, format)) / 2;
+                    default:
+                        throw new IllegalArgumentException("Unsupported similarity function: " + vsf);
+                }
+            }
+        };
+    }
+}
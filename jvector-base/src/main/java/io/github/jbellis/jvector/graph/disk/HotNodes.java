@@ -0,0 +1,164 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.jbellis.jvector.graph.disk;
+
+import io.github.jbellis.jvector.disk.SimpleReader;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * The nodes of an OnDiskGraphIndex that were hot under real traffic, with their access counts,
+ * hottest first.  Recorded by {@link AdaptiveGraphCache#hotNodes()} and saved to a small sidecar file,
+ * so that a restarted process can cache (see {@link CachingGraphIndex#CachingGraphIndex(OnDiskGraphIndex, long, Path)})
+ * and prefault (see {@link OnDiskGraphIndexWarmer.Builder#withNodes(int[])}) the working set it had
+ * instead of the nodes nearest the entry node.
+ * <p>
+ * Layout:
+ * <pre>
+ * [int MAGIC][int version][int graphSize][int count]
+ * [int ordinal][int accessCount] * count
+ * </pre>
+ * The graph size is recorded so that a hot set is not mistaken for that of a different graph.
+ */
+public final class HotNodes {
+    static final int MAGIC = 0x407A0DE5;
+    static final int CURRENT_VERSION = 1;
+
+    private final int graphSize;
+    private final int[] ordinals;
+    private final int[] counts;
+
+    /**
+     * @param graphSize the size of the graph that the nodes belong to
+     * @param ordinals the hot nodes, hottest first
+     * @param counts the access count of each node, in the same order
+     */
+    public HotNodes(int graphSize, int[] ordinals, int[] counts) {
+        if (ordinals.length != counts.length) {
+            throw new IllegalArgumentException(String.format("%d ordinals but %d counts", ordinals.length, counts.length));
+        }
+        this.graphSize = graphSize;
+        this.ordinals = ordinals;
+        this.counts = counts;
+    }
+
+    public int graphSize() {
+        return graphSize;
+    }
+
+    public int size() {
+        return ordinals.length;
+    }
+
+    public int ordinal(int i) {
+        return ordinals[i];
+    }
+
+    public int count(int i) {
+        return counts[i];
+    }
+
+    /** @return a copy of the ordinals, hottest first */
+    public int[] ordinals() {
+        return ordinals.clone();
+    }
+
+    /**
+     * Write the hot set to `path`, replacing it atomically, so that a crash while saving leaves
+     * the previous hot set intact.
+     */
+    public void save(Path path) throws IOException {
+        var temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.deleteIfExists(temp);
+        var buffer = ByteBuffer.allocate(4 * Integer.BYTES + 2 * Integer.BYTES * ordinals.length);
+        buffer.putInt(MAGIC).putInt(CURRENT_VERSION).putInt(graphSize).putInt(ordinals.length);
+        for (int i = 0; i < ordinals.length; i++) {
+            buffer.putInt(ordinals[i]).putInt(counts[i]);
+        }
+        try (var raf = new RandomAccessFile(temp.toFile(), "rw")) {
+            raf.write(buffer.array());
+            // the rename must not reach the disk before the contents do
+            raf.getFD().sync();
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static HotNodes load(Path path) throws IOException {
+        try (var in = new SimpleReader(path)) {
+            int magic = in.readInt();
+            if (magic != MAGIC) {
+                throw new IllegalArgumentException(String.format("Not a hot node set (magic was %08x)", magic));
+            }
+            int version = in.readInt();
+            if (version > CURRENT_VERSION) {
+                throw new IllegalArgumentException(String.format("Unsupported hot node set version %d (maximum is %d)", version, CURRENT_VERSION));
+            }
+            int graphSize = in.readInt();
+            int count = in.readInt();
+            if (graphSize < 0 || count < 0 || count > graphSize) {
+                throw new IllegalArgumentException(String.format("Corrupt hot node set: %d nodes of a graph of size %d", count, graphSize));
+            }
+            long expectedSize = 4L * Integer.BYTES + 2L * Integer.BYTES * count;
+            long fileSize = Files.size(path);
+            if (fileSize < expectedSize) {
+                throw new IllegalArgumentException(String.format("Corrupt hot node set: %d nodes need %d bytes, but the file has %d", count, expectedSize, fileSize));
+            }
+            // one bulk read, since SimpleReader reads ints one at a time
+            var bytes = new byte[2 * Integer.BYTES * count];
+            in.readFully(bytes);
+            var buffer = ByteBuffer.wrap(bytes);
+            var ordinals = new int[count];
+            var counts = new int[count];
+            for (int i = 0; i < count; i++) {
+                ordinals[i] = buffer.getInt();
+                counts[i] = buffer.getInt();
+                if (ordinals[i] < 0 || ordinals[i] >= graphSize) {
+                    throw new IllegalArgumentException(String.format("Corrupt hot node set: ordinal %d is outside a graph of size %d", ordinals[i], graphSize));
+                }
+            }
+            return new HotNodes(graphSize, ordinals, counts);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof HotNodes)) {
+            return false;
+        }
+        var that = (HotNodes) o;
+        return graphSize == that.graphSize && Arrays.equals(ordinals, that.ordinals) && Arrays.equals(counts, that.counts);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * graphSize + Arrays.hashCode(ordinals)) + Arrays.hashCode(counts);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("HotNodes(graphSize=%d, nodes=%d)", graphSize, ordinals.length);
+    }
+}
@@ -20,6 +20,7 @@ import io.github.jbellis.jvector.disk.RandomAccessReader;
 import io.github.jbellis.jvector.graph.similarity.ScoreFunction;
 import io.github.jbellis.jvector.pq.LocallyAdaptiveVectorQuantization;
 import io.github.jbellis.jvector.vector.VectorSimilarityFunction;
+import io.github.jbellis.jvector.vector.types.ByteSequence;
 import io.github.jbellis.jvector.vector.types.VectorFloat;
 
 import java.io.DataOutput;
@@ -91,6 +92,8 @@ public class LVQ implements Feature {
 
     private class PackedVectors implements LVQPackedVectors {
         private final OnDiskGraphIndex.View view;
+        // reduce the size by 2 floats read as bias/scale
+        private final ByteSequence<?> packed = OnDiskGraphIndex.vectorTypeSupport.createByteSequence(lvq.compressedVectorSize() - 2 * Float.BYTES);
 
         public PackedVectors(OnDiskGraphIndex.View view) {
             this.view = view;
@@ -102,9 +105,9 @@ public class LVQ implements Feature {
             try {
                 var bias = reader.readFloat();
                 var scale = reader.readFloat();
-                // reduce the size by 2 floats read as bias/scale
-                var packed = OnDiskGraphIndex.vectorTypeSupport.readByteSequence(reader, lvq.compressedVectorSize() - 2 * Float.BYTES);
-                return new LocallyAdaptiveVectorQuantization.PackedVector(packed, bias, scale);
+                // each PackedVector is scored before the next one is read, so they can share the scratch sequence
+                var bytes = OnDiskGraphIndex.vectorTypeSupport.sliceByteSequence(reader, packed);
+                return new LocallyAdaptiveVectorQuantization.PackedVector(bytes, bias, scale);
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
@@ -22,7 +22,7 @@ public interface LVQPackedVectors {
     /**
      * Get the Turbo LVQ 64-byte packed vector for the given ordinal.
      * @param ordinal the ordinal of the vector to get
-     * @return the Turbo LVQ 64-byte packed vector
+     * @return the Turbo LVQ 64-byte packed vector, which is only valid until the next call
      */
     LocallyAdaptiveVectorQuantization.PackedVector getPackedVector(int ordinal);
 }
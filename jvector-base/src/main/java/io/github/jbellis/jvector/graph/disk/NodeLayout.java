@@ -0,0 +1,117 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.jbellis.jvector.graph.disk;
+
+/**
+ * Computes where each node's record ([int id][inline features][neighbors]) lives in an OnDiskGraphIndex.
+ * The same rules place the fixed-size slots of the separated feature region; see {@link #forSlots}.
+ * With {@link AdjacencyEncoding#PADDED} neighbors, records are fixed-size and located by ordinal;
+ * otherwise they are located through an offset index and this only decides where the writer places them.
+ * <p>
+ * With a block size of zero (the only option before version 2), records are packed back to back
+ * immediately after the header.  Otherwise, the first record starts at the next multiple of the block size,
+ * and as many whole records as fit are packed into each block, with the rest of the block left as padding.
+ * So reading a node never touches more than one block.  A record that is larger than a block
+ * starts on a block boundary and occupies the smallest whole number of blocks.
+ * <p>
+ * Block offsets are absolute positions in the file, so a graph written at a nonzero offset is still aligned.
+ */
+final class NodeLayout {
+    final int recordSize;
+    final int blockSize;
+    final int nodesPerBlock;
+    private final long blockStride;
+
+    NodeLayout(int inlineSize, int maxDegree, int blockSize) {
+        this(recordSize(inlineSize, maxDegree), blockSize);
+    }
+
+    private NodeLayout(int recordSize, int blockSize) {
+        if (blockSize < 0) {
+            throw new IllegalArgumentException("Block size must be non-negative, got " + blockSize);
+        }
+        this.recordSize = recordSize;
+        this.blockSize = blockSize;
+        if (blockSize == 0) {
+            nodesPerBlock = 1;
+            blockStride = recordSize;
+        } else if (recordSize <= blockSize) {
+            nodesPerBlock = blockSize / recordSize;
+            blockStride = blockSize;
+        } else {
+            nodesPerBlock = 1;
+            blockStride = ((long) recordSize + blockSize - 1) / blockSize * blockSize;
+        }
+    }
+
+    /**
+     * @return a layout of fixed-size slots of `slotSize` bytes each, with no id or neighbors
+     */
+    static NodeLayout forSlots(int slotSize, int blockSize) {
+        return new NodeLayout(slotSize, blockSize);
+    }
+
+    static int recordSize(int inlineSize, int maxDegree) {
+        return Integer.BYTES // id
+                + inlineSize // inline elements
+                + Integer.BYTES * (maxDegree + 1); // neighbor count + neighbors
+    }
+
+    boolean isAligned() {
+        return blockSize > 0;
+    }
+
+    /**
+     * @return the position of the first record, given the position of the end of the header
+     */
+    long dataStart(long headerEnd) {
+        if (blockSize == 0) {
+            return headerEnd;
+        }
+        return (headerEnd + blockSize - 1) / blockSize * blockSize;
+    }
+
+    /**
+     * For variable-size records (see {@link AdjacencyEncoding#DELTA_BITPACKED}): the position at which to
+     * write a record of `length` bytes, given that the previous record ended at `position`.  This is
+     * `position` itself unless that would straddle a block boundary, in which case it is the start of the next block.
+     */
+    long placeRecord(long position, int length) {
+        if (blockSize == 0) {
+            return position;
+        }
+        long offsetInBlock = position % blockSize;
+        if (offsetInBlock == 0 || (length <= blockSize && offsetInBlock + length <= blockSize)) {
+            return position;
+        }
+        return position - offsetInBlock + blockSize;
+    }
+
+    /**
+     * For fixed-size records: the position of the record for `node`, relative to dataStart
+     */
+    long recordOffset(int node) {
+        return (node / nodesPerBlock) * blockStride + (long) (node % nodesPerBlock) * recordSize;
+    }
+
+    /**
+     * For fixed-size records: the size of the region holding `count` records, starting from dataStart
+     */
+    long regionSize(int count) {
+        return count == 0 ? 0 : recordOffset(count - 1) + recordSize;
+    }
+}
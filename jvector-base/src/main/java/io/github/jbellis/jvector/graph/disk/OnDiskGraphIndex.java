@@ -16,8 +16,9 @@
 
 package io.github.jbellis.jvector.graph.disk;
 
-import io.github.jbellis.jvector.disk.BufferedRandomAccessWriter;
+import io.github.jbellis.jvector.disk.PrefetchingReader;
 import io.github.jbellis.jvector.disk.RandomAccessReader;
+import io.github.jbellis.jvector.disk.RandomAccessWriter;
 import io.github.jbellis.jvector.disk.ReaderSupplier;
 import io.github.jbellis.jvector.graph.GraphIndex;
 import io.github.jbellis.jvector.graph.NodesIterator;
@@ -28,16 +29,21 @@ import io.github.jbellis.jvector.util.Bits;
 import io.github.jbellis.jvector.util.RamUsageEstimator;
 import io.github.jbellis.jvector.vector.VectorSimilarityFunction;
 import io.github.jbellis.jvector.vector.VectorizationProvider;
+import io.github.jbellis.jvector.vector.types.ByteSequence;
 import io.github.jbellis.jvector.vector.types.VectorFloat;
 import io.github.jbellis.jvector.vector.types.VectorTypeSupport;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.IntFunction;
+import java.util.function.IntToLongFunction;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -50,7 +56,7 @@ import java.util.stream.IntStream;
  */
 public class OnDiskGraphIndex implements GraphIndex, AutoCloseable, Accountable
 {
-    public static final int CURRENT_VERSION = 1;
+    public static final int CURRENT_VERSION = 4;
     static final int MAGIC = 0xFFFF0D61; // FFFF to distinguish from old graphs, which should never start with a negative size "ODGI"
     static final VectorTypeSupport vectorTypeSupport = VectorizationProvider.getInstance().getVectorTypeSupport();
     final ReaderSupplier readerSupplier;
@@ -61,37 +67,114 @@ public class OnDiskGraphIndex implements GraphIndex, AutoCloseable, Accountable
     final int entryNode;
     final int inlineBlockSize; // total size of all inline elements contributed by features
     final EnumMap<FeatureId, ? extends Feature> features;
+    // offsets of each feature within the logical inline block, which is the concatenation of all features
+    // in FeatureId order, whether or not they are stored in the node records
     final EnumMap<FeatureId, Integer> inlineOffsets;
+    // features stored in the separated region instead of in the node records
+    final EnumSet<FeatureId> separatedFeatures;
+    // offsets of each feature within its record's inline elements, or within its separated slot
+    private final EnumMap<FeatureId, Integer> storedOffsets;
+    // total size of the inline elements stored in each node record
+    private final int recordInlineSize;
+    final NodeLayout layout;
+    // null if no features are separated
+    private final NodeLayout separatedLayout;
+    private final long separatedOffset;
+    final AdjacencyEncoding adjacencyEncoding;
+    // the header, including the feature headers, is [headerOffset, headerEnd)
+    final long headerOffset;
+    final long headerEnd;
+    // start of the fixed-size records, if PADDED
     private final long neighborsOffset;
+    // start of the per-node record offsets, if not PADDED
+    private final long recordOffsetsOffset;
+    // null if no nodes can be deleted
+    private final Tombstones tombstones;
 
-    OnDiskGraphIndex(ReaderSupplier readerSupplier, Header header, long neighborsOffset)
+    OnDiskGraphIndex(ReaderSupplier readerSupplier, Header header, long headerOffset, long headerEnd, Tombstones tombstones)
     {
+        if (tombstones != null && tombstones.graphSize() != header.common.size) {
+            throw new IllegalArgumentException(String.format("Tombstones are for a graph of %d nodes, not %d",
+                                                             tombstones.graphSize(), header.common.size));
+        }
         this.readerSupplier = readerSupplier;
+        this.tombstones = tombstones;
+        this.headerOffset = headerOffset;
+        this.headerEnd = headerEnd;
         this.version = header.common.version;
         this.size = header.common.size;
         this.dimension = header.common.dimension;
         this.entryNode = header.common.entryNode;
         this.maxDegree = header.common.maxDegree;
         this.features = header.features;
-        this.neighborsOffset = neighborsOffset;
+        this.separatedFeatures = header.common.separatedFeatures;
         var inlineBlockSize = 0;
+        var recordInlineSize = 0;
+        var separatedSize = 0;
         inlineOffsets = new EnumMap<>(FeatureId.class);
+        storedOffsets = new EnumMap<>(FeatureId.class);
         for (var entry : features.entrySet()) {
+            int inlineSize = entry.getValue().inlineSize();
             inlineOffsets.put(entry.getKey(), inlineBlockSize);
-            inlineBlockSize += entry.getValue().inlineSize();
+            inlineBlockSize += inlineSize;
+            if (separatedFeatures.contains(entry.getKey())) {
+                storedOffsets.put(entry.getKey(), separatedSize);
+                separatedSize += inlineSize;
+            } else {
+                storedOffsets.put(entry.getKey(), recordInlineSize);
+                recordInlineSize += inlineSize;
+            }
         }
         this.inlineBlockSize = inlineBlockSize;
+        this.recordInlineSize = recordInlineSize;
+        this.layout = new NodeLayout(recordInlineSize, maxDegree, header.common.blockSize);
+        this.adjacencyEncoding = header.common.adjacencyEncoding;
+
+        // the separated region, if any, comes between the header and the node records
+        if (separatedFeatures.isEmpty()) {
+            this.separatedLayout = null;
+            this.separatedOffset = -1;
+        } else {
+            this.separatedLayout = NodeLayout.forSlots(separatedSize, header.common.blockSize);
+            this.separatedOffset = separatedLayout.dataStart(headerEnd);
+            headerEnd = separatedOffset + separatedLayout.regionSize(size);
+        }
+        if (adjacencyEncoding == AdjacencyEncoding.PADDED) {
+            if (layout.nodesPerBlock != header.common.nodesPerBlock) {
+                throw new IllegalStateException(String.format("Header declares %d nodes per %d-byte block, but the node records fit %d",
+                                                              header.common.nodesPerBlock, layout.blockSize, layout.nodesPerBlock));
+            }
+            this.neighborsOffset = layout.dataStart(headerEnd);
+            this.recordOffsetsOffset = -1;
+        } else {
+            this.neighborsOffset = -1;
+            this.recordOffsetsOffset = headerEnd;
+        }
     }
 
     public static OnDiskGraphIndex load(ReaderSupplier readerSupplier, long offset) {
+        return load(readerSupplier, offset, null);
+    }
+
+    /**
+     * Load a graph whose deleted nodes are recorded in `tombstones`.  Its views exclude them from
+     * {@link View#liveNodes()}, including nodes deleted after loading.  The graph takes ownership of
+     * the tombstones and closes them when it is closed.
+     */
+    public static OnDiskGraphIndex load(ReaderSupplier readerSupplier, long offset, Tombstones tombstones) {
         try (var reader = readerSupplier.get()) {
             var info = Header.load(reader, offset);
-            return new OnDiskGraphIndex(readerSupplier, info, reader.getPosition());
+            return new OnDiskGraphIndex(readerSupplier, info, offset, reader.getPosition(), tombstones);
         } catch (Exception e) {
             throw new RuntimeException("Error initializing OnDiskGraph at offset " + offset, e);
         }
     }
 
+    /** @return the tombstones of this graph, to delete nodes with, or null if it was loaded without them */
+    public Tombstones tombstones() {
+        return tombstones;
+    }
+
     @Override
     public int size() {
         return size;
@@ -115,12 +198,18 @@ public class OnDiskGraphIndex implements GraphIndex, AutoCloseable, Accountable
     }
 
     public void close() throws IOException {
-        readerSupplier.close();
+        try {
+            readerSupplier.close();
+        } finally {
+            if (tombstones != null) {
+                tombstones.close();
+            }
+        }
     }
 
     @Override
     public String toString() {
-        return String.format("OnDiskGraphIndex(size=%d, entryPoint=%d, features=%s)", size, entryNode,
+        return String.format("OnDiskGraphIndex(size=%d, entryPoint=%d, blockSize=%d, adjacency=%s, features=%s)", size, entryNode, layout.blockSize, adjacencyEncoding,
                 features.keySet().stream().map(Enum::name).collect(Collectors.joining(",")));
     }
 
@@ -130,13 +219,45 @@ public class OnDiskGraphIndex implements GraphIndex, AutoCloseable, Accountable
         return new View(readerSupplier.get());
     }
 
+    /** @return a View that reads inline features from `cache` when it has them, before going to disk */
+    View getView(GraphCache cache) {
+        return new View(readerSupplier.get(), cache);
+    }
+
     public class View implements ScoringView, RandomAccessVectorValues {
+        // with packed adjacency, a prefetch of n records also loads their n record offsets, so this
+        // keeps both within the 64 ranges that AsyncFileReader retains
+        private static final int PREFETCH_BATCH_SIZE = 32;
+
         protected final RandomAccessReader reader;
+        // null if the reader can't prefetch
+        private final PrefetchingReader prefetcher;
         private final int[] neighbors;
+        private final long[] recordOffset = new long[1];
+        private final byte[] packedNeighbors;
+        private final long[] prefetchOffsets = new long[PREFETCH_BATCH_SIZE];
+        private final int[] prefetchLengths = new int[PREFETCH_BATCH_SIZE];
+        // null if inline features are always read from disk
+        private final GraphCache cache;
+        // the nodes of a prefetch batch whose inline features are not cached; null without a cache
+        private final int[] uncachedNodes;
+        private final GraphCache.InlineBlockReader cachedInline = new GraphCache.InlineBlockReader();
+        // lazily created when decoding half-precision vectors in the absence of inline vectors
+        private ByteSequence<?> halfScratch;
 
         public View(RandomAccessReader reader) {
+            this(reader, null);
+        }
+
+        View(RandomAccessReader reader, GraphCache cache) {
             this.reader = reader;
+            this.cache = cache != null && cache.cachesInlineFeatures() ? cache : null;
+            this.uncachedNodes = this.cache == null ? null : new int[PREFETCH_BATCH_SIZE];
+            this.prefetcher = reader instanceof PrefetchingReader ? (PrefetchingReader) reader : null;
             this.neighbors = new int[maxDegree];
+            this.packedNeighbors = adjacencyEncoding == AdjacencyEncoding.DELTA_BITPACKED
+                                   ? new byte[PackedNeighbors.scratchSize(maxDegree)]
+                                   : null;
         }
 
         @Override
@@ -155,22 +276,40 @@ public class OnDiskGraphIndex implements GraphIndex, AutoCloseable, Accountable
             throw new UnsupportedOperationException(); // need to copy reader
         }
 
+        long recordOffsetFor(int node) {
+            if (adjacencyEncoding == AdjacencyEncoding.PADDED) {
+                return neighborsOffset + layout.recordOffset(node);
+            }
+
+            try {
+                reader.seek(recordOffsetsOffset + (long) node * Long.BYTES);
+                reader.readFully(recordOffset);
+                return recordOffset[0];
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
         protected long inlineOffsetFor(int node, FeatureId featureId) {
-            return neighborsOffset +
-                    (node * ((long) Integer.BYTES // ids
-                            + inlineBlockSize // inline elements
-                            + (Integer.BYTES * (long) (maxDegree + 1)) // neighbor count + neighbors)
-                    )) + Integer.BYTES + // id
-                    inlineOffsets.get(featureId);
+            if (separatedLayout != null && separatedFeatures.contains(featureId)) {
+                return separatedOffset + separatedLayout.recordOffset(node) + storedOffsets.get(featureId);
+            }
+            return recordOffsetFor(node)
+                    + Integer.BYTES // id
+                    + storedOffsets.get(featureId);
         }
 
         long neighborsOffsetFor(int node) {
-            return neighborsOffset +
-                    (node + 1) * (Integer.BYTES + (long) inlineBlockSize) +
-                    (node * (long) Integer.BYTES * (maxDegree + 1));
+            return recordOffsetFor(node)
+                    + Integer.BYTES // id
+                    + recordInlineSize;
         }
 
         RandomAccessReader inlineReaderForNode(int node, FeatureId featureId) {
+            if (cache != null && cache.getInlineBlock(node, cachedInline)) {
+                cachedInline.seek(inlineOffsets.get(featureId));
+                return cachedInline;
+            }
             try {
                 long offset = inlineOffsetFor(node, featureId);
                 reader.seek(offset);
@@ -183,13 +322,13 @@ public class OnDiskGraphIndex implements GraphIndex, AutoCloseable, Accountable
         @Override
         public VectorFloat<?> getVector(int node) {
             if (!features.containsKey(FeatureId.INLINE_VECTORS)) {
-                throw new UnsupportedOperationException("No inline vectors in this graph");
+                var vector = vectorTypeSupport.createFloatVector(dimension);
+                getVectorInto(node, vector, 0);
+                return vector;
             }
 
             try {
-                long offset = inlineOffsetFor(node, FeatureId.INLINE_VECTORS);
-                reader.seek(offset);
-                return vectorTypeSupport.readFloatVector(reader, dimension);
+                return vectorTypeSupport.readFloatVector(inlineReaderForNode(node, FeatureId.INLINE_VECTORS), dimension);
             } catch (IOException e) {
                 throw new UncheckedIOException(e);
             }
@@ -198,13 +337,19 @@ public class OnDiskGraphIndex implements GraphIndex, AutoCloseable, Accountable
         @Override
         public void getVectorInto(int node, VectorFloat<?> vector, int offset) {
             if (!features.containsKey(FeatureId.INLINE_VECTORS)) {
-                throw new UnsupportedOperationException("No inline vectors in this graph");
+                var halfVectors = (HalfPrecisionVectors) features.get(FeatureId.HALF_PRECISION_VECTORS);
+                if (halfVectors == null) {
+                    throw new UnsupportedOperationException("No inline vectors in this graph");
+                }
+                if (halfScratch == null) {
+                    halfScratch = vectorTypeSupport.createByteSequence(halfVectors.inlineSize());
+                }
+                halfVectors.readInto(this, node, halfScratch, vector, offset);
+                return;
             }
 
             try {
-                long diskOffset = inlineOffsetFor(node, FeatureId.INLINE_VECTORS);
-                reader.seek(diskOffset);
-                vectorTypeSupport.readFloatVector(reader, dimension, vector, offset);
+                vectorTypeSupport.readFloatVector(inlineReaderForNode(node, FeatureId.INLINE_VECTORS), dimension, vector, offset);
             } catch (IOException e) {
                 throw new UncheckedIOException(e);
             }
@@ -213,6 +358,9 @@ public class OnDiskGraphIndex implements GraphIndex, AutoCloseable, Accountable
         public NodesIterator getNeighborsIterator(int node) {
             try {
                 reader.seek(neighborsOffsetFor(node));
+                if (adjacencyEncoding == AdjacencyEncoding.DELTA_BITPACKED) {
+                    return readPackedNeighbors(node);
+                }
                 int neighborCount = reader.readInt();
                 assert neighborCount <= maxDegree : String.format("Node %d neighborCount %d > M %d", node, neighborCount, maxDegree);
                 reader.read(neighbors, 0, neighborCount);
@@ -222,6 +370,178 @@ public class OnDiskGraphIndex implements GraphIndex, AutoCloseable, Accountable
             }
         }
 
+        private NodesIterator readPackedNeighbors(int node) throws IOException {
+            int header = reader.readInt();
+            int neighborCount = PackedNeighbors.count(header);
+            assert neighborCount <= maxDegree : String.format("Node %d neighborCount %d > M %d", node, neighborCount, maxDegree);
+            if (neighborCount > 0) {
+                int first = reader.readInt();
+                int bits = PackedNeighbors.bits(header);
+                reader.readFully(ByteBuffer.wrap(packedNeighbors, 0, PackedNeighbors.payloadSize(neighborCount, bits)));
+                PackedNeighbors.decode(packedNeighbors, neighborCount, bits, first, neighbors);
+            }
+            return new NodesIterator.ArrayNodesIterator(neighbors, neighborCount);
+        }
+
+        /**
+         * Loads the records (neighbors and inline features) of the given nodes with concurrent reads,
+         * if the reader supports it and the adjacency is padded.  Packed records can only be located
+         * through the record offsets, which are on disk as well, so prefetching them would take two
+         * round trips per search hop instead of the single read of the node that is visited.
+         */
+        @Override
+        public void prefetchNeighbors(int[] nodes, int count) {
+            if (prefetcher == null || adjacencyEncoding != AdjacencyEncoding.PADDED) {
+                return;
+            }
+            for (int i = 0; i < count; i += PREFETCH_BATCH_SIZE) {
+                prefetch(nodes, i, Math.min(count, i + PREFETCH_BATCH_SIZE), this::recordOffsetFor, layout.recordSize);
+            }
+        }
+
+        /**
+         * Wrap `reranker` to load the inline `featureId` of each batch of nodes with concurrent reads
+         * before scoring it, if the reader supports it.
+         */
+        private ScoreFunction.ExactScoreFunction prefetching(ScoreFunction.ExactScoreFunction reranker, FeatureId featureId) {
+            if (prefetcher == null) {
+                return reranker;
+            }
+
+            int inlineSize = features.get(featureId).inlineSize();
+            return new ScoreFunction.ExactScoreFunction() {
+                @Override
+                public VectorFloat<?> similarityTo(int[] nodes) {
+                    if (nodes.length <= PREFETCH_BATCH_SIZE) {
+                        prefetch(nodes, 0, nodes.length, node -> inlineOffsetFor(node, featureId), inlineSize);
+                        return reranker.similarityTo(nodes);
+                    }
+
+                    // score in batches, so that each batch is still prefetched when it is read
+                    var results = vectorTypeSupport.createFloatVector(nodes.length);
+                    for (int i = 0; i < nodes.length; i += PREFETCH_BATCH_SIZE) {
+                        var batch = Arrays.copyOfRange(nodes, i, Math.min(nodes.length, i + PREFETCH_BATCH_SIZE));
+                        prefetch(batch, 0, batch.length, node -> inlineOffsetFor(node, featureId), inlineSize);
+                        results.copyFrom(reranker.similarityTo(batch), 0, i, batch.length);
+                    }
+                    return results;
+                }
+
+                @Override
+                public float similarityTo(int node2) {
+                    return reranker.similarityTo(node2);
+                }
+            };
+        }
+
+        /**
+         * Copy the logical inline feature block of `node` (see inlineOffsets) into `dest` at `offset`,
+         * in its on-disk format.
+         */
+        void readInlineBlock(int node, byte[] dest, int offset) {
+            try {
+                if (separatedLayout == null) {
+                    reader.seek(recordOffsetFor(node) + Integer.BYTES);
+                    reader.readFully(ByteBuffer.wrap(dest, offset, inlineBlockSize));
+                    return;
+                }
+                for (var entry : features.entrySet()) {
+                    reader.seek(inlineOffsetFor(node, entry.getKey()));
+                    reader.readFully(ByteBuffer.wrap(dest, offset + inlineOffsets.get(entry.getKey()), entry.getValue().inlineSize()));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Read [position, position + length) into `scratch`, a piece at a time, so that the pages holding it
+         * are faulted in (or loaded into the page cache, if the reader has one).
+         */
+        void prefault(long position, long length, byte[] scratch) {
+            try {
+                reader.seek(position);
+                for (long remaining = length; remaining > 0; ) {
+                    int n = (int) Math.min(remaining, scratch.length);
+                    reader.readFully(ByteBuffer.wrap(scratch, 0, n));
+                    remaining -= n;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Read the whole record of `node`, and its separated slot if any, into `scratch`, which must be
+         * at least {@link #prefaultScratchSize()} bytes.
+         * @return the number of bytes read
+         */
+        int prefaultNode(int node, byte[] scratch) {
+            try {
+                long start = recordOffsetFor(node);
+                int bytes;
+                if (adjacencyEncoding == AdjacencyEncoding.PADDED) {
+                    reader.seek(start);
+                    reader.readFully(ByteBuffer.wrap(scratch, 0, layout.recordSize));
+                    bytes = layout.recordSize;
+                } else {
+                    // the record's size is only known once its neighbors are decoded
+                    reader.seek(start);
+                    reader.readFully(ByteBuffer.wrap(scratch, 0, Integer.BYTES + recordInlineSize));
+                    getNeighborsIterator(node);
+                    bytes = (int) (reader.getPosition() - start);
+                }
+                if (separatedLayout != null) {
+                    reader.seek(separatedOffset + separatedLayout.recordOffset(node));
+                    reader.readFully(ByteBuffer.wrap(scratch, 0, separatedLayout.recordSize));
+                    bytes += separatedLayout.recordSize;
+                }
+                return bytes;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * @return the minimum size of the scratch buffer for prefaultNode
+         */
+        int prefaultScratchSize() {
+            return Math.max(layout.recordSize, separatedLayout == null ? 0 : separatedLayout.recordSize);
+        }
+
+        private void prefetch(int[] nodes, int start, int end, IntToLongFunction offsetFor, int length) {
+            if (cache != null) {
+                // nodes whose inline features are cached won't be read
+                int uncached = 0;
+                for (int i = start; i < end; i++) {
+                    if (!cache.getInlineBlock(nodes[i], cachedInline)) {
+                        uncachedNodes[uncached++] = nodes[i];
+                    }
+                }
+                nodes = uncachedNodes;
+                start = 0;
+                end = uncached;
+            }
+            int count = end - start;
+            try {
+                if (adjacencyEncoding != AdjacencyEncoding.PADDED) {
+                    // the record offsets are themselves on disk, so load those first
+                    for (int i = 0; i < count; i++) {
+                        prefetchOffsets[i] = recordOffsetsOffset + (long) nodes[start + i] * Long.BYTES;
+                        prefetchLengths[i] = Long.BYTES;
+                    }
+                    prefetcher.prefetch(prefetchOffsets, prefetchLengths, count);
+                }
+                for (int i = 0; i < count; i++) {
+                    prefetchOffsets[i] = offsetFor.applyAsLong(nodes[start + i]);
+                    prefetchLengths[i] = length;
+                }
+                prefetcher.prefetch(prefetchOffsets, prefetchLengths, count);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
         @Override
         public int size() {
             return size;
@@ -234,7 +554,7 @@ public class OnDiskGraphIndex implements GraphIndex, AutoCloseable, Accountable
 
         @Override
         public Bits liveNodes() {
-            return Bits.ALL;
+            return tombstones == null ? Bits.ALL : tombstones.liveNodes();
         }
 
         @Override
@@ -244,9 +564,14 @@ public class OnDiskGraphIndex implements GraphIndex, AutoCloseable, Accountable
 
         public ScoreFunction.ExactScoreFunction rerankerFor(VectorFloat<?> queryVector, VectorSimilarityFunction vsf, Set<FeatureId> permissibleFeatures) {
             if (permissibleFeatures.contains(FeatureId.LVQ) && features.containsKey(FeatureId.LVQ)) {
-                return ((LVQ) features.get(FeatureId.LVQ)).rerankerFor(queryVector, vsf, this);
+                return prefetching(((LVQ) features.get(FeatureId.LVQ)).rerankerFor(queryVector, vsf, this), FeatureId.LVQ);
+            } else if (permissibleFeatures.contains(FeatureId.SQ8) && features.containsKey(FeatureId.SQ8)) {
+                return prefetching(((SQ8) features.get(FeatureId.SQ8)).rerankerFor(queryVector, vsf, this), FeatureId.SQ8);
             } else if (permissibleFeatures.contains(FeatureId.INLINE_VECTORS) && features.containsKey(FeatureId.INLINE_VECTORS)) {
-                return ScoreFunction.ExactScoreFunction.from(queryVector, vsf, this);
+                return prefetching(ScoreFunction.ExactScoreFunction.from(queryVector, vsf, this), FeatureId.INLINE_VECTORS);
+            } else if (permissibleFeatures.contains(FeatureId.HALF_PRECISION_VECTORS) && features.containsKey(FeatureId.HALF_PRECISION_VECTORS)) {
+                var halfVectors = (HalfPrecisionVectors) features.get(FeatureId.HALF_PRECISION_VECTORS);
+                return prefetching(halfVectors.rerankerFor(queryVector, vsf, this), FeatureId.HALF_PRECISION_VECTORS);
             } else {
                 throw new UnsupportedOperationException("No reranker available for this graph");
             }
@@ -272,7 +597,7 @@ public class OnDiskGraphIndex implements GraphIndex, AutoCloseable, Accountable
     }
 
     /** Convenience function for writing a vanilla DiskANN-style index with no extra Features. */
-    public static void write(GraphIndex graph, RandomAccessVectorValues vectors, BufferedRandomAccessWriter out) throws IOException {
+    public static void write(GraphIndex graph, RandomAccessVectorValues vectors, RandomAccessWriter out) throws IOException {
         write(graph, vectors, OnDiskGraphIndexWriter.getSequentialRenumbering(graph), out);
     }
 
@@ -280,7 +605,7 @@ public class OnDiskGraphIndex implements GraphIndex, AutoCloseable, Accountable
     public static void write(GraphIndex graph,
                              RandomAccessVectorValues vectors,
                              Map<Integer, Integer> oldToNewOrdinals,
-                             BufferedRandomAccessWriter out)
+                             RandomAccessWriter out)
             throws IOException
     {
         try (var writer = new OnDiskGraphIndexWriter.Builder(graph, oldToNewOrdinals)
@@ -0,0 +1,280 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.jbellis.jvector.graph.disk;
+
+import io.github.jbellis.jvector.util.DocIdSetIterator;
+import io.github.jbellis.jvector.util.FixedBitSet;
+import org.agrona.collections.IntArrayQueue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Prefaults the hot regions of an OnDiskGraphIndex, so that a freshly opened index reaches steady-state
+ * latency without its first queries paying for a cold page on nearly every read.
+ * <p>
+ * The regions to warm are chosen with the Builder: the header (including feature headers such as
+ * PQ codebooks), the nodes within some number of hops of the entry node, and a list of hot nodes recorded
+ * earlier with {@link HotNodes}.  The chosen nodes are read in ordinal order, which is file order, so the
+ * reads are as sequential as the selection allows.  Reads are throttled to a maximum throughput, to leave
+ * I/O capacity for the queries that are served during the warmup.
+ * <p>
+ * Warming reads through the graph's ReaderSupplier, so it populates whatever caching the supplier does:
+ * the OS page cache for memory-mapped readers, or a {@link io.github.jbellis.jvector.disk.PageCache}.
+ * <p>
+ * A warmer runs once, either synchronously with {@link #run()} or in the background with {@link #start(Executor)}.
+ * Progress is available from {@link #nodesWarmed()} and {@link #bytesWarmed()}, and is also reported
+ * to the ProgressListener, if there is one.
+ */
+public class OnDiskGraphIndexWarmer {
+    // the unit of header reads, and so of throttling them
+    private static final int CHUNK_SIZE = 64 * 1024;
+    // report progress every this many nodes
+    private static final int PROGRESS_INTERVAL = 1024;
+    // the longest we sleep between checks for cancellation
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final OnDiskGraphIndex graph;
+    private final boolean includeHeader;
+    private final int hops;
+    private final int[] hotNodes;
+    private final long maxBytesPerSecond;
+    private final ProgressListener listener;
+
+    private final AtomicBoolean started = new AtomicBoolean();
+    private volatile boolean cancelled;
+    // progress is only written by the thread running the warmup
+    private volatile int totalNodes = -1;
+    private volatile int nodesWarmed;
+    private volatile long bytesWarmed;
+
+    private OnDiskGraphIndexWarmer(OnDiskGraphIndex graph, boolean includeHeader, int hops, int[] hotNodes,
+                                   long maxBytesPerSecond, ProgressListener listener)
+    {
+        this.graph = graph;
+        this.includeHeader = includeHeader;
+        this.hops = hops;
+        this.hotNodes = hotNodes;
+        this.maxBytesPerSecond = maxBytesPerSecond;
+        this.listener = listener;
+    }
+
+    /**
+     * Run the warmup in the calling thread.  May only be called once (including via start).
+     */
+    public void run() {
+        if (!started.compareAndSet(false, true)) {
+            throw new IllegalStateException("Warmup has already been started");
+        }
+
+        try (var view = graph.getView()) {
+            var scratch = new byte[Math.max(CHUNK_SIZE, view.prefaultScratchSize())];
+            long startNanos = System.nanoTime();
+            if (includeHeader) {
+                for (long position = graph.headerOffset; position < graph.headerEnd && !cancelled; position += CHUNK_SIZE) {
+                    int length = (int) Math.min(CHUNK_SIZE, graph.headerEnd - position);
+                    view.prefault(position, length, scratch);
+                    bytesWarmed += length;
+                    throttle(startNanos);
+                }
+            }
+
+            var nodes = selectNodes(view);
+            totalNodes = nodes.cardinality();
+            reportProgress();
+            for (int node = nodes.nextSetBit(0); node != DocIdSetIterator.NO_MORE_DOCS && !cancelled; node = nodes.nextSetBit(node + 1)) {
+                bytesWarmed += view.prefaultNode(node, scratch);
+                nodesWarmed++;
+                if (nodesWarmed % PROGRESS_INTERVAL == 0) {
+                    reportProgress();
+                }
+                throttle(startNanos);
+            }
+            reportProgress();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Run the warmup on `executor`.
+     * @return a future that completes when the warmup is done or cancelled
+     */
+    public CompletableFuture<Void> start(Executor executor) {
+        return CompletableFuture.runAsync(this::run, executor);
+    }
+
+    /**
+     * Stop the warmup at the next node.  What was already read stays warm.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return the number of nodes to warm, or -1 if they have not been chosen yet
+     */
+    public int totalNodes() {
+        return totalNodes;
+    }
+
+    public int nodesWarmed() {
+        return nodesWarmed;
+    }
+
+    public long bytesWarmed() {
+        return bytesWarmed;
+    }
+
+    /**
+     * @return the union of the nodes within `hops` of the entry node and the hot nodes, as a set so that
+     * they are visited in ordinal order
+     */
+    private FixedBitSet selectNodes(OnDiskGraphIndex.View view) {
+        var selected = new FixedBitSet(Math.max(1, graph.size()));
+        if (hops >= 0 && graph.size() > 0) {
+            var frontier = new IntArrayQueue();
+            frontier.addInt(view.entryNode());
+            selected.set(view.entryNode());
+            for (int hop = 0; hop < hops && !frontier.isEmpty() && !cancelled; hop++) {
+                var next = new IntArrayQueue();
+                while (!frontier.isEmpty()) {
+                    for (var it = view.getNeighborsIterator(frontier.pollInt()); it.hasNext(); ) {
+                        int neighbor = it.nextInt();
+                        if (!selected.getAndSet(neighbor)) {
+                            next.addInt(neighbor);
+                        }
+                    }
+                }
+                frontier = next;
+            }
+        }
+        for (int node : hotNodes) {
+            // a recorded list may predate a rewrite of the index, so we skip nodes that no longer exist
+            if (node >= 0 && node < graph.size()) {
+                selected.set(node);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Sleep until reading bytesWarmed bytes since startNanos no longer exceeds the maximum throughput.
+     */
+    private void throttle(long startNanos) {
+        if (maxBytesPerSecond <= 0) {
+            return;
+        }
+        long targetNanos = (long) (bytesWarmed * 1e9 / maxBytesPerSecond);
+        long aheadNanos;
+        while (!cancelled && (aheadNanos = targetNanos - (System.nanoTime() - startNanos)) > 0) {
+            LockSupport.parkNanos(Math.min(aheadNanos, MAX_PARK_NANOS));
+            if (Thread.interrupted()) {
+                cancelled = true;
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void reportProgress() {
+        if (listener != null) {
+            listener.onProgress(nodesWarmed, totalNodes, bytesWarmed);
+        }
+    }
+
+    /**
+     * Receives progress reports from the thread running the warmup.
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        /**
+         * Called once the nodes to warm have been chosen, every 1024 nodes, and at the end.
+         */
+        void onProgress(int nodesWarmed, int totalNodes, long bytesWarmed);
+    }
+
+    /**
+     * Builder for OnDiskGraphIndexWarmer.  By default, only the header is warmed, with no throughput limit.
+     */
+    public static class Builder {
+        private final OnDiskGraphIndex graph;
+        private boolean includeHeader = true;
+        private int hops = -1;
+        private int[] hotNodes = new int[0];
+        private long maxBytesPerSecond;
+        private ProgressListener listener;
+
+        public Builder(OnDiskGraphIndex graph) {
+            this.graph = graph;
+        }
+
+        /**
+         * Whether to warm the header, including the feature headers.  The default is true.
+         */
+        public Builder withHeader(boolean includeHeader) {
+            this.includeHeader = includeHeader;
+            return this;
+        }
+
+        /**
+         * Warm the nodes within `hops` hops of the entry node, which every search visits first.  Zero warms
+         * only the entry node.  Choosing the nodes reads the neighbors of those within hops - 1 hops;
+         * these reads are not throttled.
+         */
+        public Builder withHops(int hops) {
+            if (hops < 0) {
+                throw new IllegalArgumentException("hops must be non-negative, got " + hops);
+            }
+            this.hops = hops;
+            return this;
+        }
+
+        /**
+         * Warm the given nodes, e.g. a hot set recorded by a previous process.  Ordinals that are not
+         * in the graph are ignored.
+         */
+        public Builder withNodes(int[] hotNodes) {
+            this.hotNodes = hotNodes.clone();
+            return this;
+        }
+
+        /**
+         * Read at most `maxBytesPerSecond` on average.  The default, 0, is unlimited.
+         */
+        public Builder withMaxBytesPerSecond(long maxBytesPerSecond) {
+            if (maxBytesPerSecond < 0) {
+                throw new IllegalArgumentException("maxBytesPerSecond must be non-negative, got " + maxBytesPerSecond);
+            }
+            this.maxBytesPerSecond = maxBytesPerSecond;
+            return this;
+        }
+
+        public Builder withProgressListener(ProgressListener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        public OnDiskGraphIndexWarmer build() {
+            return new OnDiskGraphIndexWarmer(graph, includeHeader, hops, hotNodes, maxBytesPerSecond, listener);
+        }
+    }
+}
@@ -16,22 +16,42 @@
 
 package io.github.jbellis.jvector.graph.disk;
 
-import io.github.jbellis.jvector.disk.BufferedRandomAccessWriter;
+import io.github.jbellis.jvector.disk.RandomAccessWriter;
 import io.github.jbellis.jvector.graph.GraphIndex;
+import io.github.jbellis.jvector.graph.NodesIterator;
 import io.github.jbellis.jvector.graph.OnHeapGraphIndex;
+import io.github.jbellis.jvector.util.FixedBitSet;
 import org.agrona.collections.Int2IntHashMap;
+import org.agrona.collections.IntArrayQueue;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
 import java.util.function.IntFunction;
 
 /**
  * Write a graph index to disk, for later loading as an OnDiskGraphIndex.
  */
 public class OnDiskGraphIndexWriter implements AutoCloseable {
+    // bounds the size of the scratch buffer used to write the record offsets index
+    private static final int RECORD_OFFSETS_PER_WRITE = 64 * 1024;
+    // the unit of work for parallel writes
+    private static final int NODES_PER_CHUNK = 1024;
+
     private final GraphIndex graph;
     private final GraphIndex.View view;
     private final Map<Integer, Integer> oldToNewOrdinals;
@@ -39,15 +59,36 @@ public class OnDiskGraphIndexWriter implements AutoCloseable {
     // we don't use Map features but EnumMap is the best way to make sure we don't
     // accidentally introduce an ordering bug in the future
     private final EnumMap<FeatureId, Feature> featureMap;
+    // the features stored in the node records, and those stored in the separated region
+    private final EnumMap<FeatureId, Feature> recordFeatures;
+    private final EnumMap<FeatureId, Feature> separatedFeatures;
+    private final NodeLayout layout;
+    // null if no features are separated
+    private final NodeLayout separatedLayout;
+    private final AdjacencyEncoding adjacencyEncoding;
 
     private OnDiskGraphIndexWriter(GraphIndex graph, Map<Integer, Integer> oldToNewOrdinals,
-                                   int dimension, EnumMap<FeatureId, Feature> features)
+                                   int dimension, EnumMap<FeatureId, Feature> features,
+                                   int blockSize, AdjacencyEncoding adjacencyEncoding,
+                                   EnumSet<FeatureId> separated)
     {
         this.graph = graph;
         this.view = graph.getView();
         this.oldToNewOrdinals = oldToNewOrdinals;
         this.dimension = dimension;
         this.featureMap = features;
+        this.recordFeatures = new EnumMap<>(FeatureId.class);
+        this.separatedFeatures = new EnumMap<>(FeatureId.class);
+        for (var feature : features.values()) {
+            (separated.contains(feature.id()) ? separatedFeatures : recordFeatures).put(feature.id(), feature);
+        }
+        this.layout = new NodeLayout(inlineSize(recordFeatures), graph.maxDegree(), blockSize);
+        this.separatedLayout = separatedFeatures.isEmpty() ? null : NodeLayout.forSlots(inlineSize(separatedFeatures), blockSize);
+        this.adjacencyEncoding = adjacencyEncoding;
+    }
+
+    private static int inlineSize(EnumMap<FeatureId, Feature> features) {
+        return features.values().stream().mapToInt(Feature::inlineSize).sum();
     }
 
     @Override
@@ -59,39 +100,328 @@ public class OnDiskGraphIndexWriter implements AutoCloseable {
      * Write the inline features of the given ordinal to the output at the correct offset.
      * Nothing else is written (no headers, no edges).
      */
-    public void writeInline(BufferedRandomAccessWriter raf,
+    public void writeInline(RandomAccessWriter raf,
                             int ordinal,
                             EnumMap<FeatureId, Feature.State> stateMap)
             throws IOException
     {
-        var features = featureMap.values();
+        if (adjacencyEncoding != AdjacencyEncoding.PADDED) {
+            throw new UnsupportedOperationException("Incremental inline writes require fixed-size records (AdjacencyEncoding.PADDED)");
+        }
+
         int headerBytes = Integer.BYTES // MAGIC
                 + Integer.BYTES // featureid bitset
-                + CommonHeader.size()
-                + features.stream().mapToInt(Feature::headerSize).sum();
-        int edgeSize = Integer.BYTES * (1 + graph.maxDegree());
-        int inlineBytes = ordinal * (Integer.BYTES + features.stream().mapToInt(Feature::inlineSize).sum() + edgeSize);
-        raf.seek(headerBytes + inlineBytes + Integer.BYTES);
-
-        for (var writer : features) {
-            var state = stateMap.get(writer.id());
+                + CommonHeader.size(OnDiskGraphIndex.CURRENT_VERSION)
+                + featureMap.values().stream().mapToInt(Feature::headerSize).sum();
+        raf.seek(layout.dataStart(recordsStart(headerBytes)) + layout.recordOffset(ordinal) + Integer.BYTES);
+        writeFeatures(raf, recordFeatures, stateMap::get);
+
+        if (separatedLayout != null) {
+            raf.seek(separatedLayout.dataStart(headerBytes) + separatedLayout.recordOffset(ordinal));
+            writeFeatures(raf, separatedFeatures, stateMap::get);
+        }
+    }
+
+    // write the state of each feature, skipping over those that have none
+    private static void writeFeatures(RandomAccessWriter raf,
+                                      EnumMap<FeatureId, Feature> features,
+                                      Function<FeatureId, Feature.State> states)
+            throws IOException
+    {
+        for (var feature : features.values()) {
+            var state = states.apply(feature.id());
             if (state == null) {
-                raf.seek(raf.getFilePointer() + writer.inlineSize());
+                raf.seek(raf.getFilePointer() + feature.inlineSize());
             } else {
-                raf.writeBuffered((out) -> writer.writeInline(out, state));
+                raf.writeBuffered((out) -> feature.writeInline(out, state));
             }
         }
     }
 
+    /**
+     * @return the position at which the node records (or, if not PADDED, their offsets) start, given the end of the header.
+     * The separated region, if any, comes first.
+     */
+    private long recordsStart(long headerEnd) {
+        if (separatedLayout == null) {
+            return headerEnd;
+        }
+        return separatedLayout.dataStart(headerEnd) + separatedLayout.regionSize(graph.size());
+    }
+
+    // a lookup from feature to the state of `ordinal`, for the features that have suppliers
+    private static Function<FeatureId, Feature.State> statesFor(EnumMap<FeatureId, IntFunction<Feature.State>> featureStateSuppliers,
+                                                                int ordinal)
+    {
+        return id -> {
+            var supplier = featureStateSuppliers.get(id);
+            return supplier == null ? null : supplier.apply(ordinal);
+        };
+    }
+
     /**
      * Write the complete index to the given output.  Features that do not have a supplier are assumed
      * to have already been written by calls to writeInline.  The supplier takes node ordinals
      * and returns FeatureState suitable for Feature.writeInline.
      */
-    public void write(BufferedRandomAccessWriter raf,
+    public void write(RandomAccessWriter raf,
                       EnumMap<FeatureId, IntFunction<Feature.State>> featureStateSuppliers)
             throws IOException
     {
+        var entriesByNewOrdinal = entriesByNewOrdinal();
+        boolean padded = adjacencyEncoding == AdjacencyEncoding.PADDED;
+        writeHeader(raf);
+        long headerEnd = raf.getFilePointer();
+
+        // separated features go in fixed-size slots ahead of the node records
+        if (separatedLayout != null) {
+            long slotsStart = separatedLayout.dataStart(headerEnd);
+            for (int i = 0; i < oldToNewOrdinals.size(); i++) {
+                var entry = entriesByNewOrdinal.get(i);
+                int originalOrdinal = entry.getKey();
+                int newOrdinal = entry.getValue();
+                if (!graph.containsNode(originalOrdinal)) {
+                    continue;
+                }
+                if (newOrdinal == 0 || (separatedLayout.isAligned() && newOrdinal % separatedLayout.nodesPerBlock == 0)) {
+                    raf.seek(slotsStart + separatedLayout.recordOffset(newOrdinal));
+                }
+                writeFeatures(raf, separatedFeatures, statesFor(featureStateSuppliers, originalOrdinal));
+            }
+        }
+
+        long recordsStart = recordsStart(headerEnd);
+        long dataStart = layout.dataStart(recordsStart);
+        raf.seek(recordsStart);
+
+        // packed records are variable-size, so they are located through an index of their offsets,
+        // which we fill in once all the records are written
+        long recordOffsetsStart = recordsStart;
+        long[] recordOffsets = padded ? null : new long[graph.size()];
+        long position = recordOffsetsStart + (padded ? 0 : (long) Long.BYTES * graph.size());
+        if (!padded) {
+            raf.seek(position);
+        }
+        int inlineSize = inlineSize(recordFeatures);
+        var packed = new int[graph.maxDegree()];
+
+        // for each graph node, write the associated vector and its neighbors
+        for (int i = 0; i < oldToNewOrdinals.size(); i++) {
+            var entry = entriesByNewOrdinal.get(i);
+            int originalOrdinal = entry.getKey();
+            int newOrdinal = entry.getValue();
+            if (!graph.containsNode(originalOrdinal)) {
+                continue;
+            }
+
+            var neighbors = view.getNeighborsIterator(originalOrdinal);
+            int bits = 0;
+            if (padded) {
+                if (layout.isAligned() && newOrdinal % layout.nodesPerBlock == 0) {
+                    // skip the padding at the end of the previous block
+                    raf.seek(dataStart + layout.recordOffset(newOrdinal));
+                }
+            } else {
+                if (packed.length < neighbors.size()) {
+                    packed = new int[neighbors.size()];
+                }
+                for (int n = 0; n < neighbors.size(); n++) {
+                    packed[n] = oldToNewOrdinals.get(neighbors.nextInt());
+                }
+                bits = PackedNeighbors.prepare(packed, neighbors.size());
+
+                int recordSize = Integer.BYTES + inlineSize + PackedNeighbors.encodedSize(neighbors.size(), bits);
+                long start = layout.placeRecord(position, recordSize);
+                if (start != position) {
+                    raf.seek(start);
+                }
+                recordOffsets[newOrdinal] = start;
+                position = start + recordSize;
+            }
+            raf.writeInt(newOrdinal); // unnecessary, but a reasonable sanity check
+            writeFeatures(raf, recordFeatures, statesFor(featureStateSuppliers, originalOrdinal));
+
+            if (!padded) {
+                var packedNeighbors = packed;
+                int packedBits = bits;
+                raf.writeBuffered((out) -> PackedNeighbors.write(out, packedNeighbors, neighbors.size(), packedBits));
+                continue;
+            }
+
+            raf.writeBuffered((out) -> writePaddedNeighbors(out, neighbors));
+        }
+
+        if (!padded) {
+            writeRecordOffsets(raf, recordOffsetsStart, recordOffsets);
+            raf.seek(position);
+        }
+    }
+
+    /**
+     * As {@link #write(RandomAccessWriter, EnumMap)}, but node records, including their feature states,
+     * are encoded in parallel on `executor`.  Records are encoded in chunks of consecutive new ordinals into
+     * per-chunk buffers, and written in ordinal order by the calling thread as soon as each chunk is ready.
+     * At most a few chunks per worker are in flight, so memory use is bounded however large the graph is.
+     * <p>
+     * The feature state suppliers are called concurrently, so they must be threadsafe.  The output is
+     * identical to that of the single-threaded write.
+     */
+    public void write(RandomAccessWriter raf,
+                      EnumMap<FeatureId, IntFunction<Feature.State>> featureStateSuppliers,
+                      ForkJoinPool executor)
+            throws IOException
+    {
+        var entriesByNewOrdinal = entriesByNewOrdinal();
+        boolean padded = adjacencyEncoding == AdjacencyEncoding.PADDED;
+        writeHeader(raf);
+        long headerEnd = raf.getFilePointer();
+        long slotsStart = separatedLayout == null ? -1 : separatedLayout.dataStart(headerEnd);
+        int slotSize = separatedLayout == null ? 0 : separatedLayout.recordSize;
+        long recordOffsetsStart = recordsStart(headerEnd);
+        long dataStart = layout.dataStart(recordOffsetsStart);
+        long[] recordOffsets = padded ? null : new long[graph.size()];
+        long position = recordOffsetsStart + (padded ? 0 : (long) Long.BYTES * graph.size());
+
+        // features without a supplier were written by writeInline, so each record and slot has holes
+        // where they are; these are [start, end) offsets relative to the start of the record or slot
+        var output = new RecordOutput(raf, holes(recordFeatures, featureStateSuppliers, Integer.BYTES));
+        var slotOutput = new RecordOutput(raf, holes(separatedFeatures, featureStateSuppliers, 0));
+
+        int chunkCount = (graph.size() + NODES_PER_CHUNK - 1) / NODES_PER_CHUNK;
+        int window = 2 * executor.getParallelism();
+        var inFlight = new ArrayDeque<ForkJoinTask<EncodedChunk>>();
+        try {
+            int nextChunk = 0;
+            for (int c = 0; c < chunkCount; c++) {
+                while (nextChunk < chunkCount && nextChunk < c + window) {
+                    int start = nextChunk * NODES_PER_CHUNK;
+                    int end = Math.min(graph.size(), start + NODES_PER_CHUNK);
+                    inFlight.add(executor.submit(() -> encodeChunk(entriesByNewOrdinal, start, end, featureStateSuppliers)));
+                    nextChunk++;
+                }
+
+                var chunk = inFlight.poll().join();
+                int recordStart = 0;
+                for (int i = 0; i < chunk.newOrdinals.length; i++) {
+                    int recordEnd = chunk.recordEnds[i];
+                    int length = recordEnd - recordStart;
+                    if (length == 0) {
+                        continue; // not in the graph
+                    }
+                    int newOrdinal = chunk.newOrdinals[i];
+                    if (slotSize > 0) {
+                        slotOutput.write(slotsStart + separatedLayout.recordOffset(newOrdinal), chunk.slotBytes, i * slotSize, slotSize);
+                    }
+                    long start;
+                    if (padded) {
+                        start = dataStart + layout.recordOffset(newOrdinal);
+                    } else {
+                        start = layout.placeRecord(position, length);
+                        recordOffsets[newOrdinal] = start;
+                    }
+                    output.write(start, chunk.bytes, recordStart, length);
+                    position = start + length;
+                    recordStart = recordEnd;
+                }
+                slotOutput.flush();
+                output.flush();
+            }
+        } finally {
+            inFlight.forEach(task -> task.cancel(false));
+        }
+
+        if (!padded) {
+            writeRecordOffsets(raf, recordOffsetsStart, recordOffsets);
+        }
+        raf.seek(position);
+    }
+
+    private static List<int[]> holes(EnumMap<FeatureId, Feature> features,
+                                     EnumMap<FeatureId, IntFunction<Feature.State>> featureStateSuppliers,
+                                     int featureOffset)
+    {
+        var holes = new ArrayList<int[]>();
+        for (var feature : features.values()) {
+            if (featureStateSuppliers.get(feature.id()) == null) {
+                holes.add(new int[] {featureOffset, featureOffset + feature.inlineSize()});
+            }
+            featureOffset += feature.inlineSize();
+        }
+        return holes;
+    }
+
+    /**
+     * Encode the records, and separated slots, of the nodes with new ordinals in [start, end).  Holes for
+     * features without suppliers are left zeroed, to be skipped when the records are written.
+     */
+    private EncodedChunk encodeChunk(List<Map.Entry<Integer, Integer>> entriesByNewOrdinal,
+                                     int start,
+                                     int end,
+                                     EnumMap<FeatureId, IntFunction<Feature.State>> featureStateSuppliers)
+    {
+        var newOrdinals = new int[end - start];
+        var recordEnds = new int[end - start];
+        var bytes = new ExposedByteArrayOutputStream(layout.recordSize * (end - start));
+        var out = new DataOutputStream(bytes);
+        // every node gets a slot, so that slot i starts at i * slotSize
+        int slotSize = inlineSize(separatedFeatures);
+        var slotBytes = new ExposedByteArrayOutputStream(slotSize * (end - start));
+        var slotOut = new DataOutputStream(slotBytes);
+        var packed = new int[graph.maxDegree()];
+        try (var chunkView = graph.getView()) {
+            for (int i = start; i < end; i++) {
+                var entry = entriesByNewOrdinal.get(i);
+                int originalOrdinal = entry.getKey();
+                int newOrdinal = entry.getValue();
+                newOrdinals[i - start] = newOrdinal;
+                if (!graph.containsNode(originalOrdinal)) {
+                    slotOut.write(new byte[slotSize]);
+                } else {
+                    out.writeInt(newOrdinal);
+                    encodeFeatures(out, recordFeatures, featureStateSuppliers, originalOrdinal);
+                    encodeFeatures(slotOut, separatedFeatures, featureStateSuppliers, originalOrdinal);
+
+                    var neighbors = chunkView.getNeighborsIterator(originalOrdinal);
+                    if (adjacencyEncoding == AdjacencyEncoding.PADDED) {
+                        writePaddedNeighbors(out, neighbors);
+                    } else {
+                        if (packed.length < neighbors.size()) {
+                            packed = new int[neighbors.size()];
+                        }
+                        int count = neighbors.size();
+                        for (int n = 0; n < count; n++) {
+                            packed[n] = oldToNewOrdinals.get(neighbors.nextInt());
+                        }
+                        PackedNeighbors.write(out, packed, count, PackedNeighbors.prepare(packed, count));
+                    }
+                }
+                recordEnds[i - start] = bytes.size();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        return new EncodedChunk(newOrdinals, recordEnds, bytes.getArray(), slotBytes.getArray());
+    }
+
+    private static void encodeFeatures(DataOutput out,
+                                       EnumMap<FeatureId, Feature> features,
+                                       EnumMap<FeatureId, IntFunction<Feature.State>> featureStateSuppliers,
+                                       int ordinal)
+            throws IOException
+    {
+        for (var feature : features.values()) {
+            var supplier = featureStateSuppliers.get(feature.id());
+            if (supplier == null) {
+                out.write(new byte[feature.inlineSize()]);
+            } else {
+                feature.writeInline(out, supplier.apply(ordinal));
+            }
+        }
+    }
+
+    private List<Map.Entry<Integer, Integer>> entriesByNewOrdinal() {
         if (graph instanceof OnHeapGraphIndex) {
             var ohgi = (OnHeapGraphIndex) graph;
             if (ohgi.getDeletedNodes().cardinality() > 0) {
@@ -109,47 +439,42 @@ public class OnDiskGraphIndexWriter implements AutoCloseable {
         if (graph.size() > 0 && entriesByNewOrdinal.get(entriesByNewOrdinal.size() - 1).getValue() != graph.size() - 1) {
             throw new IllegalArgumentException("oldToNewOrdinals produced out-of-range entries");
         }
+        return entriesByNewOrdinal;
+    }
 
+    private void writeHeader(RandomAccessWriter raf) throws IOException {
         // graph-level properties
-        var commonHeader = new CommonHeader(OnDiskGraphIndex.CURRENT_VERSION, graph.size(), dimension, view.entryNode(), graph.maxDegree());
+        int entryNode = graph.size() > 0 ? oldToNewOrdinals.get(view.entryNode()) : view.entryNode();
+        boolean padded = adjacencyEncoding == AdjacencyEncoding.PADDED;
+        var separated = separatedFeatures.isEmpty() ? EnumSet.noneOf(FeatureId.class) : EnumSet.copyOf(separatedFeatures.keySet());
+        var commonHeader = new CommonHeader(OnDiskGraphIndex.CURRENT_VERSION, graph.size(), dimension, entryNode, graph.maxDegree(),
+                                            layout.blockSize, padded ? layout.nodesPerBlock : 0, adjacencyEncoding, separated);
         var header = new Header(commonHeader, featureMap);
         raf.writeBuffered(header::write);
+    }
 
-        // for each graph node, write the associated vector and its neighbors
-        for (int i = 0; i < oldToNewOrdinals.size(); i++) {
-            var entry = entriesByNewOrdinal.get(i);
-            int originalOrdinal = entry.getKey();
-            int newOrdinal = entry.getValue();
-            if (!graph.containsNode(originalOrdinal)) {
-                continue;
-            }
+    // pad out to maxEdgesPerNode
+    private void writePaddedNeighbors(DataOutput out, NodesIterator neighbors) throws IOException {
+        out.writeInt(neighbors.size());
+        int n = 0;
+        for (; n < neighbors.size(); n++) {
+            out.writeInt(oldToNewOrdinals.get(neighbors.nextInt()));
+        }
+        assert !neighbors.hasNext();
 
-            raf.writeInt(newOrdinal); // unnecessary, but a reasonable sanity check
-            for (var feature : featureMap.values()) {
-                var supplier = featureStateSuppliers.get(feature.id());
-                if (supplier == null) {
-                    raf.seek(raf.getFilePointer() + feature.inlineSize());
-                }
-                else {
-                    raf.writeBuffered((out) -> {
-                        feature.writeInline(out, supplier.apply(originalOrdinal));
-                    });
-                }
-            }
+        for (; n < graph.maxDegree(); n++) {
+            out.writeInt(-1);
+        }
+    }
 
-            var neighbors = view.getNeighborsIterator(originalOrdinal);
-            // pad out to maxEdgesPerNode
+    private static void writeRecordOffsets(RandomAccessWriter raf, long recordOffsetsStart, long[] recordOffsets) throws IOException {
+        raf.seek(recordOffsetsStart);
+        for (int i = 0; i < recordOffsets.length; i += RECORD_OFFSETS_PER_WRITE) {
+            int start = i;
+            int end = Math.min(recordOffsets.length, i + RECORD_OFFSETS_PER_WRITE);
             raf.writeBuffered((out) -> {
-                out.writeInt(neighbors.size());
-                int n = 0;
-                for (; n < neighbors.size(); n++) {
-                    out.writeInt(oldToNewOrdinals.get(neighbors.nextInt()));
-                }
-                assert !neighbors.hasNext();
-
-                // pad out to maxEdgesPerNode
-                for (; n < graph.maxDegree(); n++) {
-                    out.writeInt(-1);
+                for (int j = start; j < end; j++) {
+                    out.writeLong(recordOffsets[j]);
                 }
             });
         }
@@ -175,13 +500,211 @@ public class OnDiskGraphIndexWriter implements AutoCloseable {
         }
     }
 
+    /**
+     * @return a Map of old to new graph ordinals in breadth-first order from the entry node, so that
+     * nodes that are close in the graph are close on disk and a search touches fewer pages.
+     * Nodes that are not reachable from the entry node are numbered after it, by breadth-first
+     * traversal from the lowest-numbered unvisited node.
+     */
+    public static Map<Integer, Integer> getBfsRenumbering(GraphIndex graph) {
+        try (var view = graph.getView()) {
+            var oldToNewMap = new Int2IntHashMap(-1);
+            var visited = new FixedBitSet(view.getIdUpperBound());
+            var queue = new IntArrayQueue();
+            int nextOrdinal = 0;
+
+            int start = view.entryNode();
+            int nextUnvisited = 0;
+            while (nextOrdinal < graph.size()) {
+                if (start < 0 || visited.get(start)) {
+                    while (!graph.containsNode(nextUnvisited) || visited.get(nextUnvisited)) {
+                        nextUnvisited++;
+                    }
+                    start = nextUnvisited;
+                }
+                visited.set(start);
+                queue.addInt(start);
+                while (!queue.isEmpty()) {
+                    int node = queue.pollInt();
+                    oldToNewMap.put(node, nextOrdinal++);
+                    for (var it = view.getNeighborsIterator(node); it.hasNext(); ) {
+                        int neighbor = it.nextInt();
+                        if (!visited.getAndSet(neighbor)) {
+                            queue.addInt(neighbor);
+                        }
+                    }
+                }
+            }
+            return oldToNewMap;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return a Map of old to new graph ordinals in reverse Cuthill-McKee order.  This is a breadth-first
+     * traversal that starts from a minimum-degree node and visits the neighbors of each node in
+     * increasing order of degree, reversed at the end.  It minimizes the bandwidth of the adjacency
+     * matrix, i.e. the distance in ordinals (and so on disk) between a node and its neighbors.
+     * Disconnected components are numbered one after another.
+     */
+    public static Map<Integer, Integer> getReverseCuthillMcKeeRenumbering(GraphIndex graph) {
+        try (var view = graph.getView()) {
+            int idUpperBound = view.getIdUpperBound();
+            var degrees = new int[idUpperBound];
+            // candidate start nodes, as degree << 32 | node so that sorting orders by degree, then ordinal
+            var starts = new long[graph.size()];
+            int n = 0;
+            for (int i = 0; i < idUpperBound; i++) {
+                if (graph.containsNode(i)) {
+                    degrees[i] = view.getNeighborsIterator(i).size();
+                    starts[n++] = ((long) degrees[i] << 32) | i;
+                }
+            }
+            Arrays.sort(starts, 0, n);
+
+            var order = new int[graph.size()];
+            var visited = new FixedBitSet(idUpperBound);
+            var scratch = new long[graph.maxDegree()];
+            int head = 0;
+            int tail = 0;
+            for (int s = 0; s < n; s++) {
+                int start = (int) starts[s];
+                if (visited.getAndSet(start)) {
+                    continue;
+                }
+                // `order` doubles as the BFS queue
+                order[tail++] = start;
+                while (head < tail) {
+                    int node = order[head++];
+                    int count = 0;
+                    for (var it = view.getNeighborsIterator(node); it.hasNext(); ) {
+                        int neighbor = it.nextInt();
+                        if (!visited.getAndSet(neighbor)) {
+                            if (count == scratch.length) {
+                                scratch = Arrays.copyOf(scratch, 2 * count);
+                            }
+                            scratch[count++] = ((long) degrees[neighbor] << 32) | neighbor;
+                        }
+                    }
+                    Arrays.sort(scratch, 0, count);
+                    for (int i = 0; i < count; i++) {
+                        order[tail++] = (int) scratch[i];
+                    }
+                }
+            }
+
+            var oldToNewMap = new Int2IntHashMap(-1);
+            for (int i = 0; i < tail; i++) {
+                oldToNewMap.put(order[tail - 1 - i], i);
+            }
+            return oldToNewMap;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static final class EncodedChunk {
+        final int[] newOrdinals;
+        // the end of each node's record in bytes; a node that is not in the graph has an empty record
+        final int[] recordEnds;
+        final byte[] bytes;
+        // the separated slot of the i-th node starts at i * slotSize
+        final byte[] slotBytes;
+
+        EncodedChunk(int[] newOrdinals, int[] recordEnds, byte[] bytes, byte[] slotBytes) {
+            this.newOrdinals = newOrdinals;
+            this.recordEnds = recordEnds;
+            this.bytes = bytes;
+            this.slotBytes = slotBytes;
+        }
+    }
+
+    /**
+     * Writes encoded records, coalescing records that are adjacent both in the chunk and on disk
+     * into a single write, and skipping the holes left for features written by writeInline.
+     */
+    private static final class RecordOutput {
+        private final RandomAccessWriter raf;
+        private final List<int[]> holes;
+        private byte[] runBytes;
+        private int runOffset;
+        private int runLength;
+        private long runStart;
+
+        RecordOutput(RandomAccessWriter raf, List<int[]> holes) {
+            this.raf = raf;
+            this.holes = holes;
+        }
+
+        void write(long start, byte[] bytes, int offset, int length) throws IOException {
+            if (!holes.isEmpty()) {
+                writeAroundHoles(start, bytes, offset, length);
+                return;
+            }
+            if (runLength > 0 && runBytes == bytes && runStart + runLength == start && runOffset + runLength == offset) {
+                runLength += length;
+                return;
+            }
+            flush();
+            runBytes = bytes;
+            runOffset = offset;
+            runLength = length;
+            runStart = start;
+        }
+
+        void flush() throws IOException {
+            if (runLength > 0) {
+                raf.seek(runStart);
+                raf.write(runBytes, runOffset, runLength);
+            }
+            runBytes = null;
+            runLength = 0;
+        }
+
+        private void writeAroundHoles(long start, byte[] bytes, int offset, int length) throws IOException {
+            int cur = 0;
+            for (var hole : holes) {
+                if (hole[0] > cur) {
+                    raf.seek(start + cur);
+                    raf.write(bytes, offset + cur, hole[0] - cur);
+                }
+                cur = hole[1];
+            }
+            if (cur < length) {
+                raf.seek(start + cur);
+                raf.write(bytes, offset + cur, length - cur);
+            }
+        }
+    }
+
+    // lets us hand off the buffer without copying it
+    private static final class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+        ExposedByteArrayOutputStream(int size) {
+            super(size);
+        }
+
+        byte[] getArray() {
+            return buf;
+        }
+    }
+
     /**
      * Builder for OnDiskGraphIndexWriter, with optional features.
      */
     public static class Builder {
+        // the features that can supply exact scores, and are only read when reranking
+        private static final Set<FeatureId> RERANK_FEATURES = EnumSet.of(FeatureId.INLINE_VECTORS,
+                                                                         FeatureId.LVQ,
+                                                                         FeatureId.HALF_PRECISION_VECTORS,
+                                                                         FeatureId.SQ8);
+
         private final GraphIndex graphIndex;
         private final Map<Integer, Integer> oldToNewOrdinals;
         private final EnumMap<FeatureId, Feature> features;
+        private int blockSize;
+        private AdjacencyEncoding adjacencyEncoding = AdjacencyEncoding.PADDED;
+        private boolean splitLayout;
 
         public Builder(GraphIndex graphIndex) {
             this(graphIndex, getSequentialRenumbering(graphIndex));
@@ -199,21 +722,62 @@ public class OnDiskGraphIndexWriter implements AutoCloseable {
             return this;
         }
 
+        /**
+         * Align node records to blocks of the given size (e.g. 4096 for the typical page or SSD sector size),
+         * so that no record straddles a block boundary and reading a node costs at most one block read.
+         * This wastes the space at the end of each block that is too small for another record.
+         * The default, 0, packs records with no alignment.
+         */
+        public Builder withBlockSize(int blockSize) {
+            if (blockSize < 0) {
+                throw new IllegalArgumentException("Block size must be non-negative, got " + blockSize);
+            }
+            this.blockSize = blockSize;
+            return this;
+        }
+
+        /**
+         * Store neighbor lists with the given encoding.  The default is {@link AdjacencyEncoding#PADDED}.
+         */
+        public Builder withAdjacencyEncoding(AdjacencyEncoding adjacencyEncoding) {
+            this.adjacencyEncoding = adjacencyEncoding;
+            return this;
+        }
+
+        /**
+         * Store the features that are only needed to rerank, i.e. inline, half-precision, LVQ or SQ8 vectors, in a region of their own
+         * ahead of the node records, instead of in the records themselves.  Searching reads only the records
+         * (neighbors, plus fused ADC codes if present), which are then much smaller, so more of them fit in
+         * the page cache and in each block.  Reranking reads one more location per node.  The default is false.
+         */
+        public Builder withSplitLayout(boolean splitLayout) {
+            this.splitLayout = splitLayout;
+            return this;
+        }
+
         public OnDiskGraphIndexWriter build() {
-            if (features.containsKey(FeatureId.FUSED_ADC) && !(features.containsKey(FeatureId.LVQ) || features.containsKey(FeatureId.INLINE_VECTORS))) {
+            if (features.containsKey(FeatureId.FUSED_ADC) && RERANK_FEATURES.stream().noneMatch(features::containsKey)) {
                 throw new IllegalArgumentException("Fused ADC requires an exact score source.");
             }
+            if (features.containsKey(FeatureId.FUSED_ADC) && adjacencyEncoding != AdjacencyEncoding.PADDED) {
+                throw new IllegalArgumentException("Fused ADC requires neighbors in their original order, i.e. AdjacencyEncoding.PADDED.");
+            }
 
             int dimension;
             if (features.containsKey(FeatureId.INLINE_VECTORS)) {
                 dimension = ((InlineVectors) features.get(FeatureId.INLINE_VECTORS)).dimension();
             } else if (features.containsKey(FeatureId.LVQ)) {
                 dimension = ((LVQ) features.get(FeatureId.LVQ)).dimension();
+            } else if (features.containsKey(FeatureId.HALF_PRECISION_VECTORS)) {
+                dimension = ((HalfPrecisionVectors) features.get(FeatureId.HALF_PRECISION_VECTORS)).dimension();
+            } else if (features.containsKey(FeatureId.SQ8)) {
+                dimension = ((SQ8) features.get(FeatureId.SQ8)).dimension();
             } else {
-                throw new IllegalArgumentException("Either LVQ or inline vectors must be provided.");
+                throw new IllegalArgumentException("Either LVQ, SQ8, inline vectors, or half-precision vectors must be provided.");
             }
 
-            return new OnDiskGraphIndexWriter(graphIndex, oldToNewOrdinals, dimension, features);
+            var separated = splitLayout ? EnumSet.copyOf(RERANK_FEATURES) : EnumSet.noneOf(FeatureId.class);
+            return new OnDiskGraphIndexWriter(graphIndex, oldToNewOrdinals, dimension, features, blockSize, adjacencyEncoding, separated);
         }
     }
 }
@@ -0,0 +1,120 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jbellis.jvector.graph.disk;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Encoding and decoding of neighbor lists for {@link AdjacencyEncoding#DELTA_BITPACKED}.
+ * <p>
+ * Layout: [int count &lt;&lt; 8 | bitsPerDelta] then, if count &gt; 0, [int first neighbor] and the
+ * count - 1 deltas between consecutive (sorted) neighbors, bitsPerDelta bits each, packed little-endian.
+ * <p>
+ * Using a single width for the whole list keeps decoding branch-free: each delta is a shift and a mask of
+ * an unaligned 64-bit load at a position computed from its index, followed by a prefix sum.
+ */
+final class PackedNeighbors {
+    private static final VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private PackedNeighbors() {
+    }
+
+    /**
+     * @return the size of the scratch buffer needed by decode for lists of up to maxDegree neighbors,
+     * including slack so that the last 64-bit load stays in bounds
+     */
+    static int scratchSize(int maxDegree) {
+        return payloadSize(maxDegree, Integer.SIZE) + Long.BYTES;
+    }
+
+    static int payloadSize(int count, int bits) {
+        return count <= 1 ? 0 : (int) (((long) (count - 1) * bits + 7) / 8);
+    }
+
+    /**
+     * Sorts the first `count` entries of `neighbors` in place, and returns the number of bits needed for the widest delta.
+     */
+    static int prepare(int[] neighbors, int count) {
+        Arrays.sort(neighbors, 0, count);
+        int maxDelta = 0;
+        for (int i = 1; i < count; i++) {
+            maxDelta = Math.max(maxDelta, neighbors[i] - neighbors[i - 1]);
+        }
+        return Integer.SIZE - Integer.numberOfLeadingZeros(maxDelta);
+    }
+
+    /**
+     * @return the encoded size of a list of `count` neighbors at `bits` per delta
+     */
+    static int encodedSize(int count, int bits) {
+        return count == 0 ? Integer.BYTES : 2 * Integer.BYTES + payloadSize(count, bits);
+    }
+
+    /**
+     * Write the first `count` entries of `neighbors`, which must have been passed to prepare.
+     */
+    static void write(DataOutput out, int[] neighbors, int count, int bits) throws IOException {
+        out.writeInt(count << 8 | bits);
+        if (count == 0) {
+            return;
+        }
+        out.writeInt(neighbors[0]);
+
+        long buffer = 0;
+        int buffered = 0;
+        for (int i = 1; i < count; i++) {
+            buffer |= (long) (neighbors[i] - neighbors[i - 1]) << buffered;
+            buffered += bits;
+            while (buffered >= 8) {
+                out.writeByte((int) buffer);
+                buffer >>>= 8;
+                buffered -= 8;
+            }
+        }
+        if (buffered > 0) {
+            out.writeByte((int) buffer);
+        }
+    }
+
+    static int count(int header) {
+        return header >>> 8;
+    }
+
+    static int bits(int header) {
+        return header & 0xFF;
+    }
+
+    /**
+     * Decode `count` neighbors into `result`, given the first neighbor and the packed deltas.
+     * `packed` must have at least Long.BYTES bytes of slack after the payload.
+     */
+    static void decode(byte[] packed, int count, int bits, int first, int[] result) {
+        long mask = (1L << bits) - 1;
+        int value = first;
+        result[0] = value;
+        for (int i = 1; i < count; i++) {
+            long bitPosition = (long) (i - 1) * bits;
+            long window = (long) LONG_LE.get(packed, (int) (bitPosition >>> 3));
+            value += (int) ((window >>> (bitPosition & 7)) & mask);
+            result[i] = value;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.jbellis.jvector.graph.disk;
+
+import io.github.jbellis.jvector.disk.RandomAccessReader;
+import io.github.jbellis.jvector.graph.similarity.ScoreFunction;
+import io.github.jbellis.jvector.pq.ScalarQuantization;
+import io.github.jbellis.jvector.vector.VectorSimilarityFunction;
+import io.github.jbellis.jvector.vector.types.ByteSequence;
+import io.github.jbellis.jvector.vector.types.VectorFloat;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Implements the storage of int8 scalar-quantized vectors in an on-disk graph index. These can be used for reranking.
+ */
+public class SQ8 implements Feature {
+    private final ScalarQuantization sq;
+
+    public SQ8(ScalarQuantization sq) {
+        this.sq = sq;
+    }
+
+    @Override
+    public FeatureId id() {
+        return FeatureId.SQ8;
+    }
+
+    @Override
+    public int headerSize() {
+        return sq.compressorSize();
+    }
+
+    @Override
+    public int inlineSize() {
+        return sq.compressedVectorSize();
+    }
+
+    public int dimension() {
+        return sq.getOriginalDimension();
+    }
+
+    static SQ8 load(CommonHeader header, RandomAccessReader reader) {
+        try {
+            return new SQ8(ScalarQuantization.load(reader));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void writeHeader(DataOutput out) throws IOException {
+        sq.write(out);
+    }
+
+    @Override
+    public void writeInline(DataOutput out, Feature.State state) throws IOException {
+        OnDiskGraphIndex.vectorTypeSupport.writeByteSequence(out, ((SQ8.State) state).codes);
+    }
+
+    public static class State implements Feature.State {
+        public final ByteSequence<?> codes;
+
+        public State(ByteSequence<?> codes) {
+            this.codes = codes;
+        }
+    }
+
+    ScoreFunction.ExactScoreFunction rerankerFor(VectorFloat<?> queryVector,
+                                                 VectorSimilarityFunction vsf,
+                                                 OnDiskGraphIndex.View view)
+    {
+        // each vector is scored before the next one is read, so they can share the scratch sequence
+        var scratch = OnDiskGraphIndex.vectorTypeSupport.createByteSequence(inlineSize());
+        return new ScoreFunction.ExactScoreFunction() {
+            @Override
+            public VectorFloat<?> similarityTo(int[] nodes) {
+                var results = vts.createFloatVector(nodes.length);
+                for (int i = 0; i < nodes.length; i++) {
+                    results.set(i, similarityTo(nodes[i]));
+                }
+                return results;
+            }
+
+            @Override
+            public float similarityTo(int node2) {
+                try {
+                    var reader = view.inlineReaderForNode(node2, FeatureId.SQ8);
+                    var codes = OnDiskGraphIndex.vectorTypeSupport.sliceByteSequence(reader, scratch);
+                    return sq.score(queryVector, codes, vsf);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.jbellis.jvector.graph.disk;
+
+import io.github.jbellis.jvector.util.Bits;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The deleted nodes of an OnDiskGraphIndex, kept in a memory-mapped sidecar bitmap so that deleting
+ * a node from an immutable index is a single bit flip instead of a rewrite.
+ * <p>
+ * Pass the tombstones to {@link OnDiskGraphIndex#load(io.github.jbellis.jvector.disk.ReaderSupplier, long, Tombstones)}
+ * and the index's views will report the deleted nodes as not live.  Searches still traverse deleted
+ * nodes, so the graph stays connected, but never return them.  A delete is seen by the searches that
+ * start after it returns.
+ * <p>
+ * Deletes are written to the mapped file, so they survive the process exiting or crashing as soon as
+ * they are made; call {@link #sync()} to also make them survive the machine crashing.
+ * <p>
+ * Layout:
+ * <pre>
+ * [int MAGIC][int version][int graphSize]
+ * [byte bits] * ceil(graphSize / 8), with node n deleted iff bit (n % 8) of byte (n / 8) is set
+ * </pre>
+ */
+public final class Tombstones implements Closeable {
+    static final int MAGIC = 0x70DE1E7E;
+    static final int CURRENT_VERSION = 1;
+    private static final int HEADER_SIZE = 3 * Integer.BYTES;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer bitmap;
+    private final int graphSize;
+    // written after each delete, so that reading it makes all earlier deletes visible
+    private volatile int deletedCount;
+
+    private Tombstones(FileChannel channel, MappedByteBuffer bitmap, int graphSize, int deletedCount) {
+        this.channel = channel;
+        this.bitmap = bitmap;
+        this.graphSize = graphSize;
+        this.deletedCount = deletedCount;
+    }
+
+    /**
+     * Open the tombstones of a graph of `graphSize` nodes at `path`, creating an empty set if the file
+     * does not exist yet.
+     */
+    public static Tombstones open(Path path, int graphSize) throws IOException {
+        if (!Files.exists(path)) {
+            create(path, graphSize);
+        }
+
+        var channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IllegalArgumentException("Corrupt tombstones file: too short for its header");
+            }
+            var bitmap = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            int magic = bitmap.getInt(0);
+            if (magic != MAGIC) {
+                throw new IllegalArgumentException(String.format("Not a tombstones file (magic was %08x)", magic));
+            }
+            int version = bitmap.getInt(Integer.BYTES);
+            if (version > CURRENT_VERSION) {
+                throw new IllegalArgumentException(String.format("Unsupported tombstones version %d (maximum is %d)", version, CURRENT_VERSION));
+            }
+            int storedSize = bitmap.getInt(2 * Integer.BYTES);
+            if (storedSize != graphSize) {
+                throw new IllegalArgumentException(String.format("Tombstones are for a graph of %d nodes, not %d", storedSize, graphSize));
+            }
+            if (channel.size() != fileSize(graphSize)) {
+                throw new IllegalArgumentException(String.format("Corrupt tombstones file: %d bytes, expected %d", channel.size(), fileSize(graphSize)));
+            }
+
+            int deletedCount = 0;
+            for (int i = HEADER_SIZE; i < bitmap.limit(); i++) {
+                deletedCount += Integer.bitCount(bitmap.get(i) & 0xFF);
+            }
+            return new Tombstones(channel, bitmap, graphSize, deletedCount);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Write an empty set to a temporary file and move it into place, so that a crash while creating
+     * it never leaves a partial file behind.
+     */
+    private static void create(Path path, int graphSize) throws IOException {
+        if (graphSize < 0) {
+            throw new IllegalArgumentException("Invalid graph size " + graphSize);
+        }
+        var temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (var raf = new RandomAccessFile(temp.toFile(), "rw")) {
+            raf.setLength(0);
+            raf.writeInt(MAGIC);
+            raf.writeInt(CURRENT_VERSION);
+            raf.writeInt(graphSize);
+            // the bitmap is zero-filled, i.e. nothing is deleted
+            raf.setLength(fileSize(graphSize));
+            raf.getFD().sync();
+        }
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static long fileSize(int graphSize) {
+        return HEADER_SIZE + (graphSize + 7L) / 8;
+    }
+
+    /**
+     * Mark `node` deleted.
+     *
+     * @return true if the node was not already deleted
+     */
+    public synchronized boolean delete(int node) {
+        checkNode(node);
+        int index = HEADER_SIZE + (node >>> 3);
+        byte b = bitmap.get(index);
+        byte mask = (byte) (1 << (node & 7));
+        if ((b & mask) != 0) {
+            return false;
+        }
+        bitmap.put(index, (byte) (b | mask));
+        deletedCount++;
+        return true;
+    }
+
+    public boolean isDeleted(int node) {
+        checkNode(node);
+        return isDeletedUnchecked(node);
+    }
+
+    private boolean isDeletedUnchecked(int node) {
+        return (bitmap.get(HEADER_SIZE + (node >>> 3)) & (1 << (node & 7))) != 0;
+    }
+
+    private void checkNode(int node) {
+        if (node < 0 || node >= graphSize) {
+            throw new IllegalArgumentException(String.format("Node %d is not in a graph of %d nodes", node, graphSize));
+        }
+    }
+
+    /** @return the number of deleted nodes */
+    public int deletedCount() {
+        return deletedCount;
+    }
+
+    /** @return the size of the graph that the tombstones belong to */
+    public int graphSize() {
+        return graphSize;
+    }
+
+    /**
+     * @return the nodes that are not deleted.  Reflects every delete made before this call, and
+     * possibly some made after it.
+     */
+    public Bits liveNodes() {
+        if (deletedCount == 0) {
+            return Bits.ALL;
+        }
+        return new Bits() {
+            @Override
+            public boolean get(int index) {
+                return !isDeletedUnchecked(index);
+            }
+
+            @Override
+            public int length() {
+                return graphSize;
+            }
+        };
+    }
+
+    /** Flush the deletes made so far to the storage device. */
+    public void sync() {
+        bitmap.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        sync();
+        channel.close();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Tombstones(graphSize=%d, deleted=%d)", graphSize, deletedCount);
+    }
+}
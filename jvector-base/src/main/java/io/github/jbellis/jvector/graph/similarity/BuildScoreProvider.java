@@ -181,12 +181,6 @@ public interface BuildScoreProvider {
                             return this;
                         }
 
-                        @Override
-                        public void getVectorInto(int node2, VectorFloat<?> result, int offset) {
-                            // getVectorInto is only called by reranking, not diversity code
-                            throw new UnsupportedOperationException();
-                        }
-
                         @Override
                         public VectorFloat<?> getVector(int nodeId) {
                             return cache.computeIfAbsent(nodeId, vp::getVector);
@@ -16,28 +16,75 @@
 
 package io.github.jbellis.jvector.graph.similarity;
 
-/** Encapsulates comparing node distances to a specific vector for GraphSearcher. */
+import java.util.List;
+
+/**
+ * Encapsulates comparing node distances to a specific vector for GraphSearcher.
+ * <p>
+ * The search is navigated with `scoreFunction`, and its results are then rescored by each of the
+ * rerank stages in turn, each keeping only its best `topK` nodes for the next one.  This allows e.g.
+ * navigating with fused ADC, reranking the top 4K results with LVQ, and then reranking the top 10 of
+ * those with full-precision vectors from a separate file, so that the expensive reads are only made
+ * for the final few candidates.
+ */
 public final class SearchScoreProvider {
     private final ScoreFunction scoreFunction;
-    private final ScoreFunction.ExactScoreFunction reranker;
+    private final List<RerankStage> rerankStages;
 
     public SearchScoreProvider(ScoreFunction scoreFunction, ScoreFunction.ExactScoreFunction reranker) {
+        this(scoreFunction, reranker == null ? List.of() : List.of(new RerankStage(reranker, Integer.MAX_VALUE)));
+    }
+
+    private SearchScoreProvider(ScoreFunction scoreFunction, List<RerankStage> rerankStages) {
         this.scoreFunction = scoreFunction;
-        this.reranker = reranker;
+        this.rerankStages = rerankStages;
+    }
+
+    /**
+     * @param rerankStages the stages to rerank the search results with, in the order they are applied
+     */
+    public static SearchScoreProvider withRerankStages(ScoreFunction scoreFunction, List<RerankStage> rerankStages) {
+        for (var stage : rerankStages) {
+            if (stage.topK <= 0) {
+                throw new IllegalArgumentException(String.format("Rerank stage topK must be positive, got %d", stage.topK));
+            }
+        }
+        return new SearchScoreProvider(scoreFunction, List.copyOf(rerankStages));
     }
 
     public ScoreFunction scoreFunction() {
         return scoreFunction;
     }
 
+    /**
+     * @return the reranker of the last rerank stage, which gives the most accurate scores, or null if there are no stages
+     */
     public ScoreFunction.ExactScoreFunction reranker() {
-        return reranker;
+        return rerankStages.isEmpty() ? null : rerankStages.get(rerankStages.size() - 1).reranker;
+    }
+
+    public List<RerankStage> rerankStages() {
+        return rerankStages;
     }
 
     public ScoreFunction.ExactScoreFunction exactScoreFunction() {
         return scoreFunction.isExact()
                 ? (ScoreFunction.ExactScoreFunction) scoreFunction
-                : reranker;
+                : reranker();
+    }
+
+    /**
+     * One stage of a rerank pipeline: the nodes that reach it are rescored with `reranker`, and the best
+     * `topK` of them are passed on to the next stage, or returned if this is the last one.
+     */
+    public static final class RerankStage {
+        public final ScoreFunction.ExactScoreFunction reranker;
+        public final int topK;
+
+        public RerankStage(ScoreFunction.ExactScoreFunction reranker, int topK) {
+            this.reranker = reranker;
+            this.topK = topK;
+        }
     }
 
     /**
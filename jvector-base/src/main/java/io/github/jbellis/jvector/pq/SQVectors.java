@@ -0,0 +1,139 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.jbellis.jvector.pq;
+
+import io.github.jbellis.jvector.disk.RandomAccessReader;
+import io.github.jbellis.jvector.graph.similarity.ScoreFunction;
+import io.github.jbellis.jvector.util.RamUsageEstimator;
+import io.github.jbellis.jvector.vector.VectorSimilarityFunction;
+import io.github.jbellis.jvector.vector.VectorizationProvider;
+import io.github.jbellis.jvector.vector.types.ByteSequence;
+import io.github.jbellis.jvector.vector.types.VectorFloat;
+import io.github.jbellis.jvector.vector.types.VectorTypeSupport;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Objects;
+
+public class SQVectors implements CompressedVectors {
+    private static final VectorTypeSupport vectorTypeSupport = VectorizationProvider.getInstance().getVectorTypeSupport();
+    private final ScalarQuantization sq;
+    private final ByteSequence<?>[] compressedVectors;
+
+    public SQVectors(ScalarQuantization sq, ByteSequence<?>[] compressedVectors) {
+        this.sq = sq;
+        this.compressedVectors = compressedVectors;
+    }
+
+    @Override
+    public int count() {
+        return compressedVectors.length;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        // SQ scale and offset
+        sq.write(out);
+
+        // compressed vectors
+        out.writeInt(compressedVectors.length);
+        for (var v : compressedVectors) {
+            vectorTypeSupport.writeByteSequence(out, v);
+        }
+    }
+
+    public static SQVectors load(RandomAccessReader in, long offset) throws IOException {
+        in.seek(offset);
+
+        // SQ
+        var sq = ScalarQuantization.load(in);
+
+        // read the compressed vectors
+        int size = in.readInt();
+        if (size < 0) {
+            throw new IOException("Invalid compressed vector count " + size);
+        }
+        var compressedVectors = new ByteSequence<?>[size];
+        for (int i = 0; i < size; i++) {
+            compressedVectors[i] = vectorTypeSupport.readByteSequence(in, sq.compressedVectorSize());
+        }
+
+        return new SQVectors(sq, compressedVectors);
+    }
+
+    @Override
+    public ScoreFunction.ApproximateScoreFunction precomputedScoreFunctionFor(VectorFloat<?> q, VectorSimilarityFunction similarityFunction) {
+        // there is nothing to precompute, decoding is cheaper than a table lookup
+        return scoreFunctionFor(q, similarityFunction);
+    }
+
+    @Override
+    public ScoreFunction.ApproximateScoreFunction scoreFunctionFor(VectorFloat<?> q, VectorSimilarityFunction similarityFunction) {
+        return node2 -> sq.score(q, compressedVectors[node2], similarityFunction);
+    }
+
+    public ByteSequence<?> get(int i) {
+        return compressedVectors[i];
+    }
+
+    @Override
+    public int getOriginalSize() {
+        return sq.getOriginalDimension() * Float.BYTES;
+    }
+
+    @Override
+    public int getCompressedSize() {
+        return sq.compressedVectorSize();
+    }
+
+    @Override
+    public ScalarQuantization getCompressor() {
+        return sq;
+    }
+
+    @Override
+    public long ramBytesUsed() {
+        if (compressedVectors.length == 0) {
+            return 0;
+        }
+        return compressedVectors.length * RamUsageEstimator.sizeOf(compressedVectors[0]);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SQVectors sqVectors = (SQVectors) o;
+        return Objects.equals(sq, sqVectors.sq) && Arrays.equals(compressedVectors, sqVectors.compressedVectors);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Objects.hash(sq);
+        result = 31 * result + Arrays.hashCode(compressedVectors);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "SQVectors{" +
+               "sq=" + sq +
+               ", count=" + compressedVectors.length +
+               '}';
+    }
+}
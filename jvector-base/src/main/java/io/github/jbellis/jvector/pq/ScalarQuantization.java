@@ -0,0 +1,198 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.jbellis.jvector.pq;
+
+import io.github.jbellis.jvector.disk.RandomAccessReader;
+import io.github.jbellis.jvector.graph.RandomAccessVectorValues;
+import io.github.jbellis.jvector.vector.VectorSimilarityFunction;
+import io.github.jbellis.jvector.vector.VectorUtil;
+import io.github.jbellis.jvector.vector.VectorizationProvider;
+import io.github.jbellis.jvector.vector.types.ByteSequence;
+import io.github.jbellis.jvector.vector.types.VectorFloat;
+import io.github.jbellis.jvector.vector.types.VectorTypeSupport;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Scalar Quantization of float vectors (SQ8): each float is compressed to a signed byte, using a
+ * per-dimension scale and offset fit to the range of the training vectors, so that component i
+ * decodes to offset[i] + scale[i] * code[i].
+ * <p>
+ * This is 4x compression with very little loss in accuracy, and scoring decodes the codes on the fly
+ * with one multiply-add per component.  Components outside the training range are clamped to it.
+ */
+public class ScalarQuantization implements VectorCompressor<ByteSequence<?>> {
+    private static final VectorTypeSupport vectorTypeSupport = VectorizationProvider.getInstance().getVectorTypeSupport();
+    private final VectorFloat<?> scale;
+    private final VectorFloat<?> offset;
+
+    public ScalarQuantization(VectorFloat<?> scale, VectorFloat<?> offset) {
+        if (scale.length() != offset.length()) {
+            throw new IllegalArgumentException(String.format("scale has %d dimensions but offset has %d", scale.length(), offset.length()));
+        }
+        this.scale = scale;
+        this.offset = offset;
+    }
+
+    public static ScalarQuantization compute(RandomAccessVectorValues ravv) {
+        return compute(ravv, ForkJoinPool.commonPool());
+    }
+
+    public static ScalarQuantization compute(RandomAccessVectorValues ravv, ForkJoinPool parallelExecutor) {
+        var vectors = ProductQuantization.extractTrainingVectors(ravv, parallelExecutor);
+        int dimension = ravv.dimension();
+        var min = vectorTypeSupport.createFloatVector(dimension);
+        var max = vectorTypeSupport.createFloatVector(dimension);
+        for (int i = 0; i < dimension; i++) {
+            min.set(i, Float.POSITIVE_INFINITY);
+            max.set(i, Float.NEGATIVE_INFINITY);
+        }
+        for (var v : vectors) {
+            for (int i = 0; i < dimension; i++) {
+                min.set(i, Math.min(min.get(i), v.get(i)));
+                max.set(i, Math.max(max.get(i), v.get(i)));
+            }
+        }
+
+        // map [min, max] onto [-128, 127]
+        var scale = vectorTypeSupport.createFloatVector(dimension);
+        var offset = vectorTypeSupport.createFloatVector(dimension);
+        for (int i = 0; i < dimension; i++) {
+            if (vectors.isEmpty()) {
+                // no training data; every component encodes to 0 and decodes to 0
+                continue;
+            }
+            float s = (max.get(i) - min.get(i)) / 255;
+            scale.set(i, s);
+            offset.set(i, min.get(i) + 128 * s);
+        }
+        return new ScalarQuantization(scale, offset);
+    }
+
+    @Override
+    public CompressedVectors createCompressedVectors(Object[] compressedVectors) {
+        return new SQVectors(this, (ByteSequence<?>[]) compressedVectors);
+    }
+
+    @Override
+    public ByteSequence<?>[] encodeAll(RandomAccessVectorValues ravv, ForkJoinPool simdExecutor) {
+        return simdExecutor.submit(() -> IntStream.range(0, ravv.size())
+                .parallel()
+                .mapToObj(i -> encode(ravv.getVector(i)))
+                .toArray(ByteSequence<?>[]::new))
+                .join();
+    }
+
+    /**
+     * Encodes the input vector
+     *
+     * @return one signed byte per original f32
+     */
+    @Override
+    public ByteSequence<?> encode(VectorFloat<?> v) {
+        var encoded = vectorTypeSupport.createByteSequence(v.length());
+        for (int i = 0; i < v.length(); i++) {
+            float s = scale.get(i);
+            if (s == 0) {
+                // constant dimension, which offset represents exactly
+                continue;
+            }
+            long code = Math.round((v.get(i) - offset.get(i)) / s);
+            encoded.set(i, (byte) Math.max(Byte.MIN_VALUE, Math.min(Byte.MAX_VALUE, code)));
+        }
+        return encoded;
+    }
+
+    /**
+     * Decodes the quantized representation (ByteSequence) to its approximate original vector.
+     */
+    public void decode(ByteSequence<?> encoded, VectorFloat<?> target) {
+        for (int i = 0; i < target.length(); i++) {
+            target.set(i, offset.get(i) + scale.get(i) * encoded.get(i));
+        }
+    }
+
+    /**
+     * @return the similarity of `query` to the quantized vector `encoded`, on the same scale as
+     * `similarityFunction.compare`
+     */
+    public float score(VectorFloat<?> query, ByteSequence<?> encoded, VectorSimilarityFunction similarityFunction) {
+        switch (similarityFunction) {
+            case EUCLIDEAN:
+                return 1 / (1 + VectorUtil.int8SquareDistance(query, encoded, scale, offset));
+            case DOT_PRODUCT:
+                return (1 + VectorUtil.int8DotProduct(query, encoded, scale, offset)) / 2;
+            case COSINE:
+                return (1 + VectorUtil.int8Cosine(query, encoded, scale, offset)) / 2;
+            default:
+                throw new IllegalArgumentException("Unsupported similarity function: " + similarityFunction);
+        }
+    }
+
+    @Override
+    public int compressorSize() {
+        return Integer.BYTES + 2 * scale.length() * Float.BYTES;
+    }
+
+    @Override
+    public int compressedVectorSize() {
+        return scale.length();
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(scale.length());
+        vectorTypeSupport.writeFloatVector(out, scale);
+        vectorTypeSupport.writeFloatVector(out, offset);
+    }
+
+    public int getOriginalDimension() {
+        return scale.length();
+    }
+
+    public static ScalarQuantization load(RandomAccessReader in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Invalid dimension " + length);
+        }
+        var scale = vectorTypeSupport.readFloatVector(in, length);
+        var offset = vectorTypeSupport.readFloatVector(in, length);
+        return new ScalarQuantization(scale, offset);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ScalarQuantization that = (ScalarQuantization) o;
+        return Objects.equals(scale, that.scale) && Objects.equals(offset, that.offset);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(scale, offset);
+    }
+
+    @Override
+    public String toString() {
+        return "ScalarQuantization";
+    }
+}
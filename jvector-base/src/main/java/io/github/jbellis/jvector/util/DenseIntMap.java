@@ -35,7 +35,7 @@ import java.util.stream.IntStream;
  * "Dense-ish" means that space is allocated for all keys from 0 to the highest key, but
  * it is valid to have gaps in the keys.  The value associated with "gap" keys is null.
  */
-public class DenseIntMap<T> {
+public class DenseIntMap<T> implements IntMap<T> {
     // locking strategy:
     // - writelock to resize the array
     // - readlock to update the array with put or remove
@@ -52,6 +52,7 @@ public class DenseIntMap<T> {
     /**
      * @param key ordinal
      */
+    @Override
     public void put(int key, T value) {
         if (value == null) {
             throw new IllegalArgumentException("put() value cannot be null -- use remove() instead");
@@ -72,6 +73,7 @@ public class DenseIntMap<T> {
     /**
      * @return number of items that have been added
      */
+    @Override
     public int size() {
         return size.get();
     }
@@ -80,6 +82,7 @@ public class DenseIntMap<T> {
      * @param key ordinal
      * @return the value of the key, or null if not set
      */
+    @Override
     public T get(int key) {
         var ref = objects;
         if (key >= ref.length()) {
@@ -112,6 +115,7 @@ public class DenseIntMap<T> {
     /**
      * @return the former value of the key, or null if it was not set
      */
+    @Override
     public T remove(int key) {
         if (key >= objects.length()) {
             return null;
@@ -134,10 +138,12 @@ public class DenseIntMap<T> {
         }
     }
 
+    @Override
     public boolean containsKey(int key) {
         return get(key) != null;
     }
 
+    @Override
     public Set<Map.Entry<Integer, T>> entrySet() {
         var entries = new HashSet<Map.Entry<Integer, T>>(size());
         var ref = objects;
@@ -150,6 +156,7 @@ public class DenseIntMap<T> {
         return entries;
     }
 
+    @Override
     public Set<Integer> keySet() {
         var keys = new HashSet<Integer>(size());
         var ref = objects;
@@ -162,6 +169,7 @@ public class DenseIntMap<T> {
         return keys;
     }
 
+    @Override
     public NodesIterator getNodesIterator() {
         // implemented here because we can't make it threadsafe AND performant elsewhere
         var minSize = size(); // if keys are added concurrently we will miss them
@@ -0,0 +1,59 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jbellis.jvector.util;
+
+import io.github.jbellis.jvector.graph.NodesIterator;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A threadsafe map from ordinals to values.  Implementations are expected to be
+ * efficient for dense keys, i.e. graph node ids.
+ */
+public interface IntMap<T> {
+    /**
+     * @param key ordinal
+     */
+    void put(int key, T value);
+
+    /**
+     * @return number of items that have been added
+     */
+    int size();
+
+    /**
+     * @param key ordinal
+     * @return the value of the key, or null if not set
+     */
+    T get(int key);
+
+    /**
+     * @return the former value of the key, or null if it was not set
+     */
+    T remove(int key);
+
+    boolean containsKey(int key);
+
+    Set<Map.Entry<Integer, T>> entrySet();
+
+    Set<Integer> keySet();
+
+    /**
+     * @return an iterator over the keys currently in the map.  Keys added concurrently may be missed.
+     */
+    NodesIterator getNodesIterator();
+}
@@ -375,4 +375,72 @@ final class DefaultVectorUtilSupport implements VectorUtilSupport {
 
     return (float) (sum / Math.sqrt((double) norm1 * (double) norm2));
   }
+
+  @Override
+  public float halfDotProduct(VectorFloat<?> query, ByteSequence<?> encoded, HalfFloatFormat format) {
+    float sum = 0;
+    for (int i = 0; i < query.length(); i++) {
+      sum += query.get(i) * format.decode(encoded, i);
+    }
+    return sum;
+  }
+
+  @Override
+  public float halfSquareDistance(VectorFloat<?> query, ByteSequence<?> encoded, HalfFloatFormat format) {
+    float sum = 0;
+    for (int i = 0; i < query.length(); i++) {
+      float diff = query.get(i) - format.decode(encoded, i);
+      sum += diff * diff;
+    }
+    return sum;
+  }
+
+  @Override
+  public float halfCosine(VectorFloat<?> query, ByteSequence<?> encoded, HalfFloatFormat format) {
+    float sum = 0.0f;
+    float norm1 = 0.0f;
+    float norm2 = 0.0f;
+    for (int i = 0; i < query.length(); i++) {
+      float elem1 = query.get(i);
+      float elem2 = format.decode(encoded, i);
+      sum += elem1 * elem2;
+      norm1 += elem1 * elem1;
+      norm2 += elem2 * elem2;
+    }
+    return (float) (sum / Math.sqrt((double) norm1 * (double) norm2));
+  }
+
+  @Override
+  public float int8DotProduct(VectorFloat<?> query, ByteSequence<?> codes, VectorFloat<?> scale, VectorFloat<?> offset) {
+    float sum = 0;
+    for (int i = 0; i < query.length(); i++) {
+      sum += query.get(i) * (offset.get(i) + scale.get(i) * codes.get(i));
+    }
+    return sum;
+  }
+
+  @Override
+  public float int8SquareDistance(VectorFloat<?> query, ByteSequence<?> codes, VectorFloat<?> scale, VectorFloat<?> offset) {
+    float sum = 0;
+    for (int i = 0; i < query.length(); i++) {
+      float diff = query.get(i) - (offset.get(i) + scale.get(i) * codes.get(i));
+      sum += diff * diff;
+    }
+    return sum;
+  }
+
+  @Override
+  public float int8Cosine(VectorFloat<?> query, ByteSequence<?> codes, VectorFloat<?> scale, VectorFloat<?> offset) {
+    float sum = 0.0f;
+    float norm1 = 0.0f;
+    float norm2 = 0.0f;
+    for (int i = 0; i < query.length(); i++) {
+      float elem1 = query.get(i);
+      float elem2 = offset.get(i) + scale.get(i) * codes.get(i);
+      sum += elem1 * elem2;
+      norm1 += elem1 * elem1;
+      norm2 += elem2 * elem2;
+    }
+    return (float) (sum / Math.sqrt((double) norm1 * (double) norm2));
+  }
 }
@@ -0,0 +1,109 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.jbellis.jvector.vector;
+
+import io.github.jbellis.jvector.vector.types.ByteSequence;
+
+/**
+ * The 16-bit floating point formats for half-precision vectors.  A vector of `dimension` components is encoded
+ * as 2 * dimension bytes, each component big-endian like the rest of the on-disk format.
+ * <p>
+ * Encoding rounds to nearest, ties to even.  Values too large for the format saturate to its largest finite
+ * value, so a vector never decodes to an infinity; NaN cannot be encoded.
+ */
+public enum HalfFloatFormat {
+    /**
+     * IEEE 754 binary16: 5 exponent bits and 10 mantissa bits.  About 3 significant digits, with a range
+     * of +/-65504, which suits normalized embeddings.
+     */
+    FP16 {
+        @Override
+        public short encode(float value) {
+            int bits = Float.floatToRawIntBits(value);
+            int sign = (bits >>> 16) & 0x8000;
+            int abs = bits & 0x7FFFFFFF;
+            checkNotNaN(abs, value);
+            if (abs >= 0x477FF000) {
+                // rounds to infinity (65520 or more)
+                return (short) (sign | 0x7BFF);
+            }
+            if (abs < 0x38800000) {
+                // smaller than the smallest normal fp16 value, 2^-14; scaling by 2^24 is exact
+                return (short) (sign | (int) Math.rint(Float.intBitsToFloat(abs) * 0x1p24f));
+            }
+            // rebias the exponent from 127 to 15 and round the mantissa from 23 bits to 10
+            int h = (abs - 0x38000000) >>> 13;
+            int rest = abs & 0x1FFF;
+            if (rest > 0x1000 || (rest == 0x1000 && (h & 1) != 0)) {
+                h++;
+            }
+            return (short) (sign | h);
+        }
+
+        @Override
+        public float decode(short encoded) {
+            int sign = (encoded & 0x8000) << 16;
+            int abs = encoded & 0x7FFF;
+            if (abs >= 0x7C00) {
+                return Float.intBitsToFloat(sign | 0x7F800000 | (abs & 0x3FF) << 13);
+            }
+            // interpreting the bits with float's exponent bias of 127 instead of 15 scales the value by 2^-112,
+            // for subnormals as well as normal values
+            return Float.intBitsToFloat(sign | abs << 13) * 0x1p112f;
+        }
+    },
+
+    /**
+     * bfloat16: the upper half of a float32, with 8 exponent bits and 7 mantissa bits.  Only about
+     * 2 significant digits, but the same range as float32.
+     */
+    BF16 {
+        @Override
+        public short encode(float value) {
+            int bits = Float.floatToRawIntBits(value);
+            int abs = bits & 0x7FFFFFFF;
+            checkNotNaN(abs, value);
+            if (abs >= 0x7F7F8000) {
+                // rounds to infinity
+                return (short) ((bits >>> 16 & 0x8000) | 0x7F7F);
+            }
+            return (short) ((bits + 0x7FFF + ((bits >>> 16) & 1)) >>> 16);
+        }
+
+        @Override
+        public float decode(short encoded) {
+            return Float.intBitsToFloat((encoded & 0xFFFF) << 16);
+        }
+    };
+
+    public abstract short encode(float value);
+
+    public abstract float decode(short encoded);
+
+    /**
+     * @return the `i`th component of the encoded vector
+     */
+    public float decode(ByteSequence<?> encoded, int i) {
+        return decode((short) ((encoded.get(2 * i) << 8) | (encoded.get(2 * i + 1) & 0xFF)));
+    }
+
+    private static void checkNotNaN(int abs, float value) {
+        if (abs > 0x7F800000) {
+            throw new IllegalArgumentException("Cannot encode " + value + " as a half-precision float");
+        }
+    }
+}
@@ -235,4 +235,73 @@ public final class VectorUtil {
   public static float lvqCosine(VectorFloat<?> v, LocallyAdaptiveVectorQuantization.PackedVector quantizedVector, VectorFloat<?> centroid) {
     return impl.lvqCosine(v, quantizedVector, centroid);
   }
+
+  /**
+   * Calculates the dot product between the vector v and the half-precision vector `encoded`.
+   * @param v the uncompressed vector
+   * @param encoded the half-precision vector, 2 * v.length() bytes
+   * @param format the format of `encoded`
+   * @return the dot product
+   */
+  public static float halfDotProduct(VectorFloat<?> v, ByteSequence<?> encoded, HalfFloatFormat format) {
+    return impl.halfDotProduct(v, encoded, format);
+  }
+
+  /**
+   * Calculates the square of the L2 distance between the vector v and the half-precision vector `encoded`.
+   * @param v the uncompressed vector
+   * @param encoded the half-precision vector, 2 * v.length() bytes
+   * @param format the format of `encoded`
+   * @return the square of the L2 distance
+   */
+  public static float halfSquareDistance(VectorFloat<?> v, ByteSequence<?> encoded, HalfFloatFormat format) {
+    return impl.halfSquareDistance(v, encoded, format);
+  }
+
+  /**
+   * Calculates the cosine similarity between the vector v and the half-precision vector `encoded`.
+   * @param v the uncompressed vector
+   * @param encoded the half-precision vector, 2 * v.length() bytes
+   * @param format the format of `encoded`
+   * @return the cosine similarity
+   */
+  public static float halfCosine(VectorFloat<?> v, ByteSequence<?> encoded, HalfFloatFormat format) {
+    return impl.halfCosine(v, encoded, format);
+  }
+
+  /**
+   * Calculates the dot product between the vector v and the int8 vector `codes`.
+   * @param v the uncompressed vector
+   * @param codes the signed int8 codes, one per component of v
+   * @param scale the per-component scale of the codes
+   * @param offset the per-component offset of the codes, so that component i decodes to offset[i] + scale[i] * codes[i]
+   * @return the dot product
+   */
+  public static float int8DotProduct(VectorFloat<?> v, ByteSequence<?> codes, VectorFloat<?> scale, VectorFloat<?> offset) {
+    return impl.int8DotProduct(v, codes, scale, offset);
+  }
+
+  /**
+   * Calculates the square of the L2 distance between the vector v and the int8 vector `codes`.
+   * @param v the uncompressed vector
+   * @param codes the signed int8 codes, one per component of v
+   * @param scale the per-component scale of the codes
+   * @param offset the per-component offset of the codes, so that component i decodes to offset[i] + scale[i] * codes[i]
+   * @return the square of the L2 distance
+   */
+  public static float int8SquareDistance(VectorFloat<?> v, ByteSequence<?> codes, VectorFloat<?> scale, VectorFloat<?> offset) {
+    return impl.int8SquareDistance(v, codes, scale, offset);
+  }
+
+  /**
+   * Calculates the cosine similarity between the vector v and the int8 vector `codes`.
+   * @param v the uncompressed vector
+   * @param codes the signed int8 codes, one per component of v
+   * @param scale the per-component scale of the codes
+   * @param offset the per-component offset of the codes, so that component i decodes to offset[i] + scale[i] * codes[i]
+   * @return the cosine similarity
+   */
+  public static float int8Cosine(VectorFloat<?> v, ByteSequence<?> codes, VectorFloat<?> scale, VectorFloat<?> offset) {
+    return impl.int8Cosine(v, codes, scale, offset);
+  }
 }
@@ -133,4 +133,22 @@ public interface VectorUtilSupport {
   float lvqSquareL2Distance(VectorFloat<?> query, LocallyAdaptiveVectorQuantization.PackedVector vector);
 
   float lvqCosine(VectorFloat<?> query, LocallyAdaptiveVectorQuantization.PackedVector vector, VectorFloat<?> centroid);
+
+  /** Dot product of query and the half-precision vector in `encoded`, which is in the given format */
+  float halfDotProduct(VectorFloat<?> query, ByteSequence<?> encoded, HalfFloatFormat format);
+
+  /** Square L2 distance between query and the half-precision vector in `encoded`, which is in the given format */
+  float halfSquareDistance(VectorFloat<?> query, ByteSequence<?> encoded, HalfFloatFormat format);
+
+  /** Cosine similarity of query and the half-precision vector in `encoded`, which is in the given format */
+  float halfCosine(VectorFloat<?> query, ByteSequence<?> encoded, HalfFloatFormat format);
+
+  /** Dot product of query and the int8 vector in `codes`, whose component i decodes to offset[i] + scale[i] * codes[i] */
+  float int8DotProduct(VectorFloat<?> query, ByteSequence<?> codes, VectorFloat<?> scale, VectorFloat<?> offset);
+
+  /** Square L2 distance between query and the int8 vector in `codes`, whose component i decodes to offset[i] + scale[i] * codes[i] */
+  float int8SquareDistance(VectorFloat<?> query, ByteSequence<?> codes, VectorFloat<?> scale, VectorFloat<?> offset);
+
+  /** Cosine similarity of query and the int8 vector in `codes`, whose component i decodes to offset[i] + scale[i] * codes[i] */
+  float int8Cosine(VectorFloat<?> query, ByteSequence<?> codes, VectorFloat<?> scale, VectorFloat<?> offset);
 }
@@ -83,5 +83,20 @@ public interface VectorTypeSupport {
 
     void readByteSequence(RandomAccessReader r, ByteSequence<?> sequence) throws IOException;
 
+    /**
+     * Read `scratch.length()` bytes from the given RandomAccessReader, either into `scratch` or,
+     * if the reader and implementation support it, as a view of the reader's underlying storage
+     * that is only valid until the reader's source is closed.  Either way the reader is advanced
+     * past the bytes.  Callers must not modify the result.
+     * @param r the reader to read the sequence from.
+     * @param scratch a sequence of the desired length, which may be overwritten.
+     * @return the sequence holding the bytes read: `scratch` or a view.
+     * @throws IOException
+     */
+    default ByteSequence<?> sliceByteSequence(RandomAccessReader r, ByteSequence<?> scratch) throws IOException {
+        readByteSequence(r, scratch);
+        return scratch;
+    }
+
     void writeByteSequence(DataOutput out, ByteSequence<?> sequence) throws IOException;
 }
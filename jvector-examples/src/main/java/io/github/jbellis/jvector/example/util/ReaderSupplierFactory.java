@@ -15,6 +15,7 @@
  */
 package io.github.jbellis.jvector.example.util;
 
+import io.github.jbellis.jvector.disk.ChunkedMappedReaderSupplier;
 import io.github.jbellis.jvector.disk.ReaderSupplier;
 import io.github.jbellis.jvector.disk.SimpleMappedReaderSupplier;
 
@@ -31,10 +32,10 @@ public class ReaderSupplierFactory {
         try {
             return new MMapReaderSupplier(path);
         } catch (UnsatisfiedLinkError|NoClassDefFoundError e) {
-            LOG.log(Level.WARNING, "MMapReaderSupplier not available, falling back to SimpleMappedReaderSupplier. More details available at level FINE.");
+            LOG.log(Level.WARNING, "MMapReaderSupplier not available, falling back to SimpleMappedReaderSupplier (or ChunkedMappedReaderSupplier for files over 2GB). More details available at level FINE.");
             LOG.log(Level.FINE, "MMapReaderSupplier instantiation exception:", e);
             if (Files.size(path) > Integer.MAX_VALUE) {
-                throw new RuntimeException("File sizes greater than 2GB are not supported on Windows--contributions welcome");
+                return new ChunkedMappedReaderSupplier(path);
             }
 
             return new SimpleMappedReaderSupplier(path);
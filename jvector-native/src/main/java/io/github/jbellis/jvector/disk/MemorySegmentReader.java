@@ -0,0 +1,134 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.jbellis.jvector.disk;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A RandomAccessReader over a MemorySegment, typically a file mapped by {@link MemorySegmentReaderSupplier}.
+ * Unlike MappedByteBuffer-based readers there is no 2GB limit, and bulk reads are single copies out of
+ * the segment.
+ * <p>
+ * {@link #slice} exposes the segment itself, so that callers (see MemorySegmentVectorProvider.sliceByteSequence)
+ * can use the mapped bytes in place instead of copying them.
+ */
+public class MemorySegmentReader implements RandomAccessReader {
+    // the on-disk format is written with DataOutput, which is big-endian
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN);
+    private static final ValueLayout.OfFloat FLOAT = ValueLayout.JAVA_FLOAT_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN);
+    private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN);
+
+    private final MemorySegment segment;
+    private long position;
+
+    MemorySegmentReader(MemorySegment segment) {
+        this.segment = segment;
+    }
+
+    @Override
+    public void seek(long offset) {
+        position = offset;
+    }
+
+    @Override
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * @return the next `length` bytes as a slice of the underlying segment, advancing the position past them.
+     * The slice is only valid until the segment's arena is closed.
+     */
+    public MemorySegment slice(long length) throws IOException {
+        checkBounds(length);
+        var slice = segment.asSlice(position, length);
+        position += length;
+        return slice;
+    }
+
+    private void checkBounds(long length) throws EOFException {
+        if (position < 0 || position + length > segment.byteSize()) {
+            throw new EOFException(String.format("Read of %d bytes at %d is outside the segment (size %d)", length, position, segment.byteSize()));
+        }
+    }
+
+    @Override
+    public int readInt() {
+        try {
+            return segment.get(INT, position);
+        } finally {
+            position += Integer.BYTES;
+        }
+    }
+
+    @Override
+    public float readFloat() {
+        try {
+            return segment.get(FLOAT, position);
+        } finally {
+            position += Float.BYTES;
+        }
+    }
+
+    @Override
+    public void readFully(byte[] bytes) {
+        MemorySegment.copy(segment, ValueLayout.JAVA_BYTE, position, bytes, 0, bytes.length);
+        position += bytes.length;
+    }
+
+    @Override
+    public void readFully(ByteBuffer buffer) {
+        int length = buffer.remaining();
+        MemorySegment.ofBuffer(buffer).copyFrom(segment.asSlice(position, length));
+        buffer.position(buffer.position() + length);
+        position += length;
+    }
+
+    @Override
+    public void readFully(float[] floats) {
+        read(floats, 0, floats.length);
+    }
+
+    @Override
+    public void readFully(long[] vector) {
+        MemorySegment.copy(segment, LONG, position, vector, 0, vector.length);
+        position += (long) vector.length * Long.BYTES;
+    }
+
+    @Override
+    public void read(int[] ints, int offset, int count) {
+        MemorySegment.copy(segment, INT, position, ints, offset, count);
+        position += (long) count * Integer.BYTES;
+    }
+
+    @Override
+    public void read(float[] floats, int offset, int count) {
+        // swaps the bytes as it copies, so this is still a single bulk copy
+        MemorySegment.copy(segment, FLOAT, position, floats, offset, count);
+        position += (long) count * Float.BYTES;
+    }
+
+    @Override
+    public void close() {
+        // don't close the segment, let the Supplier handle that
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.jbellis.jvector.disk;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Maps a file into a single MemorySegment in a shared Arena and supplies {@link MemorySegmentReader}s over it.
+ * The readers (and any slices they have handed out) share the mapping, which is unmapped by {@link #close()};
+ * using them afterwards throws IllegalStateException rather than crashing.
+ */
+public class MemorySegmentReaderSupplier implements ReaderSupplier {
+    private final Arena arena;
+    private final MemorySegment segment;
+
+    public MemorySegmentReaderSupplier(Path path) throws IOException {
+        arena = Arena.ofShared();
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena);
+        } catch (IOException e) {
+            arena.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public RandomAccessReader get() {
+        return new MemorySegmentReader(segment);
+    }
+
+    @Override
+    public void close() {
+        // OnDiskGraphIndex closes its supplier, so callers that also close it must not fail
+        if (arena.scope().isAlive()) {
+            arena.close();
+        }
+    }
+}
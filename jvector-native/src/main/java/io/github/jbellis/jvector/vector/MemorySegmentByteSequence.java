@@ -24,7 +24,8 @@ import java.lang.foreign.ValueLayout;
 import java.nio.Buffer;
 
 /**
- * ByteSequence implementation backed by an on-heap MemorySegment.
+ * ByteSequence implementation backed by a MemorySegment: usually on-heap, but possibly
+ * a read-only slice of a mapped file (see MemorySegmentVectorProvider.sliceByteSequence).
  */
 public class MemorySegmentByteSequence implements ByteSequence<MemorySegment> {
     private final MemorySegment segment;
@@ -45,6 +46,11 @@ public class MemorySegmentByteSequence implements ByteSequence<MemorySegment> {
         this.length = data.length;
     }
 
+    MemorySegmentByteSequence(MemorySegment segment) {
+        this.segment = segment;
+        this.length = Math.toIntExact(segment.byteSize());
+    }
+
     @Override
     public long ramBytesUsed() {
         return MemoryLayout.sequenceLayout(length, ValueLayout.JAVA_BYTE).byteSize();
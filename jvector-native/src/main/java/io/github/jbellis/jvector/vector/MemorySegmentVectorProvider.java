@@ -16,6 +16,7 @@
 
 package io.github.jbellis.jvector.vector;
 
+import io.github.jbellis.jvector.disk.MemorySegmentReader;
 import io.github.jbellis.jvector.disk.RandomAccessReader;
 import io.github.jbellis.jvector.vector.types.ByteSequence;
 import io.github.jbellis.jvector.vector.types.VectorFloat;
@@ -94,6 +95,20 @@ public class MemorySegmentVectorProvider implements VectorTypeSupport
         r.readFully(((MemorySegmentByteSequence) sequence).get().asByteBuffer());
     }
 
+    /**
+     * Returns a slice of the mapped file, with no copy, when reading from a MemorySegmentReader.
+     * The native kernels and the Panama kernels both accept off-heap segments, so the bytes can be
+     * scored straight from the page cache.
+     */
+    @Override
+    public ByteSequence<?> sliceByteSequence(RandomAccessReader r, ByteSequence<?> scratch) throws IOException {
+        if (r instanceof MemorySegmentReader msr) {
+            return new MemorySegmentByteSequence(msr.slice(scratch.length()));
+        }
+        readByteSequence(r, scratch);
+        return scratch;
+    }
+
 
     @Override
     public void writeByteSequence(DataOutput out, ByteSequence<?> sequence) throws IOException
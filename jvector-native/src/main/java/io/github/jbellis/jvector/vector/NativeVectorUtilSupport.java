@@ -159,5 +159,35 @@ final class NativeVectorUtilSupport implements VectorUtilSupport
         return VectorSimdOps.lvqCosine((MemorySegmentVectorFloat) query, vector, (MemorySegmentVectorFloat) centroid);
     }
 
+    @Override
+    public float halfDotProduct(VectorFloat<?> query, ByteSequence<?> encoded, HalfFloatFormat format) {
+        return VectorSimdOps.halfDotProduct((MemorySegmentVectorFloat) query, (MemorySegmentByteSequence) encoded, format);
+    }
+
+    @Override
+    public float halfSquareDistance(VectorFloat<?> query, ByteSequence<?> encoded, HalfFloatFormat format) {
+        return VectorSimdOps.halfSquareDistance((MemorySegmentVectorFloat) query, (MemorySegmentByteSequence) encoded, format);
+    }
+
+    @Override
+    public float halfCosine(VectorFloat<?> query, ByteSequence<?> encoded, HalfFloatFormat format) {
+        return VectorSimdOps.halfCosine((MemorySegmentVectorFloat) query, (MemorySegmentByteSequence) encoded, format);
+    }
+
+    @Override
+    public float int8DotProduct(VectorFloat<?> query, ByteSequence<?> codes, VectorFloat<?> scale, VectorFloat<?> offset) {
+        return VectorSimdOps.int8DotProduct((MemorySegmentVectorFloat) query, (MemorySegmentByteSequence) codes, (MemorySegmentVectorFloat) scale, (MemorySegmentVectorFloat) offset);
+    }
+
+    @Override
+    public float int8SquareDistance(VectorFloat<?> query, ByteSequence<?> codes, VectorFloat<?> scale, VectorFloat<?> offset) {
+        return VectorSimdOps.int8SquareDistance((MemorySegmentVectorFloat) query, (MemorySegmentByteSequence) codes, (MemorySegmentVectorFloat) scale, (MemorySegmentVectorFloat) offset);
+    }
+
+    @Override
+    public float int8Cosine(VectorFloat<?> query, ByteSequence<?> codes, VectorFloat<?> scale, VectorFloat<?> offset) {
+        return VectorSimdOps.int8Cosine((MemorySegmentVectorFloat) query, (MemorySegmentByteSequence) codes, (MemorySegmentVectorFloat) scale, (MemorySegmentVectorFloat) offset);
+    }
+
 
 }
@@ -22,7 +22,10 @@ import jdk.incubator.vector.ByteVector;
 import jdk.incubator.vector.FloatVector;
 import jdk.incubator.vector.IntVector;
 import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.ShortVector;
 import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
 
 import java.nio.ByteOrder;
 import java.util.List;
@@ -846,4 +849,187 @@ final class VectorSimdOps {
             return lvqCosine256(vector, packedVector, centroid);
         }
     }
+
+    // half-precision codes are loaded half a float vector's width at a time, then widened to ints
+    private static final VectorSpecies<Short> HALF_SHORT_SPECIES = VectorSpecies.of(short.class, VectorShape.forBitSize(FloatVector.SPECIES_PREFERRED.vectorBitSize() / 2));
+
+    /**
+     * Decode the FloatVector.SPECIES_PREFERRED.length() half-precision components starting at component i.
+     * Only finite values need to be handled, since HalfFloatFormat never encodes anything else.
+     */
+    private static FloatVector decodeHalf(MemorySegmentByteSequence encoded, int i, HalfFloatFormat format) {
+        var codes = ShortVector.fromMemorySegment(HALF_SHORT_SPECIES, encoded.get(), 2L * i, ByteOrder.BIG_ENDIAN);
+        var ints = (IntVector) codes.convertShape(VectorOperators.S2I, IntVector.SPECIES_PREFERRED, 0);
+        if (format == HalfFloatFormat.BF16) {
+            return ints.lanewise(VectorOperators.LSHL, 16).reinterpretAsFloats();
+        }
+        // as in HalfFloatFormat.FP16.decode: move the exponent and mantissa into place, then rebias by scaling
+        var sign = ints.lanewise(VectorOperators.AND, 0x8000).lanewise(VectorOperators.LSHL, 16);
+        var magnitude = ints.lanewise(VectorOperators.AND, 0x7FFF).lanewise(VectorOperators.LSHL, 13).reinterpretAsFloats().mul(0x1p112f);
+        return magnitude.reinterpretAsInts().lanewise(VectorOperators.OR, sign).reinterpretAsFloats();
+    }
+
+    static float halfDotProduct(MemorySegmentVectorFloat query, MemorySegmentByteSequence encoded, HalfFloatFormat format) {
+        int length = query.length();
+        int vectorizedLength = FloatVector.SPECIES_PREFERRED.loopBound(length);
+        var sum = FloatVector.zero(FloatVector.SPECIES_PREFERRED);
+
+        int i = 0;
+        for (; i < vectorizedLength; i += FloatVector.SPECIES_PREFERRED.length()) {
+            var a = FloatVector.fromMemorySegment(FloatVector.SPECIES_PREFERRED, query.get(), query.offset(i), ByteOrder.LITTLE_ENDIAN);
+            sum = a.fma(decodeHalf(encoded, i, format), sum);
+        }
+        float res = sum.reduceLanes(VectorOperators.ADD);
+
+        // Process the tail
+        for (; i < length; i++) {
+            res += query.get(i) * format.decode(encoded, i);
+        }
+        return res;
+    }
+
+    static float halfSquareDistance(MemorySegmentVectorFloat query, MemorySegmentByteSequence encoded, HalfFloatFormat format) {
+        int length = query.length();
+        int vectorizedLength = FloatVector.SPECIES_PREFERRED.loopBound(length);
+        var sum = FloatVector.zero(FloatVector.SPECIES_PREFERRED);
+
+        int i = 0;
+        for (; i < vectorizedLength; i += FloatVector.SPECIES_PREFERRED.length()) {
+            var a = FloatVector.fromMemorySegment(FloatVector.SPECIES_PREFERRED, query.get(), query.offset(i), ByteOrder.LITTLE_ENDIAN);
+            var diff = a.sub(decodeHalf(encoded, i, format));
+            sum = diff.fma(diff, sum);
+        }
+        float res = sum.reduceLanes(VectorOperators.ADD);
+
+        // Process the tail
+        for (; i < length; i++) {
+            float diff = query.get(i) - format.decode(encoded, i);
+            res += diff * diff;
+        }
+        return res;
+    }
+
+    static float halfCosine(MemorySegmentVectorFloat query, MemorySegmentByteSequence encoded, HalfFloatFormat format) {
+        int length = query.length();
+        int vectorizedLength = FloatVector.SPECIES_PREFERRED.loopBound(length);
+        var vsum = FloatVector.zero(FloatVector.SPECIES_PREFERRED);
+        var vQueryMagnitude = FloatVector.zero(FloatVector.SPECIES_PREFERRED);
+        var vHalfMagnitude = FloatVector.zero(FloatVector.SPECIES_PREFERRED);
+
+        int i = 0;
+        for (; i < vectorizedLength; i += FloatVector.SPECIES_PREFERRED.length()) {
+            var a = FloatVector.fromMemorySegment(FloatVector.SPECIES_PREFERRED, query.get(), query.offset(i), ByteOrder.LITTLE_ENDIAN);
+            var b = decodeHalf(encoded, i, format);
+            vsum = a.fma(b, vsum);
+            vQueryMagnitude = a.fma(a, vQueryMagnitude);
+            vHalfMagnitude = b.fma(b, vHalfMagnitude);
+        }
+        float sum = vsum.reduceLanes(VectorOperators.ADD);
+        float queryMagnitude = vQueryMagnitude.reduceLanes(VectorOperators.ADD);
+        float halfMagnitude = vHalfMagnitude.reduceLanes(VectorOperators.ADD);
+
+        // Process the tail
+        for (; i < length; i++) {
+            float a = query.get(i);
+            float b = format.decode(encoded, i);
+            sum += a * b;
+            queryMagnitude += a * a;
+            halfMagnitude += b * b;
+        }
+        return (float) (sum / Math.sqrt((double) queryMagnitude * (double) halfMagnitude));
+    }
+
+    // int8 codes are loaded a quarter of a float vector's width at a time, then converted to floats.
+    // There is no vector shape narrower than 64 bits, so with 128-bit floats the load covers twice as many
+    // codes as there are float lanes, and only the first half of them are converted.
+    private static final VectorSpecies<Byte> INT8_SPECIES = VectorSpecies.of(byte.class, VectorShape.forBitSize(Math.max(64, FloatVector.SPECIES_PREFERRED.vectorBitSize() / 4)));
+
+    /**
+     * @return the bound for the vectorized loop of an int8 kernel, leaving enough components
+     * for the tail that the last load of INT8_SPECIES.length() codes stays within `length`
+     */
+    private static int int8LoopBound(int length) {
+        int overhang = INT8_SPECIES.length() - FloatVector.SPECIES_PREFERRED.length();
+        return FloatVector.SPECIES_PREFERRED.loopBound(Math.max(0, length - overhang));
+    }
+
+    /**
+     * Decode the FloatVector.SPECIES_PREFERRED.length() int8 components starting at component i.
+     */
+    private static FloatVector decodeInt8(MemorySegmentByteSequence codes, FloatVector scale, FloatVector offset, int i) {
+        var floats = (FloatVector) ByteVector.fromMemorySegment(INT8_SPECIES, codes.get(), i, ByteOrder.LITTLE_ENDIAN)
+                .convertShape(VectorOperators.B2F, FloatVector.SPECIES_PREFERRED, 0);
+        return floats.fma(scale, offset);
+    }
+
+    static float int8DotProduct(MemorySegmentVectorFloat query, MemorySegmentByteSequence codes, MemorySegmentVectorFloat scale, MemorySegmentVectorFloat offset) {
+        int length = query.length();
+        int vectorizedLength = int8LoopBound(length);
+        var sum = FloatVector.zero(FloatVector.SPECIES_PREFERRED);
+
+        int i = 0;
+        for (; i < vectorizedLength; i += FloatVector.SPECIES_PREFERRED.length()) {
+            var a = FloatVector.fromMemorySegment(FloatVector.SPECIES_PREFERRED, query.get(), query.offset(i), ByteOrder.LITTLE_ENDIAN);
+            var b = decodeInt8(codes, FloatVector.fromMemorySegment(FloatVector.SPECIES_PREFERRED, scale.get(), scale.offset(i), ByteOrder.LITTLE_ENDIAN), FloatVector.fromMemorySegment(FloatVector.SPECIES_PREFERRED, offset.get(), offset.offset(i), ByteOrder.LITTLE_ENDIAN), i);
+            sum = a.fma(b, sum);
+        }
+        float res = sum.reduceLanes(VectorOperators.ADD);
+
+        // Process the tail
+        for (; i < length; i++) {
+            res += query.get(i) * (offset.get(i) + scale.get(i) * codes.get(i));
+        }
+        return res;
+    }
+
+    static float int8SquareDistance(MemorySegmentVectorFloat query, MemorySegmentByteSequence codes, MemorySegmentVectorFloat scale, MemorySegmentVectorFloat offset) {
+        int length = query.length();
+        int vectorizedLength = int8LoopBound(length);
+        var sum = FloatVector.zero(FloatVector.SPECIES_PREFERRED);
+
+        int i = 0;
+        for (; i < vectorizedLength; i += FloatVector.SPECIES_PREFERRED.length()) {
+            var a = FloatVector.fromMemorySegment(FloatVector.SPECIES_PREFERRED, query.get(), query.offset(i), ByteOrder.LITTLE_ENDIAN);
+            var diff = a.sub(decodeInt8(codes, FloatVector.fromMemorySegment(FloatVector.SPECIES_PREFERRED, scale.get(), scale.offset(i), ByteOrder.LITTLE_ENDIAN), FloatVector.fromMemorySegment(FloatVector.SPECIES_PREFERRED, offset.get(), offset.offset(i), ByteOrder.LITTLE_ENDIAN), i));
+            sum = diff.fma(diff, sum);
+        }
+        float res = sum.reduceLanes(VectorOperators.ADD);
+
+        // Process the tail
+        for (; i < length; i++) {
+            float diff = query.get(i) - (offset.get(i) + scale.get(i) * codes.get(i));
+            res += diff * diff;
+        }
+        return res;
+    }
+
+    static float int8Cosine(MemorySegmentVectorFloat query, MemorySegmentByteSequence codes, MemorySegmentVectorFloat scale, MemorySegmentVectorFloat offset) {
+        int length = query.length();
+        int vectorizedLength = int8LoopBound(length);
+        var vsum = FloatVector.zero(FloatVector.SPECIES_PREFERRED);
+        var vQueryMagnitude = FloatVector.zero(FloatVector.SPECIES_PREFERRED);
+        var vCodesMagnitude = FloatVector.zero(FloatVector.SPECIES_PREFERRED);
+
+        int i = 0;
+        for (; i < vectorizedLength; i += FloatVector.SPECIES_PREFERRED.length()) {
+            var a = FloatVector.fromMemorySegment(FloatVector.SPECIES_PREFERRED, query.get(), query.offset(i), ByteOrder.LITTLE_ENDIAN);
+            var b = decodeInt8(codes, FloatVector.fromMemorySegment(FloatVector.SPECIES_PREFERRED, scale.get(), scale.offset(i), ByteOrder.LITTLE_ENDIAN), FloatVector.fromMemorySegment(FloatVector.SPECIES_PREFERRED, offset.get(), offset.offset(i), ByteOrder.LITTLE_ENDIAN), i);
+            vsum = a.fma(b, vsum);
+            vQueryMagnitude = a.fma(a, vQueryMagnitude);
+            vCodesMagnitude = b.fma(b, vCodesMagnitude);
+        }
+        float sum = vsum.reduceLanes(VectorOperators.ADD);
+        float queryMagnitude = vQueryMagnitude.reduceLanes(VectorOperators.ADD);
+        float codesMagnitude = vCodesMagnitude.reduceLanes(VectorOperators.ADD);
+
+        // Process the tail
+        for (; i < length; i++) {
+            float a = query.get(i);
+            float b = offset.get(i) + scale.get(i) * codes.get(i);
+            sum += a * b;
+            queryMagnitude += a * a;
+            codesMagnitude += b * b;
+        }
+        return (float) (sum / Math.sqrt((double) queryMagnitude * (double) codesMagnitude));
+    }
 }
@@ -0,0 +1,114 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.jbellis.jvector.disk;
+
+import com.carrotsearch.randomizedtesting.RandomizedTest;
+import com.carrotsearch.randomizedtesting.annotations.ThreadLeakScope;
+import io.github.jbellis.jvector.TestUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+@ThreadLeakScope(ThreadLeakScope.Scope.NONE)
+public class TestChunkedMappedReader extends RandomizedTest {
+    private Path testDirectory;
+
+    @Before
+    public void setup() throws IOException {
+        testDirectory = Files.createTempDirectory(this.getClass().getSimpleName());
+    }
+
+    @After
+    public void tearDown() {
+        TestUtil.deleteQuietly(testDirectory);
+    }
+
+    @Test
+    public void testReadsAcrossChunks() throws IOException {
+        // 64-byte chunks, so that most multi-byte reads at random offsets cross a boundary
+        var bytes = new byte[1000];
+        getRandom().nextBytes(bytes);
+        var path = testDirectory.resolve("chunked");
+        Files.write(path, bytes);
+        var expected = ByteBuffer.wrap(bytes);
+
+        try (var reader = new ChunkedMappedReader(path, 64);
+             var duplicate = reader.duplicate())
+        {
+            assertEquals(bytes.length, reader.length());
+            for (int i = 0; i < 1000; i++) {
+                var r = randomBoolean() ? reader : duplicate;
+                int offset = randomIntBetween(0, bytes.length - 200);
+                r.seek(offset);
+                switch (randomIntBetween(0, 5)) {
+                    case 0:
+                        assertEquals(expected.getInt(offset), r.readInt());
+                        break;
+                    case 1:
+                        assertEquals(expected.getFloat(offset), r.readFloat(), 0.0f);
+                        break;
+                    case 2: {
+                        var actual = new byte[randomIntBetween(0, 200)];
+                        r.readFully(actual);
+                        var exp = new byte[actual.length];
+                        expected.duplicate().position(offset).get(exp);
+                        assertArrayEquals(exp, actual);
+                        break;
+                    }
+                    case 3: {
+                        var actual = ByteBuffer.allocate(randomIntBetween(0, 200));
+                        r.readFully(actual);
+                        assertEquals(0, actual.flip().compareTo(expected.duplicate().position(offset).limit(offset + actual.limit())));
+                        break;
+                    }
+                    case 4: {
+                        var actual = new long[randomIntBetween(0, 20)];
+                        r.readFully(actual);
+                        for (int j = 0; j < actual.length; j++) {
+                            assertEquals(expected.getLong(offset + j * Long.BYTES), actual[j]);
+                        }
+                        break;
+                    }
+                    default: {
+                        var ints = new int[randomIntBetween(0, 20)];
+                        var floats = new float[ints.length + 1];
+                        r.read(ints, 0, ints.length);
+                        r.read(floats, 1, ints.length);
+                        for (int j = 0; j < ints.length; j++) {
+                            assertEquals(expected.getInt(offset + j * Integer.BYTES), ints[j]);
+                            assertEquals(expected.getFloat(offset + (ints.length + j) * Float.BYTES), floats[j + 1], 0.0f);
+                        }
+                        break;
+                    }
+                }
+            }
+
+            reader.seek(bytes.length - 2);
+            assertThrows(EOFException.class, reader::readInt);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.jbellis.jvector.disk;
+
+import com.carrotsearch.randomizedtesting.RandomizedTest;
+import com.carrotsearch.randomizedtesting.annotations.ThreadLeakScope;
+import io.github.jbellis.jvector.TestUtil;
+import io.github.jbellis.jvector.graph.TestVectorGraph;
+import io.github.jbellis.jvector.graph.disk.OnDiskGraphIndex;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+@ThreadLeakScope(ThreadLeakScope.Scope.NONE)
+public class TestDirectIOReader extends RandomizedTest {
+    private Path testDirectory;
+
+    @Before
+    public void setup() throws IOException {
+        testDirectory = Files.createTempDirectory(this.getClass().getSimpleName());
+    }
+
+    @After
+    public void tearDown() {
+        TestUtil.deleteQuietly(testDirectory);
+    }
+
+    private static DirectIOReaderSupplier openOrSkip(Path path) {
+        try {
+            return new DirectIOReaderSupplier(path);
+        } catch (IOException | UnsupportedOperationException e) {
+            Assume.assumeNoException("Direct I/O is not supported here", e);
+            throw new AssertionError(e);
+        }
+    }
+
+    @Test
+    public void testReadsMatchFile() throws Exception {
+        // not a multiple of the block size, so the last block is short
+        var bytes = new byte[100_000 + 123];
+        getRandom().nextBytes(bytes);
+        var path = testDirectory.resolve("direct");
+        Files.write(path, bytes);
+        var expected = ByteBuffer.wrap(bytes);
+
+        try (var readers = openOrSkip(path);
+             var reader = readers.get())
+        {
+            for (int i = 0; i < 1000; i++) {
+                // include reads larger than the buffer, and reads up to the end of the file
+                int n = randomIntBetween(0, 40_000);
+                int offset = randomIntBetween(0, bytes.length - n);
+                reader.seek(offset);
+                if (n >= Integer.BYTES && randomBoolean()) {
+                    assertEquals(expected.getInt(offset), reader.readInt());
+                } else {
+                    var actual = new byte[n];
+                    reader.readFully(actual);
+                    var exp = new byte[n];
+                    expected.duplicate().position(offset).get(exp);
+                    assertArrayEquals(exp, actual);
+                    assertEquals(offset + n, reader.getPosition());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testUnderPageCache() throws Exception {
+        var graph = new TestUtil.RandomlyConnectedGraphIndex(500, 16, getRandom());
+        var path = testDirectory.resolve("graph");
+        TestUtil.writeGraph(graph, new TestVectorGraph.CircularFloatVectorValues(graph.size()), path);
+
+        var cache = new PageCache(1 << 16);
+        try (var readers = cache.wrap(openOrSkip(path), Files.size(path));
+             var onDiskGraph = OnDiskGraphIndex.load(readers, 0))
+        {
+            TestUtil.assertGraphEquals(graph, onDiskGraph);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.jbellis.jvector.disk;
+
+import com.carrotsearch.randomizedtesting.RandomizedTest;
+import com.carrotsearch.randomizedtesting.annotations.ThreadLeakScope;
+import io.github.jbellis.jvector.TestUtil;
+import io.github.jbellis.jvector.graph.ListRandomAccessVectorValues;
+import io.github.jbellis.jvector.graph.disk.OnDiskGraphIndex;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+@ThreadLeakScope(ThreadLeakScope.Scope.NONE)
+public class TestFileChannelWriter extends RandomizedTest {
+    private Path testDirectory;
+
+    @Before
+    public void setup() throws IOException {
+        testDirectory = Files.createTempDirectory(this.getClass().getSimpleName());
+    }
+
+    @After
+    public void tearDown() {
+        TestUtil.deleteQuietly(testDirectory);
+    }
+
+    @Test
+    public void testMatchesBufferedWriter() throws IOException {
+        var expectedPath = testDirectory.resolve("expected");
+        var actualPath = testDirectory.resolve("actual");
+        long seed = randomLong();
+        try (var expected = new BufferedRandomAccessWriter(expectedPath)) {
+            writeRandomly(expected, seed);
+        }
+        for (var policy : FileChannelWriter.ForcePolicy.values()) {
+            Files.deleteIfExists(actualPath);
+            // a small buffer, so that writes regularly fill it and large writes are gathered
+            try (var actual = new FileChannelWriter(actualPath, 256, 0, policy)) {
+                writeRandomly(actual, seed);
+            }
+            assertArrayEquals(Files.readAllBytes(expectedPath), Files.readAllBytes(actualPath));
+        }
+    }
+
+    @Test
+    public void testPreallocation() throws IOException {
+        var expectedPath = testDirectory.resolve("expected");
+        var actualPath = testDirectory.resolve("actual");
+        long seed = randomLong();
+        try (var expected = new BufferedRandomAccessWriter(expectedPath)) {
+            writeRandomly(expected, seed);
+        }
+
+        try (var actual = new FileChannelWriter(actualPath, 1024, 1 << 20, FileChannelWriter.ForcePolicy.ON_CLOSE)) {
+            assertEquals(1 << 20, Files.size(actualPath));
+            writeRandomly(actual, seed);
+        }
+        // the unused preallocated space is released
+        assertArrayEquals(Files.readAllBytes(expectedPath), Files.readAllBytes(actualPath));
+    }
+
+    @Test
+    public void testOnDiskGraphIndex() throws IOException {
+        var graph = new TestUtil.RandomlyConnectedGraphIndex(1000, 16, getRandom());
+        var ravv = new ListRandomAccessVectorValues(TestUtil.createRandomVectors(1000, 8), 8);
+        var expectedPath = testDirectory.resolve("expected");
+        var actualPath = testDirectory.resolve("actual");
+        try (var out = TestUtil.openBufferedWriter(expectedPath)) {
+            OnDiskGraphIndex.write(graph, ravv, out);
+        }
+        try (var out = new FileChannelWriter(actualPath)) {
+            OnDiskGraphIndex.write(graph, ravv, out);
+        }
+        assertArrayEquals(Files.readAllBytes(expectedPath), Files.readAllBytes(actualPath));
+    }
+
+    /**
+     * A mix of small and large writes, in order and out of order, like an index writer's.
+     */
+    private static void writeRandomly(RandomAccessWriter out, long seed) throws IOException {
+        var random = new Random(seed);
+        // leave room for a header, which is filled in at the end
+        out.seek(64);
+        for (int i = 0; i < 500; i++) {
+            switch (random.nextInt(5)) {
+                case 0:
+                    out.writeInt(random.nextInt());
+                    break;
+                case 1:
+                    out.writeBuffered(dos -> {
+                        dos.writeLong(random.nextLong());
+                        dos.writeFloat(random.nextFloat());
+                        dos.writeByte(random.nextInt());
+                    });
+                    break;
+                case 2: {
+                    var bytes = new byte[random.nextInt(1000)];
+                    random.nextBytes(bytes);
+                    int offset = bytes.length == 0 ? 0 : random.nextInt(bytes.length);
+                    out.write(bytes, offset, bytes.length - offset);
+                    break;
+                }
+                case 3:
+                    // skip a gap
+                    out.seek(out.getFilePointer() + random.nextInt(100));
+                    break;
+                default:
+                    // the current position, which should be free
+                    out.seek(out.getFilePointer());
+            }
+        }
+        long end = out.getFilePointer();
+        out.seek(0);
+        out.writeBuffered(dos -> {
+            for (var value : List.of(1, 2, 3, 4)) {
+                dos.writeInt(value);
+            }
+        });
+        out.seek(end);
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.jbellis.jvector.disk;
+
+import com.carrotsearch.randomizedtesting.RandomizedTest;
+import com.carrotsearch.randomizedtesting.annotations.ThreadLeakScope;
+import io.github.jbellis.jvector.TestUtil;
+import io.github.jbellis.jvector.graph.GraphIndexBuilder;
+import io.github.jbellis.jvector.graph.GraphSearcher;
+import io.github.jbellis.jvector.graph.ListRandomAccessVectorValues;
+import io.github.jbellis.jvector.graph.OnHeapGraphIndex;
+import io.github.jbellis.jvector.graph.SearchResult;
+import io.github.jbellis.jvector.graph.disk.Feature;
+import io.github.jbellis.jvector.graph.disk.FeatureId;
+import io.github.jbellis.jvector.graph.disk.FusedADC;
+import io.github.jbellis.jvector.graph.disk.LVQ;
+import io.github.jbellis.jvector.graph.disk.OnDiskGraphIndex;
+import io.github.jbellis.jvector.graph.disk.OnDiskGraphIndexWriter;
+import io.github.jbellis.jvector.graph.similarity.SearchScoreProvider;
+import io.github.jbellis.jvector.pq.LocallyAdaptiveVectorQuantization;
+import io.github.jbellis.jvector.pq.PQVectors;
+import io.github.jbellis.jvector.pq.ProductQuantization;
+import io.github.jbellis.jvector.util.Bits;
+import io.github.jbellis.jvector.vector.VectorSimilarityFunction;
+import io.github.jbellis.jvector.vector.VectorizationProvider;
+import io.github.jbellis.jvector.vector.types.VectorFloat;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.function.IntFunction;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+/**
+ * MemorySegmentReader lives in jvector-native, which targets a newer JDK than this module,
+ * so it is reached reflectively and the tests are skipped when it cannot be loaded.
+ */
+@ThreadLeakScope(ThreadLeakScope.Scope.NONE)
+public class TestMemorySegmentReader extends RandomizedTest {
+    private Path testDirectory;
+
+    @Before
+    public void setup() throws IOException {
+        testDirectory = Files.createTempDirectory(this.getClass().getSimpleName());
+    }
+
+    @After
+    public void tearDown() {
+        TestUtil.deleteQuietly(testDirectory);
+    }
+
+    @Test
+    public void testReads() throws Exception {
+        var bytes = new byte[1000];
+        getRandom().nextBytes(bytes);
+        var path = testDirectory.resolve("segment");
+        Files.write(path, bytes);
+        var expected = ByteBuffer.wrap(bytes);
+
+        try (var supplier = openSupplier(path);
+             var reader = supplier.get())
+        {
+            for (int i = 0; i < 1000; i++) {
+                int offset = randomIntBetween(0, bytes.length - 200);
+                reader.seek(offset);
+                switch (randomIntBetween(0, 6)) {
+                    case 0:
+                        assertEquals(expected.getInt(offset), reader.readInt());
+                        break;
+                    case 1:
+                        assertEquals(expected.getFloat(offset), reader.readFloat(), 0.0f);
+                        break;
+                    case 2: {
+                        var actual = new byte[randomIntBetween(0, 200)];
+                        reader.readFully(actual);
+                        var exp = new byte[actual.length];
+                        expected.duplicate().position(offset).get(exp);
+                        assertArrayEquals(exp, actual);
+                        break;
+                    }
+                    case 3: {
+                        var actual = ByteBuffer.allocate(randomIntBetween(0, 200));
+                        reader.readFully(actual);
+                        assertEquals(0, actual.flip().compareTo(expected.duplicate().position(offset).limit(offset + actual.limit())));
+                        break;
+                    }
+                    case 4: {
+                        var actual = new long[randomIntBetween(0, 20)];
+                        reader.readFully(actual);
+                        for (int j = 0; j < actual.length; j++) {
+                            assertEquals(expected.getLong(offset + j * Long.BYTES), actual[j]);
+                        }
+                        break;
+                    }
+                    case 5: {
+                        var actual = new float[randomIntBetween(0, 20)];
+                        reader.readFully(actual);
+                        for (int j = 0; j < actual.length; j++) {
+                            assertEquals(expected.getFloat(offset + j * Float.BYTES), actual[j], 0.0f);
+                        }
+                        break;
+                    }
+                    default: {
+                        var ints = new int[randomIntBetween(0, 20)];
+                        var floats = new float[ints.length + 1];
+                        reader.read(ints, 0, ints.length);
+                        reader.read(floats, 1, ints.length);
+                        for (int j = 0; j < ints.length; j++) {
+                            assertEquals(expected.getInt(offset + j * Integer.BYTES), ints[j]);
+                            assertEquals(expected.getFloat(offset + (ints.length + j) * Float.BYTES), floats[j + 1], 0.0f);
+                        }
+                        break;
+                    }
+                }
+            }
+            // the position advances past each read
+            reader.seek(8);
+            reader.readInt();
+            reader.readFloat();
+            assertEquals(16, reader.getPosition());
+        }
+    }
+
+    @Test
+    public void testSlice() throws Exception {
+        var bytes = new byte[1000];
+        getRandom().nextBytes(bytes);
+        var path = testDirectory.resolve("segment");
+        Files.write(path, bytes);
+        var vts = VectorizationProvider.getInstance().getVectorTypeSupport();
+
+        try (var supplier = openSupplier(path);
+             var reader = supplier.get())
+        {
+            for (int i = 0; i < 100; i++) {
+                int offset = randomIntBetween(0, bytes.length);
+                int length = randomIntBetween(0, bytes.length - offset);
+                reader.seek(offset);
+                assertArrayEquals(expectedSlice(bytes, offset, length), slice(reader, length));
+                assertEquals(offset + length, reader.getPosition());
+
+                // whether or not the native provider is active, the bytes and position must match
+                reader.seek(offset);
+                var sequence = vts.sliceByteSequence(reader, vts.createByteSequence(length));
+                assertEquals(length, sequence.length());
+                for (int j = 0; j < length; j++) {
+                    assertEquals(bytes[offset + j], sequence.get(j));
+                }
+                assertEquals(offset + length, reader.getPosition());
+            }
+
+            // an empty slice at the end is fine, anything past it is not
+            reader.seek(bytes.length);
+            assertEquals(0, slice(reader, 0).length);
+            reader.seek(bytes.length - 3);
+            assertThrows(EOFException.class, () -> slice(reader, 4));
+            assertEquals(bytes.length - 3, reader.getPosition());
+            reader.seek(-1);
+            assertThrows(EOFException.class, () -> slice(reader, 1));
+            assertEquals(-1, reader.getPosition());
+
+            reader.seek(bytes.length - 2);
+            assertThrows(IndexOutOfBoundsException.class, reader::readInt);
+        }
+    }
+
+    @Test
+    public void testUseAfterClose() throws Exception {
+        var path = testDirectory.resolve("segment");
+        Files.write(path, new byte[64]);
+
+        var supplier = openSupplier(path);
+        var reader = supplier.get();
+        reader.readInt();
+        supplier.close();
+        // closing twice is harmless
+        supplier.close();
+
+        assertThrows(IllegalStateException.class, reader::readInt);
+        assertThrows(IllegalStateException.class, () -> reader.readFully(new float[4]));
+        assertThrows(IllegalStateException.class, () -> supplier.get().readFully(new long[1]));
+    }
+
+    @Test
+    public void testSearchMatchesMappedReader() throws Exception {
+        int dimension = 64;
+        var ravv = new ListRandomAccessVectorValues(TestUtil.createRandomVectors(500, dimension), dimension);
+        var vsf = VectorSimilarityFunction.EUCLIDEAN;
+        OnHeapGraphIndex graph;
+        try (var builder = new GraphIndexBuilder(ravv, vsf, 32, 50, 1.2f, 1.2f)) {
+            graph = builder.build(ravv);
+        }
+        var pq = ProductQuantization.compute(ravv, 8, 32, false);
+        var pqv = new PQVectors(pq, pq.encodeAll(ravv));
+        var lvq = LocallyAdaptiveVectorQuantization.compute(ravv);
+
+        var suppliers = new EnumMap<FeatureId, IntFunction<Feature.State>>(FeatureId.class);
+        suppliers.put(FeatureId.LVQ, i -> new LVQ.State(lvq.encode(ravv.getVector(i))));
+        suppliers.put(FeatureId.FUSED_ADC, i -> new FusedADC.State(graph.getView(), pqv, i));
+        var path = testDirectory.resolve("graph");
+        try (var out = TestUtil.openBufferedWriter(path);
+             var writer = new OnDiskGraphIndexWriter.Builder(graph)
+                     .with(new LVQ(lvq))
+                     .with(new FusedADC(graph.maxDegree(), pq))
+                     .build())
+        {
+            writer.write(out, suppliers);
+        }
+
+        try (var expectedSupplier = new SimpleMappedReaderSupplier(path);
+             var expectedGraph = OnDiskGraphIndex.load(expectedSupplier, 0);
+             var supplier = openSupplier(path);
+             var onDiskGraph = OnDiskGraphIndex.load(supplier, 0))
+        {
+            for (int i = 0; i < 20; i++) {
+                var query = TestUtil.randomVector(getRandom(), dimension);
+                var expected = search(expectedGraph, query, vsf);
+                var actual = search(onDiskGraph, query, vsf);
+                assertEquals(expected.getNodes().length, actual.getNodes().length);
+                for (int j = 0; j < expected.getNodes().length; j++) {
+                    assertEquals(expected.getNodes()[j].node, actual.getNodes()[j].node);
+                    assertEquals(expected.getNodes()[j].score, actual.getNodes()[j].score, 0.0f);
+                }
+            }
+        }
+    }
+
+    private static SearchResult search(OnDiskGraphIndex graph, VectorFloat<?> query, VectorSimilarityFunction vsf) throws IOException {
+        try (var view = graph.getView()) {
+            var ssp = new SearchScoreProvider(view.approximateScoreFunctionFor(query, vsf), view.rerankerFor(query, vsf));
+            return new GraphSearcher(view).search(ssp, 10, Bits.ALL);
+        }
+    }
+
+    private static ReaderSupplier openSupplier(Path path) throws Exception {
+        try {
+            var cls = Class.forName("io.github.jbellis.jvector.disk.MemorySegmentReaderSupplier");
+            return (ReaderSupplier) cls.getConstructor(Path.class).newInstance(path);
+        } catch (ClassNotFoundException | LinkageError e) {
+            Assume.assumeNoException("jvector-native is not available", e);
+            throw new AssertionError(e);
+        }
+    }
+
+    /** Calls MemorySegmentReader.slice and copies the resulting segment out to a byte array */
+    private static byte[] slice(RandomAccessReader reader, long length) throws Exception {
+        try {
+            var segment = reader.getClass().getMethod("slice", long.class).invoke(reader, length);
+            var segmentClass = Class.forName("java.lang.foreign.MemorySegment");
+            var byteLayout = Class.forName("java.lang.foreign.ValueLayout").getField("JAVA_BYTE").get(null);
+            var toArray = segmentClass.getMethod("toArray", Class.forName("java.lang.foreign.ValueLayout$OfByte"));
+            return (byte[]) toArray.invoke(segment, byteLayout);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static byte[] expectedSlice(byte[] bytes, int offset, int length) {
+        var slice = new byte[length];
+        System.arraycopy(bytes, offset, slice, 0, length);
+        return slice;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.jbellis.jvector.disk;
+
+import com.carrotsearch.randomizedtesting.RandomizedTest;
+import com.carrotsearch.randomizedtesting.annotations.ThreadLeakScope;
+import io.github.jbellis.jvector.TestUtil;
+import io.github.jbellis.jvector.graph.TestVectorGraph;
+import io.github.jbellis.jvector.graph.disk.OnDiskGraphIndex;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@ThreadLeakScope(ThreadLeakScope.Scope.NONE)
+public class TestPageCache extends RandomizedTest {
+    private Path testDirectory;
+
+    @Before
+    public void setup() throws IOException {
+        testDirectory = Files.createTempDirectory(this.getClass().getSimpleName());
+    }
+
+    @After
+    public void tearDown() {
+        TestUtil.deleteQuietly(testDirectory);
+    }
+
+    private Path writeRandomFile(String name, int size) throws IOException {
+        var bytes = new byte[size];
+        getRandom().nextBytes(bytes);
+        var path = testDirectory.resolve(name);
+        Files.write(path, bytes);
+        return path;
+    }
+
+    @Test
+    public void testReadsMatchFile() throws Exception {
+        // 8 pages of 64 bytes shared by two files of 50 and 20 pages, so most reads evict something
+        var cache = new PageCache(8 * 64, 64);
+        var path1 = writeRandomFile("file1", 50 * 64 - 10);
+        var path2 = writeRandomFile("file2", 20 * 64);
+        var expected1 = ByteBuffer.wrap(Files.readAllBytes(path1));
+        var expected2 = ByteBuffer.wrap(Files.readAllBytes(path2));
+
+        try (var readers1 = cache.wrap(new SimpleMappedReaderSupplier(path1), Files.size(path1));
+             var readers2 = cache.wrap(new SimpleMappedReaderSupplier(path2), Files.size(path2));
+             var r1 = readers1.get();
+             var r2 = readers2.get())
+        {
+            for (int i = 0; i < 2000; i++) {
+                boolean first = randomBoolean();
+                var r = first ? r1 : r2;
+                var expected = first ? expected1 : expected2;
+                int offset = randomIntBetween(0, expected.capacity() - 100);
+                r.seek(offset);
+                if (randomBoolean()) {
+                    assertEquals(expected.getInt(offset), r.readInt());
+                } else {
+                    var actual = new byte[randomIntBetween(0, 100)];
+                    r.readFully(actual);
+                    var exp = new byte[actual.length];
+                    expected.duplicate().position(offset).get(exp);
+                    assertArrayEquals(exp, actual);
+                }
+            }
+            assertTrue(cache.hits() > 0);
+            assertTrue(cache.misses() > 0);
+            assertTrue(cache.evictions() > 0);
+            assertEquals(8, cache.residentPages());
+        }
+        // closing the suppliers releases their pages
+        assertEquals(0, cache.residentPages());
+    }
+
+    @Test
+    public void testConcurrentReads() throws Exception {
+        var cache = new PageCache(16 * 128, 128);
+        var path = writeRandomFile("concurrent", 200 * 128);
+        var expected = ByteBuffer.wrap(Files.readAllBytes(path));
+        var seeds = IntStream.range(0, 8).map(i -> getRandom().nextInt()).toArray();
+
+        try (var readers = cache.wrap(new SimpleMappedReaderSupplier(path), Files.size(path))) {
+            var pool = new ForkJoinPool(8);
+            pool.submit(() -> IntStream.range(0, 8).parallel().forEach(t -> {
+                var random = new Random(seeds[t]);
+                try (var r = readers.get()) {
+                    for (int i = 0; i < 20000; i++) {
+                        // mostly a hot set of 8 pages, so that hits race with evictions
+                        int offset = random.nextInt(4) == 0 ? random.nextInt(expected.capacity() - 300) : random.nextInt(8 * 128);
+                        var actual = new byte[random.nextInt(300)];
+                        r.seek(offset);
+                        r.readFully(actual);
+                        var exp = new byte[actual.length];
+                        expected.duplicate().position(offset).get(exp);
+                        assertArrayEquals(exp, actual);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            })).get();
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testOnDiskGraphIndex() throws Exception {
+        var graph = new TestUtil.RandomlyConnectedGraphIndex(500, 16, getRandom());
+        var path = testDirectory.resolve("graph");
+        TestUtil.writeGraph(graph, new TestVectorGraph.CircularFloatVectorValues(graph.size()), path);
+
+        var cache = new PageCache(1 << 16);
+        try (var readers = cache.wrap(new SimpleMappedReaderSupplier(path), Files.size(path));
+             var onDiskGraph = OnDiskGraphIndex.load(readers, 0))
+        {
+            TestUtil.assertGraphEquals(graph, onDiskGraph);
+        }
+    }
+}
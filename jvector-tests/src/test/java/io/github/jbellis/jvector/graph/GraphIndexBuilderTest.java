@@ -20,6 +20,10 @@ import com.carrotsearch.randomizedtesting.annotations.ThreadLeakScope;
 import io.github.jbellis.jvector.LuceneTestCase;
 import io.github.jbellis.jvector.TestUtil;
 import io.github.jbellis.jvector.disk.SimpleMappedReader;
+import io.github.jbellis.jvector.disk.SimpleMappedReaderSupplier;
+import io.github.jbellis.jvector.graph.similarity.BuildScoreProvider;
+import io.github.jbellis.jvector.util.Bits;
+import io.github.jbellis.jvector.util.PhysicalCoreExecutor;
 import io.github.jbellis.jvector.vector.VectorSimilarityFunction;
 import org.junit.After;
 import org.junit.Before;
@@ -27,12 +31,21 @@ import org.junit.Test;
 
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Supplier;
 
 import static io.github.jbellis.jvector.graph.TestVectorGraph.createRandomFloatVectors;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 
 @ThreadLeakScope(ThreadLeakScope.Scope.NONE)
@@ -76,4 +89,206 @@ public class GraphIndexBuilderTest extends LuceneTestCase {
             assertTrue(builder.graph.containsNode(i));
         }
     }
+
+    @Test
+    public void testSnapshotSaveAndLoad() throws IOException {
+        int dimension = randomIntBetween(2, 32);
+        var ravv = MockVectorValues.fromValues(createRandomFloatVectors(randomIntBetween(100, 500), dimension, getRandom()));
+        var bsp = BuildScoreProvider.randomAccessScoreProvider(ravv, VectorSimilarityFunction.EUCLIDEAN);
+        Supplier<GraphIndexBuilder> newBuilder = () ->
+            new GraphIndexBuilder(bsp, dimension, 8, 20, 1.2f, 1.2f, PhysicalCoreExecutor.pool(), ForkJoinPool.commonPool());
+        var graph = TestUtil.buildSequentially(newBuilder.get(), ravv);
+
+        for (boolean includeScores : new boolean[] {true, false}) {
+            // use small chunks so that the load is split across several readers
+            var snapshotPath = testDirectory.resolve("snapshot_" + includeScores);
+            OnHeapGraphSnapshot.write(graph, snapshotPath, includeScores, randomIntBetween(1, 64));
+
+            var builder = newBuilder.get();
+            try (var readers = new SimpleMappedReaderSupplier(snapshotPath)) {
+                builder.load(readers);
+            }
+            TestUtil.assertGraphEquals(graph, builder.graph);
+            assertEquals(graph.entry(), builder.graph.entry());
+            for (int i = 0; i < ravv.size(); i++) {
+                var expected = graph.getNeighbors(i).getCurrent();
+                var actual = builder.graph.getNeighbors(i).getCurrent();
+                assertArrayEquals(Arrays.copyOf(expected.score(), expected.size()), Arrays.copyOf(actual.score(), actual.size()), 1e-6f);
+            }
+        }
+
+        // corrupt headers are rejected before anything is allocated for them
+        var snapshotPath = testDirectory.resolve("snapshot_true");
+        // the chunk count follows the magic, version, flags, size, entry node, max degree, id upper bound and chunk size
+        int chunkCountPosition = 8 * Integer.BYTES;
+        long chunkOffsetsPosition = chunkCountPosition + Integer.BYTES;
+        assertCorruptSnapshot(snapshotPath, newBuilder, chunkCountPosition, ByteBuffer.allocate(Integer.BYTES).putInt(0, -1));
+        assertCorruptSnapshot(snapshotPath, newBuilder, chunkCountPosition, ByteBuffer.allocate(Integer.BYTES).putInt(0, Integer.MAX_VALUE));
+        assertCorruptSnapshot(snapshotPath, newBuilder, chunkOffsetsPosition + Long.BYTES, ByteBuffer.allocate(Long.BYTES).putLong(0, 0));
+        assertCorruptSnapshot(snapshotPath, newBuilder, chunkOffsetsPosition + Long.BYTES, ByteBuffer.allocate(Long.BYTES).putLong(0, Long.MAX_VALUE));
+        // ids [0, MAX_VALUE) in chunks of MAX_VALUE is consistent, but the offsets it claims are past the end of the file
+        assertCorruptSnapshot(snapshotPath, newBuilder, 6 * Integer.BYTES, ByteBuffer.allocate(3 * Integer.BYTES).putInt(0, Integer.MAX_VALUE).putInt(4, 1).putInt(8, Integer.MAX_VALUE));
+
+        // the legacy format is still accepted
+        var legacyPath = testDirectory.resolve("legacy");
+        try (var out = TestUtil.openDataOutputStream(legacyPath)) {
+            graph.save(out);
+        }
+        var builder = newBuilder.get();
+        try (var readers = new SimpleMappedReaderSupplier(legacyPath)) {
+            builder.load(readers);
+        }
+        TestUtil.assertGraphEquals(graph, builder.graph);
+    }
+
+    private void assertCorruptSnapshot(Path snapshotPath, Supplier<GraphIndexBuilder> newBuilder, long position, ByteBuffer patch) throws IOException {
+        var corruptPath = testDirectory.resolve("corrupt");
+        Files.copy(snapshotPath, corruptPath, StandardCopyOption.REPLACE_EXISTING);
+        try (var channel = FileChannel.open(corruptPath, StandardOpenOption.WRITE)) {
+            channel.write(patch, position);
+        }
+        try (var readers = new SimpleMappedReaderSupplier(corruptPath)) {
+            assertThrows(IllegalArgumentException.class, () -> newBuilder.get().load(readers));
+        }
+    }
+
+    @Test
+    public void testOffHeapAdjacency() throws Exception {
+        int dimension = randomIntBetween(2, 32);
+        var ravv = MockVectorValues.fromValues(createRandomFloatVectors(randomIntBetween(100, 1000), dimension, getRandom()));
+        var bsp = BuildScoreProvider.randomAccessScoreProvider(ravv, VectorSimilarityFunction.EUCLIDEAN);
+
+        // sequential construction is deterministic, so both storage options should produce the same graph
+        // (cleanup() reconnects orphans in parallel, so we compare before that)
+        var onHeapBuilder = new GraphIndexBuilder(bsp, dimension, 8, 20, 1.2f, 1.2f,
+                                                  PhysicalCoreExecutor.pool(), ForkJoinPool.commonPool(),
+                                                  OnHeapGraphIndex.AdjacencyStorage.ON_HEAP);
+        var offHeapBuilder = new GraphIndexBuilder(bsp, dimension, 8, 20, 1.2f, 1.2f,
+                                                   PhysicalCoreExecutor.pool(), ForkJoinPool.commonPool(),
+                                                   OnHeapGraphIndex.AdjacencyStorage.OFF_HEAP);
+        for (int i = 0; i < ravv.size(); i++) {
+            onHeapBuilder.addGraphNode(i, ravv.getVector(i));
+            offHeapBuilder.addGraphNode(i, ravv.getVector(i));
+        }
+        TestUtil.assertGraphEquals(onHeapBuilder.graph, offHeapBuilder.graph);
+
+        offHeapBuilder.cleanup();
+        var graph = offHeapBuilder.getGraph();
+        assertEquals(ravv.size(), graph.size());
+        try (var view = graph.getView()) {
+            for (int i = 0; i < ravv.size(); i++) {
+                assertTrue(view.getNeighborsIterator(i).size() <= graph.maxDegree());
+            }
+        }
+
+        // round trip through save/load
+        var indexDataPath = testDirectory.resolve("offheap_builder.data");
+        try (var out = TestUtil.openDataOutputStream(indexDataPath)) {
+            graph.save(out);
+        }
+        var loadedBuilder = new GraphIndexBuilder(bsp, dimension, 8, 20, 1.2f, 1.2f,
+                                                  PhysicalCoreExecutor.pool(), ForkJoinPool.commonPool(),
+                                                  OnHeapGraphIndex.AdjacencyStorage.OFF_HEAP);
+        try (var reader = new SimpleMappedReader(indexDataPath)) {
+            loadedBuilder.load(reader);
+        }
+        TestUtil.assertGraphEquals(graph, loadedBuilder.graph);
+    }
+
+    @Test
+    public void testOffHeapAdjacencyConcurrentBuild() {
+        int dimension = randomIntBetween(2, 32);
+        var ravv = MockVectorValues.fromValues(createRandomFloatVectors(2000, dimension, getRandom()));
+        var bsp = BuildScoreProvider.randomAccessScoreProvider(ravv, VectorSimilarityFunction.EUCLIDEAN);
+        var builder = new GraphIndexBuilder(bsp, dimension, 16, 50, 1.5f, 1.2f,
+                                            PhysicalCoreExecutor.pool(), ForkJoinPool.commonPool(),
+                                            OnHeapGraphIndex.AdjacencyStorage.OFF_HEAP);
+        var graph = builder.build(ravv);
+        assertEquals(ravv.size(), graph.size());
+
+        assertNodesFindThemselves(graph, ravv);
+    }
+
+    @Test
+    public void testFreeze() throws Exception {
+        int dimension = randomIntBetween(2, 32);
+        var ravv = MockVectorValues.fromValues(createRandomFloatVectors(randomIntBetween(10, 500), dimension, getRandom()));
+        var builder = new GraphIndexBuilder(ravv, VectorSimilarityFunction.EUCLIDEAN, 8, 20, 1.2f, 1.2f);
+        var graph = TestUtil.buildSequentially(builder, ravv);
+
+        // leave a hole in the ordinals
+        builder.markNodeDeleted(0);
+        builder.cleanup();
+
+        var frozen = graph.freeze();
+        assertEquals(graph.size(), frozen.size());
+        assertEquals(graph.getIdUpperBound(), frozen.getIdUpperBound());
+        assertFalse(frozen.containsNode(0));
+        TestUtil.assertGraphEquals(graph, frozen);
+        try (var view = graph.getView(); var frozenView = frozen.getView()) {
+            assertEquals(view.entryNode(), frozenView.entryNode());
+        }
+        assertTrue(frozen.ramBytesUsed() < graph.ramBytesUsed());
+
+        // searching the frozen graph should give the same results as the original
+        var queries = ravv.copy();
+        for (int i = 1; i < ravv.size(); i++) {
+            var expected = GraphSearcher.search(queries.getVector(i), 5, ravv, VectorSimilarityFunction.EUCLIDEAN, graph, Bits.ALL);
+            var actual = GraphSearcher.search(queries.getVector(i), 5, ravv, VectorSimilarityFunction.EUCLIDEAN, frozen, Bits.ALL);
+            assertArrayEquals(Arrays.stream(expected.getNodes()).mapToInt(ns -> ns.node).toArray(),
+                              Arrays.stream(actual.getNodes()).mapToInt(ns -> ns.node).toArray());
+        }
+    }
+
+    @Test
+    public void testBatchedBacklinks() {
+        int dimension = randomIntBetween(2, 32);
+        var ravv = MockVectorValues.fromValues(createRandomFloatVectors(2000, dimension, getRandom()));
+        var bsp = BuildScoreProvider.randomAccessScoreProvider(ravv, VectorSimilarityFunction.EUCLIDEAN);
+        var builder = new GraphIndexBuilder(bsp, dimension, 16, 50, 1.5f, 1.2f,
+                                            PhysicalCoreExecutor.pool(), ForkJoinPool.commonPool(),
+                                            OnHeapGraphIndex.AdjacencyStorage.ON_HEAP, 16);
+        var graph = builder.build(ravv);
+        assertEquals(ravv.size(), graph.size());
+        assertEquals(0, builder.insertsInProgress());
+        try (var view = graph.getView()) {
+            for (int i = 0; i < ravv.size(); i++) {
+                assertTrue(view.getNeighborsIterator(i).size() <= graph.maxDegree());
+            }
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+
+        assertNodesFindThemselves(graph, ravv);
+
+        // a partial batch stays pending, and unreachable, until it is flushed
+        var partialRavv = MockVectorValues.fromValues(createRandomFloatVectors(10, dimension, getRandom()));
+        var partialBuilder = new GraphIndexBuilder(BuildScoreProvider.randomAccessScoreProvider(partialRavv, VectorSimilarityFunction.EUCLIDEAN),
+                                                   dimension, 16, 50, 1.5f, 1.2f,
+                                                   PhysicalCoreExecutor.pool(), ForkJoinPool.commonPool(),
+                                                   OnHeapGraphIndex.AdjacencyStorage.ON_HEAP, 16);
+        for (int i = 0; i < partialRavv.size(); i++) {
+            partialBuilder.addGraphNode(i, partialRavv.getVector(i));
+        }
+        assertEquals(partialRavv.size(), partialBuilder.insertsInProgress());
+        partialBuilder.flushBacklinks();
+        assertEquals(0, partialBuilder.insertsInProgress());
+        assertNodesFindThemselves(partialBuilder.getGraph(), partialRavv);
+    }
+
+    /** Assert that searching for the vector of each node finds that node, almost always */
+    private static void assertNodesFindThemselves(GraphIndex graph, RandomAccessVectorValues ravv) {
+        var queries = ravv.copy();
+        int found = 0;
+        for (int i = 0; i < ravv.size(); i++) {
+            var result = GraphSearcher.search(queries.getVector(i), 10, ravv, VectorSimilarityFunction.EUCLIDEAN, graph, Bits.ALL);
+            for (var ns : result.getNodes()) {
+                if (ns.node == i) {
+                    found++;
+                    break;
+                }
+            }
+        }
+        assertTrue("Found only " + found, found > 0.95 * ravv.size());
+    }
 }
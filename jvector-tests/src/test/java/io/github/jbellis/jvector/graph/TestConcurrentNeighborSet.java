@@ -20,11 +20,15 @@ import com.carrotsearch.randomizedtesting.RandomizedTest;
 import io.github.jbellis.jvector.graph.similarity.BuildScoreProvider;
 import io.github.jbellis.jvector.util.ArrayUtil;
 import io.github.jbellis.jvector.vector.VectorSimilarityFunction;
+import io.github.jbellis.jvector.vector.types.VectorFloat;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.IntStream;
 
 import static org.junit.Assert.assertArrayEquals;
@@ -107,6 +111,89 @@ public class TestConcurrentNeighborSet extends RandomizedTest {
     assertEquals(2, neighbors.size());
   }
 
+  @Test
+  public void testInsertAll() {
+    var vectors = new TestVectorGraph.CircularFloatVectorValues(10);
+    var similarityFunction = VectorSimilarityFunction.DOT_PRODUCT;
+    var bsp = BuildScoreProvider.randomAccessScoreProvider(vectors, similarityFunction);
+
+    // inserting all at once should match inserting one at a time, when no pruning is needed
+    var batch = new NodeArray(9);
+    var oneAtATime = new ConcurrentNeighborSet(7, 9, bsp);
+    IntStream.range(0, 10).filter(i -> i != 7).forEach(i -> {
+      batch.insertSorted(i, scoreBetween(bsp, 7, i));
+      oneAtATime.insert(i, scoreBetween(bsp, 7, i), 1.0f);
+    });
+    var batched = new ConcurrentNeighborSet(7, 9, bsp);
+    batched.insertAll(batch, 1.0f);
+    assertArrayEquals(oneAtATime.getCurrent().copyDenseNodes(), batched.getCurrent().copyDenseNodes());
+    validateSortedByScore(batched.getCurrent());
+
+    // duplicates are ignored
+    batched.insertAll(batch, 1.0f);
+    assertEquals(9, batched.size());
+
+    // exceeding the overflow limit prunes back down to the max degree
+    var pruned = new ConcurrentNeighborSet(7, 3, bsp);
+    pruned.insertAll(batch, 1.5f);
+    assertTrue(pruned.size() <= 3);
+    assert pruned.contains(6);
+    assert pruned.contains(8);
+    validateSortedByScore(pruned.getCurrent());
+  }
+
+  @Test
+  public void testDiversityScoresComputedOnce() {
+    int size = 41;
+    var vectors = TestVectorGraph.createRandomFloatVectors(size, 8, getRandom());
+    var similarityFunction = VectorSimilarityFunction.EUCLIDEAN;
+    var fetches = new AtomicInteger();
+    var ravv = new ListRandomAccessVectorValues(List.of(vectors), 8) {
+      @Override
+      public VectorFloat<?> getVector(int targetOrd) {
+        fetches.incrementAndGet();
+        return super.getVector(targetOrd);
+      }
+    };
+    var bsp = BuildScoreProvider.randomAccessScoreProvider(ravv, similarityFunction);
+
+    var candidates = new NodeArray(size - 1);
+    for (int i = 1; i < size; i++) {
+      candidates.insertSorted(i, similarityFunction.compare(vectors[0], vectors[i]));
+    }
+
+    // reference: the straightforward pruning loop, re-scoring every pair at every alpha
+    int maxConnections = 8;
+    float alpha = 2.0f;
+    var expected = new ArrayList<Integer>();
+    for (float a = 1.0f; a <= alpha + 1E-6 && expected.size() < maxConnections; a += 0.2f) {
+      for (int i = 0; i < candidates.size() && expected.size() < maxConnections; i++) {
+        int c = candidates.node()[i];
+        if (expected.contains(c)) {
+          continue;
+        }
+        float threshold = candidates.score()[i] * a;
+        if (expected.stream().allMatch(s -> similarityFunction.compare(vectors[c], vectors[s]) <= threshold)) {
+          expected.add(c);
+        }
+      }
+    }
+
+    var neighbors = new ConcurrentNeighborSet(0, maxConnections, bsp, alpha);
+    fetches.set(0);
+    neighbors.insertDiverse(candidates);
+    assertEquals(expected.size(), neighbors.size());
+    for (int node : expected) {
+      assertTrue(neighbors.contains(node));
+    }
+
+    // each candidate/selected pair is scored at most once, plus one fetch of the candidate
+    // vector per alpha step, plus re-scoring the survivors against the base node
+    int steps = (int) Math.round((alpha - 1.0f) / 0.2f) + 1;
+    int bound = candidates.size() * maxConnections + candidates.size() * steps + maxConnections + 1;
+    assertTrue(String.format("%d vector fetches exceeds %d", fetches.get(), bound), fetches.get() <= bound);
+  }
+
   @Test
   public void testNoDuplicatesDescOrder() {
     NodeArray cna = new NodeArray(5);
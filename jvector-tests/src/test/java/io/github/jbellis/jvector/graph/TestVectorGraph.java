@@ -159,6 +159,67 @@ public class TestVectorGraph extends LuceneTestCase {
         }
     }
 
+    @Test
+    public void testRerankStages() {
+        int size = 1000;
+        int dim = 8;
+        var vectors = vectorValues(size, dim);
+        var builder = new GraphIndexBuilder(vectors, similarityFunction, 20, 30, 1.0f, 1.4f);
+        var graph = builder.build(vectors);
+        var query = randomVector(dim);
+        var searcher = new GraphSearcher(graph.getView());
+        var exact = ScoreFunction.ExactScoreFunction.from(query, similarityFunction, vectors);
+
+        // navigate and rerank with a deliberately inaccurate score, then narrow the results to the exact top 5
+        var approximate = new CountingReranker(node -> Math.round(exact.similarityTo(node) * 10) / 10.0f);
+        var counting = new CountingReranker(exact::similarityTo);
+        var ssp = SearchScoreProvider.withRerankStages(approximate,
+                                                       List.of(new SearchScoreProvider.RerankStage(approximate, 20),
+                                                               new SearchScoreProvider.RerankStage(counting, 5)));
+        var result = searcher.search(ssp, 100, Bits.ALL);
+        // only the best 20 of the first stage reach the second
+        assertEquals(20, counting.scored);
+        var nodes = result.getNodes();
+        assertEquals(5, nodes.length);
+        for (int i = 0; i < nodes.length; i++) {
+            assertEquals(exact.similarityTo(nodes[i].node), nodes[i].score, 0.0f);
+            if (i > 0) {
+                assertTrue(nodes[i - 1].score >= nodes[i].score);
+            }
+        }
+        assertSame(counting, ssp.reranker());
+
+        // a single reranker keeps every result
+        var single = searcher.search(new SearchScoreProvider(approximate, exact), 100, Bits.ALL);
+        assertEquals(100, single.getNodes().length);
+
+        assertThrows(IllegalArgumentException.class, () -> SearchScoreProvider.withRerankStages(approximate, List.of(new SearchScoreProvider.RerankStage(exact, 0))));
+    }
+
+    private static class CountingReranker implements ScoreFunction.ExactScoreFunction {
+        private final ScoreFunction.ApproximateScoreFunction delegate;
+        int scored;
+
+        CountingReranker(ScoreFunction.ApproximateScoreFunction delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public float similarityTo(int node2) {
+            return delegate.similarityTo(node2);
+        }
+
+        @Override
+        public VectorFloat<?> similarityTo(int[] nodes) {
+            scored += nodes.length;
+            var scores = vectorTypeSupport.createFloatVector(nodes.length);
+            for (int i = 0; i < nodes.length; i++) {
+                scores.set(i, similarityTo(nodes[i]));
+            }
+            return scores;
+        }
+    }
+
     // Make sure we actually approximately find the closest k elements. Mostly this is about
     // ensuring that we have all the distance functions, comparators, priority queues and so on
     // oriented in the right directions
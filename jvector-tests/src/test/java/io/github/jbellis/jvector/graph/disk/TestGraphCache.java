@@ -17,23 +17,41 @@
 package io.github.jbellis.jvector.graph.disk;
 
 import com.carrotsearch.randomizedtesting.RandomizedTest;
+import com.carrotsearch.randomizedtesting.annotations.ThreadLeakScope;
 import io.github.jbellis.jvector.TestUtil;
+import io.github.jbellis.jvector.disk.PageCache;
+import io.github.jbellis.jvector.disk.PrefetchingReader;
+import io.github.jbellis.jvector.disk.RandomAccessReader;
 import io.github.jbellis.jvector.disk.SimpleMappedReader;
+import io.github.jbellis.jvector.disk.SimpleMappedReaderSupplier;
+import io.github.jbellis.jvector.graph.GraphSearcher;
 import io.github.jbellis.jvector.graph.ListRandomAccessVectorValues;
+import io.github.jbellis.jvector.graph.NodesIterator;
 import io.github.jbellis.jvector.graph.RandomAccessVectorValues;
+import io.github.jbellis.jvector.pq.PQVectors;
+import io.github.jbellis.jvector.pq.ProductQuantization;
+import io.github.jbellis.jvector.vector.VectorSimilarityFunction;
+import io.github.jbellis.jvector.util.Bits;
+import io.github.jbellis.jvector.util.RamUsageEstimator;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import static io.github.jbellis.jvector.TestUtil.writeGraph;
 import static org.junit.Assert.*;
 
+@ThreadLeakScope(ThreadLeakScope.Scope.NONE)
 public class TestGraphCache extends RandomizedTest {
     private Path testDirectory;
     private Path onDiskGraphIndexPath;
@@ -74,4 +92,330 @@ public class TestGraphCache extends RandomizedTest {
             }
         }
     }
+
+    @Test
+    public void testPackedGraphCache() throws Exception {
+        var graph = new TestUtil.RandomlyConnectedGraphIndex(1000, 8, getRandom());
+        var ravv = new ListRandomAccessVectorValues(IntStream.range(0, 1000).mapToObj(i -> TestUtil.randomVector(getRandom(), 2)).collect(Collectors.toList()), 2);
+        var path = testDirectory.resolve("randomGraph");
+        writeGraph(graph, ravv, path);
+
+        try (var marr = new SimpleMappedReader(path.toAbsolutePath().toString());
+             var onDiskGraph = OnDiskGraphIndex.load(marr::duplicate, 0);
+             var view = onDiskGraph.getView())
+        {
+            assertFalse(GraphCache.loadPacked(onDiskGraph, -1).getNeighbors(view.entryNode(), new NodesIterator.RangeNodesIterator()));
+
+            // the nodes within two hops of the entry node
+            Set<Integer> expected = new HashSet<>();
+            expected.add(view.entryNode());
+            for (int neighbor : TestUtil.getNeighborNodes(view, view.entryNode())) {
+                expected.add(neighbor);
+                expected.addAll(TestUtil.getNeighborNodes(view, neighbor));
+            }
+
+            var packed = GraphCache.loadPacked(onDiskGraph, 2);
+            var it = new NodesIterator.RangeNodesIterator();
+            for (int node = 0; node < 1000; node++) {
+                if (!expected.contains(node)) {
+                    assertFalse(packed.getNeighbors(node, it));
+                    assertNull(packed.getNode(node));
+                    continue;
+                }
+                assertTrue(packed.getNeighbors(node, it));
+                Set<Integer> neighbors = new HashSet<>();
+                while (it.hasNext()) {
+                    neighbors.add(it.nextInt());
+                }
+                assertEquals(TestUtil.getNeighborNodes(view, node), neighbors);
+                assertEquals(TestUtil.getNeighborNodes(view, node), Arrays.stream(packed.getNode(node).neighbors).boxed().collect(Collectors.toSet()));
+            }
+
+            TestUtil.assertGraphEquals(onDiskGraph, new CachingGraphIndex(onDiskGraph, packed));
+        }
+    }
+
+    @Test
+    public void testInlineFeatureCache() throws Exception {
+        var graph = new TestUtil.RandomlyConnectedGraphIndex(1000, 32, getRandom());
+        var ravv = new ListRandomAccessVectorValues(IntStream.range(0, 1000).mapToObj(i -> TestUtil.randomVector(getRandom(), 16)).collect(Collectors.toList()), 16);
+        var pq = ProductQuantization.compute(ravv, 4, 32, false);
+        var path = testDirectory.resolve("fusedGraph");
+        TestUtil.writeFusedGraph(graph, ravv, new PQVectors(pq, pq.encodeAll(ravv)), path);
+
+        // small pages, so that reading a node that is not in the graph cache is always a page lookup
+        var pageCache = new PageCache(1 << 20, 64);
+        try (var readers = pageCache.wrap(new SimpleMappedReaderSupplier(path), Files.size(path));
+             var onDiskGraph = OnDiskGraphIndex.load(readers, 0);
+             var diskView = onDiskGraph.getView())
+        {
+            var cachingGraph = new CachingGraphIndex(onDiskGraph, 1, true);
+            var cachedView = (CachingGraphIndex.View) cachingGraph.getView();
+            Set<Integer> cached = new HashSet<>(TestUtil.getNeighborNodes(diskView, diskView.entryNode()));
+            cached.add(diskView.entryNode());
+
+            var query = TestUtil.randomVector(getRandom(), 16);
+            var vsf = VectorSimilarityFunction.EUCLIDEAN;
+            var diskReranker = diskView.rerankerFor(query, vsf);
+            var diskAsf = diskView.approximateScoreFunctionFor(query, vsf);
+            var cachedReranker = cachedView.rerankerFor(query, vsf);
+            var cachedAsf = cachedView.approximateScoreFunctionFor(query, vsf);
+            for (int node : cached) {
+                var expected = diskAsf.edgeLoadingSimilarityTo(node).copy();
+                float expectedScore = diskReranker.similarityTo(node);
+
+                long lookups = pageCache.hits() + pageCache.misses();
+                assertEquals(expectedScore, cachedReranker.similarityTo(node), 0.0f);
+                assertEquals(ravv.getVector(node), cachedView.view.getVector(node));
+                var actual = cachedAsf.edgeLoadingSimilarityTo(node);
+                for (int i = 0; i < graph.maxDegree(); i++) {
+                    assertEquals(expected.get(i), actual.get(i), 0.0f);
+                }
+                assertEquals("cached node " + node + " was read from disk", lookups, pageCache.hits() + pageCache.misses());
+            }
+
+            // nodes outside the cache are still read from disk
+            int uncached = IntStream.range(0, 1000).filter(i -> !cached.contains(i)).findFirst().getAsInt();
+            assertEquals(diskReranker.similarityTo(uncached), cachedReranker.similarityTo(uncached), 0.0f);
+            cachedView.close();
+        }
+    }
+
+    @Test
+    public void testAdaptiveGraphCache() throws Exception {
+        var graph = new TestUtil.RandomlyConnectedGraphIndex(1000, 8, getRandom());
+        var ravv = new ListRandomAccessVectorValues(IntStream.range(0, 1000).mapToObj(i -> TestUtil.randomVector(getRandom(), 2)).collect(Collectors.toList()), 2);
+        var path = testDirectory.resolve("randomGraph");
+        writeGraph(graph, ravv, path);
+
+        long entryBytes = Integer.BYTES + RamUsageEstimator.NUM_BYTES_OBJECT_REF + new GraphCache.CachedNode(new int[8]).ramBytesUsed();
+        int capacity = 50;
+        try (var marr = new SimpleMappedReader(path.toAbsolutePath().toString());
+             var onDiskGraph = OnDiskGraphIndex.load(marr::duplicate, 0))
+        {
+            // count every access and only refresh when asked
+            var cache = new AdaptiveGraphCache(onDiskGraph, capacity * entryBytes, 1, Integer.MAX_VALUE, Runnable::run);
+            // starts out full, from the entry node
+            assertEquals(capacity, cache.cachedNodes());
+            assertNotNull(cache.getNode(onDiskGraph.getView().entryNode()));
+
+            var shuffled = IntStream.range(0, 1000).toArray();
+            for (int i = shuffled.length - 1; i > 0; i--) {
+                int j = getRandom().nextInt(i + 1);
+                int tmp = shuffled[i];
+                shuffled[i] = shuffled[j];
+                shuffled[j] = tmp;
+            }
+            var hot = Arrays.copyOfRange(shuffled, 0, 40);
+            var nextHot = Arrays.copyOfRange(shuffled, 40, 80);
+
+            touch(cache, hot, 10);
+            // background noise
+            touch(cache, Arrays.copyOfRange(shuffled, 80, 1000), 1);
+            cache.refresh();
+            assertEquals(1, cache.refreshCount());
+            assertTrue(cache.cachedNodes() <= capacity);
+            try (var view = onDiskGraph.getView()) {
+                for (int node : hot) {
+                    var cached = cache.getNode(node);
+                    assertNotNull("hot node " + node + " was not promoted", cached);
+                    assertEquals(TestUtil.getNeighborNodes(view, node),
+                                 Arrays.stream(cached.neighbors).boxed().collect(Collectors.toSet()));
+                }
+            }
+
+            // the workload shifts; the old hot set should be demoted to make room
+            touch(cache, nextHot, 20);
+            cache.refresh();
+            assertTrue(cache.cachedNodes() <= capacity);
+            for (int node : nextHot) {
+                assertNotNull("hot node " + node + " was not promoted", cache.getNode(node));
+            }
+            assertTrue(Arrays.stream(hot).filter(node -> cache.getNode(node) != null).count() <= capacity - nextHot.length);
+
+            // refreshes are also scheduled automatically
+            var scheduled = new AdaptiveGraphCache(onDiskGraph, capacity * entryBytes, 1, 100, Runnable::run);
+            touch(scheduled, hot, 5);
+            assertEquals(2, scheduled.refreshCount());
+            for (int node : hot) {
+                assertNotNull(scheduled.getNode(node));
+            }
+
+            // and the cache is transparent to searches
+            TestUtil.assertGraphEquals(onDiskGraph, new CachingGraphIndex(onDiskGraph, cache));
+        }
+    }
+
+    @Test
+    public void testHotNodesRoundTrip() throws Exception {
+        var graph = new TestUtil.RandomlyConnectedGraphIndex(1000, 8, getRandom());
+        var ravv = new ListRandomAccessVectorValues(IntStream.range(0, 1000).mapToObj(i -> TestUtil.randomVector(getRandom(), 2)).collect(Collectors.toList()), 2);
+        var path = testDirectory.resolve("randomGraph");
+        writeGraph(graph, ravv, path);
+
+        long entryBytes = Integer.BYTES + RamUsageEstimator.NUM_BYTES_OBJECT_REF + new GraphCache.CachedNode(new int[8]).ramBytesUsed();
+        int capacity = 50;
+        var hotPath = testDirectory.resolve("hot");
+        try (var marr = new SimpleMappedReader(path.toAbsolutePath().toString());
+             var onDiskGraph = OnDiskGraphIndex.load(marr::duplicate, 0))
+        {
+            var cache = new AdaptiveGraphCache(onDiskGraph, capacity * entryBytes, 1, Integer.MAX_VALUE, Runnable::run);
+            var hot = IntStream.range(0, 40).map(i -> 999 - 7 * i).toArray();
+            touch(cache, hot, 10);
+            cache.refresh();
+
+            var hotNodes = cache.hotNodes();
+            assertEquals(cache.cachedNodes(), hotNodes.size());
+            assertEquals(1000, hotNodes.graphSize());
+            for (int i = 1; i < hotNodes.size(); i++) {
+                assertTrue(hotNodes.count(i - 1) >= hotNodes.count(i));
+            }
+            var recorded = Arrays.stream(hotNodes.ordinals()).limit(hot.length).boxed().collect(Collectors.toSet());
+            assertEquals(Arrays.stream(hot).boxed().collect(Collectors.toSet()), recorded);
+
+            hotNodes.save(hotPath);
+            assertEquals(hotNodes, HotNodes.load(hotPath));
+
+            // a restored cache holds the same nodes, with the same counts
+            var restored = new AdaptiveGraphCache(onDiskGraph, capacity * entryBytes, 1, Integer.MAX_VALUE, Runnable::run, HotNodes.load(hotPath));
+            for (int node : hot) {
+                assertNotNull("hot node " + node + " was not restored", restored.getNode(node));
+            }
+            assertEquals(hotNodes.ordinal(0), restored.hotNodes().ordinal(0));
+
+            // a hot set recorded for another graph is rejected
+            var stale = new HotNodes(999, hotNodes.ordinals(), new int[hotNodes.size()]);
+            assertThrows(IllegalArgumentException.class, () -> new AdaptiveGraphCache(onDiskGraph, capacity * entryBytes, stale));
+
+            // through CachingGraphIndex, falling back to the nodes nearest the entry node without a saved set
+            var missing = new CachingGraphIndex(onDiskGraph, capacity * entryBytes, testDirectory.resolve("missing"));
+            TestUtil.assertGraphEquals(onDiskGraph, missing);
+            // and likewise with a corrupt one
+            var truncatedPath = testDirectory.resolve("truncated");
+            Files.write(truncatedPath, Arrays.copyOf(Files.readAllBytes(hotPath), 20));
+            TestUtil.assertGraphEquals(onDiskGraph, new CachingGraphIndex(onDiskGraph, capacity * entryBytes, truncatedPath));
+            var cachingGraph = new CachingGraphIndex(onDiskGraph, capacity * entryBytes, hotPath);
+            var resavedPath = testDirectory.resolve("resaved");
+            cachingGraph.saveHotNodes(resavedPath);
+            assertEquals(Arrays.stream(hotNodes.ordinals()).boxed().collect(Collectors.toSet()),
+                         Arrays.stream(HotNodes.load(resavedPath).ordinals()).boxed().collect(Collectors.toSet()));
+            assertThrows(IllegalStateException.class, () -> new CachingGraphIndex(onDiskGraph).saveHotNodes(resavedPath));
+        }
+
+        // corrupt files are rejected before anything is allocated for them
+        var corruptPath = testDirectory.resolve("corrupt");
+        writeHotNodesHeader(corruptPath, 1000, Integer.MAX_VALUE);
+        assertThrows(IllegalArgumentException.class, () -> HotNodes.load(corruptPath));
+        writeHotNodesHeader(corruptPath, Integer.MAX_VALUE, Integer.MAX_VALUE);
+        assertThrows(IllegalArgumentException.class, () -> HotNodes.load(corruptPath));
+        writeHotNodesHeader(corruptPath, 1000, -1);
+        assertThrows(IllegalArgumentException.class, () -> HotNodes.load(corruptPath));
+        new HotNodes(1000, new int[] {1000}, new int[] {1}).save(corruptPath);
+        assertThrows(IllegalArgumentException.class, () -> HotNodes.load(corruptPath));
+        new HotNodes(1000, new int[] {-1}, new int[] {1}).save(corruptPath);
+        assertThrows(IllegalArgumentException.class, () -> HotNodes.load(corruptPath));
+    }
+
+    private static void writeHotNodesHeader(Path path, int graphSize, int count) throws IOException {
+        var header = ByteBuffer.allocate(4 * Integer.BYTES);
+        header.putInt(HotNodes.MAGIC).putInt(HotNodes.CURRENT_VERSION).putInt(graphSize).putInt(count);
+        Files.write(path, header.array());
+    }
+
+    @Test
+    public void testCachedViewPrefetches() throws Exception {
+        var graph = new TestUtil.RandomlyConnectedGraphIndex(1000, 8, getRandom());
+        var ravv = new ListRandomAccessVectorValues(IntStream.range(0, 1000).mapToObj(i -> TestUtil.randomVector(getRandom(), 2)).collect(Collectors.toList()), 2);
+        var path = testDirectory.resolve("randomGraph");
+        writeGraph(graph, ravv, path);
+
+        var prefetched = new AtomicLong();
+        try (var marr = new SimpleMappedReader(path.toAbsolutePath().toString());
+             var onDiskGraph = OnDiskGraphIndex.load(() -> new CountingPrefetchReader(marr.duplicate(), prefetched), 0))
+        {
+            // searching through the cache still prefetches the records of the upcoming candidates
+            var cachingGraph = new CachingGraphIndex(onDiskGraph, 1);
+            var query = TestUtil.randomVector(getRandom(), 2);
+            var expected = GraphSearcher.search(query, 10, ravv, VectorSimilarityFunction.EUCLIDEAN, onDiskGraph, Bits.ALL);
+            assertTrue(prefetched.getAndSet(0) > 0);
+            var actual = GraphSearcher.search(query, 10, ravv, VectorSimilarityFunction.EUCLIDEAN, cachingGraph, Bits.ALL);
+            assertTrue(prefetched.get() > 0);
+            assertArrayEquals(Arrays.stream(expected.getNodes()).mapToInt(ns -> ns.node).toArray(),
+                              Arrays.stream(actual.getNodes()).mapToInt(ns -> ns.node).toArray());
+        }
+    }
+
+    /** Counts the ranges prefetched through it, and otherwise reads through `reader` */
+    private static class CountingPrefetchReader implements PrefetchingReader {
+        private final RandomAccessReader reader;
+        private final AtomicLong prefetched;
+
+        CountingPrefetchReader(RandomAccessReader reader, AtomicLong prefetched) {
+            this.reader = reader;
+            this.prefetched = prefetched;
+        }
+
+        @Override
+        public void prefetch(long[] offsets, int[] lengths, int count) {
+            prefetched.addAndGet(count);
+        }
+
+        @Override
+        public void seek(long offset) throws IOException {
+            reader.seek(offset);
+        }
+
+        @Override
+        public long getPosition() throws IOException {
+            return reader.getPosition();
+        }
+
+        @Override
+        public int readInt() throws IOException {
+            return reader.readInt();
+        }
+
+        @Override
+        public float readFloat() throws IOException {
+            return reader.readFloat();
+        }
+
+        @Override
+        public void readFully(byte[] bytes) throws IOException {
+            reader.readFully(bytes);
+        }
+
+        @Override
+        public void readFully(ByteBuffer buffer) throws IOException {
+            reader.readFully(buffer);
+        }
+
+        @Override
+        public void readFully(long[] vector) throws IOException {
+            reader.readFully(vector);
+        }
+
+        @Override
+        public void read(int[] ints, int offset, int count) throws IOException {
+            reader.read(ints, offset, count);
+        }
+
+        @Override
+        public void read(float[] floats, int offset, int count) throws IOException {
+            reader.read(floats, offset, count);
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    private static void touch(GraphCache cache, int[] nodes, int times) {
+        for (int i = 0; i < times; i++) {
+            for (int node : nodes) {
+                cache.getNode(node);
+            }
+        }
+    }
 }
@@ -19,32 +19,54 @@ package io.github.jbellis.jvector.graph.disk;
 import com.carrotsearch.randomizedtesting.RandomizedTest;
 import com.carrotsearch.randomizedtesting.annotations.ThreadLeakScope;
 import io.github.jbellis.jvector.TestUtil;
+import io.github.jbellis.jvector.disk.AsyncFileReader;
+import io.github.jbellis.jvector.disk.AsyncFileReaderSupplier;
 import io.github.jbellis.jvector.disk.SimpleMappedReader;
+import io.github.jbellis.jvector.graph.GraphIndex;
 import io.github.jbellis.jvector.graph.GraphIndexBuilder;
+import io.github.jbellis.jvector.graph.GraphSearcher;
 import io.github.jbellis.jvector.graph.ListRandomAccessVectorValues;
 import io.github.jbellis.jvector.graph.RandomAccessVectorValues;
+import io.github.jbellis.jvector.graph.SearchResult;
 import io.github.jbellis.jvector.graph.TestVectorGraph;
+import io.github.jbellis.jvector.graph.similarity.ScoreFunction;
+import io.github.jbellis.jvector.graph.similarity.SearchScoreProvider;
 import io.github.jbellis.jvector.pq.PQVectors;
 import io.github.jbellis.jvector.pq.ProductQuantization;
+import io.github.jbellis.jvector.pq.SQVectors;
+import io.github.jbellis.jvector.pq.ScalarQuantization;
+import io.github.jbellis.jvector.util.Bits;
+import io.github.jbellis.jvector.vector.HalfFloatFormat;
 import io.github.jbellis.jvector.vector.VectorSimilarityFunction;
+import io.github.jbellis.jvector.vector.types.VectorFloat;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.EnumMap;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import static io.github.jbellis.jvector.TestUtil.getNeighborNodes;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 
 @ThreadLeakScope(ThreadLeakScope.Scope.NONE)
@@ -163,6 +185,60 @@ public class TestOnDiskGraphIndex extends RandomizedTest {
         }
     }
 
+    @Test
+    public void testLocalityRenumbering() throws Exception {
+        var ravv = new ListRandomAccessVectorValues(List.of(TestVectorGraph.createRandomFloatVectors(500, 8, getRandom())), 8);
+        var builder = new GraphIndexBuilder(ravv, VectorSimilarityFunction.EUCLIDEAN, 8, 20, 1.2f, 1.2f);
+        var original = TestUtil.buildSequentially(builder, ravv);
+
+        var sequential = OnDiskGraphIndexWriter.getSequentialRenumbering(original);
+        var bfs = OnDiskGraphIndexWriter.getBfsRenumbering(original);
+        var rcm = OnDiskGraphIndexWriter.getReverseCuthillMcKeeRenumbering(original);
+        int entryNode = original.getView().entryNode();
+        assertEquals(0, (int) bfs.get(entryNode));
+
+        for (var oldToNewMap : List.of(bfs, rcm)) {
+            // must be a permutation of the existing ordinals
+            assertEquals(original.size(), oldToNewMap.size());
+            assertEquals(original.size(), Set.copyOf(oldToNewMap.values()).size());
+            assertTrue(oldToNewMap.values().stream().allMatch(v -> v >= 0 && v < original.size()));
+            // and should place neighbors closer together than insertion order does
+            assertTrue(meanEdgeDistance(original, oldToNewMap) < meanEdgeDistance(original, sequential));
+
+            var outputPath = testDirectory.resolve("locality_graph");
+            try (var out = TestUtil.openBufferedWriter(outputPath)) {
+                OnDiskGraphIndex.write(original, ravv, oldToNewMap, out);
+            }
+            try (var marr = new SimpleMappedReader(outputPath.toAbsolutePath().toString());
+                 var onDiskGraph = OnDiskGraphIndex.load(marr::duplicate, 0);
+                 var onDiskView = onDiskGraph.getView();
+                 var originalView = original.getView())
+            {
+                assertEquals((int) oldToNewMap.get(entryNode), onDiskView.entryNode());
+                for (int i = 0; i < original.size(); i++) {
+                    int newOrdinal = oldToNewMap.get(i);
+                    assertEquals(ravv.getVector(i), onDiskView.getVector(newOrdinal));
+                    var expected = getNeighborNodes(originalView, i).stream().map(oldToNewMap::get).collect(Collectors.toSet());
+                    assertEquals(expected, getNeighborNodes(onDiskView, newOrdinal));
+                }
+            }
+        }
+    }
+
+    private static double meanEdgeDistance(GraphIndex graph, Map<Integer, Integer> oldToNewMap) throws Exception {
+        long total = 0;
+        long edges = 0;
+        try (var view = graph.getView()) {
+            for (int i = 0; i < graph.size(); i++) {
+                for (var it = view.getNeighborsIterator(i); it.hasNext(); ) {
+                    total += Math.abs(oldToNewMap.get(i) - oldToNewMap.get(it.nextInt()));
+                    edges++;
+                }
+            }
+        }
+        return (double) total / edges;
+    }
+
     private static void validateVectors(OnDiskGraphIndex.View view, RandomAccessVectorValues ravv) {
         for (int i = 0; i < view.size(); i++) {
             assertEquals("Incorrect vector at " + i, view.getVector(i), ravv.getVector(i));
@@ -212,6 +288,503 @@ public class TestOnDiskGraphIndex extends RandomizedTest {
         }
     }
 
+    @Test
+    public void testBlockAlignedLayout() throws Exception {
+        var graph = new TestUtil.RandomlyConnectedGraphIndex(1000, 32, getRandom());
+        var ravv = new ListRandomAccessVectorValues(TestUtil.createRandomVectors(1000, 16), 16);
+        // records are 4 + 16 * 4 + 33 * 4 = 200 bytes, so 4096 packs 20 per block and 128 spreads each over 2 blocks
+        for (int blockSize : List.of(4096, 128)) {
+            var outputPath = testDirectory.resolve("aligned_graph_" + blockSize);
+            try (var out = TestUtil.openBufferedWriter(outputPath);
+                 var writer = new OnDiskGraphIndexWriter.Builder(graph)
+                         .with(new InlineVectors(ravv.dimension()))
+                         .withBlockSize(blockSize)
+                         .build())
+            {
+                // write the vectors inline ahead of time, to check that writeInline agrees with write
+                var stateMap = new EnumMap<FeatureId, Feature.State>(FeatureId.class);
+                for (int i = 0; i < graph.size(); i++) {
+                    stateMap.put(FeatureId.INLINE_VECTORS, new InlineVectors.State(ravv.getVector(i)));
+                    writer.writeInline(out, i, stateMap);
+                }
+                out.seek(0);
+                var suppliers = new EnumMap<FeatureId, IntFunction<Feature.State>>(FeatureId.class);
+                suppliers.put(FeatureId.INLINE_VECTORS, null);
+                writer.write(out, suppliers);
+            }
+
+            try (var marr = new SimpleMappedReader(outputPath.toAbsolutePath().toString());
+                 var onDiskGraph = OnDiskGraphIndex.load(marr::duplicate, 0);
+                 var onDiskView = onDiskGraph.getView())
+            {
+                assertEquals(OnDiskGraphIndex.CURRENT_VERSION, onDiskGraph.version);
+                assertEquals(blockSize, onDiskGraph.layout.blockSize);
+                TestUtil.assertGraphEquals(graph, onDiskGraph);
+                validateVectors(onDiskView, ravv);
+
+                int recordSize = onDiskGraph.layout.recordSize;
+                for (int i = 0; i < graph.size(); i++) {
+                    long start = onDiskView.inlineOffsetFor(i, FeatureId.INLINE_VECTORS) - Integer.BYTES;
+                    long end = start + recordSize;
+                    if (recordSize <= blockSize) {
+                        assertEquals("Node " + i + " straddles a block boundary", start / blockSize, (end - 1) / blockSize);
+                    } else {
+                        assertEquals("Node " + i + " is not block-aligned", 0, start % blockSize);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testPackedAdjacency() throws Exception {
+        var ravv = new ListRandomAccessVectorValues(List.of(TestVectorGraph.createRandomFloatVectors(1000, 8, getRandom())), 8);
+        var builder = new GraphIndexBuilder(ravv, VectorSimilarityFunction.EUCLIDEAN, 16, 50, 1.2f, 1.2f);
+        var original = TestUtil.buildSequentially(builder, ravv);
+
+        var paddedPath = testDirectory.resolve("padded_graph");
+        try (var out = TestUtil.openBufferedWriter(paddedPath)) {
+            OnDiskGraphIndex.write(original, ravv, out);
+        }
+
+        for (var oldToNewMap : List.of(OnDiskGraphIndexWriter.getSequentialRenumbering(original),
+                                       OnDiskGraphIndexWriter.getBfsRenumbering(original)))
+        {
+            for (int blockSize : List.of(0, 4096)) {
+                var outputPath = testDirectory.resolve("packed_graph");
+                try (var out = TestUtil.openBufferedWriter(outputPath);
+                     var writer = new OnDiskGraphIndexWriter.Builder(original, oldToNewMap)
+                             .with(new InlineVectors(ravv.dimension()))
+                             .withBlockSize(blockSize)
+                             .withAdjacencyEncoding(AdjacencyEncoding.DELTA_BITPACKED)
+                             .build())
+                {
+                    var suppliers = new EnumMap<FeatureId, IntFunction<Feature.State>>(FeatureId.class);
+                    suppliers.put(FeatureId.INLINE_VECTORS, i -> new InlineVectors.State(ravv.getVector(i)));
+                    writer.write(out, suppliers);
+                }
+                if (blockSize == 0) {
+                    assertTrue(Files.size(outputPath) < Files.size(paddedPath));
+                }
+
+                try (var marr = new SimpleMappedReader(outputPath.toAbsolutePath().toString());
+                     var onDiskGraph = OnDiskGraphIndex.load(marr::duplicate, 0);
+                     var onDiskView = onDiskGraph.getView();
+                     var originalView = original.getView())
+                {
+                    assertEquals(AdjacencyEncoding.DELTA_BITPACKED, onDiskGraph.adjacencyEncoding);
+                    assertEquals((int) oldToNewMap.get(originalView.entryNode()), onDiskView.entryNode());
+                    for (int i = 0; i < original.size(); i++) {
+                        int newOrdinal = oldToNewMap.get(i);
+                        assertEquals(ravv.getVector(i), onDiskView.getVector(newOrdinal));
+                        var expected = getNeighborNodes(originalView, i).stream().map(oldToNewMap::get).collect(Collectors.toSet());
+                        assertEquals(expected, getNeighborNodes(onDiskView, newOrdinal));
+                    }
+                }
+            }
+        }
+
+        // an encoding from a newer (or corrupt) file is rejected
+        var corruptPath = testDirectory.resolve("corrupt_graph");
+        Files.copy(paddedPath, corruptPath);
+        try (var channel = FileChannel.open(corruptPath, StandardOpenOption.WRITE)) {
+            // after the magic, version, size, dimension, entry node, max degree, block size and nodes per block
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, AdjacencyEncoding.values().length), 8 * Integer.BYTES);
+        }
+        try (var marr = new SimpleMappedReader(corruptPath.toAbsolutePath().toString())) {
+            var e = assertThrows(RuntimeException.class, () -> OnDiskGraphIndex.load(marr::duplicate, 0));
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+    }
+
+    @Test
+    public void testSplitLayout() throws Exception {
+        var graph = new TestUtil.RandomlyConnectedGraphIndex(1000, 32, getRandom());
+        var ravv = new ListRandomAccessVectorValues(TestUtil.createRandomVectors(1000, 16), 16);
+        var pq = ProductQuantization.compute(ravv, 8, 32, false);
+        var pqv = new PQVectors(pq, pq.encodeAll(ravv));
+        var unsplitPath = testDirectory.resolve("unsplit_graph");
+        TestUtil.writeFusedGraph(graph, ravv, pqv, unsplitPath);
+
+        var suppliers = new EnumMap<FeatureId, IntFunction<Feature.State>>(FeatureId.class);
+        suppliers.put(FeatureId.INLINE_VECTORS, i -> new InlineVectors.State(ravv.getVector(i)));
+        suppliers.put(FeatureId.FUSED_ADC, i -> new FusedADC.State(graph.getView(), pqv, i));
+        var vsf = VectorSimilarityFunction.EUCLIDEAN;
+        for (int blockSize : List.of(0, 4096)) {
+            var outputPath = testDirectory.resolve("split_graph_" + blockSize);
+            try (var out = TestUtil.openBufferedWriter(outputPath);
+                 var writer = new OnDiskGraphIndexWriter.Builder(graph)
+                         .with(new InlineVectors(ravv.dimension()))
+                         .with(new FusedADC(graph.maxDegree(), pq))
+                         .withBlockSize(blockSize)
+                         .withSplitLayout(true)
+                         .build())
+            {
+                writer.write(out, suppliers);
+            }
+
+            try (var unsplitReader = new SimpleMappedReader(unsplitPath.toAbsolutePath().toString());
+                 var unsplitGraph = OnDiskGraphIndex.load(unsplitReader::duplicate, 0);
+                 var unsplitView = unsplitGraph.getView();
+                 var marr = new SimpleMappedReader(outputPath.toAbsolutePath().toString());
+                 var onDiskGraph = OnDiskGraphIndex.load(marr::duplicate, 0);
+                 var onDiskView = onDiskGraph.getView())
+            {
+                assertEquals(EnumSet.of(FeatureId.INLINE_VECTORS), onDiskGraph.separatedFeatures);
+                // the vectors are no longer in the records
+                assertEquals(unsplitGraph.layout.recordSize - ravv.dimension() * Float.BYTES, onDiskGraph.layout.recordSize);
+                TestUtil.assertGraphEquals(graph, onDiskGraph);
+                validateVectors(onDiskView, ravv);
+
+                var query = TestUtil.randomVector(getRandom(), ravv.dimension());
+                var expectedReranker = unsplitView.rerankerFor(query, vsf);
+                var expectedAsf = unsplitView.approximateScoreFunctionFor(query, vsf);
+                var reranker = onDiskView.rerankerFor(query, vsf);
+                var asf = onDiskView.approximateScoreFunctionFor(query, vsf);
+                for (int i = 0; i < graph.size(); i++) {
+                    assertEquals(expectedReranker.similarityTo(i), reranker.similarityTo(i), 0.0f);
+                    var expected = expectedAsf.edgeLoadingSimilarityTo(i).copy();
+                    var actual = asf.edgeLoadingSimilarityTo(i);
+                    for (int j = 0; j < graph.maxDegree(); j++) {
+                        assertEquals(expected.get(j), actual.get(j), 0.0f);
+                    }
+                }
+
+                // the cache reassembles the inline block from both regions
+                try (var cachedView = new CachingGraphIndex(onDiskGraph, 1, true).getView()) {
+                    var cachedReranker = cachedView.rerankerFor(query, vsf);
+                    int entry = onDiskView.entryNode();
+                    assertEquals(reranker.similarityTo(entry), cachedReranker.similarityTo(entry), 0.0f);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testHalfPrecisionVectors() throws Exception {
+        var graph = new TestUtil.RandomlyConnectedGraphIndex(1000, 32, getRandom());
+        var ravv = new ListRandomAccessVectorValues(TestUtil.createRandomVectors(1000, 16), 16);
+        var pq = ProductQuantization.compute(ravv, 8, 32, false);
+        var pqv = new PQVectors(pq, pq.encodeAll(ravv));
+
+        var suppliers = new EnumMap<FeatureId, IntFunction<Feature.State>>(FeatureId.class);
+        suppliers.put(FeatureId.HALF_PRECISION_VECTORS, i -> new HalfPrecisionVectors.State(ravv.getVector(i)));
+        suppliers.put(FeatureId.FUSED_ADC, i -> new FusedADC.State(graph.getView(), pqv, i));
+        for (var format : HalfFloatFormat.values()) {
+            for (boolean split : List.of(false, true)) {
+                var outputPath = testDirectory.resolve("half_graph_" + format + "_" + split);
+                try (var out = TestUtil.openBufferedWriter(outputPath);
+                     var writer = new OnDiskGraphIndexWriter.Builder(graph)
+                             .with(new HalfPrecisionVectors(ravv.dimension(), format))
+                             .with(new FusedADC(graph.maxDegree(), pq))
+                             .withSplitLayout(split)
+                             .build())
+                {
+                    writer.write(out, suppliers);
+                }
+
+                try (var marr = new SimpleMappedReader(outputPath.toAbsolutePath().toString());
+                     var onDiskGraph = OnDiskGraphIndex.load(marr::duplicate, 0);
+                     var onDiskView = onDiskGraph.getView())
+                {
+                    assertEquals(format, ((HalfPrecisionVectors) onDiskGraph.features.get(FeatureId.HALF_PRECISION_VECTORS)).format());
+                    // two bytes per component
+                    assertEquals(ravv.dimension() * Short.BYTES, onDiskGraph.features.get(FeatureId.HALF_PRECISION_VECTORS).inlineSize());
+                    TestUtil.assertGraphEquals(graph, onDiskGraph);
+
+                    // vectors are decoded to within the precision of the format
+                    float tolerance = format == HalfFloatFormat.FP16 ? 0x1p-10f : 0x1p-7f;
+                    for (int i = 0; i < graph.size(); i++) {
+                        var expected = ravv.getVector(i);
+                        var actual = onDiskView.getVector(i);
+                        for (int j = 0; j < ravv.dimension(); j++) {
+                            assertEquals(expected.get(j), actual.get(j), Math.abs(expected.get(j)) * tolerance + 0x1p-24f);
+                        }
+                    }
+
+                    // reranking scores the half-precision vectors, and approximate scoring is unaffected
+                    for (var vsf : VectorSimilarityFunction.values()) {
+                        var query = TestUtil.randomVector(getRandom(), ravv.dimension());
+                        var reranker = onDiskView.rerankerFor(query, vsf);
+                        var scores = reranker.similarityTo(new int[] {0, 1, 2});
+                        for (int i = 0; i < 3; i++) {
+                            var decoded = onDiskView.getVector(i);
+                            assertEquals(vsf.compare(query, decoded), scores.get(i), 1e-5f);
+                            assertEquals(vsf.compare(query, ravv.getVector(i)), reranker.similarityTo(i), 0.01f);
+                        }
+                    }
+                    var asf = onDiskView.approximateScoreFunctionFor(TestUtil.randomVector(getRandom(), ravv.dimension()), VectorSimilarityFunction.EUCLIDEAN);
+                    assertEquals(graph.maxDegree(), asf.edgeLoadingSimilarityTo(0).length());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSQ8() throws Exception {
+        var graph = new TestUtil.RandomlyConnectedGraphIndex(1000, 32, getRandom());
+        var ravv = new ListRandomAccessVectorValues(TestUtil.createRandomVectors(1000, 16), 16);
+        var pq = ProductQuantization.compute(ravv, 8, 32, false);
+        var pqv = new PQVectors(pq, pq.encodeAll(ravv));
+        var sq = ScalarQuantization.compute(ravv);
+        var sqv = new SQVectors(sq, sq.encodeAll(ravv));
+
+        var suppliers = new EnumMap<FeatureId, IntFunction<Feature.State>>(FeatureId.class);
+        suppliers.put(FeatureId.SQ8, i -> new SQ8.State(sqv.get(i)));
+        suppliers.put(FeatureId.FUSED_ADC, i -> new FusedADC.State(graph.getView(), pqv, i));
+        for (boolean split : List.of(false, true)) {
+            var outputPath = testDirectory.resolve("sq8_graph_" + split);
+            try (var out = TestUtil.openBufferedWriter(outputPath);
+                 var writer = new OnDiskGraphIndexWriter.Builder(graph)
+                         .with(new SQ8(sq))
+                         .with(new FusedADC(graph.maxDegree(), pq))
+                         .withSplitLayout(split)
+                         .build())
+            {
+                writer.write(out, suppliers);
+            }
+
+            try (var marr = new SimpleMappedReader(outputPath.toAbsolutePath().toString());
+                 var onDiskGraph = OnDiskGraphIndex.load(marr::duplicate, 0);
+                 var onDiskView = onDiskGraph.getView())
+            {
+                assertEquals(ravv.dimension(), onDiskGraph.dimension);
+                assertEquals(ravv.dimension(), onDiskGraph.features.get(FeatureId.SQ8).inlineSize());
+                TestUtil.assertGraphEquals(graph, onDiskGraph);
+
+                // reranking scores the SQ8 codes exactly as the in-memory SQVectors do
+                for (var vsf : VectorSimilarityFunction.values()) {
+                    var query = TestUtil.randomVector(getRandom(), ravv.dimension());
+                    var reranker = onDiskView.rerankerFor(query, vsf);
+                    var expected = sqv.scoreFunctionFor(query, vsf);
+                    var nodes = new int[] {0, 1, 2, graph.size() - 1};
+                    var scores = reranker.similarityTo(nodes);
+                    for (int i = 0; i < nodes.length; i++) {
+                        assertEquals(expected.similarityTo(nodes[i]), scores.get(i), 0.0f);
+                        assertEquals(vsf.compare(query, ravv.getVector(nodes[i])), scores.get(i), 0.01f);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testTombstones() throws Exception {
+        var ravv = new ListRandomAccessVectorValues(List.of(TestVectorGraph.createRandomFloatVectors(1000, 8, getRandom())), 8);
+        var builder = new GraphIndexBuilder(ravv, VectorSimilarityFunction.EUCLIDEAN, 16, 50, 1.2f, 1.2f);
+        var graph = TestUtil.buildSequentially(builder, ravv);
+        var outputPath = testDirectory.resolve("tombstoned_graph");
+        TestUtil.writeGraph(graph, ravv, outputPath);
+        var tombstonesPath = testDirectory.resolve("tombstoned_graph.deleted");
+
+        var query = TestUtil.randomVector(getRandom(), ravv.dimension());
+        var deleted = new HashSet<Integer>();
+        try (var marr = new SimpleMappedReader(outputPath.toAbsolutePath().toString());
+             var onDiskGraph = OnDiskGraphIndex.load(marr::duplicate, 0, Tombstones.open(tombstonesPath, graph.size()));
+             var searcher = new GraphSearcher(onDiskGraph.getView()))
+        {
+            var tombstones = onDiskGraph.tombstones();
+            assertEquals(Bits.ALL, tombstones.liveNodes());
+            var ssp = new SearchScoreProvider(ScoreFunction.ExactScoreFunction.from(query, VectorSimilarityFunction.EUCLIDEAN, ravv), null);
+            var before = searcher.search(ssp, 10, Bits.ALL);
+
+            // delete the best results, including the entry node, which searches must still traverse
+            for (var ns : before.getNodes()) {
+                assertTrue(tombstones.delete(ns.node));
+                deleted.add(ns.node);
+            }
+            if (deleted.add(onDiskGraph.entryNode)) {
+                assertTrue(tombstones.delete(onDiskGraph.entryNode));
+            }
+            assertFalse(tombstones.delete(before.getNodes()[0].node));
+            assertEquals(deleted.size(), tombstones.deletedCount());
+
+            var after = searcher.search(ssp, 10, Bits.ALL);
+            assertEquals(10, after.getNodes().length);
+            for (var ns : after.getNodes()) {
+                assertFalse(deleted.contains(ns.node));
+            }
+            assertTrue(after.getVisitedCount() > 0);
+        }
+
+        // deletes persist
+        try (var tombstones = Tombstones.open(tombstonesPath, graph.size())) {
+            assertEquals(deleted.size(), tombstones.deletedCount());
+            for (int i = 0; i < graph.size(); i++) {
+                assertEquals(deleted.contains(i), tombstones.isDeleted(i));
+                assertEquals(!deleted.contains(i), tombstones.liveNodes().get(i));
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> Tombstones.open(tombstonesPath, graph.size() + 1));
+    }
+
+    @Test
+    public void testAsyncFileReader() throws Exception {
+        var ravv = new ListRandomAccessVectorValues(List.of(TestVectorGraph.createRandomFloatVectors(1000, 8, getRandom())), 8);
+        var builder = new GraphIndexBuilder(ravv, VectorSimilarityFunction.EUCLIDEAN, 16, 50, 1.2f, 1.2f);
+        var original = TestUtil.buildSequentially(builder, ravv);
+
+        for (var encoding : AdjacencyEncoding.values()) {
+            var outputPath = testDirectory.resolve("async_graph_" + encoding);
+            try (var out = TestUtil.openBufferedWriter(outputPath);
+                 var writer = new OnDiskGraphIndexWriter.Builder(original)
+                         .with(new InlineVectors(ravv.dimension()))
+                         .withAdjacencyEncoding(encoding)
+                         .build())
+            {
+                var suppliers = new EnumMap<FeatureId, IntFunction<Feature.State>>(FeatureId.class);
+                suppliers.put(FeatureId.INLINE_VECTORS, i -> new InlineVectors.State(ravv.getVector(i)));
+                writer.write(out, suppliers);
+            }
+
+            // prefetched and unprefetched reads must see the same bytes as the mapped reader
+            try (var mapped = new SimpleMappedReader(outputPath.toAbsolutePath().toString());
+                 var readers = new AsyncFileReaderSupplier(outputPath);
+                 var async = (AsyncFileReader) readers.get())
+            {
+                long fileSize = Files.size(outputPath);
+                var offsets = new long[100];
+                var lengths = new int[100];
+                for (int i = 0; i < offsets.length; i++) {
+                    offsets[i] = randomLongBetween(0, fileSize - 1);
+                    lengths[i] = randomIntBetween(1, 5000);
+                }
+                async.prefetch(offsets, lengths, offsets.length);
+                for (int i = 0; i < offsets.length; i++) {
+                    int length = (int) Math.min(lengths[i], fileSize - offsets[i]);
+                    var expected = new byte[length];
+                    var actual = new byte[length];
+                    mapped.seek(offsets[i]);
+                    mapped.readFully(expected);
+                    async.seek(offsets[i]);
+                    async.readFully(actual);
+                    assertArrayEquals(expected, actual);
+                    assertEquals(offsets[i] + length, async.getPosition());
+                }
+            }
+
+            try (var readers = new AsyncFileReaderSupplier(outputPath);
+                 var asyncGraph = OnDiskGraphIndex.load(readers, 0);
+                 var asyncView = asyncGraph.getView();
+                 var marr = new SimpleMappedReader(outputPath.toAbsolutePath().toString());
+                 var mappedGraph = OnDiskGraphIndex.load(marr::duplicate, 0);
+                 var mappedView = mappedGraph.getView())
+            {
+                TestUtil.assertGraphEquals(original, asyncGraph);
+                validateVectors(asyncView, ravv);
+
+                // 50 results are reranked in two prefetched batches
+                var query = TestUtil.randomVector(getRandom(), 8);
+                var expected = searchWithReranking(mappedView, query, 50);
+                var actual = searchWithReranking(asyncView, query, 50);
+                assertEquals(expected.getNodes().length, actual.getNodes().length);
+                for (int i = 0; i < expected.getNodes().length; i++) {
+                    assertEquals(expected.getNodes()[i].node, actual.getNodes()[i].node);
+                    assertEquals(expected.getNodes()[i].score, actual.getNodes()[i].score, 0.0f);
+                }
+            }
+        }
+    }
+
+    private static SearchResult searchWithReranking(OnDiskGraphIndex.View view, VectorFloat<?> query, int topK) {
+        var reranker = view.rerankerFor(query, VectorSimilarityFunction.EUCLIDEAN);
+        // not closed, since that would close the view
+        var searcher = new GraphSearcher(view);
+        return searcher.search(new SearchScoreProvider(reranker, reranker), topK, Bits.ALL);
+    }
+
+    @Test
+    public void testParallelWrite() throws Exception {
+        // several chunks' worth of nodes
+        var graph = new TestUtil.RandomlyConnectedGraphIndex(3000, 16, getRandom());
+        var ravv = new ListRandomAccessVectorValues(TestUtil.createRandomVectors(3000, 8), 8);
+        var pq = ProductQuantization.compute(ravv, 4, 32, false);
+        var pqv = new PQVectors(pq, pq.encodeAll(ravv));
+        var suppliers = new EnumMap<FeatureId, IntFunction<Feature.State>>(FeatureId.class);
+        suppliers.put(FeatureId.INLINE_VECTORS, i -> new InlineVectors.State(ravv.getVector(i)));
+        suppliers.put(FeatureId.FUSED_ADC, i -> new FusedADC.State(graph.getView(), pqv, i));
+        var vectorsOnly = new EnumMap<FeatureId, IntFunction<Feature.State>>(FeatureId.class);
+        vectorsOnly.put(FeatureId.INLINE_VECTORS, suppliers.get(FeatureId.INLINE_VECTORS));
+        var fusedOnly = new EnumMap<FeatureId, IntFunction<Feature.State>>(FeatureId.class);
+        fusedOnly.put(FeatureId.INLINE_VECTORS, null);
+        fusedOnly.put(FeatureId.FUSED_ADC, suppliers.get(FeatureId.FUSED_ADC));
+
+        var executor = new ForkJoinPool(4);
+        try {
+            for (int blockSize : List.of(0, 4096)) {
+                // padded, with and without the fused feature
+                assertParallelWriteMatches(() -> new OnDiskGraphIndexWriter.Builder(graph)
+                                                   .with(new InlineVectors(8))
+                                                   .with(new FusedADC(graph.maxDegree(), pq))
+                                                   .withBlockSize(blockSize)
+                                                   .build(),
+                                           suppliers, executor, null);
+                // packed adjacency, renumbered
+                var bfs = OnDiskGraphIndexWriter.getBfsRenumbering(graph);
+                assertParallelWriteMatches(() -> new OnDiskGraphIndexWriter.Builder(graph, bfs)
+                                                   .with(new InlineVectors(8))
+                                                   .withBlockSize(blockSize)
+                                                   .withAdjacencyEncoding(AdjacencyEncoding.DELTA_BITPACKED)
+                                                   .build(),
+                                           vectorsOnly, executor, null);
+                // vectors written beforehand with writeInline, which the parallel write must not overwrite
+                assertParallelWriteMatches(() -> new OnDiskGraphIndexWriter.Builder(graph)
+                                                   .with(new InlineVectors(8))
+                                                   .with(new FusedADC(graph.maxDegree(), pq))
+                                                   .withBlockSize(blockSize)
+                                                   .build(),
+                                           fusedOnly, executor, ravv);
+                // split layout, with the separated vectors written beforehand and the packed records written in parallel
+                assertParallelWriteMatches(() -> new OnDiskGraphIndexWriter.Builder(graph)
+                                                   .with(new InlineVectors(8))
+                                                   .with(new FusedADC(graph.maxDegree(), pq))
+                                                   .withBlockSize(blockSize)
+                                                   .withSplitLayout(true)
+                                                   .build(),
+                                           fusedOnly, executor, ravv);
+                assertParallelWriteMatches(() -> new OnDiskGraphIndexWriter.Builder(graph, bfs)
+                                                   .with(new InlineVectors(8))
+                                                   .withBlockSize(blockSize)
+                                                   .withAdjacencyEncoding(AdjacencyEncoding.DELTA_BITPACKED)
+                                                   .withSplitLayout(true)
+                                                   .build(),
+                                           vectorsOnly, executor, null);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void assertParallelWriteMatches(Supplier<OnDiskGraphIndexWriter> writers,
+                                            EnumMap<FeatureId, IntFunction<Feature.State>> suppliers,
+                                            ForkJoinPool executor,
+                                            RandomAccessVectorValues inlineVectors) throws Exception
+    {
+        var sequentialPath = testDirectory.resolve("sequential");
+        var parallelPath = testDirectory.resolve("parallel");
+        for (var path : List.of(sequentialPath, parallelPath)) {
+            Files.deleteIfExists(path);
+            try (var out = TestUtil.openBufferedWriter(path);
+                 var writer = writers.get())
+            {
+                if (inlineVectors != null) {
+                    var state = new EnumMap<FeatureId, Feature.State>(FeatureId.class);
+                    for (int i = 0; i < inlineVectors.size(); i++) {
+                        state.put(FeatureId.INLINE_VECTORS, new InlineVectors.State(inlineVectors.getVector(i)));
+                        writer.writeInline(out, i, state);
+                    }
+                    out.seek(0);
+                }
+                if (path == sequentialPath) {
+                    writer.write(out, suppliers);
+                } else {
+                    writer.write(out, suppliers, executor);
+                }
+            }
+        }
+        assertArrayEquals(Files.readAllBytes(sequentialPath), Files.readAllBytes(parallelPath));
+    }
+
     @Test
     public void testIncrementalWrites() {
         // generate 1000 node random graph
@@ -0,0 +1,151 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.jbellis.jvector.graph.disk;
+
+import com.carrotsearch.randomizedtesting.RandomizedTest;
+import com.carrotsearch.randomizedtesting.annotations.ThreadLeakScope;
+import io.github.jbellis.jvector.TestUtil;
+import io.github.jbellis.jvector.disk.PageCache;
+import io.github.jbellis.jvector.disk.SimpleMappedReaderSupplier;
+import io.github.jbellis.jvector.graph.ListRandomAccessVectorValues;
+import io.github.jbellis.jvector.graph.RandomAccessVectorValues;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@ThreadLeakScope(ThreadLeakScope.Scope.NONE)
+public class TestOnDiskGraphIndexWarmer extends RandomizedTest {
+    private Path testDirectory;
+    private TestUtil.RandomlyConnectedGraphIndex graph;
+    private RandomAccessVectorValues ravv;
+
+    @Before
+    public void setup() throws IOException {
+        testDirectory = Files.createTempDirectory(this.getClass().getSimpleName());
+        graph = new TestUtil.RandomlyConnectedGraphIndex(2000, 16, getRandom());
+        ravv = new ListRandomAccessVectorValues(TestUtil.createRandomVectors(2000, 64), 64);
+    }
+
+    @After
+    public void tearDown() {
+        TestUtil.deleteQuietly(testDirectory);
+    }
+
+    @Test
+    public void testWarmedNodesAreCached() throws Exception {
+        var paddedPath = testDirectory.resolve("padded");
+        TestUtil.writeGraph(graph, ravv, paddedPath);
+        var splitPath = testDirectory.resolve("split");
+        try (var out = TestUtil.openBufferedWriter(splitPath);
+             var writer = new OnDiskGraphIndexWriter.Builder(graph)
+                     .with(new InlineVectors(ravv.dimension()))
+                     .withAdjacencyEncoding(AdjacencyEncoding.DELTA_BITPACKED)
+                     .withSplitLayout(true)
+                     .build())
+        {
+            var suppliers = new EnumMap<FeatureId, IntFunction<Feature.State>>(FeatureId.class);
+            suppliers.put(FeatureId.INLINE_VECTORS, i -> new InlineVectors.State(ravv.getVector(i)));
+            writer.write(out, suppliers);
+        }
+
+        for (var path : List.of(paddedPath, splitPath)) {
+            var pageCache = new PageCache(16 << 20);
+            try (var readers = pageCache.wrap(new SimpleMappedReaderSupplier(path), Files.size(path));
+                 var onDiskGraph = OnDiskGraphIndex.load(readers, 0);
+                 var view = onDiskGraph.getView())
+            {
+                var expected = new HashSet<>(TestUtil.getNeighborNodes(view, view.entryNode()));
+                expected.add(view.entryNode());
+                int[] hot = {graph.size() - 1, graph.size() - 2, graph.size() + 100};
+                expected.add(graph.size() - 1);
+                expected.add(graph.size() - 2);
+
+                var lastReport = new long[3];
+                var warmer = new OnDiskGraphIndexWarmer.Builder(onDiskGraph)
+                        .withHops(1)
+                        .withNodes(hot)
+                        .withProgressListener((nodesWarmed, totalNodes, bytesWarmed) -> {
+                            lastReport[0] = nodesWarmed;
+                            lastReport[1] = totalNodes;
+                            lastReport[2] = bytesWarmed;
+                        })
+                        .build();
+                warmer.run();
+                assertEquals(expected.size(), warmer.totalNodes());
+                assertEquals(expected.size(), warmer.nodesWarmed());
+                assertEquals(expected.size(), lastReport[0]);
+                assertEquals(expected.size(), lastReport[1]);
+                assertEquals(warmer.bytesWarmed(), lastReport[2]);
+
+                // reading the warmed nodes is all page cache hits
+                long misses = pageCache.misses();
+                for (int node : expected) {
+                    TestUtil.getNeighborNodes(view, node);
+                    assertEquals(ravv.getVector(node), view.getVector(node));
+                }
+                assertEquals(misses, pageCache.misses());
+
+                try {
+                    warmer.run();
+                    fail("A warmer can only be run once");
+                } catch (IllegalStateException expectedException) {
+                    // expected
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testThrottledWarmupCanBeCancelled() throws Exception {
+        var path = testDirectory.resolve("graph");
+        TestUtil.writeGraph(graph, ravv, path);
+        var executor = Executors.newSingleThreadExecutor();
+        try (var readers = new SimpleMappedReaderSupplier(path);
+             var onDiskGraph = OnDiskGraphIndex.load(readers, 0))
+        {
+            // a few records per second, so the warmup would take minutes
+            var warmer = new OnDiskGraphIndexWarmer.Builder(onDiskGraph)
+                    .withHops(2)
+                    .withMaxBytesPerSecond(4096)
+                    .build();
+            var future = warmer.start(executor);
+            Thread.sleep(500);
+            warmer.cancel();
+            future.get(10, TimeUnit.SECONDS);
+            assertTrue(warmer.totalNodes() > 0);
+            assertTrue(warmer.nodesWarmed() < warmer.totalNodes());
+            // 500ms at 4KB/s, plus the first record, which is read before throttling
+            assertTrue(warmer.bytesWarmed() < 4096);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
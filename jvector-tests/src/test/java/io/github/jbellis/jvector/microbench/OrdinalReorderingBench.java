@@ -0,0 +1,270 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.jbellis.jvector.microbench;
+
+import io.github.jbellis.jvector.TestUtil;
+import io.github.jbellis.jvector.disk.RandomAccessReader;
+import io.github.jbellis.jvector.disk.ReaderSupplier;
+import io.github.jbellis.jvector.disk.SimpleMappedReaderSupplier;
+import io.github.jbellis.jvector.graph.GraphIndexBuilder;
+import io.github.jbellis.jvector.graph.GraphSearcher;
+import io.github.jbellis.jvector.graph.ListRandomAccessVectorValues;
+import io.github.jbellis.jvector.graph.disk.OnDiskGraphIndex;
+import io.github.jbellis.jvector.graph.disk.OnDiskGraphIndexWriter;
+import io.github.jbellis.jvector.graph.similarity.ScoreFunction;
+import io.github.jbellis.jvector.graph.similarity.SearchScoreProvider;
+import io.github.jbellis.jvector.util.Bits;
+import io.github.jbellis.jvector.vector.VectorSimilarityFunction;
+import io.github.jbellis.jvector.vector.types.VectorFloat;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the number of distinct 4KB pages of the index file touched by a single OnDiskGraphIndex search
+ * under each ordinal renumbering.  Every page touched by a search is a page fault when the index is
+ * not in the page cache, so this is the number of faults a cold search would take.
+ * <p>
+ * The page counts are reported as the pagesTouched and searches secondary metrics, and summarized
+ * at the end of each trial.
+ */
+@Warmup(iterations = 1, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Benchmark)
+public class OrdinalReorderingBench {
+    private static final int PAGE_SIZE = 4096;
+    private static final int SIZE = 100_000;
+    private static final int DIMENSION = 64;
+    private static final VectorSimilarityFunction VSF = VectorSimilarityFunction.EUCLIDEAN;
+
+    @Param({"SEQUENTIAL", "BFS", "RCM"})
+    public String ordering;
+
+    private Path indexPath;
+    private ReaderSupplier readers;
+    private OnDiskGraphIndex graph;
+    private List<VectorFloat<?>> queries;
+    private int nextQuery;
+    private final BitSet touchedPages = new BitSet();
+    private long totalPages;
+    private long totalSearches;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class PageCounters {
+        public long pagesTouched;
+        public long searches;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        var random = new Random(1337);
+        var ravv = new ListRandomAccessVectorValues(List.of(GraphIndexBench.createRandomFloatVectors(SIZE, DIMENSION, random)), DIMENSION);
+        queries = List.of(GraphIndexBench.createRandomFloatVectors(1000, DIMENSION, random));
+        var onHeapGraph = new GraphIndexBuilder(ravv, VSF, 16, 100, 1.2f, 1.2f).build(ravv);
+
+        Map<Integer, Integer> oldToNewOrdinals;
+        switch (ordering) {
+            case "SEQUENTIAL":
+                oldToNewOrdinals = OnDiskGraphIndexWriter.getSequentialRenumbering(onHeapGraph);
+                break;
+            case "BFS":
+                oldToNewOrdinals = OnDiskGraphIndexWriter.getBfsRenumbering(onHeapGraph);
+                break;
+            case "RCM":
+                oldToNewOrdinals = OnDiskGraphIndexWriter.getReverseCuthillMcKeeRenumbering(onHeapGraph);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown ordering " + ordering);
+        }
+
+        indexPath = Files.createTempFile("reordering", ".odgi");
+        try (var out = TestUtil.openBufferedWriter(indexPath)) {
+            OnDiskGraphIndex.write(onHeapGraph, ravv, oldToNewOrdinals, out);
+        }
+        readers = new PageTrackingReaderSupplier(new SimpleMappedReaderSupplier(indexPath), touchedPages);
+        graph = OnDiskGraphIndex.load(readers, 0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        System.out.format("%s: %.1f pages touched per search%n", ordering, (double) totalPages / totalSearches);
+        graph.close();
+        readers.close();
+        Files.deleteIfExists(indexPath);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void coldSearch(Blackhole bh, PageCounters counters) throws Exception {
+        var query = queries.get(nextQuery++ % queries.size());
+        touchedPages.clear();
+        try (var view = graph.getView();
+             var searcher = new GraphSearcher(view))
+        {
+            var ssp = new SearchScoreProvider(ScoreFunction.ExactScoreFunction.from(query, VSF, view), null);
+            bh.consume(searcher.search(ssp, 10, Bits.ALL));
+        }
+        int pages = touchedPages.cardinality();
+        counters.pagesTouched += pages;
+        counters.searches++;
+        totalPages += pages;
+        totalSearches++;
+    }
+
+    private static class PageTrackingReaderSupplier implements ReaderSupplier {
+        private final ReaderSupplier delegate;
+        private final BitSet touchedPages;
+
+        PageTrackingReaderSupplier(ReaderSupplier delegate, BitSet touchedPages) {
+            this.delegate = delegate;
+            this.touchedPages = touchedPages;
+        }
+
+        @Override
+        public RandomAccessReader get() {
+            return new PageTrackingReader(delegate.get(), touchedPages);
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+
+    /**
+     * Records the pages covered by each read.  Not threadsafe, which is fine since the benchmark is single-threaded.
+     */
+    private static class PageTrackingReader implements RandomAccessReader {
+        private final RandomAccessReader delegate;
+        private final BitSet touchedPages;
+        private long start;
+
+        PageTrackingReader(RandomAccessReader delegate, BitSet touchedPages) {
+            this.delegate = delegate;
+            this.touchedPages = touchedPages;
+        }
+
+        private void beginRead() throws IOException {
+            start = delegate.getPosition();
+        }
+
+        private void endRead() throws IOException {
+            long end = delegate.getPosition();
+            if (end > start) {
+                touchedPages.set((int) (start / PAGE_SIZE), (int) ((end - 1) / PAGE_SIZE) + 1);
+            }
+        }
+
+        @Override
+        public void seek(long offset) throws IOException {
+            delegate.seek(offset);
+        }
+
+        @Override
+        public long getPosition() throws IOException {
+            return delegate.getPosition();
+        }
+
+        @Override
+        public int readInt() throws IOException {
+            beginRead();
+            int value = delegate.readInt();
+            endRead();
+            return value;
+        }
+
+        @Override
+        public float readFloat() throws IOException {
+            beginRead();
+            float value = delegate.readFloat();
+            endRead();
+            return value;
+        }
+
+        @Override
+        public void readFully(byte[] bytes) throws IOException {
+            beginRead();
+            delegate.readFully(bytes);
+            endRead();
+        }
+
+        @Override
+        public void readFully(ByteBuffer buffer) throws IOException {
+            beginRead();
+            delegate.readFully(buffer);
+            endRead();
+        }
+
+        @Override
+        public void readFully(float[] floats) throws IOException {
+            beginRead();
+            delegate.readFully(floats);
+            endRead();
+        }
+
+        @Override
+        public void readFully(long[] vector) throws IOException {
+            beginRead();
+            delegate.readFully(vector);
+            endRead();
+        }
+
+        @Override
+        public void read(int[] ints, int offset, int count) throws IOException {
+            beginRead();
+            delegate.read(ints, offset, count);
+            endRead();
+        }
+
+        @Override
+        public void read(float[] floats, int offset, int count) throws IOException {
+            beginRead();
+            delegate.read(floats, offset, count);
+            endRead();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+}
@@ -86,6 +86,57 @@ public class TestCompressedVectors extends RandomizedTest {
         }
     }
 
+    @Test
+    public void testSaveLoadSQ() throws Exception {
+        var vectors = createRandomVectors(512, 64);
+        var ravv = new ListRandomAccessVectorValues(vectors, 64);
+        var sq = ScalarQuantization.compute(ravv);
+
+        // Compress the vectors
+        var compressed = sq.encodeAll(ravv);
+        var cv = new SQVectors(sq, compressed);
+        assertEquals(64 * Float.BYTES, cv.getOriginalSize());
+        assertEquals(64, cv.getCompressedSize());
+
+        // Write compressed vectors
+        File cvFile = File.createTempFile("sqtest", ".cv");
+        try (var out = new DataOutputStream(new FileOutputStream(cvFile))) {
+            cv.write(out);
+        }
+        // Read compressed vectors
+        try (var in = new SimpleMappedReader(cvFile.getAbsolutePath())) {
+            var cv2 = SQVectors.load(in, 0);
+            assertEquals(cv, cv2);
+        }
+    }
+
+    @Test
+    public void testSQEncodings() {
+        var dimension = 64;
+        var vectors = createRandomVectors(512, dimension);
+        var ravv = new ListRandomAccessVectorValues(vectors, dimension);
+        var sq = ScalarQuantization.compute(ravv);
+        var cv = new SQVectors(sq, sq.encodeAll(ravv));
+
+        // every component of the training vectors decodes to within half a step
+        var decoded = TestUtil.randomVector(getRandom(), dimension);
+        for (int i = 0; i < vectors.size(); i++) {
+            sq.decode(cv.get(i), decoded);
+            for (int j = 0; j < dimension; j++) {
+                assertEquals(vectors.get(i).get(j), decoded.get(j), 1.0 / 255);
+            }
+        }
+
+        // and the scores are nearly exact
+        for (var vsf : List.of(VectorSimilarityFunction.EUCLIDEAN, VectorSimilarityFunction.DOT_PRODUCT, VectorSimilarityFunction.COSINE)) {
+            var q = TestUtil.randomVector(getRandom(), dimension);
+            var f = cv.precomputedScoreFunctionFor(q, vsf);
+            for (int j = 0; j < vectors.size(); j++) {
+                assertEquals(vsf.compare(q, vectors.get(j)), f.similarityTo(j), 0.01);
+            }
+        }
+    }
+
     private void testEncodings(int dimension, int codebooks) {
         // Generate a PQ for random 2D vectors
         var vectors = createRandomVectors(512, dimension);
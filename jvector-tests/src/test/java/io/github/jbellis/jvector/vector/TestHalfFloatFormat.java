@@ -0,0 +1,76 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.jbellis.jvector.vector;
+
+import com.carrotsearch.randomizedtesting.RandomizedTest;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+public class TestHalfFloatFormat extends RandomizedTest {
+    @Test
+    public void testExactValues() {
+        for (var format : HalfFloatFormat.values()) {
+            for (float f : new float[] {0.0f, -0.0f, 1.0f, -2.5f, 0.375f, 1024.0f, 0x1p-14f}) {
+                assertEquals(Float.floatToIntBits(f), Float.floatToIntBits(format.decode(format.encode(f))));
+            }
+        }
+        // fp16 subnormals
+        assertEquals(0x1p-24f, HalfFloatFormat.FP16.decode(HalfFloatFormat.FP16.encode(0x1p-24f)), 0.0f);
+        assertEquals(0x3p-20f, HalfFloatFormat.FP16.decode(HalfFloatFormat.FP16.encode(0x3p-20f)), 0.0f);
+        // bf16 covers the float32 range
+        assertEquals(0x1p100f, HalfFloatFormat.BF16.decode(HalfFloatFormat.BF16.encode(0x1p100f)), 0.0f);
+    }
+
+    @Test
+    public void testEncodingMatchesReference() {
+        assertEquals((short) 0x3C00, HalfFloatFormat.FP16.encode(1.0f));
+        assertEquals((short) 0xC000, HalfFloatFormat.FP16.encode(-2.0f));
+        assertEquals((short) 0x7BFF, HalfFloatFormat.FP16.encode(65504.0f));
+        assertEquals((short) 0x3F80, HalfFloatFormat.BF16.encode(1.0f));
+        assertEquals((short) 0xC000, HalfFloatFormat.BF16.encode(-2.0f));
+    }
+
+    @Test
+    public void testRounding() {
+        // halfway between 1 and the next fp16 value rounds to even, i.e. down; anything above rounds up
+        float ulp = 0x1p-10f;
+        assertEquals(1.0f, HalfFloatFormat.FP16.decode(HalfFloatFormat.FP16.encode(1.0f + ulp / 2)), 0.0f);
+        assertEquals(1.0f + 2 * ulp, HalfFloatFormat.FP16.decode(HalfFloatFormat.FP16.encode(1.0f + 3 * ulp / 2)), 0.0f);
+        assertEquals(1.0f + ulp, HalfFloatFormat.FP16.decode(HalfFloatFormat.FP16.encode(1.0f + ulp / 2 + 0x1p-20f)), 0.0f);
+        ulp = 0x1p-7f;
+        assertEquals(1.0f, HalfFloatFormat.BF16.decode(HalfFloatFormat.BF16.encode(1.0f + ulp / 2)), 0.0f);
+        assertEquals(1.0f + 2 * ulp, HalfFloatFormat.BF16.decode(HalfFloatFormat.BF16.encode(1.0f + 3 * ulp / 2)), 0.0f);
+
+        // random values are within half an ulp
+        for (int i = 0; i < 10_000; i++) {
+            float f = (getRandom().nextFloat() - 0.5f) * 2000;
+            assertEquals(f, HalfFloatFormat.FP16.decode(HalfFloatFormat.FP16.encode(f)), Math.ulp(f) * 0x1p12f + 0x1p-25f);
+            assertEquals(f, HalfFloatFormat.BF16.decode(HalfFloatFormat.BF16.encode(f)), Math.ulp(f) * 0x1p15f);
+        }
+    }
+
+    @Test
+    public void testSaturation() {
+        assertEquals(65504.0f, HalfFloatFormat.FP16.decode(HalfFloatFormat.FP16.encode(1e6f)), 0.0f);
+        assertEquals(-65504.0f, HalfFloatFormat.FP16.decode(HalfFloatFormat.FP16.encode(Float.NEGATIVE_INFINITY)), 0.0f);
+        assertEquals(Float.intBitsToFloat(0x7F7F0000), HalfFloatFormat.BF16.decode(HalfFloatFormat.BF16.encode(Float.MAX_VALUE)), 0.0f);
+        assertThrows(IllegalArgumentException.class, () -> HalfFloatFormat.FP16.encode(Float.NaN));
+        assertThrows(IllegalArgumentException.class, () -> HalfFloatFormat.BF16.encode(Float.NaN));
+    }
+}
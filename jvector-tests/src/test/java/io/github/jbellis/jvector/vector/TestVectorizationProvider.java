@@ -18,12 +18,18 @@ package io.github.jbellis.jvector.vector;
 
 import com.carrotsearch.randomizedtesting.RandomizedTest;
 import io.github.jbellis.jvector.TestUtil;
+import io.github.jbellis.jvector.vector.types.ByteSequence;
 import io.github.jbellis.jvector.vector.types.VectorFloat;
 import io.github.jbellis.jvector.vector.types.VectorTypeSupport;
 import org.junit.Assert;
 import org.junit.Assume;
 import org.junit.Test;
 
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Random;
+
 
 public class TestVectorizationProvider extends RandomizedTest {
     static final boolean hasSimd = VectorizationProvider.vectorModulePresentAndReadable();
@@ -74,4 +80,172 @@ public class TestVectorizationProvider extends RandomizedTest {
             Assert.assertEquals(b.getVectorUtilSupport().sum(v3), b.getVectorUtilSupport().assembleAndSum(v2, 0, vectorTypeSupport.createByteSequence(offsets)), 0.0001);
         }
     }
+
+    @Test
+    public void testHalfPrecisionSimilarity() {
+        Assume.assumeTrue(hasSimd);
+
+        VectorizationProvider a = new DefaultVectorizationProvider();
+        VectorizationProvider b = VectorizationProvider.getInstance();
+
+        for (var format : HalfFloatFormat.values()) {
+            for (int dimension : new int[] {1, 16, 1021}) {
+                VectorFloat<?> qb = TestUtil.randomVector(getRandom(), dimension);
+                VectorFloat<?> v = TestUtil.randomVector(getRandom(), dimension);
+                var qa = a.getVectorTypeSupport().createFloatVector(dimension);
+                var encoded = new byte[2 * dimension];
+                for (int i = 0; i < dimension; i++) {
+                    qa.set(i, qb.get(i));
+                    short code = format.encode(v.get(i));
+                    encoded[2 * i] = (byte) (code >> 8);
+                    encoded[2 * i + 1] = (byte) code;
+                }
+                var ea = a.getVectorTypeSupport().createByteSequence(encoded);
+                var eb = b.getVectorTypeSupport().createByteSequence(encoded);
+
+                Assert.assertEquals(a.getVectorUtilSupport().halfDotProduct(qa, ea, format), b.getVectorUtilSupport().halfDotProduct(qb, eb, format), 0.001f);
+                Assert.assertEquals(a.getVectorUtilSupport().halfCosine(qa, ea, format), b.getVectorUtilSupport().halfCosine(qb, eb, format), 0.001f);
+                Assert.assertEquals(a.getVectorUtilSupport().halfSquareDistance(qa, ea, format), b.getVectorUtilSupport().halfSquareDistance(qb, eb, format), 0.001f);
+                // and the same as scoring the decoded vector
+                Assert.assertEquals(a.getVectorUtilSupport().dotProduct(qa, decoded(a, ea, format)), a.getVectorUtilSupport().halfDotProduct(qa, ea, format), 0.001f);
+            }
+        }
+    }
+
+    @Test
+    public void testInt8Similarity() {
+        Assume.assumeTrue(hasSimd);
+
+        VectorizationProvider a = new DefaultVectorizationProvider();
+        VectorizationProvider b = VectorizationProvider.getInstance();
+
+        for (int dimension : new int[] {1, 16, 1021}) {
+            var codes = new byte[dimension];
+            getRandom().nextBytes(codes);
+            VectorFloat<?> qb = TestUtil.randomVector(getRandom(), dimension);
+            VectorFloat<?> scaleb = TestUtil.randomVector(getRandom(), dimension);
+            VectorFloat<?> offsetb = TestUtil.randomVector(getRandom(), dimension);
+            var qa = copy(a, qb);
+            var scalea = copy(a, scaleb);
+            var offseta = copy(a, offsetb);
+            var ca = a.getVectorTypeSupport().createByteSequence(codes);
+            var cb = b.getVectorTypeSupport().createByteSequence(codes);
+
+            float expected = a.getVectorUtilSupport().int8DotProduct(qa, ca, scalea, offseta);
+            Assert.assertEquals(expected, b.getVectorUtilSupport().int8DotProduct(qb, cb, scaleb, offsetb), Math.abs(expected) * 1e-5f);
+            expected = a.getVectorUtilSupport().int8SquareDistance(qa, ca, scalea, offseta);
+            Assert.assertEquals(expected, b.getVectorUtilSupport().int8SquareDistance(qb, cb, scaleb, offsetb), Math.abs(expected) * 1e-5f);
+            Assert.assertEquals(a.getVectorUtilSupport().int8Cosine(qa, ca, scalea, offseta), b.getVectorUtilSupport().int8Cosine(qb, cb, scaleb, offsetb), 0.0001f);
+
+            // and the same as scoring the decoded vector
+            var decoded = a.getVectorTypeSupport().createFloatVector(dimension);
+            for (int i = 0; i < dimension; i++) {
+                decoded.set(i, offseta.get(i) + scalea.get(i) * codes[i]);
+            }
+            Assert.assertEquals(a.getVectorUtilSupport().cosine(qa, decoded), a.getVectorUtilSupport().int8Cosine(qa, ca, scalea, offseta), 0.0001f);
+        }
+    }
+
+    /**
+     * The SIMD kernels choose their vector species when their class is initialized, so check them in a JVM
+     * whose preferred species is 128 bits wide, as on NEON or x86 without AVX2.
+     */
+    @Test
+    public void testNarrowPreferredSpecies() throws Exception {
+        Assume.assumeTrue(hasSimd);
+
+        var command = new ArrayList<String>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        for (var arg : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (arg.startsWith("--") || arg.startsWith("-Djvector")) {
+                command.add(arg);
+            }
+        }
+        command.add("-XX:MaxVectorSize=16");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(NarrowSpeciesCheck.class.getName());
+        var process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        var output = new String(process.getInputStream().readAllBytes());
+        Assert.assertEquals(output, 0, process.waitFor());
+    }
+
+    public static class NarrowSpeciesCheck {
+        public static void main(String[] args) throws Exception {
+            var species = Class.forName("jdk.incubator.vector.FloatVector").getField("SPECIES_PREFERRED").get(null);
+            int bitSize = (int) Class.forName("jdk.incubator.vector.VectorSpecies").getMethod("vectorBitSize").invoke(species);
+            if (bitSize > 128) {
+                throw new AssertionError("Preferred species is " + bitSize + " bits");
+            }
+
+            VectorizationProvider a = new DefaultVectorizationProvider();
+            VectorizationProvider b = VectorizationProvider.getInstance();
+            if (b instanceof DefaultVectorizationProvider) {
+                throw new AssertionError("SIMD provider did not load");
+            }
+
+            var random = new Random(42);
+            for (int dimension : new int[] {1, 3, 4, 7, 8, 9, 16, 1021}) {
+                var codes = new byte[dimension];
+                random.nextBytes(codes);
+                var qa = a.getVectorTypeSupport().createFloatVector(dimension);
+                var qb = b.getVectorTypeSupport().createFloatVector(dimension);
+                var scalea = a.getVectorTypeSupport().createFloatVector(dimension);
+                var scaleb = b.getVectorTypeSupport().createFloatVector(dimension);
+                var offseta = a.getVectorTypeSupport().createFloatVector(dimension);
+                var offsetb = b.getVectorTypeSupport().createFloatVector(dimension);
+                var encoded = new byte[2 * dimension];
+                for (int i = 0; i < dimension; i++) {
+                    float q = random.nextFloat() - 0.5f;
+                    float scale = random.nextFloat() / 100;
+                    float offset = random.nextFloat() - 0.5f;
+                    qa.set(i, q);
+                    qb.set(i, q);
+                    scalea.set(i, scale);
+                    scaleb.set(i, scale);
+                    offseta.set(i, offset);
+                    offsetb.set(i, offset);
+                    short code = HalfFloatFormat.FP16.encode(random.nextFloat() - 0.5f);
+                    encoded[2 * i] = (byte) (code >> 8);
+                    encoded[2 * i + 1] = (byte) code;
+                }
+                var ca = a.getVectorTypeSupport().createByteSequence(codes);
+                var cb = b.getVectorTypeSupport().createByteSequence(codes);
+                var ea = a.getVectorTypeSupport().createByteSequence(encoded);
+                var eb = b.getVectorTypeSupport().createByteSequence(encoded);
+
+                check(a.getVectorUtilSupport().dotProduct(qa, offseta), b.getVectorUtilSupport().dotProduct(qb, offsetb));
+                check(a.getVectorUtilSupport().int8DotProduct(qa, ca, scalea, offseta), b.getVectorUtilSupport().int8DotProduct(qb, cb, scaleb, offsetb));
+                check(a.getVectorUtilSupport().int8SquareDistance(qa, ca, scalea, offseta), b.getVectorUtilSupport().int8SquareDistance(qb, cb, scaleb, offsetb));
+                check(a.getVectorUtilSupport().int8Cosine(qa, ca, scalea, offseta), b.getVectorUtilSupport().int8Cosine(qb, cb, scaleb, offsetb));
+                for (var format : HalfFloatFormat.values()) {
+                    check(a.getVectorUtilSupport().halfDotProduct(qa, ea, format), b.getVectorUtilSupport().halfDotProduct(qb, eb, format));
+                    check(a.getVectorUtilSupport().halfSquareDistance(qa, ea, format), b.getVectorUtilSupport().halfSquareDistance(qb, eb, format));
+                    check(a.getVectorUtilSupport().halfCosine(qa, ea, format), b.getVectorUtilSupport().halfCosine(qb, eb, format));
+                }
+            }
+        }
+
+        private static void check(float expected, float actual) {
+            if (Math.abs(expected - actual) > 1e-4f * Math.max(1, Math.abs(expected))) {
+                throw new AssertionError("Expected " + expected + " but was " + actual);
+            }
+        }
+    }
+
+    private static VectorFloat<?> copy(VectorizationProvider provider, VectorFloat<?> v) {
+        var copy = provider.getVectorTypeSupport().createFloatVector(v.length());
+        for (int i = 0; i < v.length(); i++) {
+            copy.set(i, v.get(i));
+        }
+        return copy;
+    }
+
+    private static VectorFloat<?> decoded(VectorizationProvider provider, ByteSequence<?> encoded, HalfFloatFormat format) {
+        var v = provider.getVectorTypeSupport().createFloatVector(encoded.length() / 2);
+        for (int i = 0; i < v.length(); i++) {
+            v.set(i, format.decode(encoded, i));
+        }
+        return v;
+    }
 }
@@ -135,6 +135,36 @@ final class PanamaVectorUtilSupport implements VectorUtilSupport {
         return SimdOps.lvqCosine((ArrayVectorFloat) query, vector, (ArrayVectorFloat) centroid);
     }
 
+    @Override
+    public float halfDotProduct(VectorFloat<?> query, ByteSequence<?> encoded, HalfFloatFormat format) {
+        return SimdOps.halfDotProduct((ArrayVectorFloat) query, (ArrayByteSequence) encoded, format);
+    }
+
+    @Override
+    public float halfSquareDistance(VectorFloat<?> query, ByteSequence<?> encoded, HalfFloatFormat format) {
+        return SimdOps.halfSquareDistance((ArrayVectorFloat) query, (ArrayByteSequence) encoded, format);
+    }
+
+    @Override
+    public float halfCosine(VectorFloat<?> query, ByteSequence<?> encoded, HalfFloatFormat format) {
+        return SimdOps.halfCosine((ArrayVectorFloat) query, (ArrayByteSequence) encoded, format);
+    }
+
+    @Override
+    public float int8DotProduct(VectorFloat<?> query, ByteSequence<?> codes, VectorFloat<?> scale, VectorFloat<?> offset) {
+        return SimdOps.int8DotProduct((ArrayVectorFloat) query, (ArrayByteSequence) codes, (ArrayVectorFloat) scale, (ArrayVectorFloat) offset);
+    }
+
+    @Override
+    public float int8SquareDistance(VectorFloat<?> query, ByteSequence<?> codes, VectorFloat<?> scale, VectorFloat<?> offset) {
+        return SimdOps.int8SquareDistance((ArrayVectorFloat) query, (ArrayByteSequence) codes, (ArrayVectorFloat) scale, (ArrayVectorFloat) offset);
+    }
+
+    @Override
+    public float int8Cosine(VectorFloat<?> query, ByteSequence<?> codes, VectorFloat<?> scale, VectorFloat<?> offset) {
+        return SimdOps.int8Cosine((ArrayVectorFloat) query, (ArrayByteSequence) codes, (ArrayVectorFloat) scale, (ArrayVectorFloat) offset);
+    }
+
 
     @Override
     public void calculatePartialSums(VectorFloat<?> codebook, int codebookBase, int size, int clusterCount, VectorFloat<?> query, int queryOffset, VectorSimilarityFunction vsf, VectorFloat<?> partialSums) {